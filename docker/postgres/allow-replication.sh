@@ -0,0 +1,3 @@
+#!/bin/sh
+# Разрешает streaming репликацию (pg_basebackup и реплика из docker-compose) по паролю
+echo "host replication all all scram-sha-256" >> "$PGDATA/pg_hba.conf"
@@ -0,0 +1,50 @@
+package com.github.Silexj.payment_engine.benchmark;
+
+import com.github.Silexj.payment_engine.repository.AccountJdbcRepository;
+import com.github.Silexj.payment_engine.service.AccountNumberAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Генерация номеров счетов (форматирование + контрольная цифра Луна) в AccountNumberAllocator.
+ * Блоки номеров выдаются заглушкой без БД.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AccountNumberBenchmark {
+
+    private AccountNumberAllocator allocator;
+
+    @Setup
+    public void setUp() {
+        allocator = new AccountNumberAllocator(new AccountJdbcRepository(null) {
+            private long nextBlock = 1;
+
+            @Override
+            public long reserveNumberBlock() {
+                long start = nextBlock;
+                nextBlock += NUMBER_BLOCK_SIZE;
+                return start;
+            }
+        });
+    }
+
+    @Benchmark
+    public String allocateOne() {
+        return allocator.allocate();
+    }
+
+    @Benchmark
+    public List<String> allocateBulk() {
+        return allocator.allocate(100);
+    }
+}
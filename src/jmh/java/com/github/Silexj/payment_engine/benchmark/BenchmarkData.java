@@ -0,0 +1,53 @@
+package com.github.Silexj.payment_engine.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.github.Silexj.payment_engine.model.Account;
+import com.github.Silexj.payment_engine.model.Transaction;
+import com.github.Silexj.payment_engine.model.TransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Общие данные бенчмарков.
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * ObjectMapper с теми же модулями и настройками дат, что собирает Spring Boot.
+     */
+    static ObjectMapper objectMapper() {
+        return JsonMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+
+    static Account account(long id, String balance) {
+        Account account = new Account();
+        account.setId(id);
+        account.setNumber("40817810000000000" + id);
+        account.setCurrency("RUB");
+        account.setBalance(new BigDecimal(balance));
+        return account;
+    }
+
+    static Transaction transaction() {
+        return Transaction.builder()
+                .id(UUID.randomUUID())
+                .externalId(UUID.randomUUID())
+                .sender(account(1L, "1000.00"))
+                .receiver(account(2L, "0.00"))
+                .amount(new BigDecimal("125.50"))
+                .currency("RUB")
+                .timestamp(LocalDateTime.now())
+                .status(TransactionStatus.SUCCESS)
+                .build();
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.Silexj.payment_engine.benchmark;
+
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.model.Transaction;
+import com.github.Silexj.payment_engine.service.TransferService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Преобразование проводки в ответ API (TransferService.mapToResponse).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MapToResponseBenchmark {
+
+    private Transaction transaction;
+
+    @Setup
+    public void setUp() {
+        transaction = BenchmarkData.transaction();
+    }
+
+    @Benchmark
+    public TransferDTO.Response mapToResponse() {
+        return TransferService.mapToResponse(transaction);
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.Silexj.payment_engine.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.Silexj.payment_engine.dto.event.AccountCreatedEvent;
+import com.github.Silexj.payment_engine.dto.event.BalanceDepositedEvent;
+import com.github.Silexj.payment_engine.dto.event.TransferCompletedEvent;
+import com.github.Silexj.payment_engine.service.notification.NotificationListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор входящего сообщения NotificationListener по заголовку EVENT_TYPE.
+ * Логирование отключено (src/jmh/resources/logback.xml), так что замер - это выбор типа и Jackson.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NotificationDeserializationBenchmark {
+
+    @Param({"TRANSFER_COMPLETED", "ACCOUNT_CREATED", "BALANCE_DEPOSITED"})
+    private String eventType;
+
+    private NotificationListener listener;
+    private String payload;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = BenchmarkData.objectMapper();
+        listener = new NotificationListener(objectMapper);
+
+        Object event = switch (eventType) {
+            case "TRANSFER_COMPLETED" -> new TransferCompletedEvent(UUID.randomUUID(), 1L, 2L, new BigDecimal("125.50"), "RUB");
+            case "ACCOUNT_CREATED" -> new AccountCreatedEvent(1L, "40817810000000000001", "RUB", LocalDateTime.now());
+            case "BALANCE_DEPOSITED" -> new BalanceDepositedEvent(1L, new BigDecimal("125.50"), "RUB", UUID.randomUUID());
+            default -> throw new IllegalArgumentException("Unknown event type: " + eventType);
+        };
+        payload = objectMapper.writeValueAsString(event);
+    }
+
+    @Benchmark
+    public void handlePaymentEvent() {
+        listener.handlePaymentEvent(payload, eventType);
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.Silexj.payment_engine.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.dto.event.TransferCompletedEvent;
+import com.github.Silexj.payment_engine.model.OutboxEvent;
+import com.github.Silexj.payment_engine.model.Transaction;
+import com.github.Silexj.payment_engine.service.OutboxWriterService;
+import com.github.Silexj.payment_engine.service.TransferService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация событий Outbox: та часть OutboxWriterService.saveEvent, что выполняется на CPU
+ * (JSON события и сборка строки outbox_events), плюс JSON ответа перевода для сравнения.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OutboxSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private OutboxWriterService outboxWriter;
+    private TransferCompletedEvent event;
+    private TransferDTO.Response response;
+
+    @Setup
+    public void setUp() {
+        objectMapper = BenchmarkData.objectMapper();
+        // Репозитории и publisher не нужны: toOutboxEvent в БД не ходит
+        outboxWriter = new OutboxWriterService(null, objectMapper, null, null);
+
+        Transaction transaction = BenchmarkData.transaction();
+        event = new TransferCompletedEvent(transaction.getId(), transaction.getSender().getId(),
+                transaction.getReceiver().getId(), transaction.getAmount(), transaction.getCurrency());
+        response = TransferService.mapToResponse(transaction);
+    }
+
+    @Benchmark
+    public OutboxEvent transferCompletedEvent() {
+        return outboxWriter.toOutboxEvent(event.transactionId().toString(), "TRANSFER_COMPLETED", event);
+    }
+
+    @Benchmark
+    public String transferCompletedPayload() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(event);
+    }
+
+    @Benchmark
+    public String transferResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(response);
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.Silexj.payment_engine.benchmark;
+
+import com.github.Silexj.payment_engine.model.Account;
+import com.github.Silexj.payment_engine.repository.BalanceSlotOperations;
+import com.github.Silexj.payment_engine.service.StripedBalanceService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Арифметика балансов StripedBalanceService без БД.
+ *
+ * transfer - списание и зачисление обычных счетов туда и обратно (баланс между вызовами не дрейфует).
+ * stripedDebit - списание со striped счета: сумма слотов, сортировка по наполненности и заимствование
+ * из нескольких слотов. Репозиторий слотов подменен FixedSlots: lockSlots отдает одни и те же слоты,
+ * addToSlot ничего не пишет, поэтому замеряется только CPU часть.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StripedBalanceBenchmark {
+
+    @Param({"1000.00", "98765432109876.54"})
+    private String balance;
+
+    @Param({"8"})
+    private int slots;
+
+    private StripedBalanceService balanceService;
+    private Account sender;
+    private Account receiver;
+    private Account striped;
+    private BigDecimal amount;
+    private BigDecimal stripedAmount;
+
+    @Setup
+    public void setUp() {
+        List<BalanceSlotOperations.SlotBalance> slotBalances = new ArrayList<>(slots);
+        BigDecimal slotTotal = BigDecimal.ZERO;
+        for (int i = 0; i < slots; i++) {
+            // Слоты наполнены неравномерно, как после случайных зачислений
+            BigDecimal slotBalance = new BigDecimal(balance).multiply(BigDecimal.valueOf(i + 1)).setScale(2);
+            slotBalances.add(new SlotValue(i, slotBalance));
+            slotTotal = slotTotal.add(slotBalance);
+        }
+        balanceService = new StripedBalanceService(null, new FixedSlots(slotBalances, slotTotal));
+
+        sender = BenchmarkData.account(1L, balance);
+        receiver = BenchmarkData.account(2L, "0.00");
+        striped = BenchmarkData.account(3L, "0.00");
+        striped.setBalanceSlots(slots);
+        amount = new BigDecimal("125.50");
+        // Больше самого наполненного слота: списание заимствует из нескольких
+        stripedAmount = slotTotal.divide(BigDecimal.TWO);
+    }
+
+    @Benchmark
+    public BigDecimal transfer() {
+        if (balanceService.availableBalance(sender).compareTo(amount) < 0) {
+            throw new IllegalStateException("Insufficient funds");
+        }
+        balanceService.debit(sender, amount);
+        balanceService.credit(receiver, amount);
+        balanceService.debit(receiver, amount);
+        balanceService.credit(sender, amount);
+        return sender.getBalance();
+    }
+
+    @Benchmark
+    public BigDecimal stripedBalance() {
+        return balanceService.availableBalance(striped);
+    }
+
+    @Benchmark
+    public Account stripedDebit() {
+        balanceService.debit(striped, stripedAmount);
+        return striped;
+    }
+
+    private record SlotValue(int slot, BigDecimal balance) implements BalanceSlotOperations.SlotBalance {
+
+        @Override
+        public Integer getSlot() {
+            return slot;
+        }
+
+        @Override
+        public BigDecimal getBalance() {
+            return balance;
+        }
+    }
+
+    private record FixedSlots(List<BalanceSlotOperations.SlotBalance> slots, BigDecimal total)
+            implements BalanceSlotOperations {
+
+        @Override
+        public List<SlotBalance> lockSlots(Long accountId) {
+            return slots;
+        }
+
+        @Override
+        public int addToSlot(Long accountId, int slot, BigDecimal delta) {
+            return 1;
+        }
+
+        @Override
+        public BigDecimal sumBalance(Long accountId) {
+            return total;
+        }
+    }
+}
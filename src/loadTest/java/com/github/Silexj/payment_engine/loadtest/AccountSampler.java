@@ -0,0 +1,67 @@
+package com.github.Silexj.payment_engine.loadtest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Выбор счета для очередного перевода.
+ *
+ * UNIFORM - все счета равновероятны. ZIPF - вероятность счета ранга k пропорциональна 1 / k^s:
+ * несколько "популярных" счетов получают большую часть переводов, как мерчанты в проде,
+ * и именно на них выстраиваются очереди блокировок.
+ */
+final class AccountSampler {
+
+    enum Distribution {
+        UNIFORM, ZIPF
+    }
+
+    private final long[] accountIds;
+    private final double[] cumulative;
+
+    AccountSampler(List<Long> accountIds, Distribution distribution, double exponent) {
+        this.accountIds = accountIds.stream().mapToLong(Long::longValue).toArray();
+        if (distribution == Distribution.UNIFORM) {
+            this.cumulative = null;
+            return;
+        }
+        this.cumulative = new double[this.accountIds.length];
+        double sum = 0;
+        for (int rank = 0; rank < cumulative.length; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < cumulative.length; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    long next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (cumulative == null) {
+            return accountIds[random.nextInt(accountIds.length)];
+        }
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return accountIds[Math.min(index >= 0 ? index : -index - 1, accountIds.length - 1)];
+    }
+
+    /**
+     * Пара различных счетов: отправитель и получатель выбираются по одному распределению.
+     */
+    long[] nextPair() {
+        long from = next();
+        long to = next();
+        while (to == from) {
+            to = next();
+        }
+        return new long[]{from, to};
+    }
+
+    /**
+     * Доля переводов, приходящаяся на самый популярный счет (для отчета).
+     */
+    double topAccountShare() {
+        return cumulative == null ? 1.0 / accountIds.length : cumulative[0];
+    }
+}
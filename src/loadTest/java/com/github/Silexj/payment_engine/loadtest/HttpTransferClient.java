@@ -0,0 +1,63 @@
+package com.github.Silexj.payment_engine.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+/**
+ * Клиент POST /api/v1/transfers для прогона против запущенного сервера (load.client=HTTP).
+ * Позволяет сравнить блокирующий и реактивный (профиль reactive) стеки под одинаковой нагрузкой.
+ *
+ * 400 превращается в IllegalArgumentException (отклонено, как в локальном режиме),
+ * 429 и 503 - в OverloadedException, остальные ошибки - в IllegalStateException.
+ */
+final class HttpTransferClient {
+
+    static final class OverloadedException extends RuntimeException {
+    }
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final URI transfersUri;
+    private final Duration requestTimeout;
+
+    HttpTransferClient(String baseUrl, ObjectMapper objectMapper) {
+        this.httpClient = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.objectMapper = objectMapper;
+        this.transfersUri = URI.create(baseUrl).resolve("/api/v1/transfers");
+        this.requestTimeout = Duration.parse("PT" + System.getProperty("load.request-timeout", "30s"));
+    }
+
+    TransferDTO.Response performTransfer(TransferDTO.PerformRequest request) {
+        try {
+            HttpRequest httpRequest = HttpRequest.newBuilder(transfersUri)
+                    .timeout(requestTimeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(request)))
+                    .build();
+            HttpResponse<byte[]> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofByteArray());
+            return switch (response.statusCode()) {
+                case 200 -> objectMapper.readValue(response.body(), TransferDTO.Response.class);
+                case 400 -> throw new IllegalArgumentException(new String(response.body()));
+                case 429, 503 -> throw new OverloadedException();
+                default -> throw new IllegalStateException("HTTP " + response.statusCode());
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.Silexj.payment_engine.loadtest;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+/**
+ * Параметры прогона из системных свойств load.* (./gradlew loadTest -Pload.threads=64 ...).
+ * client=LOCAL вызывает TransferService в процессе, HTTP - шлет запросы уже запущенному серверу по baseUrl.
+ */
+record LoadTestConfig(
+        int threads,
+        int accounts,
+        Duration duration,
+        AccountSampler.Distribution distribution,
+        double zipfExponent,
+        double duplicateRatio,
+        BigDecimal initialBalance,
+        BigDecimal maxAmount,
+        String transferMode,
+        Client client,
+        String baseUrl
+) {
+
+    enum Client {
+        LOCAL, HTTP
+    }
+
+    static LoadTestConfig fromSystemProperties() {
+        return new LoadTestConfig(
+                Integer.getInteger("load.threads", 32),
+                Integer.getInteger("load.accounts", 1000),
+                Duration.parse("PT" + System.getProperty("load.duration", "30s")),
+                AccountSampler.Distribution.valueOf(System.getProperty("load.distribution", "ZIPF").toUpperCase()),
+                Double.parseDouble(System.getProperty("load.zipf-exponent", "1.1")),
+                Double.parseDouble(System.getProperty("load.duplicate-ratio", "0.05")),
+                new BigDecimal(System.getProperty("load.initial-balance", "1000.00")),
+                new BigDecimal(System.getProperty("load.max-amount", "10.00")),
+                System.getProperty("app.transfer.mode", "PESSIMISTIC"),
+                Client.valueOf(System.getProperty("load.client", "LOCAL").toUpperCase()),
+                System.getProperty("load.base-url", "http://localhost:8080")
+        );
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.Silexj.payment_engine.loadtest;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчики и латентности прогона. Латентности пишутся каждым потоком в свой массив
+ * (без синхронизации на горячем пути) и сортируются один раз в конце - перцентили точные.
+ */
+final class LoadTestReport {
+
+    final LongAdder succeeded = new LongAdder();
+    final LongAdder duplicates = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+    final LongAdder lockTimeouts = new LongAdder();
+    final LongAdder deadlocks = new LongAdder();
+    final LongAdder serializationFailures = new LongAdder();
+    final LongAdder overloaded = new LongAdder();
+    final LongAdder errors = new LongAdder();
+
+    /**
+     * Латентности одного потока в наносекундах.
+     */
+    static final class Latencies {
+
+        private long[] values = new long[1 << 16];
+        private int size;
+
+        void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+    }
+
+    String render(LoadTestConfig config, AccountSampler sampler, List<Latencies> perThread, long elapsedNanos,
+                  BigDecimal expectedTotal, BigDecimal actualTotal) {
+        int total = perThread.stream().mapToInt(latencies -> latencies.size).sum();
+        long[] all = new long[total];
+        int offset = 0;
+        for (Latencies latencies : perThread) {
+            System.arraycopy(latencies.values, 0, all, offset, latencies.size);
+            offset += latencies.size;
+        }
+        Arrays.sort(all);
+
+        double seconds = elapsedNanos / 1e9;
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, """
+
+                ===== Load test =====
+                client=%s mode=%s threads=%d accounts=%d distribution=%s (top account share %.1f%%) duplicate-ratio=%.2f
+                requests:        %d in %.1f s
+                throughput:      %.1f req/s
+                latency ms:      p50=%.2f p99=%.2f p999=%.2f max=%.2f
+                succeeded:       %d
+                duplicates:      %d
+                rejected:        %d (insufficient funds and other validation errors)
+                lock timeouts:   %d
+                deadlocks:       %d
+                serialization:   %d
+                overloaded:      %d (429/503, HTTP client only)
+                other errors:    %d
+                money:           expected=%s actual=%s -> %s
+                """,
+                config.client(), config.transferMode(), config.threads(), config.accounts(), config.distribution(),
+                sampler.topAccountShare() * 100, config.duplicateRatio(),
+                total, seconds, total / seconds,
+                percentileMs(all, 0.50), percentileMs(all, 0.99), percentileMs(all, 0.999),
+                all.length == 0 ? 0 : all[all.length - 1] / 1e6,
+                succeeded.sum(), duplicates.sum(), rejected.sum(), lockTimeouts.sum(), deadlocks.sum(),
+                serializationFailures.sum(), overloaded.sum(), errors.sum(),
+                expectedTotal.toPlainString(), actualTotal.toPlainString(),
+                expectedTotal.compareTo(actualTotal) == 0 ? "CONSERVED" : "MISMATCH"));
+        return report.toString();
+    }
+
+    private static double percentileMs(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+}
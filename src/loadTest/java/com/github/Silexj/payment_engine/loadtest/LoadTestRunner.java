@@ -0,0 +1,217 @@
+package com.github.Silexj.payment_engine.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.Silexj.payment_engine.PaymentEngineApplication;
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.model.TransactionStatus;
+import com.github.Silexj.payment_engine.service.AccountProvisioningService;
+import com.github.Silexj.payment_engine.service.AccountService;
+import com.github.Silexj.payment_engine.service.TransferService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Нагрузочный прогон переводов против локального PostgreSQL (./gradlew loadTest).
+ *
+ * Поднимает контекст приложения без веб-сервера и Kafka, открывает load.accounts счетов,
+ * пополняет каждый на load.initial-balance и в load.threads потоков вызывает TransferService
+ * в течение load.duration. Счета выбираются равномерно или по Zipf (load.distribution),
+ * доля load.duplicate-ratio запросов - повторы недавних externalId.
+ *
+ * В конце печатает пропускную способность, перцентили латентности, число lock timeout и deadlock
+ * и проверяет, что сумма балансов счетов прогона не изменилась. При расхождении - код выхода 1.
+ *
+ * С load.client=HTTP переводы идут запросами к серверу по load.base-url (та же БД), каждый
+ * клиент - виртуальный поток: так сравниваются блокирующий и реактивный стеки. Счета по-прежнему
+ * открываются и сверяются через локальный контекст.
+ */
+public class LoadTestRunner {
+
+    private static final int PROVISIONING_CHUNK = 10000;
+    private static final int RECENT_REQUESTS = 4096;
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadTestConfig config = LoadTestConfig.fromSystemProperties();
+
+        SpringApplication application = new SpringApplication(PaymentEngineApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        application.setDefaultProperties(Map.of(
+                "spring.kafka.listener.auto-startup", "false",
+                "app.outbox.fast-path.enabled", "false",
+                "app.scheduler.outbox-interval", "3600000",
+                "app.reconciliation.cron", "-",
+                // В режиме HTTP переводы выполняет сервер, локальному контексту хватает пула по умолчанию
+                "spring.datasource.hikari.maximum-pool-size",
+                String.valueOf(config.client() == LoadTestConfig.Client.LOCAL ? config.threads() + 4 : 10),
+                // Без lock_timeout ожидание блокировки не ограничено и таймауты не видны
+                "spring.datasource.hikari.connection-init-sql",
+                "SET lock_timeout = '" + System.getProperty("load.lock-timeout", "2s") + "'",
+                "logging.level.com.github.Silexj.payment_engine", "WARN"
+        ));
+
+        boolean conserved;
+        try (ConfigurableApplicationContext context = application.run(args)) {
+            conserved = new LoadTestRunner().run(context, config);
+        }
+        System.exit(conserved ? 0 : 1);
+    }
+
+    private boolean run(ConfigurableApplicationContext context, LoadTestConfig config) throws InterruptedException {
+        TransferCall transferCall = switch (config.client()) {
+            case LOCAL -> context.getBean(TransferService.class)::performTransfer;
+            case HTTP -> new HttpTransferClient(config.baseUrl(), context.getBean(ObjectMapper.class))::performTransfer;
+        };
+        NamedParameterJdbcTemplate jdbcTemplate = context.getBean(NamedParameterJdbcTemplate.class);
+
+        List<Long> accountIds = openAccounts(context, config);
+        BigDecimal expectedTotal = totalBalance(jdbcTemplate, accountIds);
+        AccountSampler sampler = new AccountSampler(accountIds, config.distribution(), config.zipfExponent());
+
+        LoadTestReport report = new LoadTestReport();
+        AtomicReferenceArray<TransferDTO.PerformRequest> recent = new AtomicReferenceArray<>(RECENT_REQUESTS);
+        AtomicLong sequence = new AtomicLong();
+        List<LoadTestReport.Latencies> latencies = Collections.synchronizedList(new ArrayList<>());
+
+        long startedAt = System.nanoTime();
+        long deadline = startedAt + config.duration().toNanos();
+        CountDownLatch finished = new CountDownLatch(config.threads());
+        for (int i = 0; i < config.threads(); i++) {
+            Thread.Builder builder = config.client() == LoadTestConfig.Client.HTTP ? Thread.ofVirtual() : Thread.ofPlatform();
+            builder.name("load-" + i).start(() -> {
+                LoadTestReport.Latencies own = new LoadTestReport.Latencies();
+                latencies.add(own);
+                try {
+                    while (System.nanoTime() < deadline) {
+                        TransferDTO.PerformRequest request = nextRequest(config, sampler, recent, sequence);
+                        boolean duplicate = request == null;
+                        if (duplicate) {
+                            request = recent.get(ThreadLocalRandom.current().nextInt(RECENT_REQUESTS));
+                            if (request == null) {
+                                continue;
+                            }
+                        }
+                        long start = System.nanoTime();
+                        execute(transferCall, request, duplicate, report);
+                        own.add(System.nanoTime() - start);
+                    }
+                } finally {
+                    finished.countDown();
+                }
+            });
+        }
+        finished.await();
+        long elapsed = System.nanoTime() - startedAt;
+
+        BigDecimal actualTotal = totalBalance(jdbcTemplate, accountIds);
+        System.out.println(report.render(config, sampler, latencies, elapsed, expectedTotal, actualTotal));
+        return expectedTotal.compareTo(actualTotal) == 0;
+    }
+
+    /**
+     * Новый запрос либо null, если этот запрос должен быть повтором (и в буфере уже есть что повторять).
+     */
+    private static TransferDTO.PerformRequest nextRequest(LoadTestConfig config, AccountSampler sampler,
+                                                          AtomicReferenceArray<TransferDTO.PerformRequest> recent,
+                                                          AtomicLong sequence) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (sequence.get() >= RECENT_REQUESTS && random.nextDouble() < config.duplicateRatio()) {
+            return null;
+        }
+        long[] pair = sampler.nextPair();
+        BigDecimal amount = config.maxAmount()
+                .multiply(BigDecimal.valueOf(random.nextDouble(0.01, 1.0)))
+                .setScale(2, RoundingMode.HALF_UP)
+                .max(new BigDecimal("0.01"));
+        TransferDTO.PerformRequest request = new TransferDTO.PerformRequest(UUID.randomUUID(), pair[0], pair[1], amount);
+        recent.set((int) (sequence.getAndIncrement() % RECENT_REQUESTS), request);
+        return request;
+    }
+
+    @FunctionalInterface
+    private interface TransferCall {
+        TransferDTO.Response perform(TransferDTO.PerformRequest request);
+    }
+
+    private static void execute(TransferCall transferCall, TransferDTO.PerformRequest request,
+                                boolean duplicate, LoadTestReport report) {
+        try {
+            TransferDTO.Response response = transferCall.perform(request);
+            if (response.status() != TransactionStatus.SUCCESS) {
+                report.rejected.increment();
+            } else if (duplicate) {
+                report.duplicates.increment();
+            } else {
+                report.succeeded.increment();
+            }
+        } catch (IllegalArgumentException e) {
+            report.rejected.increment();
+        } catch (HttpTransferClient.OverloadedException e) {
+            report.overloaded.increment();
+        } catch (RuntimeException e) {
+            switch (sqlState(e)) {
+                case "40P01" -> report.deadlocks.increment();
+                case "55P03" -> report.lockTimeouts.increment();
+                case "40001" -> report.serializationFailures.increment();
+                default -> report.errors.increment();
+            }
+        }
+    }
+
+    private static String sqlState(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sql && sql.getSQLState() != null) {
+                return sql.getSQLState();
+            }
+        }
+        return "";
+    }
+
+    private static List<Long> openAccounts(ConfigurableApplicationContext context, LoadTestConfig config) {
+        AccountProvisioningService provisioningService = context.getBean(AccountProvisioningService.class);
+        AccountService accountService = context.getBean(AccountService.class);
+
+        List<Long> accountIds = new ArrayList<>(config.accounts());
+        while (accountIds.size() < config.accounts()) {
+            int chunk = Math.min(PROVISIONING_CHUNK, config.accounts() - accountIds.size());
+            var response = provisioningService.createAccounts(new AccountDto.BulkCreateRequest(
+                    Collections.nCopies(chunk, new AccountDto.CreateRequest("RUB"))));
+            response.accounts().forEach(account -> accountIds.add(account.id()));
+        }
+        for (Long accountId : accountIds) {
+            accountService.topUpBalance(new AccountDto.TopUpRequest(accountId, config.initialBalance()));
+        }
+        return accountIds;
+    }
+
+    /**
+     * Сумма балансов (со слотами striped счетов) по счетам прогона.
+     */
+    private static BigDecimal totalBalance(NamedParameterJdbcTemplate jdbcTemplate, List<Long> accountIds) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int from = 0; from < accountIds.size(); from += PROVISIONING_CHUNK) {
+            List<Long> chunk = accountIds.subList(from, Math.min(from + PROVISIONING_CHUNK, accountIds.size()));
+            BigDecimal sum = jdbcTemplate.queryForObject("""
+                    SELECT COALESCE((SELECT SUM(balance) FROM accounts WHERE id IN (:ids)), 0)
+                         + COALESCE((SELECT SUM(balance) FROM account_balance_slots WHERE account_id IN (:ids)), 0)
+                    """, Map.of("ids", chunk), BigDecimal.class);
+            total = total.add(sum);
+        }
+        return total;
+    }
+}
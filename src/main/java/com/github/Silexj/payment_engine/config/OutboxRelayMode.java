@@ -0,0 +1,17 @@
+package com.github.Silexj.payment_engine.config;
+
+/**
+ * Способ доставки событий outbox_events в Kafka (свойство app.outbox.relay).
+ */
+public enum OutboxRelayMode {
+    /**
+     * OutboxProcessor: периодический SELECT ... FOR UPDATE SKIP LOCKED по PENDING событиям.
+     */
+    POLLING,
+
+    /**
+     * WalOutboxRelay: поток вставок из слота логической репликации (pgoutput),
+     * события уходят в Kafka сразу после коммита. Требует wal_level=logical.
+     */
+    LOGICAL_REPLICATION
+}
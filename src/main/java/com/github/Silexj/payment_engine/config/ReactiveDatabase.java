@@ -0,0 +1,77 @@
+package com.github.Silexj.payment_engine.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import java.time.Duration;
+
+/**
+ * R2DBC доступ к той же БД, что и JPA (профиль reactive).
+ *
+ * Пул и менеджер транзакций намеренно не объявлены бинами: бин ConnectionFactory отключает
+ * автоконфигурацию DataSource, а бин R2dbcTransactionManager - JpaTransactionManager,
+ * а остальное приложение (outbox, сверка, пакетные переводы) продолжает работать через JDBC.
+ * Параметры подключения берутся из JdbcConnectionDetails (spring.datasource.* или Testcontainers).
+ */
+@Component
+@Profile("reactive")
+@Getter
+@Slf4j
+public class ReactiveDatabase implements DisposableBean {
+
+    private final ConnectionPool pool;
+    private final DatabaseClient client;
+    private final TransactionalOperator transactionalOperator;
+
+    public ReactiveDatabase(JdbcConnectionDetails connectionDetails,
+                            @Value("${app.reactive.pool.max-size:20}") int maxSize,
+                            @Value("${app.reactive.pool.max-acquire-time:5s}") Duration maxAcquireTime) {
+        ConnectionFactoryOptions options = toR2dbcOptions(connectionDetails);
+        this.pool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .name("reactive-pool")
+                .initialSize(Math.min(2, maxSize))
+                .maxSize(maxSize)
+                .maxAcquireTime(maxAcquireTime)
+                .build());
+        this.client = DatabaseClient.create(pool);
+        this.transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(pool));
+        log.info("Reactive database pool created: host={}, maxSize={}",
+                options.getValue(ConnectionFactoryOptions.HOST), maxSize);
+    }
+
+    @Override
+    public void destroy() {
+        pool.dispose();
+    }
+
+    /**
+     * jdbc:postgresql://host:port/db?params -> r2dbc:postgresql://host:port/db (параметры JDBC драйвера отбрасываются).
+     */
+    static ConnectionFactoryOptions toR2dbcOptions(JdbcConnectionDetails connectionDetails) {
+        String jdbcUrl = connectionDetails.getJdbcUrl();
+        if (!jdbcUrl.startsWith("jdbc:postgresql:")) {
+            throw new IllegalStateException("Reactive profile supports PostgreSQL only: " + jdbcUrl);
+        }
+        String url = "r2dbc:" + jdbcUrl.substring("jdbc:".length());
+        int query = url.indexOf('?');
+        if (query >= 0) {
+            url = url.substring(0, query);
+        }
+        return ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, connectionDetails.getUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, connectionDetails.getPassword())
+                .build();
+    }
+}
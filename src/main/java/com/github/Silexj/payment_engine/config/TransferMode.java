@@ -0,0 +1,34 @@
+package com.github.Silexj.payment_engine.config;
+
+/**
+ * Стратегия исполнения перевода в TransferService (свойство app.transfer.mode).
+ */
+public enum TransferMode {
+    /**
+     * JPA: проверка идемпотентности, SELECT ... FOR UPDATE обоих счетов, dirty-check UPDATE, INSERT проводки и события.
+     */
+    PESSIMISTIC,
+
+    /**
+     * Весь перевод одним data-modifying CTE с условным UPDATE баланса (один round trip).
+     */
+    CONDITIONAL_UPDATE,
+
+    /**
+     * JPA без блокировок: чтение счетов без FOR UPDATE, проверка @Version при flush, повтор с jitter
+     * при конфликте. Счета с частыми конфликтами временно переводятся на PESSIMISTIC (см. OptimisticTransferService).
+     */
+    OPTIMISTIC,
+
+    /**
+     * Переводы, пришедшие в пределах короткого окна, выполняются одной транзакцией БД (один COMMIT и сброс WAL
+     * на группу), каждый - под своим SAVEPOINT (см. GroupCommitTransferService).
+     */
+    GROUP_COMMIT,
+
+    /**
+     * In-memory движок: балансы в памяти, один поток-владелец на партицию счетов,
+     * групповая запись результатов в transactions / outbox_events (см. LedgerEngine).
+     */
+    LEDGER
+}
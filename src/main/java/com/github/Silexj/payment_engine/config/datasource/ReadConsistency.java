@@ -0,0 +1,53 @@
+package com.github.Silexj.payment_engine.config.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Требования к свежести чтения для текущего потока (см. ReplicaRoutingDataSource).
+ *
+ * minLsn - позиция WAL, которую реплика должна воспроизвести, чтобы ей можно было отдать чтение
+ * (клиент получает ее в заголовке X-Commit-LSN ответа на запись и передает в X-Min-LSN).
+ * primaryOnly - читать только с primary независимо от отставания реплик.
+ */
+public final class ReadConsistency {
+
+    private static final ThreadLocal<Long> MIN_LSN = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> PRIMARY_ONLY = new ThreadLocal<>();
+
+    private ReadConsistency() {
+    }
+
+    public static Long minLsn() {
+        return MIN_LSN.get();
+    }
+
+    public static boolean primaryOnly() {
+        return Boolean.TRUE.equals(PRIMARY_ONLY.get());
+    }
+
+    static void requireLsn(long lsn) {
+        MIN_LSN.set(lsn);
+    }
+
+    static void clear() {
+        MIN_LSN.remove();
+        PRIMARY_ONLY.remove();
+    }
+
+    /**
+     * Выполняет действие с чтением только с primary (например, загрузку в кэш, который живет дольше отставания реплики).
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        Boolean previous = PRIMARY_ONLY.get();
+        PRIMARY_ONLY.set(true);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY_ONLY.remove();
+            } else {
+                PRIMARY_ONLY.set(previous);
+            }
+        }
+    }
+}
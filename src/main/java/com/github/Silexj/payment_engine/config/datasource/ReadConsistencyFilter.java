@@ -0,0 +1,39 @@
+package com.github.Silexj.payment_engine.config.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.postgresql.replication.LogSequenceNumber;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Читает заголовок X-Min-LSN (значение X-Commit-LSN из ответа на запись клиента)
+ * и требует, чтобы чтения запроса шли на реплику, уже воспроизведшую эту позицию.
+ */
+public class ReadConsistencyFilter extends OncePerRequestFilter {
+
+    public static final String MIN_LSN_HEADER = "X-Min-LSN";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String minLsn = request.getHeader(MIN_LSN_HEADER);
+        if (minLsn != null) {
+            LogSequenceNumber lsn = LogSequenceNumber.valueOf(minLsn.trim());
+            if (lsn == LogSequenceNumber.INVALID_LSN) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid " + MIN_LSN_HEADER + " header");
+                return;
+            }
+            ReadConsistency.requireLsn(lsn.asLong());
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReadConsistency.clear();
+        }
+    }
+}
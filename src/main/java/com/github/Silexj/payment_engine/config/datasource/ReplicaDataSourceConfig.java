@@ -0,0 +1,88 @@
+package com.github.Silexj.payment_engine.config.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Чтение с реплик (app.datasource.replicas.enabled=true).
+ *
+ * primary - обычный пул spring.datasource.*, реплики - отдельные пулы replica-1..N
+ * с теми же учетными данными. У каждого пула свои метрики hikaricp.*{pool=...}.
+ * Приложение получает ReplicaRoutingDataSource за LazyConnectionDataSourceProxy.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.replicas.enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties,
+                                              ObjectProvider<JdbcConnectionDetails> connectionDetails) {
+        JdbcConnectionDetails details = connectionDetails.getIfAvailable();
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(details != null ? details.getJdbcUrl() : properties.determineUrl())
+                .username(details != null ? details.getUsername() : properties.determineUsername())
+                .password(details != null ? details.getPassword() : properties.determinePassword())
+                .build();
+        dataSource.setPoolName(ReplicaRoutingDataSource.PRIMARY);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(HikariDataSource primaryDataSource,
+                                               MeterRegistry meterRegistry,
+                                               @Value("${app.datasource.replicas.urls}") List<String> urls,
+                                               @Value("${app.datasource.replicas.max-pool-size:10}") int maxPoolSize,
+                                               @Value("${app.datasource.replicas.max-lag-bytes:1048576}") long maxLagBytes) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + (i + 1));
+            replica.setJdbcUrl(urls.get(i).trim());
+            replica.setUsername(primaryDataSource.getUsername());
+            replica.setPassword(primaryDataSource.getPassword());
+            replica.setMaximumPoolSize(maxPoolSize);
+            replica.setReadOnly(true);
+            replica.setMetricRegistry(meterRegistry);
+            replicas.put(replica.getPoolName(), replica);
+        }
+        return new ReplicaLagMonitor(primaryDataSource, replicas, maxLagBytes, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource,
+                                 ReplicaLagMonitor replicaLagMonitor,
+                                 MeterRegistry meterRegistry) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(replicaLagMonitor, meterRegistry);
+        Map<Object, Object> targets = new HashMap<>(replicaLagMonitor.replicas());
+        targets.put(ReplicaRoutingDataSource.PRIMARY, primaryDataSource);
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(primaryDataSource);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadConsistencyFilter> readConsistencyFilter() {
+        return new FilterRegistrationBean<>(new ReadConsistencyFilter());
+    }
+}
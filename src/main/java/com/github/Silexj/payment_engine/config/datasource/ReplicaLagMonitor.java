@@ -0,0 +1,129 @@
+package com.github.Silexj.payment_engine.config.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.replication.LogSequenceNumber;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Следит за отставанием реплик от primary по позиции WAL.
+ *
+ * Раз в app.datasource.replicas.lag-check-interval сравнивает pg_current_wal_lsn() primary
+ * с pg_last_wal_replay_lsn() каждой реплики. Реплика получает чтения, только если отстает
+ * не больше чем на max-lag-bytes и воспроизвела minLsn вызывающего. Недоступная реплика
+ * (или не standby) исключается до следующей успешной проверки.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private final JdbcTemplate primary;
+    private final Map<String, DataSource> dataSources;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long maxLagBytes;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaLagMonitor(DataSource primary, Map<String, DataSource> replicas, long maxLagBytes, MeterRegistry meterRegistry) {
+        this.primary = new JdbcTemplate(primary);
+        this.dataSources = Map.copyOf(replicas);
+        this.maxLagBytes = maxLagBytes;
+        replicas.forEach((name, dataSource) -> {
+            Replica replica = new Replica(name, new JdbcTemplate(dataSource));
+            this.replicas.add(replica);
+            Gauge.builder("datasource.replica.lag.bytes", replica, r -> r.lagBytes)
+                    .description("WAL bytes the replica has not replayed yet (-1 when unavailable)")
+                    .tag("replica", name)
+                    .register(meterRegistry);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replicas.lag-check-interval:1000}")
+    public void refresh() {
+        long primaryLsn;
+        try {
+            primaryLsn = currentPrimaryLsn();
+        } catch (RuntimeException e) {
+            log.warn("Failed to read primary WAL position", e);
+            return;
+        }
+        for (Replica replica : replicas) {
+            try {
+                String replayed = replica.jdbcTemplate.queryForObject("SELECT pg_last_wal_replay_lsn()::text", String.class);
+                if (replayed == null) {
+                    replica.markUnavailable();
+                    log.warn("Data source {} is not a standby, excluded from reads", replica.name);
+                    continue;
+                }
+                replica.replayedLsn = LogSequenceNumber.valueOf(replayed).asLong();
+                replica.lagBytes = Math.max(0, primaryLsn - replica.replayedLsn);
+            } catch (RuntimeException e) {
+                replica.markUnavailable();
+                log.warn("Replica {} lag check failed, excluded from reads", replica.name, e);
+            }
+        }
+    }
+
+    public Map<String, DataSource> replicas() {
+        return dataSources;
+    }
+
+    /**
+     * Закрывает пулы реплик (они не являются бинами и не закрываются контекстом сами).
+     */
+    public void close() throws Exception {
+        for (DataSource dataSource : dataSources.values()) {
+            if (dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    /**
+     * Текущая позиция WAL на primary. Не меньше LSN коммита любой завершенной транзакции.
+     */
+    public long currentPrimaryLsn() {
+        String lsn = primary.queryForObject("SELECT pg_current_wal_lsn()::text", String.class);
+        return LogSequenceNumber.valueOf(lsn).asLong();
+    }
+
+    /**
+     * Выбирает реплику по кругу среди тех, что укладываются в допустимое отставание и воспроизвели minLsn.
+     */
+    public Optional<String> pickReplica(Long minLsn) {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.lagBytes >= 0 && replica.lagBytes <= maxLagBytes
+                    && (minLsn == null || replica.replayedLsn >= minLsn)) {
+                return Optional.of(replica.name);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static class Replica {
+        private final String name;
+        private final JdbcTemplate jdbcTemplate;
+        // До первой проверки реплика не используется
+        private volatile long lagBytes = -1;
+        private volatile long replayedLsn;
+
+        private Replica(String name, JdbcTemplate jdbcTemplate) {
+            this.name = name;
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        private void markUnavailable() {
+            lagBytes = -1;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.Silexj.payment_engine.config.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.replication.LogSequenceNumber;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Направляет readOnly транзакции на реплики, все остальное - на primary.
+ *
+ * Ключ выбирается в момент получения физического соединения, поэтому источник оборачивается
+ * в LazyConnectionDataSourceProxy: к этому моменту флаг readOnly транзакции уже выставлен.
+ *
+ * Чтение уходит на primary, если реплики отстают больше max-lag-bytes, не воспроизвели
+ * X-Min-LSN клиента (ReadConsistency) или вызывающий явно запросил primary.
+ * Ответ на HTTP запрос с записью получает заголовок X-Commit-LSN для последующих чтений.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+    public static final String COMMIT_LSN_HEADER = "X-Commit-LSN";
+
+    private final ReplicaLagMonitor lagMonitor;
+    // Ключ ресурса транзакции: заголовок X-Commit-LSN регистрируется один раз на транзакцию
+    private final Object commitLsnKey = new Object();
+    private final Counter primaryReads;
+    private final Counter replicaReads;
+
+    public ReplicaRoutingDataSource(ReplicaLagMonitor lagMonitor, MeterRegistry meterRegistry) {
+        this.lagMonitor = lagMonitor;
+        this.primaryReads = readCounter(meterRegistry, "primary");
+        this.replicaReads = readCounter(meterRegistry, "replica");
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            exposeCommitLsn();
+            return PRIMARY;
+        }
+        if (!ReadConsistency.primaryOnly()) {
+            var replica = lagMonitor.pickReplica(ReadConsistency.minLsn());
+            if (replica.isPresent()) {
+                replicaReads.increment();
+                return replica.get();
+            }
+        }
+        primaryReads.increment();
+        return PRIMARY;
+    }
+
+    /**
+     * Для записи в рамках HTTP запроса после коммита отдает клиенту позицию WAL primary.
+     * Фоновые записи (relay, журнал) лишний запрос не делают.
+     */
+    private void exposeCommitLsn() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(commitLsnKey)
+                || !(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)
+                || attributes.getResponse() == null) {
+            return;
+        }
+        HttpServletResponse response = attributes.getResponse();
+        TransactionSynchronizationManager.bindResource(commitLsnKey, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    response.setHeader(COMMIT_LSN_HEADER, LogSequenceNumber.valueOf(lagMonitor.currentPrimaryLsn()).asString());
+                } catch (RuntimeException e) {
+                    log.warn("Failed to read commit LSN", e);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(commitLsnKey);
+            }
+        });
+    }
+
+    private static Counter readCounter(MeterRegistry meterRegistry, String route) {
+        return Counter.builder("datasource.reads")
+                .description("Read-only transactions by target data source")
+                .tag("route", route)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,192 @@
+package com.github.Silexj.payment_engine.config.shedding;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Адаптивный лимит одновременных запросов на изменяющие эндпоинты.
+ *
+ * В отличие от DbBulkhead, который ставит вызовы в очередь перед пулом соединений, здесь лишняя работа
+ * отклоняется сразу на входе: во время инцидента клиенты получают быстрый 429/503 с Retry-After,
+ * а не ждут вместе со всеми, пока латентность растет.
+ *
+ * Лимит пересчитывается раз в update-interval по средней латентности TransferService.performTransfer
+ * за окно (таймер transfer.perform, @Timed) относительно целевой latency-slo:
+ * - латентность выше SLO - лимит умножается на slo/латентность (не более чем вдвое за окно);
+ * - латентность в пределах SLO и лимит был почти занят - лимит растет на sqrt(limit).
+ * Окна, где переводов меньше min-samples, лимит не меняют.
+ *
+ * Класс приоритета допускается, пока занято меньше его доли лимита (RequestPriority.share).
+ * На горячем пути - только атомарный счетчик; таймеры читаются при пересчете.
+ */
+@Component
+@ConditionalOnProperty(name = "app.load-shedding.enabled", havingValue = "true")
+@Slf4j
+public class AdaptiveLoadShedder {
+
+    private static final String LATENCY_TIMER = "transfer.perform";
+    private static final double MAX_DECREASE = 0.5;
+
+    private final MeterRegistry meterRegistry;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long sloNanos;
+    private final long updateIntervalNanos;
+    private final long minSamples;
+    private final long retryAfterSeconds;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Пик одновременных запросов за окно: растить лимит имеет смысл, только если он упирался
+    private final AtomicInteger windowPeak = new AtomicInteger();
+    private final ReentrantLock updateLock = new ReentrantLock();
+
+    private volatile double limit;
+    private volatile long nextUpdate;
+    private long lastCount;
+    private double lastTotalNanos;
+
+    private final Map<RequestPriority, Counter> rejectedPriority = new EnumMap<>(RequestPriority.class);
+    private final Map<RequestPriority, Counter> rejectedOverload = new EnumMap<>(RequestPriority.class);
+
+    public AdaptiveLoadShedder(MeterRegistry meterRegistry,
+                               @Value("${app.load-shedding.min-limit:10}") int minLimit,
+                               @Value("${app.load-shedding.max-limit:1000}") int maxLimit,
+                               @Value("${app.load-shedding.initial-limit:200}") int initialLimit,
+                               @Value("${app.load-shedding.latency-slo:200ms}") Duration latencySlo,
+                               @Value("${app.load-shedding.update-interval:1s}") Duration updateInterval,
+                               @Value("${app.load-shedding.min-samples:20}") long minSamples,
+                               @Value("${app.load-shedding.retry-after:1s}") Duration retryAfter) {
+        this.meterRegistry = meterRegistry;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.sloNanos = latencySlo.toNanos();
+        this.updateIntervalNanos = updateInterval.toNanos();
+        this.minSamples = minSamples;
+        this.retryAfterSeconds = Math.max(1, retryAfter.toSeconds());
+        this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+        this.nextUpdate = System.nanoTime() + updateIntervalNanos;
+
+        for (RequestPriority priority : RequestPriority.values()) {
+            rejectedPriority.put(priority, rejectedCounter(meterRegistry, priority, HttpStatus.TOO_MANY_REQUESTS));
+            rejectedOverload.put(priority, rejectedCounter(meterRegistry, priority, HttpStatus.SERVICE_UNAVAILABLE));
+        }
+        Gauge.builder("load.shedding.limit", this, AdaptiveLoadShedder::getLimit)
+                .description("Current adaptive limit of concurrent mutating requests")
+                .register(meterRegistry);
+        Gauge.builder("load.shedding.in.flight", this, AdaptiveLoadShedder::getInFlight)
+                .description("Mutating requests currently admitted")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Допускает запрос или бросает RequestShedException. Допущенный запрос обязан вызвать release.
+     */
+    public void acquire(RequestPriority priority) {
+        updateLimitIfDue();
+
+        int currentLimit = (int) limit;
+        int allowed = Math.max(1, (int) (currentLimit * priority.share()));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                if (current >= currentLimit) {
+                    rejectedOverload.get(priority).increment();
+                    throw new RequestShedException(HttpStatus.SERVICE_UNAVAILABLE, retryAfterSeconds,
+                            "Service is overloaded, retry later");
+                }
+                rejectedPriority.get(priority).increment();
+                throw new RequestShedException(HttpStatus.TOO_MANY_REQUESTS, retryAfterSeconds,
+                        "Too many requests of priority " + priority + ", retry later");
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                windowPeak.accumulateAndGet(current + 1, Math::max);
+                return;
+            }
+        }
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void updateLimitIfDue() {
+        long now = System.nanoTime();
+        if (now < nextUpdate || !updateLock.tryLock()) {
+            return;
+        }
+        try {
+            if (now < nextUpdate) {
+                return;
+            }
+            nextUpdate = now + updateIntervalNanos;
+            updateLimit();
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Пересчет лимита по окну; вызывается из acquire раз в update-interval (пакетный доступ - для тестов).
+     */
+    void updateLimit() {
+        long count = 0;
+        double totalNanos = 0;
+        // @Timed пишет отдельный таймер на каждый тег exception - суммируем все
+        for (Timer timer : meterRegistry.find(LATENCY_TIMER).timers()) {
+            count += timer.count();
+            totalNanos += timer.totalTime(TimeUnit.NANOSECONDS);
+        }
+        long samples = count - lastCount;
+        double windowNanos = totalNanos - lastTotalNanos;
+        lastCount = count;
+        lastTotalNanos = totalNanos;
+        int peak = windowPeak.getAndSet(inFlight.get());
+        if (samples < minSamples) {
+            return;
+        }
+
+        double latency = windowNanos / samples;
+        double previous = limit;
+        if (latency > sloNanos) {
+            limit = Math.max(minLimit, previous * Math.max(MAX_DECREASE, sloNanos / latency));
+        } else if (peak * 2 >= previous) {
+            limit = Math.min(maxLimit, previous + Math.sqrt(previous));
+        }
+
+        if ((int) limit != (int) previous) {
+            log.debug("Load shedding limit changed: {} -> {} (latency {} ms)",
+                    (int) previous, (int) limit, TimeUnit.NANOSECONDS.toMillis((long) latency));
+        }
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, RequestPriority priority, HttpStatus status) {
+        return Counter.builder("load.shedding.rejected")
+                .description("Mutating requests shed by the adaptive limit")
+                .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                .tag("status", String.valueOf(status.value()))
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,16 @@
+package com.github.Silexj.payment_engine.config.shedding;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Эндпоинт проходит через адаптивный лимит AdaptiveLoadShedder с указанным приоритетом (см. LoadSheddingInterceptor).
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface LoadShed {
+
+    RequestPriority value() default RequestPriority.NORMAL;
+}
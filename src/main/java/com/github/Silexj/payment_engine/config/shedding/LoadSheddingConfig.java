@@ -0,0 +1,22 @@
+package com.github.Silexj.payment_engine.config.shedding;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@ConditionalOnProperty(name = "app.load-shedding.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class LoadSheddingConfig implements WebMvcConfigurer {
+
+    // В срезах @WebMvcTest лимитера нет - эндпоинты работают без него
+    private final ObjectProvider<AdaptiveLoadShedder> shedder;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        shedder.ifAvailable(limiter -> registry.addInterceptor(new LoadSheddingInterceptor(limiter)));
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.Silexj.payment_engine.config.shedding;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Пропускает вызовы эндпоинтов с @LoadShed через AdaptiveLoadShedder.
+ * Отказ (RequestShedException) превращает в 429/503 с Retry-After GlobalExceptionHandler.
+ */
+@RequiredArgsConstructor
+public class LoadSheddingInterceptor implements HandlerInterceptor {
+
+    private static final String ADMITTED = LoadSheddingInterceptor.class.getName() + ".admitted";
+
+    private final AdaptiveLoadShedder shedder;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod method && request.getAttribute(ADMITTED) == null) {
+            LoadShed loadShed = method.getMethodAnnotation(LoadShed.class);
+            if (loadShed != null) {
+                shedder.acquire(loadShed.value());
+                request.setAttribute(ADMITTED, Boolean.TRUE);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(ADMITTED) != null) {
+            request.removeAttribute(ADMITTED);
+            shedder.release();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.Silexj.payment_engine.config.shedding;
+
+/**
+ * Класс приоритета изменяющего эндпоинта. share - доля адаптивного лимита, до которой класс допускается:
+ * при росте нагрузки первыми отсекаются LOW, затем NORMAL, а HIGH получает весь лимит.
+ */
+public enum RequestPriority {
+    /** Пополнения и операции поддержки, которые должны проходить во время инцидента. */
+    HIGH(1.0),
+    /** Одиночные переводы и открытие счетов. */
+    NORMAL(0.8),
+    /** Пакетные операции: дорогие и легко переносятся клиентом. */
+    LOW(0.5);
+
+    private final double share;
+
+    RequestPriority(double share) {
+        this.share = share;
+    }
+
+    public double share() {
+        return share;
+    }
+}
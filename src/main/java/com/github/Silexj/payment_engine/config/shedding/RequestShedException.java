@@ -0,0 +1,22 @@
+package com.github.Silexj.payment_engine.config.shedding;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Запрос отклонен до выполнения адаптивным лимитом эндпоинтов и его можно безопасно повторить.
+ * 429 - отсечен класс приоритета (место держится для более важных запросов), 503 - исчерпан весь лимит.
+ * retryAfterSeconds отдается клиенту в заголовке Retry-After.
+ */
+@Getter
+public class RequestShedException extends RuntimeException {
+
+    private final HttpStatus status;
+    private final long retryAfterSeconds;
+
+    public RequestShedException(HttpStatus status, long retryAfterSeconds, String message) {
+        super(message);
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -1,18 +1,37 @@
 package com.github.Silexj.payment_engine.controller;
 
+import com.github.Silexj.payment_engine.config.shedding.LoadShed;
+import com.github.Silexj.payment_engine.config.shedding.RequestPriority;
 import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.service.AccountProvisioningService;
 import com.github.Silexj.payment_engine.service.AccountService;
+import com.github.Silexj.payment_engine.service.StatementService;
+import com.github.Silexj.payment_engine.service.TransactionService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/v1/accounts")
 @RequiredArgsConstructor
 public class AccountController {
 
     private final AccountService accountService;
+    private final AccountProvisioningService provisioningService;
+    private final TransactionService transactionService;
+    private final StatementService statementService;
 
     /**
      * Регистрирует новый банковский счет в системе.
@@ -21,10 +40,22 @@ public class AccountController {
      */
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
+    @LoadShed(RequestPriority.NORMAL)
     public AccountDto.Response createAccount(@RequestBody @Valid AccountDto.CreateRequest request) {
         return accountService.createAccount(request);
     }
 
+    /**
+     * Массовое открытие счетов (до 10000 за запрос) одной транзакцией.
+     * Возвращает статус 201 Created и созданные счета в порядке запроса.
+     */
+    @PostMapping("/bulk")
+    @ResponseStatus(HttpStatus.CREATED)
+    @LoadShed(RequestPriority.LOW)
+    public AccountDto.BulkCreateResponse createAccounts(@RequestBody @Valid AccountDto.BulkCreateRequest request) {
+        return provisioningService.createAccounts(request);
+    }
+
     /**
      * Получает актуальное состояние счета (баланс, валюта).
      */
@@ -33,12 +64,43 @@ public class AccountController {
         return accountService.getAccount(id);
     }
 
+    /**
+     * История операций счета от новых к старым, постранично.
+     * Следующая страница запрашивается с cursor = nextCursor из предыдущего ответа.
+     */
+    @GetMapping("/{id}/transactions")
+    public TransferDTO.HistoryPage getTransactions(@PathVariable Long id,
+                                                   @RequestParam(required = false) String cursor,
+                                                   @RequestParam(defaultValue = "50") int limit) {
+        return transactionService.getHistory(id, cursor, limit);
+    }
+
+    /**
+     * Выписка по счету за даты [from, to] в формате csv или ndjson.
+     * Строки пишутся в ответ по мере чтения из БД, с остатком после каждой операции.
+     */
+    @GetMapping("/{id}/statement")
+    public ResponseEntity<StreamingResponseBody> getStatement(@PathVariable Long id,
+                                                              @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                              @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                              @RequestParam(defaultValue = "csv") String format) {
+        StatementService.Format statementFormat = StatementService.Format.parse(format);
+        StreamingResponseBody body = statementService.export(id, from, to, statementFormat);
+        String filename = "statement-%d-%s-%s.%s".formatted(id, from, to, statementFormat.extension());
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(statementFormat.contentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+    }
+
     /**
      * Операция пополнения баланса.
      * Выполняет валидацию соответствия ID в URL и в теле запроса для предотвращения
      * случайных ошибок клиента или попыток подмены.
+     * При перегрузке пополнения отсекаются последними (приоритет HIGH).
      */
     @PostMapping("/{id}/top-up")
+    @LoadShed(RequestPriority.HIGH)
     public AccountDto.Response topUpBalance(@PathVariable Long id,
                                             @RequestBody @Valid AccountDto.TopUpRequest request) {
         if (!id.equals(request.accountId())) {
@@ -46,4 +108,24 @@ public class AccountController {
         }
         return accountService.topUpBalance(request);
     }
+
+    /**
+     * Переводит счет в striped режим ("горячий" счет: мерчант, сбор комиссий).
+     * Зачисления распределяются по слотам и не блокируют друг друга.
+     */
+    @PostMapping("/{id}/striping")
+    @LoadShed(RequestPriority.HIGH)
+    public AccountDto.Response enableStriping(@PathVariable Long id,
+                                              @RequestBody @Valid AccountDto.StripingRequest request) {
+        return accountService.enableStriping(id, request.slots());
+    }
+
+    /**
+     * Возвращает счет в обычный режим, собирая баланс слотов обратно в одну строку.
+     */
+    @DeleteMapping("/{id}/striping")
+    @LoadShed(RequestPriority.HIGH)
+    public AccountDto.Response disableStriping(@PathVariable Long id) {
+        return accountService.disableStriping(id);
+    }
 }
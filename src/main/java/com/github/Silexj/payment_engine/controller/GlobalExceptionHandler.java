@@ -1,11 +1,19 @@
 package com.github.Silexj.payment_engine.controller;
 
+import com.github.Silexj.payment_engine.config.shedding.RequestShedException;
+import com.github.Silexj.payment_engine.service.bulkhead.BulkheadRejectedException;
+import com.github.Silexj.payment_engine.service.groupcommit.GroupCommitTimeoutException;
+import com.github.Silexj.payment_engine.service.idempotency.IdempotencyKeyConflictException;
+import com.github.Silexj.payment_engine.service.ledger.LedgerTimeoutException;
 import jakarta.persistence.EntityNotFoundException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
 
 import java.time.Instant;
 
@@ -36,6 +44,69 @@ public class GlobalExceptionHandler {
         return problem;
     }
 
+    /**
+     * Повтор externalId с другими параметрами перевода. Возвращает статус 409 Conflict:
+     * клиенту нужен новый externalId, повтор того же запроса не поможет.
+     */
+    @ExceptionHandler(IdempotencyKeyConflictException.class)
+    public ProblemDetail handleIdempotencyConflict(IdempotencyKeyConflictException e) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT, e.getMessage());
+        problem.setTitle("Idempotency key reused");
+        problem.setProperty("timestamp", Instant.now());
+        return problem;
+    }
+
+    /**
+     * Запрос отклонен лимитом обращений к БД (перегрузка) и не выполнялся.
+     * Возвращает статус 503 Service Unavailable - клиент может повторить запрос позже.
+     */
+    @ExceptionHandler(BulkheadRejectedException.class)
+    public ProblemDetail handleBulkheadRejected(BulkheadRejectedException e) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        problem.setTitle("Service overloaded");
+        problem.setProperty("timestamp", Instant.now());
+        return problem;
+    }
+
+    /**
+     * Журнал LEDGER не подтвердил запись вовремя. Возвращает статус 503 Service Unavailable:
+     * перевод повторяют с тем же externalId, и повтор не проведет его дважды.
+     */
+    @ExceptionHandler(LedgerTimeoutException.class)
+    public ProblemDetail handleLedgerTimeout(LedgerTimeoutException e) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        problem.setTitle("Operation not confirmed");
+        problem.setProperty("timestamp", Instant.now());
+        return problem;
+    }
+
+    /**
+     * Группа с переводом не закоммитилась вовремя (режим GROUP_COMMIT). Как и таймаут журнала LEDGER -
+     * 503 Service Unavailable: перевод повторяют с тем же externalId.
+     */
+    @ExceptionHandler(GroupCommitTimeoutException.class)
+    public ProblemDetail handleGroupCommitTimeout(GroupCommitTimeoutException e) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        problem.setTitle("Operation not confirmed");
+        problem.setProperty("timestamp", Instant.now());
+        return problem;
+    }
+
+    /**
+     * Запрос отклонен адаптивным лимитом эндпоинтов до выполнения.
+     * Возвращает 429 Too Many Requests (отсечен класс приоритета) или 503 Service Unavailable
+     * (исчерпан весь лимит) с заголовком Retry-After.
+     */
+    @ExceptionHandler(RequestShedException.class)
+    public ResponseEntity<ProblemDetail> handleRequestShed(RequestShedException e) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(e.getStatus(), e.getMessage());
+        problem.setTitle(e.getStatus() == HttpStatus.TOO_MANY_REQUESTS ? "Too many requests" : "Service overloaded");
+        problem.setProperty("timestamp", Instant.now());
+        return ResponseEntity.status(e.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(problem);
+    }
+
     /**
      * Перехватывает ошибки валидации входных DTO (аннотации @NotNull, @Positive и др.),
      * возникающие при обработке аннотации @Valid в контроллерах.
@@ -52,4 +123,21 @@ public class GlobalExceptionHandler {
         problem.setProperty("errors", errors);
         return problem;
     }
+
+    /**
+     * Ошибки валидации входных DTO в профиле reactive (WebFlux вместо MethodArgumentNotValidException
+     * бросает WebExchangeBindException). Формат ответа тот же.
+     */
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ProblemDetail handleReactiveValidationErrors(WebExchangeBindException e) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, "Validation failed");
+        problem.setTitle("Validation Error");
+
+        var errors = e.getBindingResult().getFieldErrors().stream()
+                .map(err -> err.getField() + ": " + err.getDefaultMessage())
+                .toList();
+
+        problem.setProperty("errors", errors);
+        return problem;
+    }
 }
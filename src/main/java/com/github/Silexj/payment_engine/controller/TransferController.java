@@ -1,18 +1,32 @@
 package com.github.Silexj.payment_engine.controller;
 
+import com.github.Silexj.payment_engine.config.shedding.LoadShed;
+import com.github.Silexj.payment_engine.config.shedding.RequestPriority;
 import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.service.BatchTransferService;
 import com.github.Silexj.payment_engine.service.TransferService;
+import com.github.Silexj.payment_engine.service.async.AsyncTransferService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.net.URI;
+import java.util.UUID;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/v1/transfers")
 @RequiredArgsConstructor
 public class TransferController {
 
     private final TransferService transferService;
+    private final BatchTransferService batchTransferService;
+    private final AsyncTransferService asyncTransferService;
 
     /**
      * Инициирует операцию перевода средств между счетами.
@@ -21,10 +35,55 @@ public class TransferController {
      * система вернет результат ранее сохраненной транзакции без повторного списания средств.
      *
      * Возвращает статус 200 OK< как для новой, так и для идемпотентно возвращенной транзакции.
+     * При перегрузке - 429/503 с Retry-After (адаптивный лимит, см. AdaptiveLoadShedder).
      */
     @PostMapping
     @ResponseStatus(HttpStatus.OK)
+    @LoadShed(RequestPriority.NORMAL)
     public TransferDTO.Response performTransfer(@RequestBody @Valid TransferDTO.PerformRequest request) {
         return transferService.performTransfer(request);
     }
+
+    /**
+     * Пакетный перевод (зарплатные и расчетные реестры).
+     * Все счета пакета блокируются одним запросом, проводки и события пишутся батчем.
+     * Возвращает результат по каждому элементу в порядке запроса, включая идемпотентные повторы
+     * и отклоненные переводы (status = FAILED).
+     */
+    @PostMapping("/batch")
+    @ResponseStatus(HttpStatus.OK)
+    @LoadShed(RequestPriority.LOW)
+    public TransferDTO.BatchResponse performBatch(@RequestBody @Valid TransferDTO.BatchRequest request) {
+        return batchTransferService.performBatch(request);
+    }
+
+    /**
+     * Асинхронный перевод: запрос фиксируется в БД и выполняется в фоне.
+     * Возвращает 202 Accepted и Location со ссылкой на статус. Повтор с тем же externalId
+     * возвращает состояние ранее принятого перевода.
+     */
+    @PostMapping("/async")
+    @LoadShed(RequestPriority.NORMAL)
+    public ResponseEntity<TransferDTO.AsyncStatus> submitAsync(@RequestBody @Valid TransferDTO.PerformRequest request) {
+        TransferDTO.AsyncStatus status = asyncTransferService.submit(request);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/transfers/" + status.externalId()))
+                .body(status);
+    }
+
+    /**
+     * Статус перевода по externalId (асинхронного или выполненного синхронно).
+     */
+    @GetMapping("/{externalId}")
+    public TransferDTO.AsyncStatus getStatus(@PathVariable UUID externalId) {
+        return asyncTransferService.getStatus(externalId);
+    }
+
+    /**
+     * Подписка SSE на завершение перевода: событие "status" с текущим состоянием и с итоговым.
+     */
+    @GetMapping(value = "/{externalId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@PathVariable UUID externalId) {
+        return asyncTransferService.subscribe(externalId);
+    }
 }
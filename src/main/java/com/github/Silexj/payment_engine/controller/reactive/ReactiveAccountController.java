@@ -0,0 +1,86 @@
+package com.github.Silexj.payment_engine.controller.reactive;
+
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.service.AccountProvisioningService;
+import com.github.Silexj.payment_engine.service.AccountService;
+import com.github.Silexj.payment_engine.service.TransactionService;
+import com.github.Silexj.payment_engine.service.reactive.ReactiveAccountService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Счета в профиле reactive. Контракт совпадает с AccountController.
+ * Открытие, чтение и пополнение идут через R2DBC; редкие административные операции
+ * (массовое открытие, история, striping) - через блокирующие сервисы на boundedElastic.
+ * Выписка (StreamingResponseBody) в этом профиле не поддерживается.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/v1/accounts")
+@RequiredArgsConstructor
+public class ReactiveAccountController {
+
+    private final ReactiveAccountService reactiveAccountService;
+    private final AccountService accountService;
+    private final AccountProvisioningService provisioningService;
+    private final TransactionService transactionService;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<AccountDto.Response> createAccount(@RequestBody @Valid AccountDto.CreateRequest request) {
+        return reactiveAccountService.createAccount(request);
+    }
+
+    @PostMapping("/bulk")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<AccountDto.BulkCreateResponse> createAccounts(@RequestBody @Valid AccountDto.BulkCreateRequest request) {
+        return blocking(() -> provisioningService.createAccounts(request));
+    }
+
+    @GetMapping("/{id}")
+    public Mono<AccountDto.Response> getAccount(@PathVariable Long id) {
+        return reactiveAccountService.getAccount(id);
+    }
+
+    @GetMapping("/{id}/transactions")
+    public Mono<TransferDTO.HistoryPage> getTransactions(@PathVariable Long id,
+                                                         @RequestParam(required = false) String cursor,
+                                                         @RequestParam(defaultValue = "50") int limit) {
+        return blocking(() -> transactionService.getHistory(id, cursor, limit));
+    }
+
+    /**
+     * Пополнение баланса. ID в URL и в теле запроса должны совпадать.
+     */
+    @PostMapping("/{id}/top-up")
+    public Mono<AccountDto.Response> topUpBalance(@PathVariable Long id,
+                                                  @RequestBody @Valid AccountDto.TopUpRequest request) {
+        if (!id.equals(request.accountId())) {
+            return Mono.error(new IllegalArgumentException("Path ID and Body ID must match"));
+        }
+        return reactiveAccountService.topUpBalance(request);
+    }
+
+    @PostMapping("/{id}/striping")
+    public Mono<AccountDto.Response> enableStriping(@PathVariable Long id,
+                                                    @RequestBody @Valid AccountDto.StripingRequest request) {
+        return blocking(() -> accountService.enableStriping(id, request.slots()));
+    }
+
+    @DeleteMapping("/{id}/striping")
+    public Mono<AccountDto.Response> disableStriping(@PathVariable Long id) {
+        return blocking(() -> accountService.disableStriping(id));
+    }
+
+    private static <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+}
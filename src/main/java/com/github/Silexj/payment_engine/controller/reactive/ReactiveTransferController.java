@@ -0,0 +1,44 @@
+package com.github.Silexj.payment_engine.controller.reactive;
+
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.service.BatchTransferService;
+import com.github.Silexj.payment_engine.service.reactive.ReactiveTransferService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Переводы в профиле reactive. Контракт совпадает с TransferController.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/v1/transfers")
+@RequiredArgsConstructor
+public class ReactiveTransferController {
+
+    private final ReactiveTransferService transferService;
+    private final BatchTransferService batchTransferService;
+
+    /**
+     * Идемпотентный перевод средств между счетами (см. TransferController.performTransfer).
+     */
+    @PostMapping
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<TransferDTO.Response> performTransfer(@RequestBody @Valid TransferDTO.PerformRequest request) {
+        return transferService.performTransfer(request);
+    }
+
+    /**
+     * Пакетный перевод. Выполняется блокирующим BatchTransferService на boundedElastic.
+     */
+    @PostMapping("/batch")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<TransferDTO.BatchResponse> performBatch(@RequestBody @Valid TransferDTO.BatchRequest request) {
+        return Mono.fromCallable(() -> batchTransferService.performBatch(request))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
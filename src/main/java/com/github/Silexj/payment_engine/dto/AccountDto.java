@@ -1,10 +1,16 @@
 package com.github.Silexj.payment_engine.dto;
 
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 public class AccountDto {
     /**
@@ -39,4 +45,33 @@ public class AccountDto {
             @Positive(message = "Amount must be greater than zero")
             BigDecimal amount
     ) {}
+
+    /**
+     * Запрос на перевод "горячего" счета в striped режим.
+     * Баланс разбивается на указанное число слотов.
+     */
+    public record StripingRequest (
+            @NotNull(message = "Slot count is required")
+            @Min(value = 2, message = "Slot count must be at least 2")
+            @Max(value = 64, message = "Slot count must not exceed 64")
+            Integer slots
+    ) {}
+
+    /**
+     * Запрос на массовое открытие счетов (онбординг партнера, миграция).
+     * Все счета создаются в одной транзакции: либо все, либо ни одного.
+     */
+    public record BulkCreateRequest (
+            @NotEmpty(message = "Accounts list must not be empty")
+            @Size(max = 10000, message = "Batch size must not exceed 10000")
+            List<@Valid @NotNull CreateRequest> accounts
+    ) {}
+
+    /**
+     * Результат массового открытия счетов. Порядок счетов совпадает с порядком в запросе.
+     */
+    public record BulkCreateResponse(
+            int created,
+            List<Response> accounts
+    ) {}
 }
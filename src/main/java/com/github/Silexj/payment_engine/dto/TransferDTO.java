@@ -1,11 +1,16 @@
 package com.github.Silexj.payment_engine.dto;
 
 import com.github.Silexj.payment_engine.model.TransactionStatus;
+import com.github.Silexj.payment_engine.model.TransferRequestStatus;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 
 public class TransferDTO {
@@ -45,5 +50,56 @@ public class TransferDTO {
             String errorMessage
     ) {}
 
+    /**
+     * Пакетный запрос на переводы (зарплатные и расчетные реестры).
+     * Каждый элемент валидируется так же, как одиночный перевод.
+     */
+    public record BatchRequest(
+            @NotEmpty(message = "Transfers list must not be empty")
+            @Size(max = 5000, message = "Batch must not contain more than 5000 transfers")
+            List<@Valid @NotNull PerformRequest> transfers
+    ) {}
+
+    /**
+     * Результат обработки одного элемента пакета.
+     * replayed = true, если перевод с таким externalId уже был выполнен ранее.
+     * Отклоненные элементы возвращаются со статусом FAILED и текстом ошибки.
+     */
+    public record BatchItemResult(
+            UUID externalId,
+            boolean replayed,
+            Response result
+    ) {}
+
+    /**
+     * Ответ на пакетный запрос. Порядок results совпадает с порядком элементов запроса.
+     */
+    public record BatchResponse(
+            int total,
+            int succeeded,
+            int replayed,
+            int failed,
+            List<BatchItemResult> results
+    ) {}
+
+    /**
+     * Страница истории операций счета (от новых к старым).
+     * nextCursor передается в следующий запрос; null - страниц больше нет.
+     */
+    public record HistoryPage(
+            List<Response> transactions,
+            String nextCursor
+    ) {}
 
+    /**
+     * Состояние асинхронного перевода (POST /transfers/async, GET /transfers/{externalId}).
+     * result заполнен для SUCCESS; errorMessage - причина FAILED или последняя временная ошибка PENDING.
+     */
+    public record AsyncStatus(
+            UUID externalId,
+            TransferRequestStatus status,
+            Response result,
+            String errorMessage,
+            LocalDateTime acceptedAt
+    ) {}
 }
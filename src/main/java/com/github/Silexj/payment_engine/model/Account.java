@@ -5,6 +5,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
@@ -26,8 +27,13 @@ import java.time.LocalDateTime;
 @Builder
 public class Account {
 
+    /**
+     * ID из accounts_id_seq пулами по 50 (pooled-lo): в отличие от IDENTITY, Hibernate знает ID до INSERT
+     * и может группировать вставки в JDBC batch. allocationSize = INCREMENT BY последовательности.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "accounts_id_seq")
+    @SequenceGenerator(name = "accounts_id_seq", sequenceName = "accounts_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true, length = 20)
@@ -39,6 +45,14 @@ public class Account {
     @Column(nullable = false, precision = 19, scale = 2)
     private BigDecimal balance;
 
+    /**
+     * Число слотов баланса для "горячих" счетов (0 - обычный счет).
+     * У striped счета баланс распределен по строкам account_balance_slots,
+     * зачисления идут в случайный слот без блокировки строки accounts.
+     */
+    @Column(name = "balance_slots", nullable = false)
+    private int balanceSlots;
+
     @Version
     private Long version;
 
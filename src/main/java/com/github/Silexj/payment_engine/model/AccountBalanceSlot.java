@@ -0,0 +1,50 @@
+package com.github.Silexj.payment_engine.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * Слот баланса striped счета. Баланс счета = accounts.balance + сумма всех слотов.
+ */
+@Entity
+@Table(name = "account_balance_slots")
+@IdClass(AccountBalanceSlot.SlotId.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AccountBalanceSlot {
+
+    @Id
+    @Column(name = "account_id")
+    private Long accountId;
+
+    @Id
+    private Integer slot;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal balance;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class SlotId implements Serializable {
+        private Long accountId;
+        private Integer slot;
+    }
+}
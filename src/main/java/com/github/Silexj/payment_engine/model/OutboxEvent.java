@@ -48,6 +48,18 @@ public class OutboxEvent {
     @Column(name = "processed_at")
     private LocalDateTime processedAt;
 
+    /**
+     * До этого момента событие арендовано поллером, который его отправляет (OutboxProcessor).
+     */
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
     @Column(nullable = false)
     private String status;
+
+    /**
+     * Событие отправляет OutboxPublisher сразу после коммита; поллер берет его только после grace-period.
+     */
+    @Column(name = "fast_path", nullable = false)
+    private boolean fastPath;
 }
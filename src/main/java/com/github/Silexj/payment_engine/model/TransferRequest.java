@@ -0,0 +1,57 @@
+package com.github.Silexj.payment_engine.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Принятый асинхронный перевод. Ключ - externalId клиента (тот же ключ идемпотентности, что и у transactions).
+ */
+@Entity
+@Table(name = "transfer_requests")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransferRequest {
+
+    @Id
+    @Column(name = "external_id")
+    private UUID externalId;
+
+    @Column(name = "from_account_id", nullable = false)
+    private Long fromAccountId;
+
+    @Column(name = "to_account_id", nullable = false)
+    private Long toAccountId;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private TransferRequestStatus status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "transaction_id")
+    private UUID transactionId;
+
+    @Column(name = "error_message")
+    private String errorMessage;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
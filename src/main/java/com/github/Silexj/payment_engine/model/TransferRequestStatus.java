@@ -0,0 +1,13 @@
+package com.github.Silexj.payment_engine.model;
+
+/**
+ * Состояние асинхронного перевода (transfer_requests).
+ * PENDING - принят и ждет воркера, PROCESSING - выполняется, SUCCESS / FAILED - итог.
+ */
+public enum TransferRequestStatus {
+    PENDING, PROCESSING, SUCCESS, FAILED;
+
+    public boolean isFinal() {
+        return this == SUCCESS || this == FAILED;
+    }
+}
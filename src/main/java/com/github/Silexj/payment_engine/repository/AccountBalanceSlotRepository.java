@@ -0,0 +1,20 @@
+package com.github.Silexj.payment_engine.repository;
+
+import com.github.Silexj.payment_engine.model.AccountBalanceSlot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Слоты баланса striped счетов. Запросы, нужные для переводов, объявлены в BalanceSlotOperations.
+ */
+@Repository
+public interface AccountBalanceSlotRepository extends JpaRepository<AccountBalanceSlot, AccountBalanceSlot.SlotId>,
+        BalanceSlotOperations {
+
+    @Modifying
+    @Query(value = "DELETE FROM account_balance_slots WHERE account_id = :accountId", nativeQuery = true)
+    int deleteAllByAccountId(@Param("accountId") Long accountId);
+}
@@ -0,0 +1,80 @@
+package com.github.Silexj.payment_engine.repository;
+
+import com.github.Silexj.payment_engine.model.Account;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Массовое создание счетов через JDBC batch (см. AccountProvisioningService).
+ * Работает в рамках текущей транзакции.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AccountJdbcRepository {
+
+    /**
+     * Должен совпадать с INCREMENT BY последовательности accounts_id_seq и allocationSize в Account.
+     */
+    public static final int ID_POOL_SIZE = 50;
+
+    /**
+     * Должен совпадать с INCREMENT BY последовательности account_number_seq.
+     */
+    public static final int NUMBER_BLOCK_SIZE = 1000;
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_ACCOUNT = """
+            INSERT INTO accounts (id, number, currency, balance, balance_slots, version, created_at)
+            VALUES (?, ?, ?, ?, 0, 0, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Выделяет count ID одним запросом: каждый nextval() дает пул из ID_POOL_SIZE значений
+     * (та же семантика pooled-lo, что и у Hibernate).
+     */
+    public List<Long> allocateIds(int count) {
+        int pools = (count + ID_POOL_SIZE - 1) / ID_POOL_SIZE;
+        List<Long> starts = jdbcTemplate.queryForList(
+                "SELECT nextval('accounts_id_seq') FROM generate_series(1, ?)", Long.class, pools);
+
+        List<Long> ids = new ArrayList<>(count);
+        for (Long start : starts) {
+            for (int i = 0; i < ID_POOL_SIZE && ids.size() < count; i++) {
+                ids.add(start + i);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Резервирует блок номеров счетов: возвращает начало блока из NUMBER_BLOCK_SIZE значений.
+     */
+    public long reserveNumberBlock() {
+        Long start = jdbcTemplate.queryForObject("SELECT nextval('account_number_seq')", Long.class);
+        if (start == null) {
+            throw new IllegalStateException("account_number_seq returned no value");
+        }
+        return start;
+    }
+
+    public void insertAccounts(List<Account> accounts) {
+        if (accounts.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_ACCOUNT, accounts, BATCH_SIZE, (ps, account) -> {
+            ps.setLong(1, account.getId());
+            ps.setString(2, account.getNumber());
+            ps.setString(3, account.getCurrency());
+            ps.setBigDecimal(4, account.getBalance());
+            ps.setTimestamp(5, Timestamp.valueOf(account.getCreatedAt()));
+        });
+    }
+}
@@ -10,6 +10,8 @@ import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -29,6 +31,34 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
     @Query("SELECT a FROM Account a WHERE a.id = :id")
     Optional<Account> findByIdWithLock(@Param("id") Long id);
 
+    /**
+     * Разделяемая блокировка счета (SELECT ... FOR SHARE) для striped счетов.
+     * Параллельные зачисления в слоты не ждут друг друга, но исключают
+     * одновременный перевод счета в обычный режим (он берет эксклюзивную блокировку).
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @QueryHints({
+            @QueryHint(name = "jakarta.persistence.lock.timeout", value = "3000")
+    })
+    @Query("SELECT a FROM Account a WHERE a.id = :id")
+    Optional<Account> findByIdWithSharedLock(@Param("id") Long id);
+
+    @Query("SELECT a.id FROM Account a WHERE a.balanceSlots > 0")
+    List<Long> findStripedAccountIds();
+
+    /**
+     * Блокирует набор счетов одним запросом SELECT ... WHERE id IN (...) FOR UPDATE.
+     *
+     * Строки блокируются в порядке возрастания ID (ORDER BY выполняется до наложения блокировок),
+     * поэтому порядок захвата совпадает с одиночным переводом и не приводит к Deadlock.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints({
+            @QueryHint(name = "jakarta.persistence.lock.timeout", value = "3000")
+    })
+    @Query("SELECT a FROM Account a WHERE a.id IN :ids ORDER BY a.id")
+    List<Account> findAllByIdInWithLock(@Param("ids") Collection<Long> ids);
+
     /**
      * Поиск по уникальному бизнес-номеру счета.
      */
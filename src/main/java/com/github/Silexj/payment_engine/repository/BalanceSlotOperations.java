@@ -0,0 +1,49 @@
+package com.github.Silexj.payment_engine.repository;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Операции со слотами баланса, которые использует StripedBalanceService.
+ * Реализуется AccountBalanceSlotRepository; отдельный интерфейс позволяет подменить его в бенчмарках без JPA.
+ */
+public interface BalanceSlotOperations {
+
+    interface SlotBalance {
+        Integer getSlot();
+
+        BigDecimal getBalance();
+    }
+
+    /**
+     * Блокирует все слоты счета в порядке номера слота (для списания с заимствованием между слотами).
+     * Возвращает проекцию, а не сущности: слоты меняются только нативными UPDATE,
+     * поэтому в контексте персистентности не остается устаревших копий.
+     */
+    @Query(value = """
+        SELECT slot, balance FROM account_balance_slots
+        WHERE account_id = :accountId
+        ORDER BY slot
+        FOR UPDATE
+        """, nativeQuery = true)
+    List<SlotBalance> lockSlots(@Param("accountId") Long accountId);
+
+    /**
+     * Атомарно изменяет баланс одного слота (delta < 0 - списание).
+     * CHECK (balance >= 0) в схеме защищает от ухода в минус.
+     */
+    @Modifying
+    @Query(value = """
+        UPDATE account_balance_slots SET balance = balance + :delta
+        WHERE account_id = :accountId AND slot = :slot
+        """, nativeQuery = true)
+    int addToSlot(@Param("accountId") Long accountId, @Param("slot") int slot, @Param("delta") BigDecimal delta);
+
+    @Query(value = "SELECT COALESCE(SUM(balance), 0) FROM account_balance_slots WHERE account_id = :accountId",
+            nativeQuery = true)
+    BigDecimal sumBalance(@Param("accountId") Long accountId);
+}
@@ -0,0 +1,322 @@
+package com.github.Silexj.payment_engine.repository;
+
+import com.github.Silexj.payment_engine.model.OutboxEvent;
+import com.github.Silexj.payment_engine.model.Transaction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Пакетная запись в журнал (transactions / outbox_events) через JDBC batch.
+ *
+ * Используется там, где за одну транзакцию пишутся сотни и тысячи строк:
+ * JpaRepository.save() для сущностей с заранее назначенным UUID делает merge (SELECT + INSERT)
+ * на каждую запись, здесь же весь пакет уходит на сервер группами по BATCH_SIZE.
+ * Работает в рамках текущей JPA транзакции (то же соединение).
+ */
+@Repository
+@RequiredArgsConstructor
+public class LedgerJdbcRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_TRANSACTION = """
+            INSERT INTO transactions (id, external_id, sender_account_id, receiver_account_id,
+                                      amount, currency, timestamp, status, error_message)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String INSERT_OUTBOX_EVENT = """
+            INSERT INTO outbox_events (id, aggregate_type, aggregate_id, type, payload, created_at, status, fast_path)
+            VALUES (?, ?, ?, ?, ?::jsonb, ?, ?, ?)
+            """;
+
+    private static final String APPLY_BALANCE_DELTA = """
+            UPDATE accounts SET balance = balance + ?, version = version + 1 WHERE id = ?
+            """;
+
+    private static final String SELECT_ACCOUNT_BALANCE = """
+            SELECT id, currency, balance, balance_slots FROM accounts
+            """;
+
+    private static final String SELECT_EXTERNAL_IDS = """
+            SELECT external_id FROM transactions
+            """;
+
+    /**
+     * Перевод целиком одним data-modifying CTE (один round trip):
+     * locked  - блокирует оба счета в порядке возрастания ID (как и JPA путь), возвращает актуальные балансы;
+     * tx      - вставляет проводку только если хватает средств, валюты совпадают и ни один счет не striped
+     *           (флаг в памяти узла может отставать, поэтому balance_slots перепроверяется под блокировкой);
+     *           ON CONFLICT по external_id отсекает конкурентный дубль до изменения балансов;
+     * debit / credit - условные UPDATE, выполняются только при успешной вставке проводки;
+     * outbox  - событие TRANSFER_COMPLETED (валюта подставляется из строки отправителя).
+     * Итоговый SELECT возвращает число затронутых строк и данные для диагностики отказа.
+     */
+    private static final String CONDITIONAL_TRANSFER = """
+            WITH locked AS MATERIALIZED (
+                SELECT id, balance, currency, balance_slots FROM accounts
+                WHERE id IN (:fromId, :toId)
+                ORDER BY id
+                FOR UPDATE
+            ),
+            tx AS (
+                INSERT INTO transactions (id, external_id, sender_account_id, receiver_account_id,
+                                          amount, currency, timestamp, status)
+                SELECT CAST(:transactionId AS uuid), CAST(:externalId AS uuid), s.id, r.id,
+                       CAST(:amount AS numeric), s.currency, CAST(:timestamp AS timestamptz), 'SUCCESS'
+                FROM locked s
+                JOIN locked r ON r.id = :toId
+                WHERE s.id = :fromId
+                  AND s.balance >= :amount
+                  AND s.currency = r.currency
+                  AND s.balance_slots = 0
+                  AND r.balance_slots = 0
+                ON CONFLICT (external_id) DO NOTHING
+                RETURNING id, currency
+            ),
+            debit AS (
+                UPDATE accounts
+                SET balance = balance - :amount, version = version + 1
+                WHERE id = :fromId AND balance >= :amount AND currency = (SELECT currency FROM tx)
+                RETURNING id
+            ),
+            credit AS (
+                UPDATE accounts
+                SET balance = balance + :amount, version = version + 1
+                WHERE id = :toId AND EXISTS (SELECT 1 FROM tx)
+                RETURNING id
+            ),
+            outbox AS (
+                INSERT INTO outbox_events (id, aggregate_type, aggregate_id, type, payload, created_at, status)
+                SELECT CAST(:eventId AS uuid), :aggregateType, :aggregateId, :eventType,
+                       jsonb_set(CAST(:payload AS jsonb), '{currency}', to_jsonb(tx.currency)),
+                       CAST(:timestamp AS timestamptz), 'PENDING'
+                FROM tx
+                RETURNING id
+            )
+            SELECT (SELECT count(*) FROM tx)                                    AS inserted,
+                   (SELECT count(*) FROM debit)                                 AS debited,
+                   (SELECT count(*) FROM credit)                                AS credited,
+                   (SELECT count(*) FROM outbox)                                AS published,
+                   (SELECT id FROM transactions WHERE external_id = :externalId) AS existing_id,
+                   (SELECT balance FROM locked WHERE id = :fromId)              AS sender_balance,
+                   (SELECT currency FROM locked WHERE id = :fromId)             AS sender_currency,
+                   (SELECT currency FROM locked WHERE id = :toId)               AS receiver_currency,
+                   (SELECT balance_slots FROM locked WHERE id = :fromId)        AS sender_slots,
+                   (SELECT balance_slots FROM locked WHERE id = :toId)          AS receiver_slots
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public void insertTransactions(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_TRANSACTION, transactions, BATCH_SIZE, (ps, tx) -> {
+            ps.setObject(1, tx.getId());
+            ps.setObject(2, tx.getExternalId());
+            if (tx.getSender() != null) {
+                ps.setLong(3, tx.getSender().getId());
+            } else {
+                ps.setNull(3, Types.BIGINT);
+            }
+            ps.setLong(4, tx.getReceiver().getId());
+            ps.setBigDecimal(5, tx.getAmount());
+            ps.setString(6, tx.getCurrency());
+            ps.setTimestamp(7, Timestamp.valueOf(tx.getTimestamp()));
+            ps.setString(8, tx.getStatus().name());
+            ps.setString(9, tx.getErrorMessage());
+        });
+    }
+
+    public void insertOutboxEvents(List<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_OUTBOX_EVENT, events, BATCH_SIZE, (ps, event) -> {
+            ps.setObject(1, event.getId());
+            ps.setString(2, event.getAggregateType());
+            ps.setString(3, event.getAggregateId());
+            ps.setString(4, event.getType());
+            ps.setString(5, event.getPayload());
+            ps.setTimestamp(6, Timestamp.valueOf(event.getCreatedAt()));
+            ps.setString(7, event.getStatus());
+            ps.setBoolean(8, event.isFastPath());
+        });
+    }
+
+    /**
+     * Выполняет перевод одним SQL выражением. Ничего не бросает при отказе:
+     * причину определяет вызывающий код по счетчикам и диагностическим полям результата.
+     * Поле currency в payload события перезаписывается валютой счета отправителя.
+     */
+    public ConditionalTransferResult transferConditionally(UUID transactionId, UUID externalId,
+                                                           Long fromId, Long toId, BigDecimal amount,
+                                                           LocalDateTime timestamp, OutboxEvent event) {
+        var params = new MapSqlParameterSource()
+                .addValue("transactionId", transactionId)
+                .addValue("externalId", externalId)
+                .addValue("fromId", fromId)
+                .addValue("toId", toId)
+                .addValue("amount", amount)
+                .addValue("timestamp", Timestamp.valueOf(timestamp))
+                .addValue("eventId", event.getId())
+                .addValue("aggregateType", event.getAggregateType())
+                .addValue("aggregateId", event.getAggregateId())
+                .addValue("eventType", event.getType())
+                .addValue("payload", event.getPayload());
+
+        return namedJdbcTemplate.queryForObject(CONDITIONAL_TRANSFER, params, (rs, rowNum) ->
+                new ConditionalTransferResult(
+                        rs.getInt("inserted"),
+                        rs.getInt("debited"),
+                        rs.getInt("credited"),
+                        rs.getInt("published"),
+                        rs.getObject("existing_id", UUID.class),
+                        rs.getBigDecimal("sender_balance"),
+                        rs.getString("sender_currency"),
+                        rs.getString("receiver_currency"),
+                        rs.getInt("sender_slots"),
+                        rs.getInt("receiver_slots")
+                ));
+    }
+
+    /**
+     * Результат условного перевода: число затронутых строк по каждому шагу CTE
+     * и состояние счетов на момент блокировки (null / 0 - счет не найден).
+     */
+    public record ConditionalTransferResult(
+            int inserted,
+            int debited,
+            int credited,
+            int published,
+            UUID existingTransactionId,
+            BigDecimal senderBalance,
+            String senderCurrency,
+            String receiverCurrency,
+            int senderSlots,
+            int receiverSlots
+    ) {
+        public boolean striped() {
+            return senderSlots > 0 || receiverSlots > 0;
+        }
+    }
+
+    /**
+     * Применяет накопленные изменения балансов (delta) пакетом.
+     * Изменения коммутативны, поэтому порядок пакетов журнала не влияет на итоговый баланс.
+     * Строки обновляются в порядке ключей - передавайте отсортированную карту (TreeMap), чтобы не ловить Deadlock.
+     */
+    public void applyBalanceDeltas(Map<Long, BigDecimal> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(APPLY_BALANCE_DELTA, List.copyOf(deltas.entrySet()), BATCH_SIZE, (ps, delta) -> {
+            ps.setBigDecimal(1, delta.getValue());
+            ps.setLong(2, delta.getKey());
+        });
+    }
+
+    /**
+     * Блокирует счета одним SELECT ... FOR UPDATE в порядке возрастания ID.
+     * Отсутствующих в таблице счетов в результате нет.
+     */
+    public Map<Long, AccountBalance> lockAccountBalances(Collection<Long> accountIds) {
+        Map<Long, AccountBalance> accounts = new LinkedHashMap<>();
+        namedJdbcTemplate.query(SELECT_ACCOUNT_BALANCE + " WHERE id IN (:ids) ORDER BY id FOR UPDATE",
+                Map.of("ids", accountIds),
+                (RowCallbackHandler) rs -> accounts.put(rs.getLong("id"), mapAccountBalance(rs)));
+        return accounts;
+    }
+
+    /**
+     * Выполняет work под SAVEPOINT текущей транзакции: при исключении откатывается только work,
+     * и транзакция остается пригодной для следующих операций.
+     */
+    public void executeInSavepoint(Runnable work) {
+        Savepoint savepoint = jdbcTemplate.execute((ConnectionCallback<Savepoint>) connection -> connection.setSavepoint());
+        try {
+            work.run();
+        } catch (RuntimeException e) {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                connection.rollback(savepoint);
+                return null;
+            });
+            throw e;
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            connection.releaseSavepoint(savepoint);
+            return null;
+        });
+    }
+
+    public Optional<AccountBalance> findAccountBalance(Long accountId) {
+        return jdbcTemplate.query(SELECT_ACCOUNT_BALANCE + " WHERE id = ?",
+                (rs, rowNum) -> mapAccountBalance(rs), accountId).stream().findFirst();
+    }
+
+    /**
+     * Потоково обходит все счета (курсор с fetch size), не загружая таблицу целиком в память.
+     * Курсор PostgreSQL работает только внутри транзакции - вызывайте из @Transactional кода.
+     */
+    public void forEachAccountBalance(Consumer<AccountBalance> consumer) {
+        jdbcTemplate.query(connection -> {
+            var ps = connection.prepareStatement(SELECT_ACCOUNT_BALANCE);
+            ps.setFetchSize(BATCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(mapAccountBalance(rs)));
+    }
+
+    /**
+     * Потоково обходит все external_id проводок (для наполнения Bloom фильтра идемпотентности).
+     * Колонка покрыта idx_transactions_external_id, поэтому PostgreSQL может обойтись index-only scan.
+     * Как и forEachAccountBalance, вызывайте внутри транзакции.
+     */
+    public void forEachTransactionExternalId(Consumer<UUID> consumer) {
+        jdbcTemplate.query(connection -> {
+            var ps = connection.prepareStatement(SELECT_EXTERNAL_IDS);
+            ps.setFetchSize(BATCH_SIZE * 10);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(rs.getObject("external_id", UUID.class)));
+    }
+
+    private AccountBalance mapAccountBalance(ResultSet rs) throws SQLException {
+        return new AccountBalance(
+                rs.getLong("id"),
+                rs.getString("currency"),
+                rs.getBigDecimal("balance"),
+                rs.getInt("balance_slots")
+        );
+    }
+
+    /**
+     * Снимок баланса счета без блокировки (для загрузки состояния in-memory движка).
+     */
+    public record AccountBalance(
+            Long id,
+            String currency,
+            BigDecimal balance,
+            int balanceSlots
+    ) {}
+}
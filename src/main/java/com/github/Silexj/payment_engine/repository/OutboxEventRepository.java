@@ -2,10 +2,13 @@ package com.github.Silexj.payment_engine.repository;
 
 import com.github.Silexj.payment_engine.model.OutboxEvent;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -19,13 +22,68 @@ public interface OutboxEventRepository extends JpaRepository<OutboxEvent, UUID>
      * таблицу, не блокируя друг друга и не обрабатывая одни и те же события дважды.
      *
      * Гарантирует порядок обработки FIFO (First-In-First-Out) по времени создания.
+     * Читает частичный индекс idx_outbox_pending_created: его размер равен backlog, а не всей истории.
+     * createdBefore отсекает свежие события, которые еще может отправить OutboxPublisher (fast path);
+     * события, записанные мимо него (fast_path = FALSE), забираются сразу.
      */
     @Query(value = """
         SELECT * FROM outbox_events 
-        WHERE status = 'PENDING' 
+        WHERE status = 'PENDING' AND (fast_path = FALSE OR created_at < :createdBefore)
         ORDER BY created_at ASC 
         LIMIT :limit 
         FOR UPDATE SKIP LOCKED
         """, nativeQuery = true)
-    List<OutboxEvent> findBatchToProcess(@Param("limit") int limit);
+    List<OutboxEvent> findBatchToProcess(@Param("limit") int limit, @Param("createdBefore") LocalDateTime createdBefore);
+
+    /**
+     * Арендует пакет событий для отправки: те же условия, что и в findBatchToProcess, плюс аренда не занята
+     * или истекла. Выбранные строки получают locked_until = :lockedUntil одним UPDATE, и транзакцию можно
+     * сразу коммитить: параллельный поллер пропустит их до истечения аренды, не держа блокировок.
+     * RETURNING не сохраняет порядок - вызывающий сортирует результат по created_at.
+     */
+    @Query(value = """
+        WITH batch AS (
+            SELECT id, created_at FROM outbox_events
+            WHERE status = 'PENDING' AND (fast_path = FALSE OR created_at < :createdBefore)
+              AND (locked_until IS NULL OR locked_until < :now)
+            ORDER BY created_at ASC
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+        )
+        UPDATE outbox_events e SET locked_until = :lockedUntil
+        FROM batch
+        WHERE e.id = batch.id AND e.created_at = batch.created_at
+        RETURNING e.*
+        """, nativeQuery = true)
+    List<OutboxEvent> claimBatch(@Param("limit") int limit,
+                                 @Param("createdBefore") LocalDateTime createdBefore,
+                                 @Param("now") LocalDateTime now,
+                                 @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    /**
+     * Агрегаты из списка, у которых остались PENDING события (OutboxPublisher держит их вне fast path).
+     */
+    @Query("SELECT DISTINCT e.aggregateId FROM OutboxEvent e WHERE e.status = 'PENDING' AND e.aggregateId IN :aggregateIds")
+    List<String> findPendingAggregateIds(@Param("aggregateIds") Collection<String> aggregateIds);
+
+    /**
+     * Снимает аренду с неотправленных событий, чтобы следующий проход поллера взял их сразу.
+     */
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.lockedUntil = NULL WHERE e.id IN :ids")
+    int releaseClaims(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Помечает отправленные события одним UPDATE (вместо dirty-check UPDATE на каждое событие).
+     */
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.status = 'PROCESSED', e.processedAt = :processedAt WHERE e.id IN :ids")
+    int markProcessed(@Param("ids") Collection<UUID> ids, @Param("processedAt") LocalDateTime processedAt);
+
+    /**
+     * Режим app.outbox.delete-on-publish: отправленные события удаляются сразу после подтверждения брокера.
+     */
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.id IN :ids")
+    int deletePublished(@Param("ids") Collection<UUID> ids);
 }
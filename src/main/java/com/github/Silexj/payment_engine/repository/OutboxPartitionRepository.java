@@ -0,0 +1,153 @@
+package com.github.Silexj.payment_engine.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * DDL и обслуживание дневных партиций outbox_events (см. V4__partition_outbox_events.sql).
+ *
+ * Партиция дня D называется outbox_events_yyyyMMdd и содержит created_at из [D 00:00 UTC, D+1 00:00 UTC).
+ * Имя партиции собирается только из даты, поэтому подстановка в DDL безопасна.
+ */
+@Repository
+public class OutboxPartitionRepository {
+
+    private static final String PARTITION_PREFIX = "outbox_events_";
+    private static final Pattern DAILY_PARTITION = Pattern.compile("outbox_events_(\\d{8})");
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private static final String SELECT_PARTITIONS = """
+            SELECT c.relname FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            JOIN pg_class p ON p.oid = i.inhparent
+            WHERE p.relname = 'outbox_events'
+            """;
+
+    private static final String DELETE_PROCESSED_FROM_DEFAULT = """
+            DELETE FROM outbox_events_default
+            WHERE ctid IN (
+                SELECT ctid FROM outbox_events_default
+                WHERE status = 'PROCESSED' AND created_at < ?
+                LIMIT ?
+            )
+            """;
+
+    private static final String SELECT_HAS_DEFAULT = """
+            SELECT partdefid <> 0 FROM pg_partitioned_table WHERE partrelid = 'outbox_events'::regclass
+            """;
+
+    private static final String SELECT_DETACH_PENDING = """
+            SELECT EXISTS (
+                SELECT 1 FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE c.relname = ? AND i.inhdetachpending
+            )
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public OutboxPartitionRepository(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Создает партицию дня, если ее еще нет.
+     */
+    public void createDailyPartition(LocalDate day) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(day)
+                + " PARTITION OF outbox_events FOR VALUES FROM ('" + startOf(day) + "') TO ('" + startOf(day.plusDays(1)) + "')");
+    }
+
+    /**
+     * Дни, для которых существуют партиции (default партиция не входит).
+     */
+    public List<LocalDate> findDailyPartitions() {
+        return jdbcTemplate.queryForList(SELECT_PARTITIONS, String.class).stream()
+                .map(OutboxPartitionRepository::parseDay)
+                .flatMap(Optional::stream)
+                .sorted()
+                .toList();
+    }
+
+    public boolean hasUnprocessedEvents(LocalDate day) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + partitionName(day) + " WHERE status <> 'PROCESSED')", Boolean.class));
+    }
+
+    /**
+     * Отсоединяет и удаляет партицию целиком: без построчного DELETE, без мертвых строк и VACUUM.
+     *
+     * DETACH и DROP берут ACCESS EXCLUSIVE, и пока DDL стоит в очереди за долгим читателем, за ним встают
+     * все вставки в outbox_events. Поэтому ожидание блокировки ограничено lockTimeout: при таймауте
+     * бросается CannotAcquireLockException, и партиция остается до следующей попытки.
+     *
+     * PostgreSQL запрещает DETACH CONCURRENTLY, пока у таблицы есть default партиция (она есть с V4),
+     * поэтому тогда DETACH и DROP выполняются одной короткой транзакцией с SET LOCAL lock_timeout.
+     * Без default партиции родитель не блокируется эксклюзивно: DETACH CONCURRENTLY вне транзакции,
+     * а прерванный на второй фазе detach завершается через FINALIZE.
+     */
+    public void dropDailyPartition(LocalDate day, Duration lockTimeout) {
+        String partition = partitionName(day);
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(SELECT_HAS_DEFAULT, Boolean.class))) {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeout.toMillis());
+                jdbcTemplate.execute("ALTER TABLE outbox_events DETACH PARTITION " + partition);
+                jdbcTemplate.execute("DROP TABLE " + partition);
+            });
+            return;
+        }
+
+        boolean pending = Boolean.TRUE.equals(jdbcTemplate.queryForObject(SELECT_DETACH_PENDING, Boolean.class, partition));
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET lock_timeout = " + lockTimeout.toMillis());
+                try {
+                    statement.execute("ALTER TABLE outbox_events DETACH PARTITION " + partition
+                            + (pending ? " FINALIZE" : " CONCURRENTLY"));
+                    statement.execute("DROP TABLE " + partition);
+                } finally {
+                    statement.execute("RESET lock_timeout");
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * В default партицию попадают строки вне дневных партиций, ее чистим обычным DELETE порциями.
+     */
+    public int deleteProcessedFromDefault(OffsetDateTime before, int limit) {
+        return jdbcTemplate.update(DELETE_PROCESSED_FROM_DEFAULT, before, limit);
+    }
+
+    private static String partitionName(LocalDate day) {
+        return PARTITION_PREFIX + day.format(SUFFIX);
+    }
+
+    private static String startOf(LocalDate day) {
+        return day.atStartOfDay().atOffset(ZoneOffset.UTC).toString();
+    }
+
+    private static Optional<LocalDate> parseDay(String relname) {
+        Matcher matcher = DAILY_PARTITION.matcher(relname);
+        return matcher.matches()
+                ? Optional.of(LocalDate.parse(matcher.group(1), SUFFIX))
+                : Optional.empty();
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.Silexj.payment_engine.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Позиция WAL relay (outbox_relay_offsets) и служебные объекты логической репликации.
+ */
+@Repository
+@RequiredArgsConstructor
+public class OutboxRelayOffsetRepository {
+
+    private static final String UPSERT_OFFSET = """
+            INSERT INTO outbox_relay_offsets (slot_name, confirmed_lsn, updated_at)
+            VALUES (?, ?::pg_lsn, NOW())
+            ON CONFLICT (slot_name) DO UPDATE
+                SET confirmed_lsn = GREATEST(outbox_relay_offsets.confirmed_lsn, EXCLUDED.confirmed_lsn),
+                    updated_at = NOW()
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public Optional<String> findConfirmedLsn(String slotName) {
+        return jdbcTemplate.queryForList(
+                "SELECT confirmed_lsn::text FROM outbox_relay_offsets WHERE slot_name = ?", String.class, slotName)
+                .stream().findFirst();
+    }
+
+    public void saveConfirmedLsn(String slotName, String lsn) {
+        jdbcTemplate.update(UPSERT_OFFSET, slotName, lsn);
+    }
+
+    public boolean slotExists(String slotName) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_replication_slots WHERE slot_name = ?)", Boolean.class, slotName));
+    }
+
+    /**
+     * Публикация только вставок; publish_via_partition_root - события всех дневных партиций
+     * приходят как строки outbox_events.
+     */
+    public void createPublicationIfMissing(String publication) {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_publication WHERE pubname = ?)", Boolean.class, publication);
+        if (!Boolean.TRUE.equals(exists)) {
+            jdbcTemplate.execute("CREATE PUBLICATION \"" + publication.replace("\"", "\"\"")
+                    + "\" FOR TABLE outbox_events WITH (publish = 'insert', publish_via_partition_root = true)");
+        }
+    }
+}
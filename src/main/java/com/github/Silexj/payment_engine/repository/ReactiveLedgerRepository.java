@@ -0,0 +1,169 @@
+package com.github.Silexj.payment_engine.repository;
+
+import com.github.Silexj.payment_engine.config.ReactiveDatabase;
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.model.OutboxEvent;
+import com.github.Silexj.payment_engine.model.TransactionStatus;
+import io.r2dbc.spi.Readable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * R2DBC запросы реактивного API (профиль reactive) к тем же таблицам accounts, transactions и outbox_events.
+ * Методы записи должны выполняться внутри ReactiveDatabase.transactionalOperator.
+ */
+@Repository
+@Profile("reactive")
+public class ReactiveLedgerRepository {
+
+    private static final String SELECT_TRANSACTION = """
+            SELECT id, external_id, sender_account_id, receiver_account_id, amount, currency, timestamp, status, error_message
+            FROM transactions
+            """;
+
+    private final DatabaseClient client;
+
+    public ReactiveLedgerRepository(ReactiveDatabase database) {
+        this.client = database.getClient();
+    }
+
+    public record LockedAccount(
+            long id,
+            String currency,
+            BigDecimal balance,
+            int balanceSlots
+    ) {}
+
+    /**
+     * Блокирует счета одним запросом в порядке возрастания ID (тот же порядок, что у JPA пути).
+     */
+    public Flux<LockedAccount> lockAccounts(Collection<Long> accountIds) {
+        return client.sql("""
+                        SELECT id, currency, balance, balance_slots FROM accounts
+                        WHERE id IN (:ids)
+                        ORDER BY id
+                        FOR UPDATE
+                        """)
+                .bind("ids", accountIds)
+                .map(row -> new LockedAccount(
+                        row.get("id", Long.class),
+                        row.get("currency", String.class),
+                        row.get("balance", BigDecimal.class),
+                        row.get("balance_slots", Integer.class)))
+                .all();
+    }
+
+    public Mono<Long> applyBalanceDelta(long accountId, BigDecimal delta) {
+        return client.sql("UPDATE accounts SET balance = balance + :delta, version = version + 1 WHERE id = :id")
+                .bind("delta", delta)
+                .bind("id", accountId)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<Long> insertTransaction(TransferDTO.Response transaction) {
+        DatabaseClient.GenericExecuteSpec spec = client.sql("""
+                        INSERT INTO transactions (id, external_id, sender_account_id, receiver_account_id,
+                                                  amount, currency, timestamp, status)
+                        VALUES (:id, :externalId, :senderId, :receiverId, :amount, :currency, :timestamp, :status)
+                        """)
+                .bind("id", transaction.transactionId())
+                .bind("externalId", transaction.externalId())
+                .bind("receiverId", transaction.receiverId())
+                .bind("amount", transaction.amount())
+                .bind("currency", transaction.currency())
+                .bind("timestamp", transaction.timestamp())
+                .bind("status", transaction.status().name());
+        spec = transaction.senderId() == null
+                ? spec.bindNull("senderId", Long.class)
+                : spec.bind("senderId", transaction.senderId());
+        return spec.fetch().rowsUpdated();
+    }
+
+    public Mono<Long> insertOutboxEvent(OutboxEvent event) {
+        return client.sql("""
+                        INSERT INTO outbox_events (id, aggregate_type, aggregate_id, type, payload, created_at, status, fast_path)
+                        VALUES (:id, :aggregateType, :aggregateId, :type, CAST(:payload AS jsonb), :createdAt, :status, :fastPath)
+                        """)
+                .bind("id", event.getId())
+                .bind("aggregateType", event.getAggregateType())
+                .bind("aggregateId", event.getAggregateId())
+                .bind("type", event.getType())
+                .bind("payload", event.getPayload())
+                .bind("createdAt", event.getCreatedAt())
+                .bind("status", event.getStatus())
+                .bind("fastPath", event.isFastPath())
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<TransferDTO.Response> findByExternalId(UUID externalId) {
+        return client.sql(SELECT_TRANSACTION + " WHERE external_id = :externalId")
+                .bind("externalId", externalId)
+                .map(ReactiveLedgerRepository::mapTransaction)
+                .one();
+    }
+
+    /**
+     * Новый счет; ID берется из accounts_id_seq (DEFAULT), как у SQL вставок AccountJdbcRepository.
+     */
+    public Mono<Long> insertAccount(String number, String currency, LocalDateTime createdAt) {
+        return client.sql("""
+                        INSERT INTO accounts (number, currency, balance, balance_slots, version, created_at)
+                        VALUES (:number, :currency, 0, 0, 0, :createdAt)
+                        RETURNING id
+                        """)
+                .bind("number", number)
+                .bind("currency", currency)
+                .bind("createdAt", createdAt)
+                .map(row -> row.get("id", Long.class))
+                .one();
+    }
+
+    /**
+     * Счет с балансом, включая слоты striped счета.
+     */
+    public Mono<AccountDto.Response> findAccount(long accountId) {
+        return client.sql("""
+                        SELECT a.id, a.number, a.currency,
+                               a.balance + COALESCE((SELECT SUM(s.balance) FROM account_balance_slots s
+                                                     WHERE s.account_id = a.id), 0) AS balance
+                        FROM accounts a
+                        WHERE a.id = :id
+                        """)
+                .bind("id", accountId)
+                .map(row -> new AccountDto.Response(
+                        row.get("id", Long.class),
+                        row.get("number", String.class),
+                        row.get("balance", BigDecimal.class),
+                        row.get("currency", String.class)))
+                .one();
+    }
+
+    private static TransferDTO.Response mapTransaction(Readable row) {
+        OffsetDateTime timestamp = row.get("timestamp", OffsetDateTime.class);
+        return new TransferDTO.Response(
+                row.get("id", UUID.class),
+                row.get("external_id", UUID.class),
+                row.get("sender_account_id", Long.class),
+                row.get("receiver_account_id", Long.class),
+                row.get("amount", BigDecimal.class),
+                row.get("currency", String.class),
+                TransactionStatus.valueOf(row.get("status", String.class)),
+                // JPA читает timestamptz в LocalDateTime в часовом поясе JVM - ответы совпадают
+                timestamp == null ? null : timestamp.atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime(),
+                row.get("error_message", String.class)
+        );
+    }
+}
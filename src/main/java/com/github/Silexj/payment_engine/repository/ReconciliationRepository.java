@@ -0,0 +1,233 @@
+package com.github.Silexj.payment_engine.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Хранилище сверки балансов (см. V8__reconciliation.sql) и потоковое чтение диапазона счетов.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReconciliationRepository {
+
+    private static final int FETCH_SIZE = 1000;
+
+    /**
+     * Для каждого счета диапазона: баланс (со слотами) и ожидаемый баланс по журналу.
+     * Суммы по transactions считаются по idx_transactions_*_history (amount и status в INCLUDE).
+     */
+    private static final String SELECT_RANGE_BALANCES = """
+            SELECT a.id,
+                   a.balance + COALESCE(s.total, 0) AS balance,
+                   COALESCE(c.total, 0) - COALESCE(d.total, 0) AS expected_balance
+            FROM accounts a
+            LEFT JOIN (SELECT account_id, SUM(balance) AS total FROM account_balance_slots
+                       WHERE account_id BETWEEN ? AND ? GROUP BY account_id) s ON s.account_id = a.id
+            LEFT JOIN (SELECT receiver_account_id AS account_id, SUM(amount) AS total FROM transactions
+                       WHERE receiver_account_id BETWEEN ? AND ? AND status = 'SUCCESS'
+                       GROUP BY receiver_account_id) c ON c.account_id = a.id
+            LEFT JOIN (SELECT sender_account_id AS account_id, SUM(amount) AS total FROM transactions
+                       WHERE sender_account_id BETWEEN ? AND ? AND status = 'SUCCESS'
+                       GROUP BY sender_account_id) d ON d.account_id = a.id
+            WHERE a.id BETWEEN ? AND ?
+            ORDER BY a.id
+            """;
+
+    private static final String SELECT_RUN = """
+            SELECT id, status, owner, range_size, max_account_id, ranges_total, accounts_checked, discrepancies,
+                   started_at, heartbeat_at, finished_at
+            FROM reconciliation_runs
+            """;
+
+    private static final RowMapper<Run> RUN_MAPPER = (rs, rowNum) -> new Run(
+            rs.getLong("id"),
+            rs.getString("status"),
+            rs.getString("owner"),
+            rs.getInt("range_size"),
+            rs.getLong("max_account_id"),
+            rs.getInt("ranges_total"),
+            rs.getLong("accounts_checked"),
+            rs.getInt("discrepancies"),
+            rs.getObject("started_at", OffsetDateTime.class),
+            rs.getObject("heartbeat_at", OffsetDateTime.class),
+            rs.getObject("finished_at", OffsetDateTime.class)
+    );
+
+    private static final RowMapper<Discrepancy> DISCREPANCY_MAPPER = (rs, rowNum) -> new Discrepancy(
+            rs.getLong("account_id"),
+            rs.getBigDecimal("balance"),
+            rs.getBigDecimal("expected_balance")
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record Run(
+            long id,
+            String status,
+            String owner,
+            int rangeSize,
+            long maxAccountId,
+            int rangesTotal,
+            long accountsChecked,
+            int discrepancies,
+            OffsetDateTime startedAt,
+            OffsetDateTime heartbeatAt,
+            OffsetDateTime finishedAt
+    ) {}
+
+    public record Discrepancy(
+            long accountId,
+            BigDecimal balance,
+            BigDecimal expectedBalance
+    ) {}
+
+    @FunctionalInterface
+    public interface BalanceHandler {
+        void accept(long accountId, BigDecimal balance, BigDecimal expectedBalance);
+    }
+
+    /**
+     * Текущий запуск под блокировкой строки: два узла не могут одновременно начать или перехватить запуск.
+     */
+    public Optional<Run> lockRunningRun() {
+        return jdbcTemplate.query(SELECT_RUN + " WHERE status = 'RUNNING' FOR UPDATE", RUN_MAPPER).stream().findFirst();
+    }
+
+    public Optional<Run> findLatestRun() {
+        return jdbcTemplate.query(SELECT_RUN + " ORDER BY id DESC LIMIT 1", RUN_MAPPER).stream().findFirst();
+    }
+
+    public long findMaxAccountId() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM accounts", Long.class);
+        return maxId == null ? 0 : maxId;
+    }
+
+    public long createRun(String owner, int rangeSize, long maxAccountId, int rangesTotal) {
+        Long id = jdbcTemplate.queryForObject("""
+                INSERT INTO reconciliation_runs (status, owner, range_size, max_account_id, ranges_total)
+                VALUES ('RUNNING', ?, ?, ?, ?)
+                RETURNING id
+                """, Long.class, owner, rangeSize, maxAccountId, rangesTotal);
+        if (id == null) {
+            throw new IllegalStateException("Failed to create reconciliation run");
+        }
+        return id;
+    }
+
+    public void takeOverRun(long runId, String owner) {
+        jdbcTemplate.update("UPDATE reconciliation_runs SET owner = ?, heartbeat_at = NOW() WHERE id = ?", owner, runId);
+    }
+
+    /**
+     * Продлевает heartbeat запуска, пока он принадлежит owner. 0 - запуск перехвачен или уже завершен.
+     */
+    public int renewHeartbeat(long runId, String owner) {
+        return jdbcTemplate.update("""
+                UPDATE reconciliation_runs SET heartbeat_at = NOW()
+                WHERE id = ? AND owner = ? AND status = 'RUNNING'
+                """, runId, owner);
+    }
+
+    public Set<Long> findCompletedRanges(long runId) {
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT range_start FROM reconciliation_checkpoints WHERE run_id = ?", Long.class, runId));
+    }
+
+    /**
+     * Передает балансы счетов [rangeStart, rangeEnd] по одному серверным курсором.
+     * Требует активной транзакции (иначе драйвер читает весь результат сразу).
+     */
+    public void streamRangeBalances(long rangeStart, long rangeEnd, BalanceHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    SELECT_RANGE_BALANCES, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(FETCH_SIZE);
+            for (int i = 1; i <= 8; i += 2) {
+                statement.setLong(i, rangeStart);
+                statement.setLong(i + 1, rangeEnd);
+            }
+            return statement;
+        }, rs -> {
+            handler.accept(rs.getLong("id"), rs.getBigDecimal("balance"), rs.getBigDecimal("expected_balance"));
+        });
+    }
+
+    /**
+     * Фиксирует обработанный диапазон: расхождения, checkpoint и счетчики запуска (heartbeat).
+     * Повторная фиксация того же диапазона (после перехвата запуска) игнорируется.
+     */
+    public void saveRange(long runId, long rangeStart, long rangeEnd, int accountsChecked, List<Discrepancy> discrepancies) {
+        int inserted = jdbcTemplate.update("""
+                INSERT INTO reconciliation_checkpoints (run_id, range_start, range_end, accounts_checked, discrepancies)
+                VALUES (?, ?, ?, ?, ?)
+                ON CONFLICT DO NOTHING
+                """, runId, rangeStart, rangeEnd, accountsChecked, discrepancies.size());
+        if (inserted == 0) {
+            return;
+        }
+        if (!discrepancies.isEmpty()) {
+            insertDiscrepancies(runId, discrepancies);
+        }
+        jdbcTemplate.update("""
+                UPDATE reconciliation_runs
+                SET accounts_checked = accounts_checked + ?, discrepancies = discrepancies + ?, heartbeat_at = NOW()
+                WHERE id = ?
+                """, accountsChecked, discrepancies.size(), runId);
+    }
+
+    private void insertDiscrepancies(long runId, List<Discrepancy> discrepancies) {
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO reconciliation_discrepancies (run_id, account_id, balance, expected_balance)
+                VALUES (?, ?, ?, ?)
+                ON CONFLICT DO NOTHING
+                """, discrepancies, discrepancies.size(), (ps, discrepancy) -> {
+            ps.setLong(1, runId);
+            ps.setLong(2, discrepancy.accountId());
+            ps.setBigDecimal(3, discrepancy.balance());
+            ps.setBigDecimal(4, discrepancy.expectedBalance());
+        });
+    }
+
+    /**
+     * Завершает запуск, если owner все еще держит его lease. 0 - запуск перехвачен,
+     * уже завершен или heartbeat просрочен (другой узел вправе его перехватить).
+     */
+    public int completeRun(long runId, String owner, Duration leaseTimeout) {
+        return jdbcTemplate.update("""
+                UPDATE reconciliation_runs SET status = 'COMPLETED', finished_at = NOW()
+                WHERE id = ? AND owner = ? AND status = 'RUNNING'
+                  AND heartbeat_at > NOW() - make_interval(secs => ?)
+                """, runId, owner, leaseTimeout.toMillis() / 1000.0);
+    }
+
+    public List<Discrepancy> findDiscrepancies(long runId, int limit) {
+        return jdbcTemplate.query("""
+                SELECT account_id, balance, expected_balance FROM reconciliation_discrepancies
+                WHERE run_id = ? ORDER BY account_id LIMIT ?
+                """, DISCREPANCY_MAPPER, runId, limit);
+    }
+
+    /**
+     * Число активных клиентских запросов на сервере - мера нагрузки для троттлинга сверки.
+     * Вызывать на primary: на реплике pg_stat_activity показывает только ее собственные backends.
+     */
+    public int countActiveBackends() {
+        Integer active = jdbcTemplate.queryForObject("""
+                SELECT count(*) FROM pg_stat_activity
+                WHERE state = 'active' AND backend_type = 'client backend' AND pid <> pg_backend_pid()
+                """, Integer.class);
+        return active == null ? 0 : active;
+    }
+}
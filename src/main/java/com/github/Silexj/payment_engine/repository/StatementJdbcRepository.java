@@ -0,0 +1,87 @@
+package com.github.Silexj.payment_engine.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Чтение выписки по счету потоком строк.
+ *
+ * Строки периода читаются серверным курсором PostgreSQL (fetch size, forward-only, внутри транзакции):
+ * в памяти одновременно находится не больше FETCH_SIZE строк, сколько бы их ни было в периоде.
+ * Обе стороны (отправитель / получатель) читаются по индексам idx_transactions_*_history
+ * и сливаются по (timestamp, id) без сортировки всего периода.
+ */
+@Repository
+@RequiredArgsConstructor
+public class StatementJdbcRepository {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private static final String SELECT_PERIOD = """
+            SELECT id, external_id, sender_account_id, receiver_account_id, amount, currency, timestamp, status
+            FROM (
+                SELECT id, external_id, sender_account_id, receiver_account_id, amount, currency, timestamp, status
+                FROM transactions WHERE sender_account_id = ? AND timestamp >= ? AND timestamp < ?
+                UNION ALL
+                SELECT id, external_id, sender_account_id, receiver_account_id, amount, currency, timestamp, status
+                FROM transactions WHERE receiver_account_id = ? AND timestamp >= ? AND timestamp < ?
+            ) period
+            ORDER BY timestamp, id
+            """;
+
+    /**
+     * Баланс счета на момент снимка транзакции (для striped счета - вместе со слотами)
+     * минус нетто всех успешных операций начиная с from = баланс на начало периода.
+     * Читаются только операции после from, а не вся история счета.
+     */
+    private static final String SELECT_OPENING_BALANCE = """
+            SELECT a.balance
+                   + COALESCE((SELECT SUM(s.balance) FROM account_balance_slots s WHERE s.account_id = a.id), 0)
+                   - COALESCE((SELECT SUM(t.amount) FROM transactions t
+                               WHERE t.receiver_account_id = a.id AND t.status = 'SUCCESS' AND t.timestamp >= ?), 0)
+                   + COALESCE((SELECT SUM(t.amount) FROM transactions t
+                               WHERE t.sender_account_id = a.id AND t.status = 'SUCCESS' AND t.timestamp >= ?), 0)
+            FROM accounts a
+            WHERE a.id = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Должен вызываться в той же REPEATABLE READ транзакции, что и streamPeriod,
+     * иначе баланс и строки периода могут относиться к разным моментам.
+     */
+    public BigDecimal findOpeningBalance(Long accountId, LocalDateTime from) {
+        Timestamp start = Timestamp.valueOf(from);
+        return jdbcTemplate.queryForObject(SELECT_OPENING_BALANCE, BigDecimal.class, start, start, accountId);
+    }
+
+    /**
+     * Передает строки периода [from, to) в порядке (timestamp, id) по одной.
+     * Требует активной транзакции: вне ее драйвер PostgreSQL игнорирует fetch size и читает все строки сразу.
+     */
+    public void streamPeriod(Long accountId, LocalDateTime from, LocalDateTime to, RowCallbackHandler handler) {
+        Timestamp start = Timestamp.valueOf(from);
+        Timestamp end = Timestamp.valueOf(to);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    SELECT_PERIOD, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(FETCH_SIZE);
+            statement.setLong(1, accountId);
+            statement.setTimestamp(2, start);
+            statement.setTimestamp(3, end);
+            statement.setLong(4, accountId);
+            statement.setTimestamp(5, start);
+            statement.setTimestamp(6, end);
+            return statement;
+        }, handler);
+    }
+}
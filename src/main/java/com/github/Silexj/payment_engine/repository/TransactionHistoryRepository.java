@@ -0,0 +1,86 @@
+package com.github.Silexj.payment_engine.repository;
+
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.model.TransactionStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Чтение истории операций счета страницами (keyset пагинация по (timestamp, id), от новых к старым).
+ *
+ * Каждая сторона (отправитель / получатель) читается своим диапазоном индекса
+ * idx_transactions_*_history не дальше limit строк, затем две ветки сливаются.
+ * Стоимость страницы не зависит от ее номера: OFFSET не используется.
+ * Строки маппятся сразу в DTO, сущность Transaction и ее LAZY связи не загружаются.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TransactionHistoryRepository {
+
+    private static final String COLUMNS = """
+            id, external_id, sender_account_id, receiver_account_id, amount, currency, timestamp, status, error_message
+            """;
+
+    private static final String FIRST_PAGE = """
+            SELECT * FROM (
+                (SELECT %1$s FROM transactions WHERE sender_account_id = ?
+                 ORDER BY timestamp DESC, id DESC LIMIT ?)
+                UNION ALL
+                (SELECT %1$s FROM transactions WHERE receiver_account_id = ?
+                 ORDER BY timestamp DESC, id DESC LIMIT ?)
+            ) page
+            ORDER BY timestamp DESC, id DESC
+            LIMIT ?
+            """.formatted(COLUMNS);
+
+    private static final String NEXT_PAGE = """
+            SELECT * FROM (
+                (SELECT %1$s FROM transactions WHERE sender_account_id = ? AND (timestamp, id) < (?, ?)
+                 ORDER BY timestamp DESC, id DESC LIMIT ?)
+                UNION ALL
+                (SELECT %1$s FROM transactions WHERE receiver_account_id = ? AND (timestamp, id) < (?, ?)
+                 ORDER BY timestamp DESC, id DESC LIMIT ?)
+            ) page
+            ORDER BY timestamp DESC, id DESC
+            LIMIT ?
+            """.formatted(COLUMNS);
+
+    private static final RowMapper<TransferDTO.Response> ROW_MAPPER = (rs, rowNum) -> new TransferDTO.Response(
+            rs.getObject("id", UUID.class),
+            rs.getObject("external_id", UUID.class),
+            rs.getObject("sender_account_id", Long.class),
+            rs.getLong("receiver_account_id"),
+            rs.getBigDecimal("amount"),
+            rs.getString("currency"),
+            TransactionStatus.valueOf(rs.getString("status")),
+            rs.getTimestamp("timestamp").toLocalDateTime(),
+            rs.getString("error_message")
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Возвращает до limit операций счета, начиная с самых новых.
+     */
+    public List<TransferDTO.Response> findFirstPage(Long accountId, int limit) {
+        return jdbcTemplate.query(FIRST_PAGE, ROW_MAPPER, accountId, limit, accountId, limit, limit);
+    }
+
+    /**
+     * Возвращает до limit операций счета строго старше позиции (timestamp, id).
+     */
+    public List<TransferDTO.Response> findPageBefore(Long accountId, LocalDateTime timestamp, UUID id, int limit) {
+        Timestamp before = Timestamp.valueOf(timestamp);
+        return jdbcTemplate.query(NEXT_PAGE, ROW_MAPPER,
+                accountId, before, id, limit,
+                accountId, before, id, limit,
+                limit);
+    }
+}
@@ -4,6 +4,8 @@ import com.github.Silexj.payment_engine.model.Transaction;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -13,4 +15,9 @@ public interface TransactionRepository extends JpaRepository<Transaction, UUID>
 
 
     Optional<Transaction> findByExternalId(UUID externalId);
+
+    /**
+     * Проверка идемпотентности для пакета переводов одним запросом.
+     */
+    List<Transaction> findAllByExternalIdIn(Collection<UUID> externalIds);
 }
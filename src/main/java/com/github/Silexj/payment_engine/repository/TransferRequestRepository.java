@@ -0,0 +1,96 @@
+package com.github.Silexj.payment_engine.repository;
+
+import com.github.Silexj.payment_engine.model.TransferRequest;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface TransferRequestRepository extends JpaRepository<TransferRequest, UUID> {
+
+    /**
+     * Фиксирует прием перевода. Повтор того же externalId ничего не меняет (возвращает 0).
+     */
+    @Modifying
+    @Query(value = """
+        INSERT INTO transfer_requests (external_id, from_account_id, to_account_id, amount, status, created_at, updated_at)
+        VALUES (:externalId, :fromAccountId, :toAccountId, :amount, 'PENDING', :now, :now)
+        ON CONFLICT (external_id) DO NOTHING
+        """, nativeQuery = true)
+    int accept(@Param("externalId") UUID externalId,
+               @Param("fromAccountId") Long fromAccountId,
+               @Param("toAccountId") Long toAccountId,
+               @Param("amount") BigDecimal amount,
+               @Param("now") LocalDateTime now);
+
+    /**
+     * Захватывает перевод для выполнения. 0 - его уже выполняет (или выполнил) другой воркер или узел.
+     */
+    @Modifying
+    @Query(value = """
+        UPDATE transfer_requests SET status = 'PROCESSING', attempts = attempts + 1, updated_at = :now
+        WHERE external_id = :externalId AND status = 'PENDING'
+        """, nativeQuery = true)
+    int claim(@Param("externalId") UUID externalId, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query(value = """
+        UPDATE transfer_requests SET status = 'SUCCESS', transaction_id = :transactionId, error_message = NULL,
+                                     updated_at = :now
+        WHERE external_id = :externalId
+        """, nativeQuery = true)
+    int markSucceeded(@Param("externalId") UUID externalId,
+                      @Param("transactionId") UUID transactionId,
+                      @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query(value = """
+        UPDATE transfer_requests SET status = 'FAILED', error_message = :errorMessage, updated_at = :now
+        WHERE external_id = :externalId
+        """, nativeQuery = true)
+    int markFailed(@Param("externalId") UUID externalId,
+                   @Param("errorMessage") String errorMessage,
+                   @Param("now") LocalDateTime now);
+
+    /**
+     * Возвращает перевод в очередь после временной ошибки (перегрузка, lock timeout) - его повторит поллер.
+     */
+    @Modifying
+    @Query(value = """
+        UPDATE transfer_requests SET status = 'PENDING', error_message = :errorMessage, updated_at = :now
+        WHERE external_id = :externalId AND status = 'PROCESSING'
+        """, nativeQuery = true)
+    int release(@Param("externalId") UUID externalId,
+                @Param("errorMessage") String errorMessage,
+                @Param("now") LocalDateTime now);
+
+    /**
+     * Переводы, зависшие в PROCESSING (узел упал во время выполнения), возвращаются в PENDING.
+     * Повторное выполнение безопасно: перевод идемпотентен по externalId.
+     */
+    @Modifying
+    @Query(value = """
+        UPDATE transfer_requests SET status = 'PENDING', updated_at = :now
+        WHERE status = 'PROCESSING' AND updated_at < :stuckBefore
+        """, nativeQuery = true)
+    int releaseStuck(@Param("stuckBefore") LocalDateTime stuckBefore, @Param("now") LocalDateTime now);
+
+    /**
+     * PENDING переводы, которые не подхватил воркер за retry-delay (очередь была полна, временная ошибка,
+     * узел упал после приема). Читает частичный индекс idx_transfer_requests_unfinished.
+     */
+    @Query(value = """
+        SELECT external_id FROM transfer_requests
+        WHERE status = 'PENDING' AND updated_at < :updatedBefore
+        ORDER BY updated_at
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<UUID> findPendingBefore(@Param("updatedBefore") LocalDateTime updatedBefore, @Param("limit") int limit);
+}
@@ -0,0 +1,39 @@
+package com.github.Silexj.payment_engine.scheduler;
+
+import com.github.Silexj.payment_engine.service.async.AsyncTransferService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AsyncTransferRecoveryJob {
+
+    private final AsyncTransferService asyncTransferService;
+
+    /**
+     * Подхватывает асинхронные переводы, не попавшие в очередь воркеров (переполнение, временная ошибка, рестарт узла).
+     */
+    @Scheduled(fixedDelayString = "${app.transfer.async.recovery-interval:5000}")
+    public void recoverPending() {
+        try {
+            asyncTransferService.recoverPending();
+        } catch (RuntimeException e) {
+            log.error("Async transfer recovery failed", e);
+        }
+    }
+
+    /**
+     * Доставляет итог подписчикам SSE этого узла, если перевод выполнил другой узел.
+     */
+    @Scheduled(fixedDelayString = "${app.transfer.async.sse-refresh-interval:1000}")
+    public void refreshSubscriptions() {
+        try {
+            asyncTransferService.refreshSubscriptions();
+        } catch (RuntimeException e) {
+            log.error("Async transfer subscription refresh failed", e);
+        }
+    }
+}
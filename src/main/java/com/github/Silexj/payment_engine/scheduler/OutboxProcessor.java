@@ -2,63 +2,206 @@ package com.github.Silexj.payment_engine.scheduler;
 
 import com.github.Silexj.payment_engine.model.OutboxEvent;
 import com.github.Silexj.payment_engine.repository.OutboxEventRepository;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @Component
-@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.outbox.relay", havingValue = "POLLING", matchIfMissing = true)
 @Slf4j
 public class OutboxProcessor {
 
     private final OutboxEventRepository outboxRepository;
     private final KafkaTemplate<String, String> kafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
 
-    @Value("${app.kafka.topic-name}")
-    private String topicName;
+    private final String topicName;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long maxDrainMs;
+    private final long sendTimeoutMs;
+    private final long leaseMs;
+    private final boolean deleteOnPublish;
+    private final long fastPathGraceMs;
+
+    /**
+     * Текущий размер пакета. Растет вдвое, пока пакеты приходят полными (есть backlog),
+     * и уменьшается, когда очередь почти пуста. Меняется только потоком планировщика.
+     */
+    private int batchSize;
+
+    public OutboxProcessor(OutboxEventRepository outboxRepository,
+                           KafkaTemplate<String, String> kafkaTemplate,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${app.kafka.topic-name}") String topicName,
+                           @Value("${app.outbox.min-batch-size:50}") int minBatchSize,
+                           @Value("${app.outbox.max-batch-size:2000}") int maxBatchSize,
+                           @Value("${app.outbox.max-drain-ms:2000}") long maxDrainMs,
+                           @Value("${app.outbox.send-timeout:10000}") long sendTimeoutMs,
+                           @Value("${app.outbox.lease:30000}") long leaseMs,
+                           @Value("${app.outbox.delete-on-publish:false}") boolean deleteOnPublish,
+                           @Value("${app.outbox.fast-path.enabled:true}") boolean fastPathEnabled,
+                           @Value("${app.outbox.fast-path.grace-period:5000}") long fastPathGraceMs) {
+        this.outboxRepository = outboxRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.topicName = topicName;
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDrainMs = maxDrainMs;
+        this.sendTimeoutMs = sendTimeoutMs;
+        // Аренда короче ожидания подтверждений отдала бы событие второму поллеру посреди отправки
+        this.leaseMs = Math.max(leaseMs, sendTimeoutMs * 2);
+        this.deleteOnPublish = deleteOnPublish;
+        this.fastPathGraceMs = fastPathEnabled ? fastPathGraceMs : 0;
+        this.batchSize = minBatchSize;
+    }
 
     /**
      * Этот метод запускается каждые ...ms (настроено в application.yml).
-     * Он работает в транзакции: если отправка в Кафку упадет, статус в БД откатится.
+     * При включенном fast path (OutboxPublisher) события отправляются сразу после коммита,
+     * а поллер подбирает только те, что остались PENDING дольше grace-period (сбой отправки, падение узла).
+     * Пока пакеты приходят полными, следующий пакет забирается сразу, без ожидания интервала
+     * (но не дольше max-drain-ms, чтобы не занимать поток планировщика).
      */
     @Scheduled(fixedDelayString = "${app.scheduler.outbox-interval}")
-    @Transactional
     public void processOutbox() {
-        List<OutboxEvent> events = outboxRepository.findBatchToProcess(50);
+        long deadline = System.currentTimeMillis() + maxDrainMs;
+        boolean backlog;
+        do {
+            int requested = batchSize;
+            int fetched = relayBatch(requested);
+            backlog = fetched == requested;
+            adaptBatchSize(fetched, requested);
+        } while (backlog && System.currentTimeMillis() < deadline);
+    }
 
-        if (events.isEmpty()) {
-            return;
+    /**
+     * Отправляет пакет, не держа соединение с БД во время ожидания брокера:
+     * 1. Короткой транзакцией арендует события в порядке создания (claimBatch, locked_until = now + lease).
+     * 2. Вне транзакции отправляет все события асинхронно (producer сам группирует их в запросы к брокеру)
+     *    и ждет подтверждений разом, не дольше send-timeout.
+     * 3. Второй транзакцией помечает успешно отправленные одним UPDATE (или удаляет одним DELETE
+     *    в режиме delete-on-publish) и снимает аренду с остальных.
+     * Если узел упал после шага 1, события снова станут доступны по истечении app.outbox.lease.
+     *
+     * Порядок внутри aggregateId: ключ сообщения = aggregateId (одна партиция), producer идемпотентен.
+     * Если событие агрегата не отправилось, следующие события того же агрегата из пакета остаются PENDING
+     * и уйдут повторно вместе с ним, так что последним consumer увидит упорядоченную последовательность.
+     *
+     * @return число забранных событий
+     */
+    private int relayBatch(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> claimed = transactionTemplate.execute(status -> outboxRepository.claimBatch(
+                limit,
+                now.minusNanos(TimeUnit.MILLISECONDS.toNanos(fastPathGraceMs)),
+                now,
+                now.plusNanos(TimeUnit.MILLISECONDS.toNanos(leaseMs))));
+
+        if (claimed == null || claimed.isEmpty()) {
+            return 0;
         }
+        List<OutboxEvent> events = claimed.stream()
+                .sorted(Comparator.comparing(OutboxEvent::getCreatedAt))
+                .toList();
 
         log.debug("Found {} outbox events to process", events.size());
 
+        List<CompletableFuture<SendResult<String, String>>> sends = new ArrayList<>(events.size());
         for (OutboxEvent event : events) {
             try {
-                ProducerRecord<String, String> record = new ProducerRecord<>(
-                        topicName,
-                        event.getAggregateId(),
-                        event.getPayload()
-                );
+                sends.add(kafkaTemplate.send(toProducerRecord(topicName, event)));
+            } catch (RuntimeException e) {
+                sends.add(CompletableFuture.failedFuture(e));
+            }
+        }
 
-                record.headers().add("EVENT_TYPE", event.getType().getBytes(StandardCharsets.UTF_8));
-                kafkaTemplate.send(record).get();
+        try {
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new))
+                    .get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Ошибки отдельных событий разбираются ниже по их future
+            log.debug("Outbox batch completed with errors: {}", e.getMessage());
+        }
 
-                event.setStatus("PROCESSED");
-                event.setProcessedAt(LocalDateTime.now());
+        List<UUID> published = new ArrayList<>(events.size());
+        List<UUID> unsent = new ArrayList<>();
+        Set<String> failedAggregates = new HashSet<>();
+        for (int i = 0; i < events.size(); i++) {
+            OutboxEvent event = events.get(i);
+            CompletableFuture<SendResult<String, String>> send = sends.get(i);
 
-                log.info("Event processed: {}", event.getId());
-            } catch (Exception e) {
-                log.error("Error processing event: {}", event.getId(), e);
+            boolean sent = send.isDone() && !send.isCompletedExceptionally();
+            if (sent && !failedAggregates.contains(event.getAggregateId())) {
+                published.add(event.getId());
+            } else if (sent) {
+                unsent.add(event.getId());
+                log.warn("Event deferred after earlier failure of aggregate {}: {}", event.getAggregateId(), event.getId());
+            } else {
+                unsent.add(event.getId());
+                failedAggregates.add(event.getAggregateId());
+                if (send.isCompletedExceptionally()) {
+                    log.error("Error processing event: {}", event.getId(), send.exceptionNow());
+                } else {
+                    log.error("Timed out waiting for broker ack: {}", event.getId());
+                }
             }
         }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!published.isEmpty() && deleteOnPublish) {
+                outboxRepository.deletePublished(published);
+            } else if (!published.isEmpty()) {
+                outboxRepository.markProcessed(published, LocalDateTime.now());
+            }
+            if (!unsent.isEmpty()) {
+                outboxRepository.releaseClaims(unsent);
+            }
+        });
+
+        log.info("Outbox batch relayed: fetched={}, published={}", events.size(), published.size());
+        return events.size();
+    }
+
+    /**
+     * Сообщение Kafka для события: ключ - aggregateId (partition key), тип события - в заголовке EVENT_TYPE.
+     */
+    public static ProducerRecord<String, String> toProducerRecord(String topicName, OutboxEvent event) {
+        ProducerRecord<String, String> record = new ProducerRecord<>(
+                topicName,
+                event.getAggregateId(),
+                event.getPayload()
+        );
+        record.headers().add("EVENT_TYPE", event.getType().getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+
+    private void adaptBatchSize(int fetched, int requested) {
+        if (fetched == requested) {
+            batchSize = Math.min(maxBatchSize, requested * 2);
+        } else if (fetched < requested / 4) {
+            batchSize = Math.max(minBatchSize, requested / 2);
+        }
     }
 }
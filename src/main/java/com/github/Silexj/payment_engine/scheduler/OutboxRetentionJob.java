@@ -0,0 +1,117 @@
+package com.github.Silexj.payment_engine.scheduler;
+
+import com.github.Silexj.payment_engine.repository.OutboxPartitionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+@Component
+@Slf4j
+public class OutboxRetentionJob {
+
+    private final OutboxPartitionRepository partitionRepository;
+    private final int precreateDays;
+    private final int retentionDays;
+    private final int deleteBatchSize;
+    private final Duration lockTimeout;
+    private final int lockAttempts;
+
+    public OutboxRetentionJob(OutboxPartitionRepository partitionRepository,
+                              @Value("${app.outbox.retention.precreate-days:3}") int precreateDays,
+                              @Value("${app.outbox.retention.days:3}") int retentionDays,
+                              @Value("${app.outbox.retention.delete-batch-size:10000}") int deleteBatchSize,
+                              @Value("${app.outbox.retention.lock-timeout:2s}") Duration lockTimeout,
+                              @Value("${app.outbox.retention.lock-attempts:3}") int lockAttempts) {
+        this.partitionRepository = partitionRepository;
+        this.precreateDays = precreateDays;
+        this.retentionDays = retentionDays;
+        this.deleteBatchSize = deleteBatchSize;
+        this.lockTimeout = lockTimeout;
+        this.lockAttempts = Math.max(1, lockAttempts);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintainPartitions();
+    }
+
+    /**
+     * Обслуживание outbox_events (по умолчанию раз в час):
+     * 1. Создает партиции на precreate-days дней вперед, чтобы новые события не попадали в default партицию.
+     * 2. Удаляет партиции старше retention-days, в которых не осталось необработанных событий.
+     *    Партиция с PENDING событиями остается до их отправки. Ожидание блокировки DETACH/DROP
+     *    ограничено lock-timeout и повторяется lock-attempts раз; занятая партиция удаляется в следующий запуск.
+     * 3. Чистит обработанные строки default партиции порциями.
+     *
+     * Так объем таблицы (и индекса, по которому ходит поллер) ограничен окном хранения,
+     * а не временем работы сервиса.
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.retention.interval:3600000}", initialDelayString = "${app.outbox.retention.interval:3600000}")
+    public void maintainPartitions() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+        for (int i = 0; i <= precreateDays; i++) {
+            try {
+                partitionRepository.createDailyPartition(today.plusDays(i));
+            } catch (RuntimeException e) {
+                // Например, default партиция уже содержит строки этого дня
+                log.error("Failed to create outbox partition for {}", today.plusDays(i), e);
+            }
+        }
+
+        LocalDate cutoff = today.minusDays(retentionDays);
+        for (LocalDate day : partitionRepository.findDailyPartitions()) {
+            if (!day.isBefore(cutoff)) {
+                break;
+            }
+            if (partitionRepository.hasUnprocessedEvents(day)) {
+                log.warn("Outbox partition {} has unprocessed events, keeping it", day);
+                continue;
+            }
+            if (dropPartition(day)) {
+                log.info("Outbox partition dropped: {}", day);
+            }
+        }
+
+        OffsetDateTime before = cutoff.atStartOfDay().atOffset(ZoneOffset.UTC);
+        int deleted;
+        int total = 0;
+        do {
+            deleted = partitionRepository.deleteProcessedFromDefault(before, deleteBatchSize);
+            total += deleted;
+        } while (deleted == deleteBatchSize);
+        if (total > 0) {
+            log.info("Processed outbox events deleted from default partition: {}", total);
+        }
+    }
+
+    private boolean dropPartition(LocalDate day) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                partitionRepository.dropDailyPartition(day, lockTimeout);
+                return true;
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt >= lockAttempts) {
+                    log.warn("Outbox partition {} is locked, keeping it until the next run: {}", day, e.getMessage());
+                    return false;
+                }
+                try {
+                    // Пауза между попытками, чтобы очередь вставок за отмененным DDL успела пройти
+                    Thread.sleep(lockTimeout.toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+}
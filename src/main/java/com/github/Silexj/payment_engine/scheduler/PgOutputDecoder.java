@@ -0,0 +1,106 @@
+package com.github.Silexj.payment_engine.scheduler;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Минимальный декодер протокола pgoutput (proto_version 1): Begin, Commit, Relation, Insert.
+ * Остальные сообщения (Update, Delete, Truncate, Type, Origin) relay не нужны и пропускаются.
+ *
+ * Значения колонок приходят в текстовом формате PostgreSQL, сопоставление с именами колонок
+ * берется из последнего сообщения Relation для этой таблицы.
+ */
+class PgOutputDecoder {
+
+    private final Map<Integer, Relation> relations = new HashMap<>();
+
+    sealed interface Message permits Begin, Commit, Insert, Skipped {}
+
+    record Begin(long finalLsn) implements Message {}
+
+    record Commit(long endLsn) implements Message {}
+
+    record Insert(String table, Map<String, String> values) implements Message {}
+
+    record Skipped(char tag) implements Message {}
+
+    private record Relation(String table, List<String> columns) {}
+
+    Message decode(ByteBuffer buffer) {
+        char tag = (char) buffer.get();
+        return switch (tag) {
+            case 'B' -> {
+                long finalLsn = buffer.getLong();
+                buffer.getLong(); // commit timestamp
+                buffer.getInt();  // xid
+                yield new Begin(finalLsn);
+            }
+            case 'C' -> {
+                buffer.get();     // flags
+                buffer.getLong(); // commit LSN
+                long endLsn = buffer.getLong();
+                yield new Commit(endLsn);
+            }
+            case 'R' -> {
+                readRelation(buffer);
+                yield new Skipped(tag);
+            }
+            case 'I' -> {
+                Relation relation = relations.get(buffer.getInt());
+                if (relation == null) {
+                    throw new IllegalStateException("Insert for unknown relation");
+                }
+                buffer.get(); // 'N' - новый кортеж
+                yield new Insert(relation.table(), readTuple(buffer, relation));
+            }
+            default -> new Skipped(tag);
+        };
+    }
+
+    private void readRelation(ByteBuffer buffer) {
+        int relationId = buffer.getInt();
+        readString(buffer); // namespace
+        String table = readString(buffer);
+        buffer.get(); // replica identity
+        int columnCount = buffer.getShort();
+        List<String> columns = new ArrayList<>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            buffer.get(); // flags
+            columns.add(readString(buffer));
+            buffer.getInt(); // type oid
+            buffer.getInt(); // type modifier
+        }
+        relations.put(relationId, new Relation(table, columns));
+    }
+
+    private Map<String, String> readTuple(ByteBuffer buffer, Relation relation) {
+        int columnCount = buffer.getShort();
+        Map<String, String> values = new HashMap<>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            char kind = (char) buffer.get();
+            if (kind == 't') {
+                byte[] value = new byte[buffer.getInt()];
+                buffer.get(value);
+                values.put(relation.columns().get(i), new String(value, StandardCharsets.UTF_8));
+            } else {
+                // 'n' - NULL, 'u' - неизмененное TOAST значение (во вставке не встречается)
+                values.put(relation.columns().get(i), null);
+            }
+        }
+        return values;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int start = buffer.position();
+        while (buffer.get() != 0) {
+            // ищем завершающий ноль
+        }
+        byte[] bytes = new byte[buffer.position() - start - 1];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.Silexj.payment_engine.scheduler;
+
+import com.github.Silexj.payment_engine.service.reconciliation.ReconciliationEngine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReconciliationJob {
+
+    private final ReconciliationEngine reconciliationEngine;
+
+    /**
+     * Ночная сверка балансов с журналом (app.reconciliation.cron, "-" - отключена).
+     * На нескольких узлах запуск выполняет один; прерванный запуск продолжается со следующего срабатывания.
+     */
+    @Scheduled(cron = "${app.reconciliation.cron:-}")
+    public void reconcile() {
+        try {
+            reconciliationEngine.run();
+        } catch (RuntimeException e) {
+            log.error("Reconciliation run failed, it will resume from the last checkpoint", e);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.github.Silexj.payment_engine.scheduler;
+
+import com.github.Silexj.payment_engine.model.OutboxEvent;
+import com.github.Silexj.payment_engine.repository.OutboxEventRepository;
+import com.github.Silexj.payment_engine.repository.OutboxRelayOffsetRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGProperty;
+import org.postgresql.jdbc.PgConnection;
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Relay событий outbox_events через логическую репликацию (app.outbox.relay=LOGICAL_REPLICATION).
+ *
+ * Вместо периодического опроса таблицы читает поток вставок из слота репликации (плагин pgoutput)
+ * и отправляет события транзакции в Kafka сразу после ее коммита. После подтверждения брокером:
+ * события помечаются PROCESSED (для retention), LSN коммита сохраняется в outbox_relay_offsets
+ * и подтверждается слоту, чтобы PostgreSQL мог освободить WAL.
+ *
+ * Доставка at-least-once: при сбое отправки соединение переоткрывается, и поток продолжается
+ * с последнего подтвержденного LSN (события неподтвержденной транзакции уйдут повторно).
+ * Требует wal_level=logical и права REPLICATION у пользователя БД.
+ */
+@Component
+@ConditionalOnProperty(name = "app.outbox.relay", havingValue = "LOGICAL_REPLICATION")
+@Slf4j
+public class WalOutboxRelay {
+
+    private static final int CATCH_UP_BATCH_SIZE = 500;
+
+    private final OutboxEventRepository outboxRepository;
+    private final OutboxRelayOffsetRepository offsetRepository;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final JdbcConnectionDetails connectionDetails;
+    private final TransactionTemplate transactionTemplate;
+
+    private final String topicName;
+    private final String slotName;
+    private final String publication;
+    private final long sendTimeoutMs;
+    private final long reconnectDelayMs;
+    private final boolean deleteOnPublish;
+
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    public WalOutboxRelay(OutboxEventRepository outboxRepository,
+                          OutboxRelayOffsetRepository offsetRepository,
+                          KafkaTemplate<String, String> kafkaTemplate,
+                          JdbcConnectionDetails connectionDetails,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${app.kafka.topic-name}") String topicName,
+                          @Value("${app.outbox.replication.slot:outbox_relay}") String slotName,
+                          @Value("${app.outbox.replication.publication:outbox_publication}") String publication,
+                          @Value("${app.outbox.send-timeout:10000}") long sendTimeoutMs,
+                          @Value("${app.outbox.replication.reconnect-delay:5000}") long reconnectDelayMs,
+                          @Value("${app.outbox.delete-on-publish:false}") boolean deleteOnPublish,
+                          @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.outboxRepository = outboxRepository;
+        this.offsetRepository = offsetRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.connectionDetails = connectionDetails;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.topicName = topicName;
+        this.slotName = slotName;
+        this.publication = publication;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.reconnectDelayMs = reconnectDelayMs;
+        this.deleteOnPublish = deleteOnPublish;
+        this.worker = (virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform())
+                .name("outbox-wal-relay")
+                .unstarted(this::run);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        offsetRepository.createPublicationIfMissing(publication);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            try (Connection connection = openReplicationConnection()) {
+                stream(connection.unwrap(PgConnection.class));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.error("WAL relay failed, reconnecting in {} ms", reconnectDelayMs, e);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(reconnectDelayMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void stream(PgConnection connection) throws Exception {
+        if (!offsetRepository.slotExists(slotName)) {
+            connection.getReplicationAPI()
+                    .createReplicationSlot()
+                    .logical()
+                    .withSlotName(slotName)
+                    .withOutputPlugin("pgoutput")
+                    .make();
+            log.info("Replication slot created: {}", slotName);
+            // Вставки до создания слота в поток не попадут - отправляем их один раз напрямую
+            catchUpPendingEvents();
+        }
+
+        LogSequenceNumber startLsn = offsetRepository.findConfirmedLsn(slotName)
+                .map(LogSequenceNumber::valueOf)
+                .orElse(LogSequenceNumber.INVALID_LSN);
+
+        PGReplicationStream stream = connection.getReplicationAPI()
+                .replicationStream()
+                .logical()
+                .withSlotName(slotName)
+                .withSlotOption("proto_version", 1)
+                .withSlotOption("publication_names", publication)
+                .withStartPosition(startLsn)
+                .withStatusInterval(10, TimeUnit.SECONDS)
+                .start();
+        log.info("WAL relay streaming: slot={}, startLsn={}", slotName, startLsn.asString());
+
+        PgOutputDecoder decoder = new PgOutputDecoder();
+        List<OutboxEvent> transactionEvents = new ArrayList<>();
+        while (running) {
+            ByteBuffer message = stream.readPending();
+            if (message == null) {
+                TimeUnit.MILLISECONDS.sleep(10);
+                continue;
+            }
+
+            switch (decoder.decode(message)) {
+                case PgOutputDecoder.Begin begin -> transactionEvents.clear();
+                case PgOutputDecoder.Insert insert when "outbox_events".equals(insert.table()) ->
+                        transactionEvents.add(toOutboxEvent(insert.values()));
+                case PgOutputDecoder.Commit commit -> {
+                    LogSequenceNumber commitLsn = LogSequenceNumber.valueOf(commit.endLsn());
+                    if (!transactionEvents.isEmpty()) {
+                        publish(transactionEvents);
+                        // Транзакции без событий (в т.ч. наши UPDATE статусов) LSN в таблицу не пишут,
+                        // иначе каждая запись смещения порождала бы новую транзакцию в потоке
+                        offsetRepository.saveConfirmedLsn(slotName, commitLsn.asString());
+                        log.debug("WAL relay confirmed: lsn={}, events={}", commitLsn.asString(), transactionEvents.size());
+                    }
+                    stream.setAppliedLSN(commitLsn);
+                    stream.setFlushedLSN(commitLsn);
+                    transactionEvents.clear();
+                }
+                default -> {
+                }
+            }
+        }
+    }
+
+    /**
+     * Отправляет события транзакции в Kafka, ждет подтверждений и отмечает их в outbox_events.
+     * Любая ошибка прерывает поток: LSN не подтверждается, и транзакция будет прочитана снова.
+     */
+    private void publish(List<OutboxEvent> events) throws Exception {
+        List<CompletableFuture<SendResult<String, String>>> sends = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            sends.add(kafkaTemplate.send(OutboxProcessor.toProducerRecord(topicName, event)));
+        }
+        CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+
+        List<UUID> ids = events.stream().map(OutboxEvent::getId).toList();
+        transactionTemplate.executeWithoutResult(status -> {
+            if (deleteOnPublish) {
+                outboxRepository.deletePublished(ids);
+            } else {
+                outboxRepository.markProcessed(ids, LocalDateTime.now());
+            }
+        });
+    }
+
+    private void catchUpPendingEvents() throws Exception {
+        int relayed = 0;
+        List<OutboxEvent> batch;
+        do {
+            batch = transactionTemplate.execute(status -> outboxRepository.findBatchToProcess(CATCH_UP_BATCH_SIZE, LocalDateTime.now()));
+            if (batch == null || batch.isEmpty()) {
+                break;
+            }
+            publish(batch);
+            relayed += batch.size();
+        } while (batch.size() == CATCH_UP_BATCH_SIZE);
+        log.info("WAL relay catch-up finished: events={}", relayed);
+    }
+
+    private OutboxEvent toOutboxEvent(Map<String, String> values) {
+        return OutboxEvent.builder()
+                .id(UUID.fromString(values.get("id")))
+                .aggregateType(values.get("aggregate_type"))
+                .aggregateId(values.get("aggregate_id"))
+                .type(values.get("type"))
+                .payload(values.get("payload"))
+                .status(values.get("status"))
+                .build();
+    }
+
+    private Connection openReplicationConnection() throws SQLException {
+        Properties properties = new Properties();
+        PGProperty.USER.set(properties, connectionDetails.getUsername());
+        PGProperty.PASSWORD.set(properties, connectionDetails.getPassword());
+        PGProperty.ASSUME_MIN_SERVER_VERSION.set(properties, "13");
+        PGProperty.REPLICATION.set(properties, "database");
+        PGProperty.PREFER_QUERY_MODE.set(properties, "simple");
+        return DriverManager.getConnection(connectionDetails.getJdbcUrl(), properties);
+    }
+}
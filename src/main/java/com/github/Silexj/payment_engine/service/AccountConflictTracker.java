@@ -0,0 +1,77 @@
+package com.github.Silexj.payment_engine.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Статистика конфликтов оптимистичных переводов по счетам (режим OPTIMISTIC).
+ *
+ * Конфликты счета считаются в окне app.transfer.optimistic.conflict-window от первого конфликта.
+ * Набрав conflict-threshold конфликтов в окне, счет считается "горячим" и на pessimistic-ttl
+ * переводы с его участием идут сразу через FOR UPDATE, без бесполезных повторов.
+ * По истечении срока счет снова пробуется оптимистично.
+ *
+ * Состояние локально для узла и ограничено по размеру (Caffeine), как кэши IdempotencyService.
+ */
+@Component
+@Slf4j
+public class AccountConflictTracker {
+
+    private final Cache<Long, AtomicInteger> recentConflicts;
+    private final Cache<Long, Boolean> pessimisticAccounts;
+    private final int conflictThreshold;
+
+    public AccountConflictTracker(MeterRegistry meterRegistry,
+                                  @Value("${app.transfer.optimistic.conflict-threshold:5}") int conflictThreshold,
+                                  @Value("${app.transfer.optimistic.conflict-window:10s}") Duration conflictWindow,
+                                  @Value("${app.transfer.optimistic.pessimistic-ttl:5m}") Duration pessimisticTtl,
+                                  @Value("${app.transfer.optimistic.tracked-accounts:100000}") long trackedAccounts) {
+        this.conflictThreshold = conflictThreshold;
+        this.recentConflicts = Caffeine.newBuilder()
+                .maximumSize(trackedAccounts)
+                .expireAfterWrite(conflictWindow)
+                .build();
+        this.pessimisticAccounts = Caffeine.newBuilder()
+                .maximumSize(trackedAccounts)
+                .expireAfterWrite(pessimisticTtl)
+                .build();
+
+        Gauge.builder("transfer.optimistic.pessimistic.accounts", pessimisticAccounts, Cache::estimatedSize)
+                .description("Accounts temporarily switched to pessimistic locking after frequent conflicts")
+                .register(meterRegistry);
+    }
+
+    /**
+     * true, если хотя бы один из счетов сейчас переведен на пессимистичные блокировки.
+     */
+    public boolean isPessimistic(Long firstAccountId, Long secondAccountId) {
+        return pessimisticAccounts.getIfPresent(firstAccountId) != null
+                || pessimisticAccounts.getIfPresent(secondAccountId) != null;
+    }
+
+    /**
+     * Учитывает конфликт версии по счетам и возвращает true, если хотя бы один из них стал "горячим".
+     */
+    public boolean recordConflict(Collection<Long> accountIds) {
+        boolean switched = false;
+        for (Long accountId : accountIds) {
+            int conflicts = recentConflicts.get(accountId, id -> new AtomicInteger()).incrementAndGet();
+            if (conflicts >= conflictThreshold && pessimisticAccounts.getIfPresent(accountId) == null) {
+                pessimisticAccounts.put(accountId, Boolean.TRUE);
+                recentConflicts.invalidate(accountId);
+                log.info("Account switched to pessimistic locking: accountId={}, conflicts={}", accountId, conflicts);
+                switched = true;
+            }
+        }
+        return switched;
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.Silexj.payment_engine.service;
+
+import com.github.Silexj.payment_engine.repository.AccountJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Выдает номера счетов из заранее зарезервированных блоков account_number_seq.
+ *
+ * Блок принадлежит только этому узлу, поэтому номера уникальны без проверки в БД на каждую строку
+ * и без ретраев при коллизиях. Номер - 19 цифр порядкового значения + контрольная цифра Луна.
+ * Номера, не выданные до перезапуска, просто пропадают (как значения последовательности).
+ */
+@Component
+@RequiredArgsConstructor
+public class AccountNumberAllocator {
+
+    private static final String NUMBER_FORMAT = "%019d";
+
+    private final AccountJdbcRepository accountJdbcRepository;
+    // Не synchronized: под ним идет запрос к БД, а synchronized закрепляет виртуальный поток за носителем
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long next;
+    private long blockEnd;
+
+    /**
+     * Возвращает count новых номеров. В БД обращается только при исчерпании текущего блока
+     * (nextval() не откатывается вместе с транзакцией, так что блок не будет выдан повторно).
+     */
+    public List<String> allocate(int count) {
+        List<String> numbers = new ArrayList<>(count);
+        lock.lock();
+        try {
+            while (numbers.size() < count) {
+                if (next == blockEnd) {
+                    next = accountJdbcRepository.reserveNumberBlock();
+                    blockEnd = next + AccountJdbcRepository.NUMBER_BLOCK_SIZE;
+                }
+                numbers.add(withCheckDigit(String.format(NUMBER_FORMAT, next++)));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return numbers;
+    }
+
+    public String allocate() {
+        return allocate(1).get(0);
+    }
+
+    private static String withCheckDigit(String digits) {
+        int sum = 0;
+        boolean doubled = true;
+        for (int i = digits.length() - 1; i >= 0; i--) {
+            int digit = digits.charAt(i) - '0';
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+}
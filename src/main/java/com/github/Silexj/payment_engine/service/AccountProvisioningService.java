@@ -0,0 +1,69 @@
+package com.github.Silexj.payment_engine.service;
+
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.event.AccountCreatedEvent;
+import com.github.Silexj.payment_engine.model.Account;
+import com.github.Silexj.payment_engine.model.OutboxEvent;
+import com.github.Silexj.payment_engine.repository.AccountJdbcRepository;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Массовое открытие счетов.
+ *
+ * ID берутся пулами из accounts_id_seq, номера - из зарезервированного блока AccountNumberAllocator,
+ * поэтому на каждый счет не нужно ни обращения к последовательности, ни проверки уникальности номера.
+ * Счета и события ACCOUNT_CREATED вставляются JDBC batch в одной транзакции.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AccountProvisioningService {
+
+    private final AccountJdbcRepository accountJdbcRepository;
+    private final AccountNumberAllocator numberAllocator;
+    private final OutboxWriterService outboxWriter;
+
+    @Transactional
+    @Timed(value = "account.provisioning", description = "Bulk account creation")
+    public AccountDto.BulkCreateResponse createAccounts(AccountDto.BulkCreateRequest request) {
+        List<AccountDto.CreateRequest> requests = request.accounts();
+        int count = requests.size();
+
+        List<Long> ids = accountJdbcRepository.allocateIds(count);
+        List<String> numbers = numberAllocator.allocate(count);
+        LocalDateTime now = LocalDateTime.now();
+
+        List<Account> accounts = new ArrayList<>(count);
+        List<OutboxEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Account account = Account.builder()
+                    .id(ids.get(i))
+                    .number(numbers.get(i))
+                    .currency(requests.get(i).currency())
+                    .balance(BigDecimal.ZERO)
+                    .createdAt(now)
+                    .build();
+            accounts.add(account);
+
+            var event = new AccountCreatedEvent(account.getId(), account.getNumber(), account.getCurrency(), now);
+            events.add(outboxWriter.toOutboxEvent(account.getId().toString(), "ACCOUNT_CREATED", event));
+        }
+
+        accountJdbcRepository.insertAccounts(accounts);
+        outboxWriter.saveEvents(events);
+
+        log.info("Accounts provisioned: count={}, ids={}..{}", count, ids.get(0), ids.get(count - 1));
+        return new AccountDto.BulkCreateResponse(count, accounts.stream()
+                .map(account -> new AccountDto.Response(account.getId(), account.getNumber(), account.getBalance(), account.getCurrency()))
+                .toList());
+    }
+}
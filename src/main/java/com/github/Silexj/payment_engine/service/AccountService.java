@@ -1,62 +1,83 @@
 package com.github.Silexj.payment_engine.service;
 
+import com.github.Silexj.payment_engine.config.datasource.ReadConsistency;
 import com.github.Silexj.payment_engine.dto.AccountDto;
 import com.github.Silexj.payment_engine.dto.event.AccountCreatedEvent;
 import com.github.Silexj.payment_engine.dto.event.BalanceDepositedEvent;
 import com.github.Silexj.payment_engine.model.Account;
+import com.github.Silexj.payment_engine.model.AccountBalanceSlot;
+import com.github.Silexj.payment_engine.repository.AccountBalanceSlotRepository;
 import com.github.Silexj.payment_engine.repository.AccountRepository;
-import lombok.RequiredArgsConstructor;
+import com.github.Silexj.payment_engine.service.TransferMetrics.Operation;
+import com.github.Silexj.payment_engine.service.TransferMetrics.Stage;
+import com.github.Silexj.payment_engine.service.bulkhead.DbBulkhead;
+import com.github.Silexj.payment_engine.service.cache.AccountCache;
+import com.github.Silexj.payment_engine.service.ledger.LedgerEngine;
+import com.github.Silexj.payment_engine.service.serialization.SerializedByAccount;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
-import java.security.SecureRandom;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class AccountService {
 
     private final AccountRepository accountRepository;
     private final TransactionService transactionService;
-    private final SecureRandom secureRandom = new SecureRandom();
+    private final AccountNumberAllocator numberAllocator;
     private final OutboxWriterService outboxWriter;
+    private final StripedBalanceService stripedBalanceService;
+    private final AccountBalanceSlotRepository slotRepository;
+    private final ObjectProvider<LedgerEngine> ledgerEngine;
+    private final AccountCache accountCache;
+    private final TransferMetrics transferMetrics;
+    private final TransactionTemplate transactionTemplate;
+
+    public AccountService(AccountRepository accountRepository,
+                          TransactionService transactionService,
+                          AccountNumberAllocator numberAllocator,
+                          OutboxWriterService outboxWriter,
+                          StripedBalanceService stripedBalanceService,
+                          AccountBalanceSlotRepository slotRepository,
+                          ObjectProvider<LedgerEngine> ledgerEngine,
+                          AccountCache accountCache,
+                          TransferMetrics transferMetrics,
+                          PlatformTransactionManager transactionManager) {
+        this.accountRepository = accountRepository;
+        this.transactionService = transactionService;
+        this.numberAllocator = numberAllocator;
+        this.outboxWriter = outboxWriter;
+        this.stripedBalanceService = stripedBalanceService;
+        this.slotRepository = slotRepository;
+        this.ledgerEngine = ledgerEngine;
+        this.accountCache = accountCache;
+        this.transferMetrics = transferMetrics;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
 
     /**
-     * Создает новый счет с генерацией уникального номера.
-     * Реализует механизм ретраев (до 3 попыток) для обработки редких коллизий.
+     * Создает новый счет с уникальным номером.
+     * Номер берется из зарезервированного блока (AccountNumberAllocator), поэтому коллизий и ретраев нет.
+     * Пишет событие ACCOUNT_CREATED в Outbox.
      */
+    @DbBulkhead
     @Transactional
     public AccountDto.Response createAccount(AccountDto.CreateRequest request) {
-        int attempts = 0;
-        while (attempts < 3) {
-            try {
-                return tryCreateAccount(request);
-            } catch (DataIntegrityViolationException e) {
-                log.warn("Account number collision detected, retrying...");
-                attempts++;
-            }
-        }
-        throw new IllegalStateException("Failed to generate unique account number after 3 attempts");
-    }
-
-    /**
-     * Сохраняет сущность и пишет событие в Outbox.
-     * Использует saveAndFlush для мгновенной проверки уникальности номера БД.
-     */
-    private AccountDto.Response tryCreateAccount(AccountDto.CreateRequest request) {
-        String accountNumber = generateRandomNumberString();
-
         Account account = new Account();
         account.setCurrency(request.currency());
         account.setBalance(BigDecimal.ZERO);
-        account.setNumber(accountNumber);
+        account.setNumber(numberAllocator.allocate());
 
-        account = accountRepository.saveAndFlush(account);
+        account = accountRepository.save(account);
 
         var event = new AccountCreatedEvent(
                 account.getId(),
@@ -73,21 +94,48 @@ public class AccountService {
     /**
      * Пополняет баланс счета (Deposit).
      * Использует пессимистичную блокировку (findByIdWithLock) для исключения Race Conditions.
+     * Для striped счета зачисление идет в случайный слот под разделяемой блокировкой.
      * Атомарно обновляет баланс, пишет историю операций и создает событие BALANCE_DEPOSITED.
+     * В режиме LEDGER зачисление проводится через in-memory движок, чтобы его балансы не расходились с БД.
+     * Сам метод не открывает транзакцию: в режиме LEDGER ожидание журнала идет без соединения с БД,
+     * остальные режимы выполняют зачисление в своей транзакции.
+     * Время этапов пишется в TransferMetrics с operation=top_up.
+     * Пополнения и переводы по одному счету ждут друг друга в очереди в памяти (SerializedByAccount).
      */
-    @Transactional
+    @SerializedByAccount
+    @DbBulkhead
     public AccountDto.Response topUpBalance(AccountDto.TopUpRequest request) {
         log.info("Processing top-up: {}", request);
 
-        Account account = accountRepository.findByIdWithLock(request.accountId())
+        LedgerEngine engine = ledgerEngine.getIfAvailable();
+        if (engine != null) {
+            Account account = ReadConsistency.onPrimary(() -> accountRepository.findById(request.accountId()))
+                    .orElseThrow(() -> new IllegalArgumentException("Account not found"));
+            BigDecimal balance = engine.deposit(account.getId(), request.amount());
+            accountCache.invalidateAfterCommit(List.of(account.getId()));
+            log.info("Balance topped up successfully: accountId={}", account.getId());
+            return new AccountDto.Response(account.getId(), account.getNumber(), balance, account.getCurrency());
+        }
+
+        return transactionTemplate.execute(status -> topUpInTransaction(request));
+    }
+
+    private AccountDto.Response topUpInTransaction(AccountDto.TopUpRequest request) {
+        accountCache.invalidateAfterCommit(List.of(request.accountId()));
+        transferMetrics.recordCommit(Operation.TOP_UP);
+        Account account = transferMetrics.recordLockWait(Operation.TOP_UP,
+                        () -> stripedBalanceService.findByIdWithLock(request.accountId()))
                 .orElseThrow(() -> new IllegalArgumentException("Account not found"));
 
+        long stageStart = System.nanoTime();
         BigDecimal amount = request.amount();
-        account.setBalance(account.getBalance().add(amount));
+        stripedBalanceService.credit(account, amount);
 
         accountRepository.save(account);
+        stageStart = transferMetrics.record(Operation.TOP_UP, Stage.BALANCE_UPDATE, stageStart);
 
         transactionService.registerDeposit(account, amount);
+        stageStart = transferMetrics.record(Operation.TOP_UP, Stage.JOURNAL_WRITE, stageStart);
 
         var event = new BalanceDepositedEvent(
                 account.getId(),
@@ -96,6 +144,10 @@ public class AccountService {
                 UUID.randomUUID()
         );
         outboxWriter.saveEvent(account.getId().toString(), "BALANCE_DEPOSITED", event);
+        stageStart = transferMetrics.record(Operation.TOP_UP, Stage.OUTBOX_WRITE, stageStart);
+
+        accountRepository.flush();
+        transferMetrics.record(Operation.TOP_UP, Stage.FLUSH, stageStart);
 
         log.info("Balance topped up successfully: accountId={}", account.getId());
         return mapToResponse(account);
@@ -103,28 +155,81 @@ public class AccountService {
 
     /**
      * Возвращает информацию о счете.
-     * Использует readOnly транзакцию для оптимизации работы с пулом соединений и БД.
+     * Читает через AccountCache: транзакция (readOnly) открывается только при промахе кэша.
+     * Баланс striped счета суммируется по слотам.
      */
-    @Transactional(readOnly = true)
     public AccountDto.Response getAccount(Long id) {
-        return accountRepository.findById(id)
-                .map(this::mapToResponse)
+        return accountCache.get(id);
+    }
+
+    /**
+     * Переводит "горячий" счет в striped режим: баланс переносится в слот 0,
+     * остальные слоты создаются пустыми. Зачисления далее распределяются по слотам.
+     * Берет эксклюзивную блокировку счета, поэтому ждет завершения текущих операций по нему.
+     * В режиме LEDGER недоступно: балансы движка в памяти не знают о слотах.
+     */
+    @DbBulkhead
+    @Transactional
+    public AccountDto.Response enableStriping(Long id, int slots) {
+        requireStripingSupported();
+        Account account = accountRepository.findByIdWithLock(id)
                 .orElseThrow(() -> new IllegalArgumentException("Account not found"));
+        if (account.getBalanceSlots() > 0) {
+            throw new IllegalArgumentException("Account is already striped");
+        }
+
+        List<AccountBalanceSlot> balanceSlots = IntStream.range(0, slots)
+                .mapToObj(slot -> new AccountBalanceSlot(id, slot, slot == 0 ? account.getBalance() : BigDecimal.ZERO))
+                .toList();
+        slotRepository.saveAllAndFlush(balanceSlots);
+
+        account.setBalance(BigDecimal.ZERO);
+        account.setBalanceSlots(slots);
+        stripedBalanceService.markStripedAfterCommit(id, true);
+        accountCache.invalidateAfterCommit(List.of(id));
+
+        log.info("Account striping enabled: accountId={}, slots={}", id, slots);
+        return mapToResponse(account);
+    }
+
+    /**
+     * Возвращает счет в обычный режим: сумма слотов переносится в balance, слоты удаляются.
+     */
+    @DbBulkhead
+    @Transactional
+    public AccountDto.Response disableStriping(Long id) {
+        requireStripingSupported();
+        Account account = accountRepository.findByIdWithLock(id)
+                .orElseThrow(() -> new IllegalArgumentException("Account not found"));
+        if (account.getBalanceSlots() == 0) {
+            throw new IllegalArgumentException("Account is not striped");
+        }
+
+        BigDecimal slotsTotal = slotRepository.lockSlots(id).stream()
+                .map(AccountBalanceSlotRepository.SlotBalance::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        slotRepository.deleteAllByAccountId(id);
+
+        account.setBalance(account.getBalance().add(slotsTotal));
+        account.setBalanceSlots(0);
+        stripedBalanceService.markStripedAfterCommit(id, false);
+        accountCache.invalidateAfterCommit(List.of(id));
+
+        log.info("Account striping disabled: accountId={}, balance={}", id, account.getBalance());
+        return mapToResponse(account);
     }
 
-    private String generateRandomNumberString() {
-        StringBuilder sb = new StringBuilder(20);
-        for (int i = 0; i < 20; i++) {
-            sb.append(secureRandom.nextInt(10));
+    private void requireStripingSupported() {
+        if (ledgerEngine.getIfAvailable() != null) {
+            throw new IllegalArgumentException("Striping is not supported in LEDGER mode");
         }
-        return sb.toString();
     }
 
     private AccountDto.Response mapToResponse(Account account) {
         return new AccountDto.Response(
                 account.getId(),
                 account.getNumber(),
-                account.getBalance(),
+                stripedBalanceService.availableBalance(account),
                 account.getCurrency()
         );
     }
@@ -0,0 +1,335 @@
+package com.github.Silexj.payment_engine.service;
+
+import com.github.Silexj.payment_engine.config.datasource.ReadConsistency;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.dto.event.TransferCompletedEvent;
+import com.github.Silexj.payment_engine.model.Account;
+import com.github.Silexj.payment_engine.model.OutboxEvent;
+import com.github.Silexj.payment_engine.model.Transaction;
+import com.github.Silexj.payment_engine.model.TransactionStatus;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.LedgerJdbcRepository;
+import com.github.Silexj.payment_engine.service.bulkhead.DbBulkhead;
+import com.github.Silexj.payment_engine.service.cache.AccountCache;
+import com.github.Silexj.payment_engine.service.idempotency.IdempotencyService;
+import com.github.Silexj.payment_engine.service.ledger.LedgerEngine;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+@Slf4j
+public class BatchTransferService {
+
+    private final AccountRepository accountRepository;
+    private final IdempotencyService idempotencyService;
+    private final LedgerJdbcRepository ledgerJdbcRepository;
+    private final OutboxWriterService outboxWriter;
+    private final StripedBalanceService stripedBalanceService;
+    private final ObjectProvider<LedgerEngine> ledgerEngine;
+    private final AccountCache accountCache;
+    private final TransferMetrics transferMetrics;
+    private final TransactionTemplate transactionTemplate;
+
+    public BatchTransferService(AccountRepository accountRepository,
+                                IdempotencyService idempotencyService,
+                                LedgerJdbcRepository ledgerJdbcRepository,
+                                OutboxWriterService outboxWriter,
+                                StripedBalanceService stripedBalanceService,
+                                ObjectProvider<LedgerEngine> ledgerEngine,
+                                AccountCache accountCache,
+                                TransferMetrics transferMetrics,
+                                PlatformTransactionManager transactionManager) {
+        this.accountRepository = accountRepository;
+        this.idempotencyService = idempotencyService;
+        this.ledgerJdbcRepository = ledgerJdbcRepository;
+        this.outboxWriter = outboxWriter;
+        this.stripedBalanceService = stripedBalanceService;
+        this.ledgerEngine = ledgerEngine;
+        this.accountCache = accountCache;
+        this.transferMetrics = transferMetrics;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Выполняет пакет переводов в одной транзакции, по одному обращению к БД на этап:
+     * 1. Проверка идемпотентности всех externalId одним запросом (ключи, отсеченные Bloom фильтром, в него не попадают).
+     * 2. Блокировка объединения всех счетов пакета одним SELECT ... FOR UPDATE в порядке возрастания ID.
+     * 3. Проверка переводов в порядке запроса (баланс проверяется с учетом предыдущих элементов).
+     * 4. JDBC batch запись transactions под SAVEPOINT; повторы, закоммиченные другим узлом, возвращаются как replayed.
+     * 5. Применение переводов к счетам и запись outbox_events; UPDATE балансов уходит батчем при flush.
+     *
+     * Все счета пакета заблокированы эксклюзивно, поэтому слоты striped счетов меняются без риска Deadlock.
+     *
+     * Ошибка отдельного элемента (нехватка средств, разные валюты, несуществующий счет)
+     * не откатывает пакет: элемент возвращается со статусом FAILED.
+     *
+     * В режиме LEDGER элементы передаются in-memory движку и попадают в его группы журнала;
+     * подтверждения журнала пакет ждет вне транзакции, не держа соединение с БД.
+     */
+    @DbBulkhead
+    @Timed(value = "transfer.batch", description = "Time taken to perform batch of transfers")
+    public TransferDTO.BatchResponse performBatch(TransferDTO.BatchRequest request) {
+        List<TransferDTO.PerformRequest> items = request.transfers();
+        log.info("Initiating batch transfer: size={}", items.size());
+
+        LedgerEngine engine = ledgerEngine.getIfAvailable();
+        if (engine != null) {
+            return performBatchInLedger(engine, items);
+        }
+        return transactionTemplate.execute(status -> performBatchInTransaction(items));
+    }
+
+    private TransferDTO.BatchResponse performBatchInTransaction(List<TransferDTO.PerformRequest> items) {
+        accountCache.invalidateAfterCommit(accountIdsOf(items));
+
+        Map<UUID, TransferDTO.Response> completed = new HashMap<>(idempotencyService.findExistingAll(externalIdsOf(items)));
+
+        Set<Long> accountIds = new TreeSet<>();
+        for (TransferDTO.PerformRequest item : items) {
+            if (!completed.containsKey(item.externalId())) {
+                accountIds.add(item.fromAccountId());
+                accountIds.add(item.toAccountId());
+            }
+        }
+
+        Map<Long, Account> accounts = accountIds.isEmpty()
+                ? Map.of()
+                : accountRepository.findAllByIdInWithLock(accountIds).stream()
+                        .collect(Collectors.toMap(Account::getId, Function.identity()));
+
+        // Bloom фильтр не знает ключей, вставленных другими узлами после старта: такой повтор упирается
+        // в уникальный индекс external_id. Вставка идет под SAVEPOINT, найденные в БД ключи становятся
+        // повторами, и пакет планируется заново. Каждый круг добавляет хотя бы один ключ, поэтому цикл конечен.
+        BatchPlan plan = plan(items, completed, accounts);
+        while (true) {
+            List<Transaction> transactions = plan.transactions();
+            try {
+                ledgerJdbcRepository.executeInSavepoint(() -> ledgerJdbcRepository.insertTransactions(transactions));
+                break;
+            } catch (DataIntegrityViolationException e) {
+                Map<UUID, TransferDTO.Response> committed = idempotencyService.findCommittedAll(
+                        transactions.stream().map(Transaction::getExternalId).toList());
+                if (committed.isEmpty()) {
+                    throw e;
+                }
+                log.warn("Batch items already committed by a concurrent request: externalIds={}", committed.keySet());
+                completed.putAll(committed);
+                plan = plan(items, completed, accounts);
+            }
+        }
+
+        List<OutboxEvent> events = new ArrayList<>(plan.transactions().size());
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        for (Transaction transaction : plan.transactions()) {
+            stripedBalanceService.debit(transaction.getSender(), transaction.getAmount());
+            stripedBalanceService.credit(transaction.getReceiver(), transaction.getAmount());
+            events.add(toOutboxEvent(transaction));
+            idempotencyService.record(TransferService.mapToResponse(transaction));
+            totalAmount = totalAmount.add(transaction.getAmount());
+        }
+        outboxWriter.saveEvents(events);
+
+        transferMetrics.recordAmount(totalAmount);
+
+        log.info("Batch transfer completed: size={}, succeeded={}, replayed={}, failed={}",
+                items.size(), plan.transactions().size(), plan.replayed(), plan.failed());
+        return new TransferDTO.BatchResponse(items.size(), plan.transactions().size(), plan.replayed(), plan.failed(), plan.results());
+    }
+
+    /**
+     * Результаты элементов пакета и проводки к вставке.
+     */
+    private record BatchPlan(List<TransferDTO.BatchItemResult> results, List<Transaction> transactions, int replayed, int failed) {}
+
+    /**
+     * Проверяет элементы в порядке запроса и строит проводки, не меняя счета:
+     * балансы ведутся в копии с учетом предыдущих элементов пакета.
+     */
+    private BatchPlan plan(List<TransferDTO.PerformRequest> items,
+                           Map<UUID, TransferDTO.Response> completed,
+                           Map<Long, Account> accounts) {
+        Map<UUID, TransferDTO.Response> seen = new HashMap<>(completed);
+
+        // Текущие балансы с учетом уже примененных элементов пакета (для striped счетов - сумма слотов)
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        accounts.values().forEach(account -> balances.put(account.getId(), stripedBalanceService.availableBalance(account)));
+
+        List<TransferDTO.BatchItemResult> results = new ArrayList<>(items.size());
+        List<Transaction> transactions = new ArrayList<>();
+        int replayed = 0;
+        int failed = 0;
+
+        for (TransferDTO.PerformRequest item : items) {
+            TransferDTO.Response existing = seen.get(item.externalId());
+            if (existing != null) {
+                results.add(new TransferDTO.BatchItemResult(item.externalId(), true, existing));
+                replayed++;
+                continue;
+            }
+
+            String error = validate(item, accounts, balances);
+            if (error != null) {
+                log.warn("Batch item rejected: externalId={}, reason={}", item.externalId(), error);
+                results.add(new TransferDTO.BatchItemResult(item.externalId(), false, failedResponse(item, error)));
+                failed++;
+                continue;
+            }
+
+            Account sender = accounts.get(item.fromAccountId());
+            Account receiver = accounts.get(item.toAccountId());
+            balances.merge(sender.getId(), item.amount().negate(), BigDecimal::add);
+            balances.merge(receiver.getId(), item.amount(), BigDecimal::add);
+
+            Transaction transaction = Transaction.builder()
+                    .id(UUID.randomUUID())
+                    .externalId(item.externalId())
+                    .sender(sender)
+                    .receiver(receiver)
+                    .amount(item.amount())
+                    .currency(sender.getCurrency())
+                    .timestamp(LocalDateTime.now())
+                    .status(TransactionStatus.SUCCESS)
+                    .build();
+            transactions.add(transaction);
+
+            TransferDTO.Response response = TransferService.mapToResponse(transaction);
+            seen.put(item.externalId(), response);
+            results.add(new TransferDTO.BatchItemResult(item.externalId(), false, response));
+        }
+        return new BatchPlan(results, transactions, replayed, failed);
+    }
+
+    private TransferDTO.BatchResponse performBatchInLedger(LedgerEngine engine, List<TransferDTO.PerformRequest> items) {
+        // Вне транзакции repository читал бы с реплики и мог не увидеть только что закоммиченный повтор
+        Map<UUID, TransferDTO.Response> completed = new HashMap<>(ReadConsistency.onPrimary(() ->
+                idempotencyService.findExistingAll(externalIdsOf(items))));
+
+        long deadline = engine.ackDeadline();
+        // Повтор externalId внутри пакета в движок не уходит: он ждет первое вхождение и считается replayed
+        Map<UUID, CompletableFuture<TransferDTO.Response>> submitted = new HashMap<>();
+        List<Boolean> repeated = new ArrayList<>(items.size());
+        for (TransferDTO.PerformRequest item : items) {
+            repeated.add(completed.containsKey(item.externalId()) || submitted.containsKey(item.externalId()));
+            if (!repeated.getLast()) {
+                submitted.put(item.externalId(), engine.submitTransfer(item));
+            }
+        }
+
+        List<TransferDTO.BatchItemResult> results = new ArrayList<>(items.size());
+        int succeeded = 0;
+        int replayed = 0;
+        int failed = 0;
+
+        for (int i = 0; i < items.size(); i++) {
+            TransferDTO.PerformRequest item = items.get(i);
+            TransferDTO.Response response = completed.get(item.externalId());
+            if (response == null) {
+                try {
+                    response = engine.await(submitted.get(item.externalId()), deadline);
+                } catch (IllegalArgumentException e) {
+                    log.warn("Batch item rejected: externalId={}, reason={}", item.externalId(), e.getMessage());
+                    results.add(new TransferDTO.BatchItemResult(item.externalId(), false, failedResponse(item, e.getMessage())));
+                    failed++;
+                    continue;
+                } catch (DataIntegrityViolationException e) {
+                    // Журнал отклонил проводку: тот же externalId уже закоммичен параллельным запросом
+                    response = idempotencyService.findCommitted(item.externalId()).orElseThrow(() -> e);
+                    completed.put(item.externalId(), response);
+                    repeated.set(i, true);
+                }
+            }
+            if (repeated.get(i)) {
+                results.add(new TransferDTO.BatchItemResult(item.externalId(), true, response));
+                replayed++;
+            } else {
+                completed.put(item.externalId(), response);
+                results.add(new TransferDTO.BatchItemResult(item.externalId(), false, response));
+                succeeded++;
+            }
+        }
+        accountCache.invalidateAfterCommit(accountIdsOf(items));
+
+        log.info("Batch transfer completed: size={}, succeeded={}, replayed={}, failed={}",
+                items.size(), succeeded, replayed, failed);
+        return new TransferDTO.BatchResponse(items.size(), succeeded, replayed, failed, results);
+    }
+
+    private static Set<Long> accountIdsOf(List<TransferDTO.PerformRequest> items) {
+        return items.stream()
+                .flatMap(item -> Stream.of(item.fromAccountId(), item.toAccountId()))
+                .collect(Collectors.toSet());
+    }
+
+    private static Set<UUID> externalIdsOf(List<TransferDTO.PerformRequest> items) {
+        return items.stream().map(TransferDTO.PerformRequest::externalId).collect(Collectors.toSet());
+    }
+
+    /**
+     * Те же проверки, что и в одиночном переводе, но без исключений:
+     * возвращает текст ошибки или null, если перевод допустим.
+     */
+    private String validate(TransferDTO.PerformRequest item, Map<Long, Account> accounts, Map<Long, BigDecimal> balances) {
+        if (item.fromAccountId().equals(item.toAccountId())) {
+            return "Self-transfer is not allowed";
+        }
+        Account sender = accounts.get(item.fromAccountId());
+        if (sender == null) {
+            return "Account not found: " + item.fromAccountId();
+        }
+        Account receiver = accounts.get(item.toAccountId());
+        if (receiver == null) {
+            return "Account not found: " + item.toAccountId();
+        }
+        if (!sender.getCurrency().equals(receiver.getCurrency())) {
+            return "Cross-currency transfers are not supported";
+        }
+        if (balances.get(sender.getId()).compareTo(item.amount()) < 0) {
+            return "Insufficient funds";
+        }
+        return null;
+    }
+
+    private TransferDTO.Response failedResponse(TransferDTO.PerformRequest item, String error) {
+        return new TransferDTO.Response(
+                null,
+                item.externalId(),
+                item.fromAccountId(),
+                item.toAccountId(),
+                item.amount(),
+                null,
+                TransactionStatus.FAILED,
+                LocalDateTime.now(),
+                error
+        );
+    }
+
+    private OutboxEvent toOutboxEvent(Transaction transaction) {
+        var event = new TransferCompletedEvent(
+                transaction.getId(),
+                transaction.getSender().getId(),
+                transaction.getReceiver().getId(),
+                transaction.getAmount(),
+                transaction.getCurrency()
+        );
+        return outboxWriter.toOutboxEvent(transaction.getId().toString(), "TRANSFER_COMPLETED", event);
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.Silexj.payment_engine.service;
+
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.dto.event.TransferCompletedEvent;
+import com.github.Silexj.payment_engine.model.OutboxEvent;
+import com.github.Silexj.payment_engine.model.TransactionStatus;
+import com.github.Silexj.payment_engine.repository.LedgerJdbcRepository;
+import com.github.Silexj.payment_engine.repository.TransactionRepository;
+import com.github.Silexj.payment_engine.service.TransferMetrics.Operation;
+import com.github.Silexj.payment_engine.service.TransferMetrics.Stage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ConditionalUpdateTransferService {
+
+    private final LedgerJdbcRepository ledgerJdbcRepository;
+    private final TransactionRepository transactionRepository;
+    private final OutboxWriterService outboxWriter;
+    private final TransferMetrics transferMetrics;
+    private final StripedBalanceService stripedBalanceService;
+
+    /**
+     * Выполняет перевод одним SQL выражением (режим app.transfer.mode=CONDITIONAL_UPDATE).
+     * Вместо отдельных SELECT идемпотентности, двух findByIdWithLock, UPDATE и двух INSERT
+     * весь перевод уходит в БД одним round trip.
+     *
+     * Причина отказа определяется по числу затронутых строк: если проводка не вставлена,
+     * то либо такой externalId уже есть (идемпотентный повтор), либо счет не найден,
+     * либо не совпадают валюты, либо не хватает средств. Семантика ошибок совпадает с JPA путем.
+     *
+     * Если под блокировкой счет оказался striped (флаг isStriped на этом узле отстал), проводка
+     * не вставляется и бросается StripedAccountException: вызывающий выполняет перевод через слоты.
+     */
+    @Transactional
+    public TransferDTO.Response performTransfer(TransferDTO.PerformRequest request) {
+        if (request.fromAccountId().equals(request.toAccountId())) {
+            throw new IllegalArgumentException("Self-transfer is not allowed");
+        }
+
+        transferMetrics.recordCommit(Operation.TRANSFER);
+        long stageStart = System.nanoTime();
+
+        UUID transactionId = UUID.randomUUID();
+        LocalDateTime timestamp = LocalDateTime.now();
+        OutboxEvent event = outboxWriter.toOutboxEvent(
+                transactionId.toString(),
+                "TRANSFER_COMPLETED",
+                new TransferCompletedEvent(transactionId, request.fromAccountId(), request.toAccountId(),
+                        request.amount(), null)
+        );
+        stageStart = transferMetrics.record(Operation.TRANSFER, Stage.OUTBOX_WRITE, stageStart);
+
+        var result = ledgerJdbcRepository.transferConditionally(transactionId, request.externalId(),
+                request.fromAccountId(), request.toAccountId(), request.amount(), timestamp, event);
+        transferMetrics.record(Operation.TRANSFER, Stage.CONDITIONAL_UPDATE, stageStart);
+
+        if (result.existingTransactionId() != null) {
+            log.warn("Duplicate request detected. Returning existing transaction: {}", result.existingTransactionId());
+            return findExisting(request);
+        }
+
+        if (result.striped()) {
+            log.info("Account became striped, switching to slot transfer: from={}, to={}",
+                    request.fromAccountId(), request.toAccountId());
+            stripedBalanceService.markStriped(request.fromAccountId(), result.senderSlots() > 0);
+            stripedBalanceService.markStriped(request.toAccountId(), result.receiverSlots() > 0);
+            throw new StripedAccountException();
+        }
+
+        if (result.inserted() == 0) {
+            rejectTransfer(request, result);
+            log.warn("Concurrent duplicate request detected: externalId={}", request.externalId());
+            return findExisting(request);
+        }
+
+        if (result.debited() != 1 || result.credited() != 1 || result.published() != 1) {
+            throw new IllegalStateException("Conditional transfer affected unexpected rows: " + result);
+        }
+
+        transferMetrics.recordAmount(request.amount());
+
+        log.info("Transfer completed successfully: txId={}", transactionId);
+        return new TransferDTO.Response(
+                transactionId,
+                request.externalId(),
+                request.fromAccountId(),
+                request.toAccountId(),
+                request.amount(),
+                result.senderCurrency(),
+                TransactionStatus.SUCCESS,
+                timestamp,
+                null
+        );
+    }
+
+    /**
+     * Восстанавливает причину отказа по состоянию счетов на момент блокировки.
+     * Если все проверки проходят, проводку не вставил конфликт по external_id (конкурентный дубль).
+     */
+    private void rejectTransfer(TransferDTO.PerformRequest request, LedgerJdbcRepository.ConditionalTransferResult result) {
+        if (result.senderCurrency() == null) {
+            throw new IllegalArgumentException("Account not found: " + request.fromAccountId());
+        }
+        if (result.receiverCurrency() == null) {
+            throw new IllegalArgumentException("Account not found: " + request.toAccountId());
+        }
+        if (!result.senderCurrency().equals(result.receiverCurrency())) {
+            log.error("Currency mismatch: sender={}, receiver={}", result.senderCurrency(), result.receiverCurrency());
+            throw new IllegalArgumentException("Cross-currency transfers are not supported");
+        }
+        if (result.senderBalance().compareTo(request.amount()) < 0) {
+            log.warn("Insufficient funds: accountId={}, balance={}, required={}",
+                    request.fromAccountId(), result.senderBalance(), request.amount());
+            throw new IllegalArgumentException("Insufficient funds");
+        }
+    }
+
+    private TransferDTO.Response findExisting(TransferDTO.PerformRequest request) {
+        return transactionRepository.findByExternalId(request.externalId())
+                .map(TransferService::mapToResponse)
+                .orElseThrow(() -> new IllegalStateException(
+                        "Transaction not found after conflict: externalId=" + request.externalId()));
+    }
+}
@@ -0,0 +1,222 @@
+package com.github.Silexj.payment_engine.service;
+
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.dto.event.TransferCompletedEvent;
+import com.github.Silexj.payment_engine.model.Account;
+import com.github.Silexj.payment_engine.model.Transaction;
+import com.github.Silexj.payment_engine.model.TransactionStatus;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.TransactionRepository;
+import com.github.Silexj.payment_engine.service.TransferMetrics.Operation;
+import com.github.Silexj.payment_engine.service.TransferMetrics.Stage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Перевод без блокировок строк (режим app.transfer.mode=OPTIMISTIC).
+ *
+ * Счета читаются обычным SELECT, изменения балансов уходят при flush как
+ * UPDATE ... WHERE version = ?. Если за время перевода счет изменил кто-то другой,
+ * Hibernate бросает OptimisticLockException, транзакция откатывается и перевод повторяется
+ * (до app.transfer.optimistic.max-attempts раз, пауза - случайная в пределах экспоненциально растущего окна).
+ *
+ * Большинство пар счетов почти не конкурирует, и такой перевод не ждет блокировок на primary.
+ * Для конкурентных счетов повторы только добавляют нагрузку, поэтому:
+ * - конфликты считаются по счетам (AccountConflictTracker), и "горячие" счета временно
+ *   обслуживаются PessimisticTransferService сразу;
+ * - исчерпав попытки, перевод выполняется через PessimisticTransferService.
+ * Striped счета всегда идут пессимистичным путем (слоты баланса блокируются FOR UPDATE).
+ */
+@Service
+@Slf4j
+public class OptimisticTransferService {
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final OutboxWriterService outboxWriter;
+    private final PessimisticTransferService pessimisticTransferService;
+    private final AccountConflictTracker conflictTracker;
+    private final TransferMetrics transferMetrics;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int maxAttempts;
+    private final long backoffBaseNanos;
+    private final long backoffMaxNanos;
+
+    private final Counter conflicts;
+    private final Counter hotAccountFallbacks;
+    private final Counter exhaustedFallbacks;
+
+    public OptimisticTransferService(AccountRepository accountRepository,
+                                     TransactionRepository transactionRepository,
+                                     OutboxWriterService outboxWriter,
+                                     PessimisticTransferService pessimisticTransferService,
+                                     AccountConflictTracker conflictTracker,
+                                     TransferMetrics transferMetrics,
+                                     PlatformTransactionManager transactionManager,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${app.transfer.optimistic.max-attempts:3}") int maxAttempts,
+                                     @Value("${app.transfer.optimistic.backoff-base:5ms}") Duration backoffBase,
+                                     @Value("${app.transfer.optimistic.backoff-max:50ms}") Duration backoffMax) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.outboxWriter = outboxWriter;
+        this.pessimisticTransferService = pessimisticTransferService;
+        this.conflictTracker = conflictTracker;
+        this.transferMetrics = transferMetrics;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffBaseNanos = backoffBase.toNanos();
+        this.backoffMaxNanos = backoffMax.toNanos();
+
+        this.conflicts = Counter.builder("transfer.optimistic.conflicts")
+                .description("Optimistic transfer attempts rolled back on an account version conflict")
+                .register(meterRegistry);
+        this.hotAccountFallbacks = fallbackCounter(meterRegistry, "hot_account");
+        this.exhaustedFallbacks = fallbackCounter(meterRegistry, "retries_exhausted");
+    }
+
+    /**
+     * Выполняет перевод. Транзакциями управляет сам (каждая попытка - отдельная транзакция),
+     * поэтому вызывается вне транзакции.
+     */
+    public TransferDTO.Response performTransfer(TransferDTO.PerformRequest request) {
+        if (request.fromAccountId().equals(request.toAccountId())) {
+            throw new IllegalArgumentException("Self-transfer is not allowed");
+        }
+        if (conflictTracker.isPessimistic(request.fromAccountId(), request.toAccountId())) {
+            hotAccountFallbacks.increment();
+            return pessimisticTransferService.performTransfer(request);
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                TransferDTO.Response response = transactionTemplate.execute(status -> attemptTransfer(request));
+                transferMetrics.recordAmount(request.amount());
+                log.info("Transfer completed successfully: txId={}, attempt={}", response.transactionId(), attempt);
+                return response;
+            } catch (StripedAccountException e) {
+                return pessimisticTransferService.performTransfer(request);
+            } catch (OptimisticLockingFailureException e) {
+                conflicts.increment();
+                boolean hot = conflictTracker.recordConflict(conflictingAccounts(e, request));
+                if (hot || attempt >= maxAttempts) {
+                    (hot ? hotAccountFallbacks : exhaustedFallbacks).increment();
+                    log.warn("Optimistic transfer gave up after {} attempts, using row locks: externalId={}",
+                            attempt, request.externalId());
+                    return pessimisticTransferService.performTransfer(request);
+                }
+                log.debug("Version conflict, retrying transfer: externalId={}, attempt={}", request.externalId(), attempt);
+                backoff(attempt);
+            }
+        }
+    }
+
+    private TransferDTO.Response attemptTransfer(TransferDTO.PerformRequest request) {
+        transferMetrics.recordCommit(Operation.TRANSFER);
+        long stageStart = System.nanoTime();
+
+        // Отсутствующий счет сообщается в том же порядке, что и в пессимистичном пути
+        Long firstId = Math.min(request.fromAccountId(), request.toAccountId());
+        Long secondId = Math.max(request.fromAccountId(), request.toAccountId());
+        Account first = accountRepository.findById(firstId)
+                .orElseThrow(() -> new IllegalArgumentException("Account not found: " + firstId));
+        Account second = accountRepository.findById(secondId)
+                .orElseThrow(() -> new IllegalArgumentException("Account not found: " + secondId));
+        if (first.getBalanceSlots() > 0 || second.getBalanceSlots() > 0) {
+            throw new StripedAccountException();
+        }
+
+        Account sender = first.getId().equals(request.fromAccountId()) ? first : second;
+        Account receiver = first.getId().equals(request.toAccountId()) ? first : second;
+        validateTransfer(sender, receiver, request);
+        stageStart = transferMetrics.record(Operation.TRANSFER, Stage.VALIDATION, stageStart);
+
+        sender.setBalance(sender.getBalance().subtract(request.amount()));
+        receiver.setBalance(receiver.getBalance().add(request.amount()));
+        stageStart = transferMetrics.record(Operation.TRANSFER, Stage.BALANCE_UPDATE, stageStart);
+
+        Transaction transaction = transactionRepository.save(Transaction.builder()
+                .id(UUID.randomUUID())
+                .externalId(request.externalId())
+                .sender(sender)
+                .receiver(receiver)
+                .amount(request.amount())
+                .currency(sender.getCurrency())
+                .timestamp(LocalDateTime.now())
+                .status(TransactionStatus.SUCCESS)
+                .build());
+        stageStart = transferMetrics.record(Operation.TRANSFER, Stage.JOURNAL_WRITE, stageStart);
+
+        outboxWriter.saveEvent(transaction.getId().toString(), "TRANSFER_COMPLETED", new TransferCompletedEvent(
+                transaction.getId(), sender.getId(), receiver.getId(), transaction.getAmount(), transaction.getCurrency()));
+        stageStart = transferMetrics.record(Operation.TRANSFER, Stage.OUTBOX_WRITE, stageStart);
+
+        // Проверка версий счетов происходит здесь: UPDATE ... WHERE version = ?
+        transactionRepository.flush();
+        transferMetrics.record(Operation.TRANSFER, Stage.FLUSH, stageStart);
+
+        return TransferService.mapToResponse(transaction);
+    }
+
+    private void validateTransfer(Account sender, Account receiver, TransferDTO.PerformRequest request) {
+        if (!sender.getCurrency().equals(receiver.getCurrency())) {
+            log.error("Currency mismatch: sender={}, receiver={}", sender.getCurrency(), receiver.getCurrency());
+            throw new IllegalArgumentException("Cross-currency transfers are not supported");
+        }
+        if (sender.getBalance().compareTo(request.amount()) < 0) {
+            log.warn("Insufficient funds: accountId={}, balance={}, required={}",
+                    sender.getId(), sender.getBalance(), request.amount());
+            throw new IllegalArgumentException("Insufficient funds");
+        }
+    }
+
+    /**
+     * Счет, версия которого не совпала; если Hibernate его не сообщил - оба счета перевода.
+     */
+    private static List<Long> conflictingAccounts(OptimisticLockingFailureException e, TransferDTO.PerformRequest request) {
+        if (e instanceof ObjectOptimisticLockingFailureException objectFailure
+                && objectFailure.getIdentifier() instanceof Long accountId) {
+            return List.of(accountId);
+        }
+        return List.of(request.fromAccountId(), request.toAccountId());
+    }
+
+    /**
+     * Full jitter: случайная пауза от 0 до min(backoff-max, backoff-base * 2^(attempt-1)),
+     * чтобы конфликтующие переводы не повторялись синхронно.
+     */
+    private void backoff(int attempt) {
+        long window = Math.min(backoffMaxNanos, backoffBaseNanos << Math.min(attempt - 1, 20));
+        if (window <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(window + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying transfer", e);
+        }
+    }
+
+    private static Counter fallbackCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("transfer.optimistic.fallbacks")
+                .description("Optimistic transfers executed with row locks instead")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
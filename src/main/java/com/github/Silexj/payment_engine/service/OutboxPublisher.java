@@ -0,0 +1,290 @@
+package com.github.Silexj.payment_engine.service;
+
+import com.github.Silexj.payment_engine.config.OutboxRelayMode;
+import com.github.Silexj.payment_engine.config.datasource.ReadConsistency;
+import com.github.Silexj.payment_engine.model.OutboxEvent;
+import com.github.Silexj.payment_engine.repository.OutboxEventRepository;
+import com.github.Silexj.payment_engine.scheduler.OutboxProcessor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fast path доставки Outbox: события отправляются в Kafka сразу после коммита транзакции,
+ * не дожидаясь следующего прохода OutboxProcessor.
+ *
+ * Строка outbox_events по-прежнему пишется в той же транзакции, что и бизнес-данные, поэтому гарантии Outbox
+ * сохраняются: если отправка не удалась или узел упал до подтверждения, событие остается PENDING
+ * и его отправит поллер (он берет только события старше app.outbox.fast-path.grace-period).
+ * Grace-period касается только событий, зарегистрированных здесь (outbox_events.fast_path):
+ * события, записанные мимо OutboxPublisher, поллер забирает сразу.
+ *
+ * Подтвержденные брокером события помечаются PROCESSED пакетами отдельным потоком,
+ * чтобы не делать UPDATE на каждое сообщение.
+ *
+ * Порядок внутри aggregateId: после сбоя отправки агрегат уходит с fast path, и его следующие события
+ * остаются поллеру (он отправит их после упавшего, в порядке created_at). Уже отправленные события агрегата,
+ * подтвержденные после сбоя, тоже остаются PENDING и уйдут повторно вслед за ним, как в OutboxProcessor.
+ * Агрегат возвращается на fast path, когда у него не остается PENDING событий.
+ */
+@Service
+@Slf4j
+public class OutboxPublisher {
+
+    private static final int RELEASE_BATCH_SIZE = 1000;
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final OutboxEventRepository outboxRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+    private final String topicName;
+    private final long ackFlushIntervalMs;
+    private final boolean deleteOnPublish;
+
+    private final BlockingQueue<UUID> acknowledged = new LinkedBlockingQueue<>();
+    private final Thread ackWriter;
+    private final ThreadPoolExecutor sender;
+    private volatile boolean running = true;
+
+    /**
+     * Агрегаты, отправка события которых по fast path не удалась. Меняется потоком отправки
+     * и callback-ами producer; снимается только в потоке отправки (releaseDrainedAggregates).
+     */
+    private final Set<String> failedAggregates = ConcurrentHashMap.newKeySet();
+
+    private final Timer publishLatency;
+    private final Counter fallbacks;
+
+    public OutboxPublisher(KafkaTemplate<String, String> kafkaTemplate,
+                           OutboxEventRepository outboxRepository,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.outbox.fast-path.enabled:true}") boolean enabled,
+                           @Value("${app.outbox.relay:POLLING}") OutboxRelayMode relayMode,
+                           @Value("${app.kafka.topic-name}") String topicName,
+                           @Value("${app.outbox.fast-path.ack-flush-interval:10}") long ackFlushIntervalMs,
+                           @Value("${app.outbox.fast-path.queue-capacity:10000}") int queueCapacity,
+                           @Value("${app.outbox.delete-on-publish:false}") boolean deleteOnPublish) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.outboxRepository = outboxRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // WAL relay и так отправляет каждую вставку сразу после коммита
+        this.enabled = enabled && relayMode == OutboxRelayMode.POLLING;
+        this.topicName = topicName;
+        this.ackFlushIntervalMs = ackFlushIntervalMs;
+        this.deleteOnPublish = deleteOnPublish;
+        this.ackWriter = new Thread(this::writeAcknowledgements, "outbox-ack-writer");
+        // Один поток сохраняет порядок отправки и не дает недоступному брокеру (max.block.ms)
+        // задерживать поток запроса. При переполнении очереди события остаются поллеру.
+        this.sender = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> new Thread(r, "outbox-fast-path"));
+
+        this.publishLatency = Timer.builder("outbox.publish.latency")
+                .description("Time from outbox event creation to broker acknowledgement on the fast path")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.fallbacks = Counter.builder("outbox.publish.fallback")
+                .description("Fast path sends that failed and were left to the outbox poller")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            ackWriter.start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        sender.shutdown();
+        sender.awaitTermination(5, TimeUnit.SECONDS);
+        ackWriter.interrupt();
+        ackWriter.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * Регистрирует события текущей транзакции для отправки после коммита.
+     * Все события транзакции копятся в одном списке и уходят одной пачкой в порядке записи.
+     * При откате транзакции ничего не отправляется.
+     * Возвращает true, если события будут отправлены (их строки пишутся с fast_path = TRUE).
+     */
+    public boolean publishAfterCommit(List<OutboxEvent> events) {
+        if (!enabled || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<OutboxEvent> pending = (List<OutboxEvent>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<OutboxEvent> transactionEvents = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, transactionEvents);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(OutboxPublisher.this);
+                    if (status == STATUS_COMMITTED) {
+                        submit(transactionEvents);
+                    }
+                }
+            });
+            pending = transactionEvents;
+        }
+        pending.addAll(events);
+        return true;
+    }
+
+    /**
+     * Включен ли fast path: реактивный API пишет по нему fast_path события до вызова publishCommitted.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Отправляет события уже закоммиченной транзакции (реактивный API, где нет TransactionSynchronization).
+     */
+    public void publishCommitted(List<OutboxEvent> events) {
+        if (enabled) {
+            submit(events);
+        }
+    }
+
+    private void submit(List<OutboxEvent> events) {
+        try {
+            sender.execute(() -> send(events));
+        } catch (RejectedExecutionException e) {
+            fallbacks.increment(events.size());
+            log.warn("Fast path queue is full, leaving {} events to the poller", events.size());
+        }
+    }
+
+    private void send(List<OutboxEvent> events) {
+        for (OutboxEvent event : events) {
+            String aggregateId = event.getAggregateId();
+            if (failedAggregates.contains(aggregateId)) {
+                fallbacks.increment();
+                log.debug("Aggregate {} has undelivered events, leaving event to the poller: {}", aggregateId, event.getId());
+                continue;
+            }
+            try {
+                kafkaTemplate.send(OutboxProcessor.toProducerRecord(topicName, event)).whenComplete((result, error) -> {
+                    if (error != null) {
+                        failedAggregates.add(aggregateId);
+                        fallbacks.increment();
+                        log.warn("Fast path send failed, leaving event to the poller: {}", event.getId());
+                        return;
+                    }
+                    // Callback-и одной партиции вызываются по порядку: событие, отправленное до сбоя
+                    // предыдущего события агрегата, не подтверждаем - поллер отправит его повторно после упавшего
+                    if (failedAggregates.contains(aggregateId)) {
+                        log.warn("Event deferred after earlier failure of aggregate {}: {}", aggregateId, event.getId());
+                        return;
+                    }
+                    acknowledged.add(event.getId());
+                    if (event.getCreatedAt() != null) {
+                        publishLatency.record(Duration.between(event.getCreatedAt(), LocalDateTime.now()));
+                    }
+                });
+            } catch (RuntimeException e) {
+                failedAggregates.add(aggregateId);
+                fallbacks.increment();
+                log.warn("Fast path send failed, leaving event to the poller: {}", event.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * Возвращает на fast path агрегаты, у которых поллер уже разобрал все PENDING события.
+     * Проверка идет в потоке отправки: событие агрегата, закоммиченное после проверки, встанет в очередь за ней
+     * и будет первым отправленным по fast path, так что обогнать ему нечего.
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.fast-path.release-interval:1000}")
+    public void releaseDrainedAggregates() {
+        if (failedAggregates.isEmpty()) {
+            return;
+        }
+        try {
+            sender.execute(() -> {
+                List<String> candidates = failedAggregates.stream().limit(RELEASE_BATCH_SIZE).toList();
+                try {
+                    Set<String> pending = new HashSet<>(ReadConsistency.onPrimary(() ->
+                            outboxRepository.findPendingAggregateIds(candidates)));
+                    candidates.stream()
+                            .filter(aggregateId -> !pending.contains(aggregateId))
+                            .forEach(failedAggregates::remove);
+                } catch (RuntimeException e) {
+                    log.warn("Failed to check pending events of {} aggregates", candidates.size(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Fast path queue is full, postponing release of failed aggregates");
+        }
+    }
+
+    private void writeAcknowledgements() {
+        List<UUID> batch = new ArrayList<>();
+        while (running) {
+            try {
+                UUID first = acknowledged.poll(ackFlushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                acknowledged.drainTo(batch);
+                flush(batch);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        acknowledged.drainTo(batch);
+        flush(batch);
+    }
+
+    private void flush(List<UUID> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (deleteOnPublish) {
+                    outboxRepository.deletePublished(batch);
+                } else {
+                    outboxRepository.markProcessed(batch, LocalDateTime.now());
+                }
+            });
+        } catch (RuntimeException e) {
+            // Строки останутся PENDING, поллер отправит их повторно (at-least-once)
+            log.error("Failed to mark {} outbox events as processed", batch.size(), e);
+        }
+        batch.clear();
+    }
+}
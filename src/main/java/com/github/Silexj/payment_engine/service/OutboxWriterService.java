@@ -2,6 +2,7 @@ package com.github.Silexj.payment_engine.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.Silexj.payment_engine.model.OutboxEvent;
+import com.github.Silexj.payment_engine.repository.LedgerJdbcRepository;
 import com.github.Silexj.payment_engine.repository.OutboxEventRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
@@ -10,6 +11,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 
 @Service
@@ -19,27 +22,47 @@ public class OutboxWriterService {
 
     private final OutboxEventRepository outboxRepository;
     private final ObjectMapper objectMapper;
-
+    private final LedgerJdbcRepository ledgerJdbcRepository;
+    private final OutboxPublisher outboxPublisher;
 
     /**
      * Сохраняет событие в БД.
      * aggregateId - ID сущности (AccountId или TransactionId). Используется как partition key в Kafka.
      * type - Строковой тип события.
+     * После коммита событие сразу уходит в Kafka через OutboxPublisher (поллер - запасной путь).
      */
     @Transactional(propagation = Propagation.MANDATORY) // Только внутри существующей транзакции
-    @SneakyThrows
     public void saveEvent(String aggregateId, String type, Object eventPayload) {
+        OutboxEvent event = toOutboxEvent(aggregateId, type, eventPayload);
+        event.setFastPath(outboxPublisher.publishAfterCommit(List.of(event)));
+        outboxRepository.save(event);
+    }
+
+    /**
+     * Пакетная запись событий одним JDBC batch (используется пакетными переводами).
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void saveEvents(List<OutboxEvent> events) {
+        boolean fastPath = outboxPublisher.publishAfterCommit(events);
+        events.forEach(event -> event.setFastPath(fastPath));
+        ledgerJdbcRepository.insertOutboxEvents(events);
+    }
+
+    /**
+     * Сериализует событие в JSON и собирает строку Outbox со статусом PENDING без сохранения.
+     */
+    @SneakyThrows
+    public OutboxEvent toOutboxEvent(String aggregateId, String type, Object eventPayload) {
         String jsonPayload = objectMapper.writeValueAsString(eventPayload);
 
-        OutboxEvent outboxEvent = OutboxEvent.builder()
+        return OutboxEvent.builder()
                 .id(UUID.randomUUID())
                 .aggregateType("PAYMENT_ENGINE")
                 .aggregateId(aggregateId)
                 .type(type)
                 .payload(jsonPayload)
+                .createdAt(LocalDateTime.now())
                 .status("PENDING")
                 .build();
-
-        outboxRepository.save(outboxEvent);
     }
 }
@@ -0,0 +1,143 @@
+package com.github.Silexj.payment_engine.service;
+
+import com.github.Silexj.payment_engine.dto.event.TransferCompletedEvent;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.model.Account;
+import com.github.Silexj.payment_engine.model.OutboxEvent;
+import com.github.Silexj.payment_engine.model.Transaction;
+import com.github.Silexj.payment_engine.model.TransactionStatus;
+import com.github.Silexj.payment_engine.repository.TransactionRepository;
+import com.github.Silexj.payment_engine.service.TransferMetrics.Operation;
+import com.github.Silexj.payment_engine.service.TransferMetrics.Stage;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PessimisticTransferService {
+
+    private final TransactionRepository transactionRepository;
+    private final OutboxWriterService outboxWriter;
+    private final StripedBalanceService stripedBalanceService;
+    private final TransferMetrics transferMetrics;
+
+    /**
+     * Выполняет перевод средств между двумя счетами (режим app.transfer.mode=PESSIMISTIC).
+     * Гарантирует атомарность и защиту от Deadlock через сортировку ID
+     * Идемпотентность проверяет TransferService до вызова (IdempotencyService + уникальный индекс external_id).
+     * Время этапов (ожидание блокировок, запись, flush, commit) пишется в TransferMetrics.
+     */
+    @Transactional
+    public TransferDTO.Response performTransfer(TransferDTO.PerformRequest request) {
+        if (request.fromAccountId().equals(request.toAccountId())) {
+            throw new IllegalArgumentException("Self-transfer is not allowed");
+        }
+
+        Long firstLockId = Math.min(request.fromAccountId(), request.toAccountId());
+        Long secondLockId = Math.max(request.fromAccountId(), request.toAccountId());
+
+        transferMetrics.recordCommit(Operation.TRANSFER);
+
+        Account firstLock = transferMetrics.recordLockWait(Operation.TRANSFER,
+                        () -> stripedBalanceService.findByIdWithLock(firstLockId))
+                .orElseThrow(() -> new IllegalArgumentException("Account not found: " + firstLockId));
+        Account secondLock = transferMetrics.recordLockWait(Operation.TRANSFER,
+                        () -> stripedBalanceService.findByIdWithLock(secondLockId))
+                .orElseThrow(() -> new IllegalArgumentException("Account not found: " + secondLockId));
+
+        Account sender = firstLock.getId().equals(request.fromAccountId()) ? firstLock : secondLock;
+        Account receiver = firstLock.getId().equals(request.toAccountId()) ? firstLock : secondLock;
+
+        long stageStart = System.nanoTime();
+        validateTransfer(sender, receiver, request);
+        stageStart = transferMetrics.record(Operation.TRANSFER, Stage.VALIDATION, stageStart);
+
+        // Слоты striped счетов блокируются в том же порядке ID, что и сами счета
+        for (Account account : List.of(firstLock, secondLock)) {
+            if (account == sender) {
+                stripedBalanceService.debit(sender, request.amount());
+            } else {
+                stripedBalanceService.credit(receiver, request.amount());
+            }
+        }
+        stageStart = transferMetrics.record(Operation.TRANSFER, Stage.BALANCE_UPDATE, stageStart);
+
+        Transaction transaction = saveTransaction(sender, receiver, request);
+        stageStart = transferMetrics.record(Operation.TRANSFER, Stage.JOURNAL_WRITE, stageStart);
+
+        saveOutboxEvent(transaction);
+        stageStart = transferMetrics.record(Operation.TRANSFER, Stage.OUTBOX_WRITE, stageStart);
+
+        // Явный flush отделяет время Hibernate от самого COMMIT
+        transactionRepository.flush();
+        transferMetrics.record(Operation.TRANSFER, Stage.FLUSH, stageStart);
+
+        transferMetrics.recordAmount(request.amount());
+
+        log.info("Transfer completed successfully: txId={}", transaction.getId());
+        return TransferService.mapToResponse(transaction);
+    }
+
+
+    /**
+     * Проверяет возможность выполнения перевода (валюта, баланс)
+     * Баланс striped счета проверяется при списании, под блокировкой его слотов.
+     */
+    private void validateTransfer(Account sender, Account receiver, TransferDTO.PerformRequest request) {
+        if (!sender.getCurrency().equals(receiver.getCurrency())) {
+            log.error("Currency mismatch: sender={}, receiver={}", sender.getCurrency(), receiver.getCurrency());
+            throw new IllegalArgumentException("Cross-currency transfers are not supported");
+        }
+
+        if (sender.getBalanceSlots() == 0 && sender.getBalance().compareTo(request.amount()) < 0) {
+            log.warn("Insufficient funds: accountId={}, balance={}, required={}",
+                    sender.getId(), sender.getBalance(), request.amount());
+            throw new IllegalArgumentException("Insufficient funds");
+        }
+    }
+
+
+    /**
+     * Сохраняет запись о транзакции в базу данных.
+     * Генерирует внутренний ID транзакции.
+     */
+    private Transaction saveTransaction(Account sender, Account receiver, TransferDTO.PerformRequest request) {
+        Transaction transaction = Transaction.builder()
+                .id(UUID.randomUUID())
+                .externalId(request.externalId())
+                .sender(sender)
+                .receiver(receiver)
+                .amount(request.amount())
+                .currency(sender.getCurrency())
+                .timestamp(LocalDateTime.now())
+                .status(TransactionStatus.SUCCESS)
+                .build();
+
+        return transactionRepository.save(transaction);
+    }
+
+    @SneakyThrows
+    private void saveOutboxEvent(Transaction transaction) {
+        var event = new TransferCompletedEvent(
+                transaction.getId(),
+                transaction.getSender().getId(),
+                transaction.getReceiver().getId(),
+                transaction.getAmount(),
+                transaction.getCurrency()
+        );
+
+        outboxWriter.saveEvent(
+                transaction.getId().toString(),
+                "TRANSFER_COMPLETED",
+                event
+        );
+    }
+}
@@ -0,0 +1,201 @@
+package com.github.Silexj.payment_engine.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.StatementJdbcRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Выгрузка выписки по счету за период в CSV или NDJSON.
+ *
+ * Строки идут из серверного курсора прямо в ответ, остаток считается на лету,
+ * поэтому память не зависит от числа строк в периоде. Вся выгрузка читается
+ * в одной readOnly REPEATABLE READ транзакции (может уйти на реплику): остаток на начало периода
+ * и строки периода относятся к одному снимку.
+ */
+@Service
+@Slf4j
+public class StatementService {
+
+    private static final String CSV_HEADER = "timestamp,transaction_id,external_id,direction,counterparty_account_id,amount,currency,status,balance\n";
+
+    private final AccountRepository accountRepository;
+    private final StatementJdbcRepository statementRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate snapshotTransaction;
+    private final Counter exportedRows;
+
+    public StatementService(AccountRepository accountRepository,
+                            StatementJdbcRepository statementRepository,
+                            ObjectMapper objectMapper,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry) {
+        this.accountRepository = accountRepository;
+        this.statementRepository = statementRepository;
+        this.objectMapper = objectMapper;
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setReadOnly(true);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.exportedRows = Counter.builder("statement.rows.exported")
+                .description("Statement rows streamed to clients")
+                .register(meterRegistry);
+    }
+
+    public enum Format {
+        CSV("text/csv"),
+        NDJSON("application/x-ndjson");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported statement format: " + value);
+            }
+        }
+    }
+
+    /**
+     * Одна строка выписки. amount со знаком: минус - списание, плюс - зачисление.
+     * Операции со статусом, отличным от SUCCESS, выводятся, но остаток не меняют.
+     */
+    public record StatementLine(
+            LocalDateTime timestamp,
+            UUID transactionId,
+            UUID externalId,
+            String direction,
+            Long counterpartyAccountId,
+            BigDecimal amount,
+            String currency,
+            String status,
+            BigDecimal balance
+    ) {}
+
+    /**
+     * Проверяет параметры сразу (ошибка - 400 до начала ответа) и возвращает тело,
+     * которое пишет выписку за даты [from, to] включительно.
+     */
+    public StreamingResponseBody export(Long accountId, LocalDate from, LocalDate to, Format format) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Period start must not be after period end");
+        }
+        if (!accountRepository.existsById(accountId)) {
+            throw new IllegalArgumentException("Account not found");
+        }
+        LocalDateTime start = from.atStartOfDay();
+        LocalDateTime end = to.plusDays(1).atStartOfDay();
+
+        return outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            long rows = write(writer, accountId, start, end, format);
+            writer.flush();
+            log.info("Statement exported: accountId={}, from={}, to={}, format={}, rows={}", accountId, from, to, format, rows);
+        };
+    }
+
+    private long write(Writer writer, Long accountId, LocalDateTime start, LocalDateTime end, Format format) throws IOException {
+        try {
+            Long rows = snapshotTransaction.execute(status -> {
+                BigDecimal[] balance = {statementRepository.findOpeningBalance(accountId, start)};
+                long[] count = {0};
+                try {
+                    if (format == Format.CSV) {
+                        writer.write(CSV_HEADER);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                statementRepository.streamPeriod(accountId, start, end, rs -> {
+                    boolean outgoing = rs.getLong("sender_account_id") == accountId;
+                    BigDecimal amount = outgoing ? rs.getBigDecimal("amount").negate() : rs.getBigDecimal("amount");
+                    String txStatus = rs.getString("status");
+                    if ("SUCCESS".equals(txStatus)) {
+                        balance[0] = balance[0].add(amount);
+                    }
+                    StatementLine line = new StatementLine(
+                            rs.getTimestamp("timestamp").toLocalDateTime(),
+                            rs.getObject("id", UUID.class),
+                            rs.getObject("external_id", UUID.class),
+                            outgoing ? "DEBIT" : "CREDIT",
+                            outgoing ? rs.getLong("receiver_account_id") : rs.getObject("sender_account_id", Long.class),
+                            amount,
+                            rs.getString("currency"),
+                            txStatus,
+                            balance[0]
+                    );
+                    try {
+                        writeLine(writer, line, format);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0]++;
+                });
+                return count[0];
+            });
+            exportedRows.increment(rows == null ? 0 : rows);
+            return rows == null ? 0 : rows;
+        } catch (UncheckedIOException e) {
+            // Клиент закрыл соединение - курсор и транзакция уже освобождены
+            throw e.getCause();
+        }
+    }
+
+    private void writeLine(Writer writer, StatementLine line, Format format) throws IOException {
+        if (format == Format.NDJSON) {
+            writer.write(objectMapper.writeValueAsString(line));
+            writer.write('\n');
+            return;
+        }
+        writer.write(line.timestamp().toString());
+        writer.write(',');
+        writer.write(line.transactionId().toString());
+        writer.write(',');
+        writer.write(line.externalId().toString());
+        writer.write(',');
+        writer.write(line.direction());
+        writer.write(',');
+        writer.write(line.counterpartyAccountId() == null ? "" : line.counterpartyAccountId().toString());
+        writer.write(',');
+        writer.write(line.amount().toPlainString());
+        writer.write(',');
+        writer.write(line.currency());
+        writer.write(',');
+        writer.write(line.status());
+        writer.write(',');
+        writer.write(line.balance().toPlainString());
+        writer.write('\n');
+    }
+}
@@ -0,0 +1,9 @@
+package com.github.Silexj.payment_engine.service;
+
+/**
+ * Счет операции оказался striped, хотя путь выполнения рассчитан на обычный счет
+ * (флаг в памяти узла отстал или striped счет обнаружен после чтения/блокировки).
+ * Попытка откатывается, и операция выполняется через слоты баланса.
+ */
+public class StripedAccountException extends RuntimeException {
+}
@@ -0,0 +1,169 @@
+package com.github.Silexj.payment_engine.service;
+
+import com.github.Silexj.payment_engine.model.Account;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.BalanceSlotOperations;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Операции с балансом с учетом "горячих" (striped) счетов.
+ *
+ * Баланс striped счета разбит на N строк account_balance_slots:
+ * зачисление увеличивает случайный слот и держит только разделяемую блокировку строки accounts,
+ * поэтому параллельные зачисления на один счет не выстраиваются в очередь.
+ * Списание блокирует все слоты счета и забирает средства из нескольких слотов при необходимости.
+ *
+ * Для обычного счета методы просто меняют поле balance сущности (UPDATE уходит при flush).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StripedBalanceService {
+
+    private final AccountRepository accountRepository;
+    private final BalanceSlotOperations slotRepository;
+
+    /**
+     * ID striped счетов. Нужен, чтобы выбрать тип блокировки до чтения строки.
+     * Может отставать от БД (другой узел перевел счет в другой режим): findByIdWithLock перепроверяет флаг после блокировки.
+     */
+    private final Set<Long> stripedAccounts = ConcurrentHashMap.newKeySet();
+
+    @Scheduled(fixedDelayString = "${app.accounts.striping.refresh-interval:30000}")
+    public void refreshStripedAccounts() {
+        Set<Long> actual = new HashSet<>(accountRepository.findStripedAccountIds());
+        stripedAccounts.retainAll(actual);
+        stripedAccounts.addAll(actual);
+    }
+
+    public boolean isStriped(Long accountId) {
+        return stripedAccounts.contains(accountId);
+    }
+
+    void markStriped(Long accountId, boolean striped) {
+        if (striped) {
+            stripedAccounts.add(accountId);
+        } else {
+            stripedAccounts.remove(accountId);
+        }
+    }
+
+    /**
+     * Меняет флаг только после коммита текущей транзакции: откаченное включение striping
+     * не должно переводить переводы по счету на разделяемую блокировку.
+     */
+    void markStripedAfterCommit(Long accountId, boolean striped) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    markStriped(accountId, striped);
+                }
+            });
+        } else {
+            markStriped(accountId, striped);
+        }
+    }
+
+    /**
+     * Блокирует счет для изменения баланса.
+     * Striped счет - разделяемой блокировкой (FOR SHARE), обычный - эксклюзивной (findByIdWithLock).
+     * Вызывающий код обязан блокировать счета в порядке возрастания ID.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Optional<Account> findByIdWithLock(Long accountId) {
+        if (stripedAccounts.contains(accountId)) {
+            Optional<Account> account = accountRepository.findByIdWithSharedLock(accountId);
+            if (account.isEmpty() || account.get().getBalanceSlots() > 0) {
+                return account;
+            }
+            log.info("Account {} is no longer striped, upgrading to exclusive lock", accountId);
+            stripedAccounts.remove(accountId);
+        }
+
+        Optional<Account> account = accountRepository.findByIdWithLock(accountId);
+        account.filter(a -> a.getBalanceSlots() > 0)
+                .ifPresent(a -> stripedAccounts.add(a.getId()));
+        return account;
+    }
+
+    /**
+     * Зачисляет средства: в случайный слот striped счета или в balance обычного.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void credit(Account account, BigDecimal amount) {
+        if (account.getBalanceSlots() == 0) {
+            account.setBalance(account.getBalance().add(amount));
+            return;
+        }
+
+        int slot = ThreadLocalRandom.current().nextInt(account.getBalanceSlots());
+        if (slotRepository.addToSlot(account.getId(), slot, amount) != 1) {
+            throw new IllegalStateException("Balance slot not found: accountId=" + account.getId() + ", slot=" + slot);
+        }
+    }
+
+    /**
+     * Списывает средства. Для striped счета блокирует все слоты (в порядке номера)
+     * и забирает сумму начиная с самых наполненных слотов.
+     * Проверка достаточности средств обычного счета выполняется вызывающим кодом до списания.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void debit(Account account, BigDecimal amount) {
+        if (account.getBalanceSlots() == 0) {
+            account.setBalance(account.getBalance().subtract(amount));
+            return;
+        }
+
+        List<BalanceSlotOperations.SlotBalance> slots = slotRepository.lockSlots(account.getId());
+        BigDecimal available = slots.stream()
+                .map(BalanceSlotOperations.SlotBalance::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        if (available.compareTo(amount) < 0) {
+            log.warn("Insufficient funds: accountId={}, balance={}, required={}",
+                    account.getId(), available, amount);
+            throw new IllegalArgumentException("Insufficient funds");
+        }
+
+        BigDecimal remaining = amount;
+        for (var slot : slots.stream()
+                .sorted(Comparator.comparing(BalanceSlotOperations.SlotBalance::getBalance).reversed())
+                .toList()) {
+            if (remaining.signum() == 0) {
+                break;
+            }
+            BigDecimal taken = slot.getBalance().min(remaining);
+            if (taken.signum() > 0) {
+                slotRepository.addToSlot(account.getId(), slot.getSlot(), taken.negate());
+                remaining = remaining.subtract(taken);
+            }
+        }
+    }
+
+    /**
+     * Полный баланс счета: balance + сумма слотов для striped счета.
+     */
+    public BigDecimal availableBalance(Account account) {
+        if (account.getBalanceSlots() == 0) {
+            return account.getBalance();
+        }
+        return account.getBalance().add(slotRepository.sumBalance(account.getId()));
+    }
+}
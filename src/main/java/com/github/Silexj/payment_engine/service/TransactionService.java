@@ -1,8 +1,11 @@
 package com.github.Silexj.payment_engine.service;
 
+import com.github.Silexj.payment_engine.dto.TransferDTO;
 import com.github.Silexj.payment_engine.model.Account;
 import com.github.Silexj.payment_engine.model.Transaction;
 import com.github.Silexj.payment_engine.model.TransactionStatus;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.TransactionHistoryRepository;
 import com.github.Silexj.payment_engine.repository.TransactionRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -11,7 +14,11 @@ import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
 import java.util.UUID;
 
 @Service
@@ -19,7 +26,11 @@ import java.util.UUID;
 @Slf4j
 public class TransactionService {
 
+    public static final int MAX_HISTORY_PAGE_SIZE = 500;
+
     private final TransactionRepository transactionRepository;
+    private final TransactionHistoryRepository historyRepository;
+    private final AccountRepository accountRepository;
 
     /**
      * Регистрирует операцию пополнения счета (Deposit) в истории.
@@ -47,4 +58,56 @@ public class TransactionService {
 
         log.info("Deposit transaction registered: txId={}, accountId={}, amount={}", transaction.getId(), receiver.getId(),amount);
     }
+
+    /**
+     * Возвращает страницу истории операций счета (входящие, исходящие и пополнения) от новых к старым.
+     * cursor - значение nextCursor предыдущей страницы (null - первая страница).
+     * Позиция курсора - (timestamp, id) последней строки, поэтому глубокие страницы не дороже первой.
+     */
+    @Transactional(readOnly = true)
+    public TransferDTO.HistoryPage getHistory(Long accountId, String cursor, int limit) {
+        if (limit < 1 || limit > MAX_HISTORY_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_HISTORY_PAGE_SIZE);
+        }
+        if (!accountRepository.existsById(accountId)) {
+            throw new IllegalArgumentException("Account not found");
+        }
+
+        // Лишняя строка показывает, есть ли следующая страница
+        List<TransferDTO.Response> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = historyRepository.findFirstPage(accountId, limit + 1);
+        } else {
+            HistoryCursor position = HistoryCursor.decode(cursor);
+            rows = historyRepository.findPageBefore(accountId, position.timestamp(), position.id(), limit + 1);
+        }
+
+        if (rows.size() <= limit) {
+            return new TransferDTO.HistoryPage(rows, null);
+        }
+        List<TransferDTO.Response> page = rows.subList(0, limit);
+        TransferDTO.Response last = page.get(limit - 1);
+        return new TransferDTO.HistoryPage(List.copyOf(page), new HistoryCursor(last.timestamp(), last.transactionId()).encode());
+    }
+
+    /**
+     * Непрозрачный для клиента курсор: base64url от "timestamp|id".
+     */
+    private record HistoryCursor(LocalDateTime timestamp, UUID id) {
+
+        String encode() {
+            String raw = timestamp + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static HistoryCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                return new HistoryCursor(LocalDateTime.parse(raw.substring(0, separator)), UUID.fromString(raw.substring(separator + 1)));
+            } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+    }
 }
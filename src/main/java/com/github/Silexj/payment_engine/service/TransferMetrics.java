@@ -0,0 +1,160 @@
+package com.github.Silexj.payment_engine.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Поэтапные метрики перевода и пополнения.
+ *
+ * transfer.perform (@Timed) показывает только общее время; здесь время разложено по этапам
+ * (transfer.stage{operation, stage}), а ожидание блокировки строки счета вынесено отдельно
+ * (transfer.lock.wait{operation, outcome}). Все метры регистрируются один раз при старте,
+ * на горячем пути - только System.nanoTime() и запись в готовый Timer.
+ *
+ * Использование: {@code long t = System.nanoTime(); ...; t = metrics.record(op, Stage.X, t); ...}
+ * - record возвращает момент окончания этапа, он же начало следующего.
+ */
+@Component
+public class TransferMetrics {
+
+    public enum Operation {
+        TRANSFER, TOP_UP
+    }
+
+    public enum Stage {
+        /** Проверка externalId (кэш, Bloom фильтр, SELECT). */
+        IDEMPOTENCY_LOOKUP,
+        /** Проверка валют и баланса. */
+        VALIDATION,
+        /** Изменение балансов (для striped счетов - с блокировкой слотов). */
+        BALANCE_UPDATE,
+        /** Запись проводки в transactions. */
+        JOURNAL_WRITE,
+        /** Сериализация события и запись в outbox_events. */
+        OUTBOX_WRITE,
+        /** Перевод одним SQL выражением (CONDITIONAL_UPDATE). */
+        CONDITIONAL_UPDATE,
+        /** Hibernate flush накопленных изменений. */
+        FLUSH,
+        /** COMMIT транзакции. */
+        COMMIT
+    }
+
+    public enum LockOutcome {
+        ACQUIRED, NOT_FOUND, LOCK_FAILURE, ERROR
+    }
+
+    private static final Duration MIN_EXPECTED = Duration.ofNanos(50_000);
+    private static final Duration MAX_EXPECTED = Duration.ofSeconds(10);
+
+    private final Map<Operation, Map<Stage, Timer>> stageTimers = new EnumMap<>(Operation.class);
+    private final Map<Operation, Map<LockOutcome, Timer>> lockTimers = new EnumMap<>(Operation.class);
+    private final Counter transferAmount;
+
+    public TransferMetrics(MeterRegistry meterRegistry) {
+        for (Operation operation : Operation.values()) {
+            Map<Stage, Timer> stages = new EnumMap<>(Stage.class);
+            for (Stage stage : Stage.values()) {
+                stages.put(stage, Timer.builder("transfer.stage")
+                        .description("Time spent in a stage of a transfer or top-up")
+                        .tag("operation", tagValue(operation))
+                        .tag("stage", tagValue(stage))
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(MIN_EXPECTED)
+                        .maximumExpectedValue(MAX_EXPECTED)
+                        .register(meterRegistry));
+            }
+            stageTimers.put(operation, stages);
+
+            Map<LockOutcome, Timer> outcomes = new EnumMap<>(LockOutcome.class);
+            for (LockOutcome outcome : LockOutcome.values()) {
+                outcomes.put(outcome, Timer.builder("transfer.lock.wait")
+                        .description("Time waiting for an account row lock")
+                        .tag("operation", tagValue(operation))
+                        .tag("outcome", tagValue(outcome))
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(MIN_EXPECTED)
+                        .maximumExpectedValue(MAX_EXPECTED)
+                        .register(meterRegistry));
+            }
+            lockTimers.put(operation, outcomes);
+        }
+
+        this.transferAmount = Counter.builder("transfer.amount.total")
+                .description("Total amount of money transferred")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Записывает длительность этапа от startNanos до текущего момента и возвращает текущий момент.
+     */
+    public long record(Operation operation, Stage stage, long startNanos) {
+        long now = System.nanoTime();
+        stageTimers.get(operation).get(stage).record(now - startNanos, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    /**
+     * Выполняет захват блокировки счета и записывает время ожидания с исходом.
+     */
+    public <T> Optional<T> recordLockWait(Operation operation, Supplier<Optional<T>> lock) {
+        long started = System.nanoTime();
+        LockOutcome outcome = LockOutcome.ERROR;
+        try {
+            Optional<T> locked = lock.get();
+            outcome = locked.isPresent() ? LockOutcome.ACQUIRED : LockOutcome.NOT_FOUND;
+            return locked;
+        } catch (PessimisticLockingFailureException e) {
+            outcome = LockOutcome.LOCK_FAILURE;
+            throw e;
+        } finally {
+            lockTimers.get(operation).get(outcome).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Замеряет COMMIT текущей транзакции (от beforeCommit до afterCommit).
+     * Откаченные транзакции не записываются.
+     */
+    public void recordCommit(Operation operation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Timer timer = stageTimers.get(operation).get(Stage.COMMIT);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private long started;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                started = System.nanoTime();
+            }
+
+            @Override
+            public void afterCommit() {
+                timer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    public void recordAmount(BigDecimal amount) {
+        transferAmount.increment(amount.doubleValue());
+    }
+
+    private static String tagValue(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
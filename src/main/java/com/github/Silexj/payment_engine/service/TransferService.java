@@ -1,124 +1,126 @@
 package com.github.Silexj.payment_engine.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.Silexj.payment_engine.dto.event.TransferCompletedEvent;
+import com.github.Silexj.payment_engine.config.TransferMode;
 import com.github.Silexj.payment_engine.dto.TransferDTO;
-import com.github.Silexj.payment_engine.model.Account;
-import com.github.Silexj.payment_engine.model.OutboxEvent;
 import com.github.Silexj.payment_engine.model.Transaction;
 import com.github.Silexj.payment_engine.model.TransactionStatus;
-import com.github.Silexj.payment_engine.repository.AccountRepository;
-import com.github.Silexj.payment_engine.repository.OutboxEventRepository;
-import com.github.Silexj.payment_engine.repository.TransactionRepository;
+import com.github.Silexj.payment_engine.service.TransferMetrics.Operation;
+import com.github.Silexj.payment_engine.service.TransferMetrics.Stage;
+import com.github.Silexj.payment_engine.service.bulkhead.DbBulkhead;
+import com.github.Silexj.payment_engine.service.cache.AccountCache;
+import com.github.Silexj.payment_engine.service.groupcommit.GroupCommitTransferService;
+import com.github.Silexj.payment_engine.service.idempotency.IdempotencyService;
+import com.github.Silexj.payment_engine.service.ledger.LedgerEngine;
+import com.github.Silexj.payment_engine.service.serialization.SerializedByAccount;
 import io.micrometer.core.annotation.Timed;
-import io.micrometer.core.instrument.Counter;
-import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
-import java.util.UUID;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class TransferService {
 
-    private final AccountRepository accountRepository;
-    private final TransactionRepository transactionRepository;
-    private final OutboxWriterService outboxWriter;
+    private final PessimisticTransferService pessimisticTransferService;
+    private final ConditionalUpdateTransferService conditionalUpdateTransferService;
+    private final OptimisticTransferService optimisticTransferService;
+    private final StripedBalanceService stripedBalanceService;
+    private final ObjectProvider<LedgerEngine> ledgerEngine;
+    private final ObjectProvider<GroupCommitTransferService> groupCommitTransferService;
+    private final IdempotencyService idempotencyService;
+    private final AccountCache accountCache;
+    private final TransferMetrics transferMetrics;
 
-    private final MeterRegistry meterRegistry;
+    @Value("${app.transfer.mode:PESSIMISTIC}")
+    private TransferMode transferMode;
 
     /**
      * Выполняет перевод средств между двумя счетами.
      * Гарантирует атомарность и защиту от Deadlock через сортировку ID
+     *
+     * Стратегия исполнения выбирается свойством app.transfer.mode (см. TransferMode).
+     * Сам метод не открывает транзакцию: каждая стратегия управляет ею сама
+     * (LEDGER, например, не должен держать соединение, пока ждет записи журнала).
+     *
+     * Идемпотентность проверяется здесь, до выбора стратегии (кэш + Bloom фильтр, см. IdempotencyService).
+     * Повтор, который фильтр не распознал, отсекает уникальный индекс external_id.
+     * После успешного перевода записи обоих счетов сбрасываются в AccountCache.
+     * Этапы внутри стратегий замеряются TransferMetrics (transfer.stage, transfer.lock.wait).
+     * Число одновременных переводов ограничено DbBulkhead (app.bulkhead.enabled), а переводы
+     * по одному счету до этого выстраиваются в очередь в памяти (app.account-serialization.enabled).
      */
-    @Transactional
+    @SerializedByAccount
+    @DbBulkhead
     @Timed(value = "transfer.perform", description = "Time taken to perform transfer")
     public TransferDTO.Response performTransfer(TransferDTO.PerformRequest request) {
         log.info("Initiating transfer: externalId={}, amount={}", request.externalId(), request.amount());
 
-        var existingTx = transactionRepository.findByExternalId(request.externalId());
-        if (existingTx.isPresent()) {
-            log.warn("Duplicate request detected. Returning existing transaction: {}", existingTx.get().getId());
-            return mapToResponse(existingTx.get());
+        long lookupStart = System.nanoTime();
+        var existing = idempotencyService.findExisting(request.externalId());
+        transferMetrics.record(Operation.TRANSFER, Stage.IDEMPOTENCY_LOOKUP, lookupStart);
+        if (existing.isPresent()) {
+            log.warn("Duplicate request detected. Returning existing transaction: {}", existing.get().transactionId());
+            return existing.get();
         }
 
-        if (request.fromAccountId().equals(request.toAccountId())) {
-            throw new IllegalArgumentException("Self-transfer is not allowed");
+        try {
+            TransferDTO.Response response = switch (transferMode) {
+                case LEDGER -> ledgerEngine.getObject().performTransfer(request);
+                case CONDITIONAL_UPDATE -> isStriped(request)
+                        ? pessimisticTransferService.performTransfer(request)
+                        : performConditionally(request);
+                case OPTIMISTIC -> isStriped(request)
+                        ? pessimisticTransferService.performTransfer(request)
+                        : optimisticTransferService.performTransfer(request);
+                case GROUP_COMMIT -> isStriped(request)
+                        ? pessimisticTransferService.performTransfer(request)
+                        : groupCommitTransferService.getObject().performTransfer(request);
+                case PESSIMISTIC -> pessimisticTransferService.performTransfer(request);
+            };
+            idempotencyService.record(response);
+            if (response.status() == TransactionStatus.SUCCESS) {
+                // Стратегия уже закоммитила проводку
+                accountCache.invalidateAfterCommit(List.of(request.fromAccountId(), request.toAccountId()));
+            }
+            return response;
+        } catch (DataIntegrityViolationException e) {
+            return idempotencyService.findCommitted(request.externalId())
+                    .map(response -> {
+                        log.warn("Concurrent duplicate request detected: externalId={}", request.externalId());
+                        return response;
+                    })
+                    .orElseThrow(() -> e);
         }
-
-        Long firstLockId = Math.min(request.fromAccountId(), request.toAccountId());
-        Long secondLockId = Math.max(request.fromAccountId(), request.toAccountId());
-
-        Account firstLock = accountRepository.findByIdWithLock(firstLockId)
-                .orElseThrow(() -> new IllegalArgumentException("Account not found: " + firstLockId));
-        Account secondLock = accountRepository.findByIdWithLock(secondLockId)
-                .orElseThrow(() -> new IllegalArgumentException("Account not found: " + secondLockId));
-
-        Account sender = firstLock.getId().equals(request.fromAccountId()) ? firstLock : secondLock;
-        Account receiver = firstLock.getId().equals(request.toAccountId()) ? firstLock : secondLock;
-
-        validateTransfer(sender, receiver, request);
-
-        sender.setBalance(sender.getBalance().subtract(request.amount()));
-        receiver.setBalance(receiver.getBalance().add(request.amount()));
-
-        Transaction transaction = saveTransaction(sender, receiver, request);
-
-        saveOutboxEvent(transaction);
-
-        Counter.builder("transfer.amount.total")
-                .description("Total amount of money transferred")
-                .register(meterRegistry)
-                .increment(request.amount().doubleValue());
-
-        log.info("Transfer completed successfully: txId={}", transaction.getId());
-        return mapToResponse(transaction);
     }
 
-
     /**
-     * Проверяет возможность выполнения перевода (валюта, баланс)
+     * Условный перевод одним SQL. Флаг isStriped может отставать от БД (striping включили на другом узле),
+     * поэтому SQL перепроверяет его под блокировкой и отказывается от перевода, а перевод выполняется
+     * через слоты в новой транзакции.
      */
-    private void validateTransfer(Account sender, Account receiver, TransferDTO.PerformRequest request) {
-        if (!sender.getCurrency().equals(receiver.getCurrency())) {
-            log.error("Currency mismatch: sender={}, receiver={}", sender.getCurrency(), receiver.getCurrency());
-            throw new IllegalArgumentException("Cross-currency transfers are not supported");
-        }
-
-        if (sender.getBalance().compareTo(request.amount()) < 0) {
-            log.warn("Insufficient funds: accountId={}, balance={}, required={}",
-                    sender.getId(), sender.getBalance(), request.amount());
-            throw new IllegalArgumentException("Insufficient funds");
+    private TransferDTO.Response performConditionally(TransferDTO.PerformRequest request) {
+        try {
+            return conditionalUpdateTransferService.performTransfer(request);
+        } catch (StripedAccountException e) {
+            return pessimisticTransferService.performTransfer(request);
         }
     }
 
-
     /**
-     * Сохраняет запись о транзакции в базу данных.
-     * Генерирует внутренний ID транзакции.
+     * Переводы со striped счетами всегда идут через JPA путь со слотами баланса.
      */
-    private Transaction saveTransaction(Account sender, Account receiver, TransferDTO.PerformRequest request) {
-        Transaction transaction = Transaction.builder()
-                .id(UUID.randomUUID())
-                .externalId(request.externalId())
-                .sender(sender)
-                .receiver(receiver)
-                .amount(request.amount())
-                .currency(sender.getCurrency())
-                .timestamp(LocalDateTime.now())
-                .status(TransactionStatus.SUCCESS)
-                .build();
-
-        return transactionRepository.save(transaction);
+    private boolean isStriped(TransferDTO.PerformRequest request) {
+        return stripedBalanceService.isStriped(request.fromAccountId())
+                || stripedBalanceService.isStriped(request.toAccountId());
     }
 
-    private TransferDTO.Response mapToResponse(Transaction tx) {
+    public static TransferDTO.Response mapToResponse(Transaction tx) {
         return new TransferDTO.Response(
                 tx.getId(),
                 tx.getExternalId(),
@@ -131,21 +133,4 @@ public class TransferService {
                 tx.getErrorMessage()
         );
     }
-
-    @SneakyThrows
-    private void saveOutboxEvent(Transaction transaction) {
-        var event = new TransferCompletedEvent(
-                transaction.getId(),
-                transaction.getSender().getId(),
-                transaction.getReceiver().getId(),
-                transaction.getAmount(),
-                transaction.getCurrency()
-        );
-
-        outboxWriter.saveEvent(
-                transaction.getId().toString(),
-                "TRANSFER_COMPLETED",
-                event
-        );
-    }
 }
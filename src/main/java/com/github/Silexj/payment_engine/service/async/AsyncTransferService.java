@@ -0,0 +1,335 @@
+package com.github.Silexj.payment_engine.service.async;
+
+import com.github.Silexj.payment_engine.config.datasource.ReadConsistency;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.model.TransactionStatus;
+import com.github.Silexj.payment_engine.model.TransferRequest;
+import com.github.Silexj.payment_engine.model.TransferRequestStatus;
+import com.github.Silexj.payment_engine.repository.TransferRequestRepository;
+import com.github.Silexj.payment_engine.service.TransferService;
+import com.github.Silexj.payment_engine.service.idempotency.IdempotencyKeyConflictException;
+import com.github.Silexj.payment_engine.service.idempotency.IdempotencyService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Асинхронный прием переводов (POST /api/v1/transfers/async).
+ *
+ * Запрос сначала фиксируется в transfer_requests (ключ - externalId), и клиент сразу получает 202,
+ * не дожидаясь блокировок счетов. Затем перевод попадает в ограниченную очередь пула воркеров,
+ * который выполняет его обычным TransferService.performTransfer (все режимы, bulkhead, идемпотентность).
+ *
+ * Очередь в памяти - только ускорение, как fast path у Outbox: если она переполнена, узел упал
+ * или перевод получил временную ошибку, строка остается PENDING, и ее подхватывает recoverPending
+ * (AsyncTransferRecoveryJob). Захват через UPDATE ... WHERE status = 'PENDING' не дает двум воркерам
+ * или узлам выполнить перевод одновременно, а повтор после сбоя безопасен благодаря идемпотентности по externalId.
+ *
+ * Клиент узнает результат опросом getStatus или подпиской SSE (TransferCompletionNotifier).
+ */
+@Service
+@Slf4j
+public class AsyncTransferService {
+
+    private static final int ERROR_MESSAGE_LENGTH = 255;
+
+    private final TransferRequestRepository transferRequestRepository;
+    private final TransferService transferService;
+    private final IdempotencyService idempotencyService;
+    private final TransferCompletionNotifier completionNotifier;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int maxAttempts;
+    private final Duration retryDelay;
+    private final Duration processingTimeout;
+    private final int recoveryBatchSize;
+
+    private final ThreadPoolExecutor workers;
+    // Переводы, уже стоящие в очереди этого узла: поллер не ставит их повторно
+    private final Set<UUID> queued = ConcurrentHashMap.newKeySet();
+
+    private final Counter accepted;
+    private final Counter succeeded;
+    private final Counter failed;
+    private final Counter retried;
+    private final Counter overflows;
+
+    public AsyncTransferService(TransferRequestRepository transferRequestRepository,
+                                TransferService transferService,
+                                IdempotencyService idempotencyService,
+                                TransferCompletionNotifier completionNotifier,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.transfer.async.workers:8}") int workerCount,
+                                @Value("${app.transfer.async.queue-capacity:10000}") int queueCapacity,
+                                @Value("${app.transfer.async.max-attempts:5}") int maxAttempts,
+                                @Value("${app.transfer.async.retry-delay:5s}") Duration retryDelay,
+                                @Value("${app.transfer.async.processing-timeout:60s}") Duration processingTimeout,
+                                @Value("${app.transfer.async.recovery-batch-size:500}") int recoveryBatchSize,
+                                @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.transferRequestRepository = transferRequestRepository;
+        this.transferService = transferService;
+        this.idempotencyService = idempotencyService;
+        this.completionNotifier = completionNotifier;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = retryDelay;
+        this.processingTimeout = processingTimeout;
+        this.recoveryBatchSize = recoveryBatchSize;
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                (virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform()).name("async-transfer-", 0).factory());
+
+        this.accepted = Counter.builder("transfer.async.accepted")
+                .description("Asynchronous transfers accepted")
+                .register(meterRegistry);
+        this.succeeded = completedCounter(meterRegistry, "success");
+        this.failed = completedCounter(meterRegistry, "failed");
+        this.retried = Counter.builder("transfer.async.retries")
+                .description("Asynchronous transfers returned to PENDING after a transient error")
+                .register(meterRegistry);
+        this.overflows = Counter.builder("transfer.async.queue.overflow")
+                .description("Asynchronous transfers left to the recovery poller because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("transfer.async.queue.size", workers, executor -> executor.getQueue().size())
+                .description("Asynchronous transfers waiting for a worker")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        // Невыполненные переводы остаются PENDING/PROCESSING и будут подхвачены после рестарта
+        workers.shutdownNow();
+        workers.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Фиксирует перевод и ставит его в очередь. Повтор с тем же externalId возвращает текущее состояние
+     * ранее принятого перевода (или уже выполненного синхронным API), если совпадают счета и сумма;
+     * иначе - IdempotencyKeyConflictException (409).
+     */
+    public TransferDTO.AsyncStatus submit(TransferDTO.PerformRequest request) {
+        if (request.fromAccountId().equals(request.toAccountId())) {
+            throw new IllegalArgumentException("Sender and receiver must be different");
+        }
+
+        Optional<TransferDTO.Response> committed = idempotencyService.findExisting(request.externalId());
+        if (committed.isPresent()) {
+            TransferDTO.Response response = committed.get();
+            requireSamePayload(request, response.senderId(), response.receiverId(), response.amount());
+            log.info("Async transfer already performed: externalId={}", request.externalId());
+            return new TransferDTO.AsyncStatus(request.externalId(), TransferRequestStatus.SUCCESS,
+                    response, null, response.timestamp());
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Integer inserted = transactionTemplate.execute(status -> transferRequestRepository.accept(
+                request.externalId(), request.fromAccountId(), request.toAccountId(), request.amount(), now));
+        if (inserted == null || inserted == 0) {
+            // Строка только что не дала вставить дубль: реплика может ее еще не видеть
+            TransferRequest existing = ReadConsistency.onPrimary(() -> transferRequestRepository.findById(request.externalId()))
+                    .orElseThrow(() -> new EntityNotFoundException("Transfer not found: " + request.externalId()));
+            requireSamePayload(request, existing.getFromAccountId(), existing.getToAccountId(), existing.getAmount());
+            log.info("Async transfer already accepted: externalId={}", request.externalId());
+            return toStatus(existing);
+        }
+
+        accepted.increment();
+        log.info("Async transfer accepted: externalId={}, amount={}", request.externalId(), request.amount());
+        dispatch(request.externalId());
+        return new TransferDTO.AsyncStatus(request.externalId(), TransferRequestStatus.PENDING, null, null, now);
+    }
+
+    /**
+     * Текущее состояние перевода. Переводы, выполненные синхронным API, тоже находятся (по transactions).
+     */
+    public TransferDTO.AsyncStatus getStatus(UUID externalId) {
+        Optional<TransferRequest> transferRequest = transferRequestRepository.findById(externalId);
+        if (transferRequest.isPresent()) {
+            return toStatus(transferRequest.get());
+        }
+        return idempotencyService.findCommitted(externalId)
+                .map(response -> new TransferDTO.AsyncStatus(externalId, TransferRequestStatus.SUCCESS,
+                        response, null, response.timestamp()))
+                .orElseThrow(() -> new EntityNotFoundException("Transfer not found: " + externalId));
+    }
+
+    /**
+     * Поток SSE: текущее состояние сразу, итоговое - при завершении перевода.
+     */
+    public SseEmitter subscribe(UUID externalId) {
+        return completionNotifier.subscribe(getStatus(externalId));
+    }
+
+    /**
+     * Возвращает в PENDING переводы, зависшие в PROCESSING дольше processing-timeout,
+     * и ставит в очередь PENDING переводы старше retry-delay.
+     */
+    public void recoverPending() {
+        LocalDateTime now = LocalDateTime.now();
+        Integer released = transactionTemplate.execute(status ->
+                transferRequestRepository.releaseStuck(now.minus(processingTimeout), now));
+        if (released != null && released > 0) {
+            log.warn("Released {} async transfers stuck in PROCESSING", released);
+        }
+
+        List<UUID> pending = transferRequestRepository.findPendingBefore(now.minus(retryDelay), recoveryBatchSize);
+        pending.forEach(this::dispatch);
+        if (!pending.isEmpty()) {
+            log.info("Recovery poller dispatched {} async transfers", pending.size());
+        }
+    }
+
+    /**
+     * Рассылает итог подписчикам SSE, чьи переводы выполнил другой узел.
+     */
+    public void refreshSubscriptions() {
+        for (UUID externalId : completionNotifier.subscribedTransfers()) {
+            transferRequestRepository.findById(externalId)
+                    .filter(transferRequest -> transferRequest.getStatus().isFinal())
+                    .ifPresent(transferRequest -> completionNotifier.publish(toStatus(transferRequest)));
+        }
+    }
+
+    private void dispatch(UUID externalId) {
+        if (!queued.add(externalId)) {
+            return;
+        }
+        try {
+            workers.execute(() -> process(externalId));
+        } catch (RejectedExecutionException e) {
+            queued.remove(externalId);
+            overflows.increment();
+            log.warn("Async transfer queue is full, leaving {} to the recovery poller", externalId);
+        }
+    }
+
+    private void process(UUID externalId) {
+        try {
+            TransferRequest transferRequest = transactionTemplate.execute(status ->
+                    transferRequestRepository.claim(externalId, LocalDateTime.now()) == 0
+                            ? null
+                            : transferRequestRepository.findById(externalId).orElse(null));
+            if (transferRequest == null) {
+                // Перевод уже выполняет или выполнил другой воркер/узел
+                return;
+            }
+            execute(transferRequest);
+        } catch (RuntimeException e) {
+            // Строка осталась PROCESSING - ее вернет в очередь releaseStuck
+            log.error("Async transfer processing failed: externalId={}", externalId, e);
+        } finally {
+            queued.remove(externalId);
+        }
+    }
+
+    private void execute(TransferRequest transferRequest) {
+        UUID externalId = transferRequest.getExternalId();
+        try {
+            TransferDTO.Response response = transferService.performTransfer(new TransferDTO.PerformRequest(
+                    externalId, transferRequest.getFromAccountId(), transferRequest.getToAccountId(), transferRequest.getAmount()));
+            if (response.status() == TransactionStatus.SUCCESS && !samePayload(transferRequest, response)) {
+                // Ключ успел занять синхронный перевод с другими параметрами - это не наш перевод
+                log.warn("Async transfer key is used by a different transfer: externalId={}", externalId);
+                complete(transferRequest, TransferRequestStatus.FAILED, null,
+                        new IdempotencyKeyConflictException(externalId).getMessage());
+            } else if (response.status() == TransactionStatus.SUCCESS) {
+                complete(transferRequest, TransferRequestStatus.SUCCESS, response, null);
+            } else {
+                complete(transferRequest, TransferRequestStatus.FAILED, response, response.errorMessage());
+            }
+        } catch (IllegalArgumentException | EntityNotFoundException e) {
+            // Бизнес-отказ (нет средств, разные валюты, счет не найден) - повтор не поможет
+            complete(transferRequest, TransferRequestStatus.FAILED, null, e.getMessage());
+        } catch (RuntimeException e) {
+            String error = truncate(e.getMessage());
+            if (transferRequest.getAttempts() >= maxAttempts) {
+                log.error("Async transfer failed after {} attempts: externalId={}", transferRequest.getAttempts(), externalId, e);
+                complete(transferRequest, TransferRequestStatus.FAILED, null, error);
+            } else {
+                log.warn("Async transfer attempt {} failed, will retry: externalId={}, error={}",
+                        transferRequest.getAttempts(), externalId, e.getMessage());
+                retried.increment();
+                transactionTemplate.executeWithoutResult(status ->
+                        transferRequestRepository.release(externalId, error, LocalDateTime.now()));
+            }
+        }
+    }
+
+    private void complete(TransferRequest transferRequest, TransferRequestStatus status,
+                          TransferDTO.Response response, String errorMessage) {
+        UUID externalId = transferRequest.getExternalId();
+        String error = truncate(errorMessage);
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(tx -> {
+            if (status == TransferRequestStatus.SUCCESS) {
+                transferRequestRepository.markSucceeded(externalId, response.transactionId(), now);
+            } else {
+                transferRequestRepository.markFailed(externalId, error, now);
+            }
+        });
+        (status == TransferRequestStatus.SUCCESS ? succeeded : failed).increment();
+        log.info("Async transfer completed: externalId={}, status={}", externalId, status);
+        completionNotifier.publish(new TransferDTO.AsyncStatus(externalId, status, response, error, transferRequest.getCreatedAt()));
+    }
+
+    private static void requireSamePayload(TransferDTO.PerformRequest request, Long fromAccountId, Long toAccountId,
+                                           BigDecimal amount) {
+        if (!request.fromAccountId().equals(fromAccountId)
+                || !request.toAccountId().equals(toAccountId)
+                || request.amount().compareTo(amount) != 0) {
+            log.warn("Async transfer key reused with different parameters: externalId={}", request.externalId());
+            throw new IdempotencyKeyConflictException(request.externalId());
+        }
+    }
+
+    private static boolean samePayload(TransferRequest transferRequest, TransferDTO.Response response) {
+        return Objects.equals(transferRequest.getFromAccountId(), response.senderId())
+                && Objects.equals(transferRequest.getToAccountId(), response.receiverId())
+                && transferRequest.getAmount().compareTo(response.amount()) == 0;
+    }
+
+    private TransferDTO.AsyncStatus toStatus(TransferRequest transferRequest) {
+        TransferDTO.Response result = transferRequest.getStatus() == TransferRequestStatus.SUCCESS
+                ? idempotencyService.findExisting(transferRequest.getExternalId()).orElse(null)
+                : null;
+        return new TransferDTO.AsyncStatus(transferRequest.getExternalId(), transferRequest.getStatus(), result,
+                transferRequest.getErrorMessage(), transferRequest.getCreatedAt());
+    }
+
+    private static String truncate(String message) {
+        if (message == null || message.length() <= ERROR_MESSAGE_LENGTH) {
+            return message;
+        }
+        return message.substring(0, ERROR_MESSAGE_LENGTH);
+    }
+
+    private static Counter completedCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("transfer.async.completed")
+                .description("Asynchronous transfers completed by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.Silexj.payment_engine.service.async;
+
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Подписки SSE на завершение асинхронных переводов (GET /api/v1/transfers/{externalId}/events).
+ *
+ * Подписчик сразу получает текущее состояние (событие "status"), а при завершении перевода -
+ * итоговое, после чего поток закрывается. Переводы, выполненные этим узлом, публикуются сразу;
+ * выполненные другим узлом находит периодическая проверка подписок (AsyncTransferService.refreshSubscriptions).
+ */
+@Component
+@Slf4j
+public class TransferCompletionNotifier {
+
+    private static final String EVENT_NAME = "status";
+
+    private final Map<UUID, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final long timeoutMs;
+
+    public TransferCompletionNotifier(@Value("${app.transfer.async.sse-timeout:60000}") long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    public SseEmitter subscribe(TransferDTO.AsyncStatus current) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        if (!send(emitter, current) || current.status().isFinal()) {
+            emitter.complete();
+            return emitter;
+        }
+
+        UUID externalId = current.externalId();
+        subscribers.computeIfAbsent(externalId, id -> ConcurrentHashMap.newKeySet()).add(emitter);
+        Runnable unsubscribe = () -> subscribers.computeIfPresent(externalId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+        return emitter;
+    }
+
+    /**
+     * Рассылает итоговое состояние перевода подписчикам и закрывает их потоки.
+     */
+    public void publish(TransferDTO.AsyncStatus status) {
+        Set<SseEmitter> emitters = subscribers.remove(status.externalId());
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            if (send(emitter, status)) {
+                emitter.complete();
+            }
+        }
+    }
+
+    public Set<UUID> subscribedTransfers() {
+        return Set.copyOf(subscribers.keySet());
+    }
+
+    private boolean send(SseEmitter emitter, TransferDTO.AsyncStatus status) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).id(status.status().name()).data(status));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // Клиент отключился или поток уже закрыт по таймауту
+            log.debug("SSE subscriber dropped: externalId={}", status.externalId());
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+}
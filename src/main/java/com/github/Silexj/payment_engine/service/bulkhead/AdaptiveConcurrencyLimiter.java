@@ -0,0 +1,199 @@
+package com.github.Silexj.payment_engine.service.bulkhead;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Адаптивный лимит одновременных транзакций перед пулом соединений.
+ *
+ * С виртуальными потоками число одновременных запросов не ограничено пулом Tomcat, и без лимита
+ * очередь просто переезжает в Hikari (ожидание соединения), а блокировки строк держатся дольше.
+ * Лимитер держит число выполняемых операций около max-limit (размер пула), остальные ждут
+ * в FIFO очереди не дольше max-wait; при переполнении очереди запрос сразу отклоняется.
+ *
+ * Лимит подстраивается по латентности (градиент как в Netflix concurrency-limits):
+ * пока время операции близко к долгосрочному среднему, лимит растет на sqrt(limit),
+ * когда операции замедляются (очередь в БД, ожидание блокировок), лимит снижается пропорционально.
+ * Отказ по блокировке или соединению уменьшает лимит мультипликативно.
+ */
+@Component
+@ConditionalOnProperty(name = "app.bulkhead.enabled", havingValue = "true")
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double RTT_TOLERANCE = 1.5;
+    private static final double LONG_RTT_DECAY = 0.01;
+    private static final double DROP_DECREASE = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+
+    // Справедливая блокировка + Condition: ожидающие получают место в порядке прихода
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition released = lock.newCondition();
+
+    private double limit;
+    private double longRttNanos;
+    private int inFlight;
+    private int queued;
+
+    private final Timer waitTime;
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedTimeout;
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      @Value("${app.bulkhead.min-limit:2}") int minLimit,
+                                      @Value("${app.bulkhead.max-limit:10}") int maxLimit,
+                                      @Value("${app.bulkhead.initial-limit:8}") int initialLimit,
+                                      @Value("${app.bulkhead.max-queue:200}") int maxQueue,
+                                      @Value("${app.bulkhead.max-wait:1s}") Duration maxWait) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+
+        Gauge.builder("db.bulkhead.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive limit of concurrent database operations")
+                .register(meterRegistry);
+        Gauge.builder("db.bulkhead.in.flight", this, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Database operations currently admitted by the bulkhead")
+                .register(meterRegistry);
+        Gauge.builder("db.bulkhead.queued", this, AdaptiveConcurrencyLimiter::getQueued)
+                .description("Requests waiting for a bulkhead permit")
+                .register(meterRegistry);
+        this.waitTime = Timer.builder("db.bulkhead.wait")
+                .description("Time requests waited for a bulkhead permit")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.rejectedQueueFull = rejectedCounter(meterRegistry, "queue_full");
+        this.rejectedTimeout = rejectedCounter(meterRegistry, "timeout");
+    }
+
+    /**
+     * Занимает место в лимите; ждет в очереди не дольше max-wait.
+     * Возвращает время начала операции (для release).
+     */
+    public long acquire() {
+        long arrived = System.nanoTime();
+        lock.lock();
+        try {
+            if (queued == 0 && inFlight < (int) limit) {
+                inFlight++;
+                waitTime.record(0, TimeUnit.NANOSECONDS);
+                return arrived;
+            }
+            if (queued >= maxQueue) {
+                rejectedQueueFull.increment();
+                throw new BulkheadRejectedException("Database bulkhead queue is full");
+            }
+
+            queued++;
+            try {
+                long remaining = maxWaitNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        rejectedTimeout.increment();
+                        throw new BulkheadRejectedException("Timed out waiting for database bulkhead");
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BulkheadRejectedException("Interrupted while waiting for database bulkhead");
+            } finally {
+                queued--;
+            }
+
+            inFlight++;
+            long admitted = System.nanoTime();
+            waitTime.record(admitted - arrived, TimeUnit.NANOSECONDS);
+            // Освободилось больше одного места (рост лимита) - будим следующего
+            if (inFlight < (int) limit) {
+                released.signal();
+            }
+            return admitted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Освобождает место и обновляет лимит по времени операции.
+     * dropped - операция упала на перегрузке (блокировка, соединение): лимит уменьшается.
+     */
+    public void release(long startedNanos, boolean dropped) {
+        long rtt = System.nanoTime() - startedNanos;
+        lock.lock();
+        try {
+            int previousLimit = (int) limit;
+            boolean saturated = inFlight * 2 >= previousLimit;
+            inFlight--;
+
+            if (dropped) {
+                limit = Math.max(minLimit, limit * DROP_DECREASE);
+            } else if (saturated) {
+                // При малой загрузке латентность ничего не говорит о пределе - лимит не трогаем
+                longRttNanos = longRttNanos == 0 ? rtt : longRttNanos * (1 - LONG_RTT_DECAY) + rtt * LONG_RTT_DECAY;
+                double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRttNanos / rtt));
+                double target = limit * gradient + Math.sqrt(limit);
+                limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+            }
+
+            if ((int) limit != previousLimit) {
+                log.debug("Database bulkhead limit changed: {} -> {}", previousLimit, (int) limit);
+            }
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("db.bulkhead.rejected")
+                .description("Requests shed by the database bulkhead")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,12 @@
+package com.github.Silexj.payment_engine.service.bulkhead;
+
+/**
+ * Запрос не дождался места в лимите обращений к БД или в очереди счета (очередь переполнена или истекло ожидание).
+ * Отдается клиенту как 503: запрос не выполнялся и его можно безопасно повторить.
+ */
+public class BulkheadRejectedException extends RuntimeException {
+
+    public BulkheadRejectedException(String message) {
+        super(message);
+    }
+}
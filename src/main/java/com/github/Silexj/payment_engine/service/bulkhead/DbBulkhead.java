@@ -0,0 +1,15 @@
+package com.github.Silexj.payment_engine.service.bulkhead;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Метод держит соединение с БД и выполняется только в пределах лимита AdaptiveConcurrencyLimiter.
+ * Ставится на внешний метод сервиса (до открытия транзакции), см. DbBulkheadAspect.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DbBulkhead {
+}
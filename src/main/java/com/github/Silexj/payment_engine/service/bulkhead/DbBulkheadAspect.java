@@ -0,0 +1,53 @@
+package com.github.Silexj.payment_engine.service.bulkhead;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Пропускает методы с @DbBulkhead через AdaptiveConcurrencyLimiter.
+ * Выполняется раньше @Transactional, поэтому ожидающий запрос не держит соединение,
+ * но после очереди счета (AccountSerializationAspect): место занимают только готовые выполниться запросы.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@ConditionalOnProperty(name = "app.bulkhead.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class DbBulkheadAspect {
+
+    private static final ThreadLocal<Boolean> ADMITTED = new ThreadLocal<>();
+
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    @Around("@annotation(com.github.Silexj.payment_engine.service.bulkhead.DbBulkhead)")
+    public Object limit(ProceedingJoinPoint joinPoint) throws Throwable {
+        // Вложенный вызов другого защищенного метода выполняется в уже выданном месте
+        if (ADMITTED.get() != null) {
+            return joinPoint.proceed();
+        }
+
+        long started = limiter.acquire();
+        ADMITTED.set(Boolean.TRUE);
+        boolean dropped = false;
+        try {
+            return joinPoint.proceed();
+        } catch (PessimisticLockingFailureException | QueryTimeoutException
+                 | CannotGetJdbcConnectionException | TransientDataAccessResourceException e) {
+            dropped = true;
+            throw e;
+        } finally {
+            ADMITTED.remove();
+            limiter.release(started, dropped);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.github.Silexj.payment_engine.service.cache;
+
+import com.github.Silexj.payment_engine.config.datasource.ReadConsistency;
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.model.Account;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.service.StripedBalanceService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Кэш ответов GET /api/v1/accounts/{id}.
+ *
+ * Промах загружает счет в отдельной readOnly транзакции; параллельные промахи по одному id
+ * ждут одну загрузку (Cache.get с функцией загрузки выполняет ее один раз на ключ).
+ *
+ * Записи сбрасываются:
+ * 1. На этом узле - после коммита перевода или пополнения (invalidateAfterCommit).
+ * 2. На остальных узлах - по событиям TRANSFER_COMPLETED / BALANCE_DEPOSITED из Kafka (AccountCacheInvalidationListener).
+ * 3. По истечении ttl - страховка на случай потерянного события.
+ *
+ * Сброс ключа, который сейчас загружается, дожидается окончания загрузки и удаляет ее результат,
+ * поэтому снимок, прочитанный до коммита, в кэше не остается.
+ */
+@Service
+@Slf4j
+public class AccountCache {
+
+    private final AccountRepository accountRepository;
+    private final StripedBalanceService stripedBalanceService;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final Cache<Long, AccountDto.Response> accounts;
+
+    private final Counter localInvalidations;
+    private final Counter remoteInvalidations;
+    private final Timer invalidationLag;
+
+    public AccountCache(AccountRepository accountRepository,
+                        StripedBalanceService stripedBalanceService,
+                        PlatformTransactionManager transactionManager,
+                        MeterRegistry meterRegistry,
+                        @Value("${app.accounts.cache.max-size:100000}") long maxSize,
+                        @Value("${app.accounts.cache.ttl:30s}") Duration ttl) {
+        this.accountRepository = accountRepository;
+        this.stripedBalanceService = stripedBalanceService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+
+        this.accounts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        // cache.gets{result=hit|miss}, cache.evictions и т.д.
+        CaffeineCacheMetrics.monitor(meterRegistry, accounts, "accounts");
+        Gauge.builder("account.cache.hit.ratio", accounts, cache -> cache.stats().hitRate())
+                .description("Share of account reads served from the cache")
+                .register(meterRegistry);
+        this.localInvalidations = invalidationCounter(meterRegistry, "local");
+        this.remoteInvalidations = invalidationCounter(meterRegistry, "remote");
+        this.invalidationLag = Timer.builder("account.cache.invalidation.lag")
+                .description("Time from event publication on another node to cache invalidation on this node")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Возвращает счет из кэша или загружает его из БД.
+     */
+    public AccountDto.Response get(Long id) {
+        AccountDto.Response response = accounts.get(id, this::load);
+        if (response == null) {
+            throw new IllegalArgumentException("Account not found");
+        }
+        return response;
+    }
+
+    /**
+     * Только попадание в кэш, без загрузки из БД (реактивный API читает промахи через R2DBC).
+     */
+    public Optional<AccountDto.Response> getIfPresent(Long id) {
+        return Optional.ofNullable(accounts.getIfPresent(id));
+    }
+
+    /**
+     * Сбрасывает записи после коммита текущей транзакции (без транзакции - сразу).
+     * Сброс до коммита позволил бы параллельному чтению закэшировать старый баланс.
+     */
+    public void invalidateAfterCommit(Collection<Long> accountIds) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<Long> ids = List.copyOf(accountIds);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(ids);
+                }
+            });
+        } else {
+            invalidate(accountIds);
+        }
+    }
+
+    /**
+     * Сброс по событию другого узла. publishedAt - время отправки события в Kafka.
+     */
+    void invalidateRemote(Collection<Long> accountIds, long publishedAt) {
+        accounts.invalidateAll(accountIds);
+        remoteInvalidations.increment(accountIds.size());
+        invalidationLag.record(Duration.ofMillis(Math.max(0, System.currentTimeMillis() - publishedAt)));
+    }
+
+    private void invalidate(Collection<Long> accountIds) {
+        accounts.invalidateAll(accountIds);
+        localInvalidations.increment(accountIds.size());
+    }
+
+    /**
+     * Загрузка всегда с primary: запись живет до ttl, и снимок с отстающей реплики
+     * пережил бы инвалидацию, которая его должна была убрать.
+     */
+    private AccountDto.Response load(Long id) {
+        return ReadConsistency.onPrimary(() -> readOnlyTransaction.execute(status -> accountRepository.findById(id)
+                .map(this::toResponse)
+                .orElse(null)));
+    }
+
+    private AccountDto.Response toResponse(Account account) {
+        return new AccountDto.Response(
+                account.getId(),
+                account.getNumber(),
+                stripedBalanceService.availableBalance(account),
+                account.getCurrency()
+        );
+    }
+
+    private static Counter invalidationCounter(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("account.cache.invalidations")
+                .description("Account cache entries invalidated by source")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.Silexj.payment_engine.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.Silexj.payment_engine.dto.event.BalanceDepositedEvent;
+import com.github.Silexj.payment_engine.dto.event.TransferCompletedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Сбрасывает кэш счетов по событиям изменения баланса с других узлов.
+ *
+ * У каждого узла своя consumer group (случайный суффикс), поэтому каждый узел получает все события.
+ * Читает только новые события (auto.offset.reset=latest): при старте кэш пуст.
+ * Свои события узел тоже получает - повторный сброс безопасен.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AccountCacheInvalidationListener {
+
+    private final ObjectMapper objectMapper;
+    private final AccountCache accountCache;
+
+    @KafkaListener(topics = "${app.kafka.topic-name}",
+            groupId = "account-cache-${random.uuid}",
+            properties = "auto.offset.reset=latest")
+    public void handlePaymentEvent(@Payload String payload,
+                                   @Header("EVENT_TYPE") String eventType,
+                                   @Header(KafkaHeaders.RECEIVED_TIMESTAMP) long timestamp) {
+        try {
+            switch (eventType) {
+                case "TRANSFER_COMPLETED" -> {
+                    var event = objectMapper.readValue(payload, TransferCompletedEvent.class);
+                    accountCache.invalidateRemote(List.of(event.senderAccountId(), event.receiverAccountId()), timestamp);
+                }
+                case "BALANCE_DEPOSITED" -> {
+                    var event = objectMapper.readValue(payload, BalanceDepositedEvent.class);
+                    accountCache.invalidateRemote(List.of(event.accountId()), timestamp);
+                }
+                default -> {
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to apply account cache invalidation: type={}", eventType, e);
+        }
+    }
+}
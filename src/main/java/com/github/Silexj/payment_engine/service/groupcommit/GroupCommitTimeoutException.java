@@ -0,0 +1,13 @@
+package com.github.Silexj.payment_engine.service.groupcommit;
+
+/**
+ * Группа с переводом уже пишется, но не закоммитилась за app.transfer.group-commit.ack-timeout.
+ * Отдается клиенту как 503: перевод мог как пройти, так и нет, поэтому его повторяют
+ * с тем же externalId - повтор вернет уже проведенный перевод, а не выполнит его второй раз.
+ */
+public class GroupCommitTimeoutException extends RuntimeException {
+
+    public GroupCommitTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
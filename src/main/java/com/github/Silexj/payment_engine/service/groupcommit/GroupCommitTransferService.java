@@ -0,0 +1,379 @@
+package com.github.Silexj.payment_engine.service.groupcommit;
+
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.dto.event.TransferCompletedEvent;
+import com.github.Silexj.payment_engine.model.Account;
+import com.github.Silexj.payment_engine.model.OutboxEvent;
+import com.github.Silexj.payment_engine.model.Transaction;
+import com.github.Silexj.payment_engine.model.TransactionStatus;
+import com.github.Silexj.payment_engine.repository.LedgerJdbcRepository;
+import com.github.Silexj.payment_engine.service.OutboxWriterService;
+import com.github.Silexj.payment_engine.service.PessimisticTransferService;
+import com.github.Silexj.payment_engine.service.StripedAccountException;
+import com.github.Silexj.payment_engine.service.TransferMetrics;
+import com.github.Silexj.payment_engine.service.TransferService;
+import com.github.Silexj.payment_engine.service.bulkhead.BulkheadRejectedException;
+import com.github.Silexj.payment_engine.service.idempotency.IdempotencyService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Group commit переводов (app.transfer.mode=GROUP_COMMIT).
+ *
+ * Каждый одиночный перевод - отдельный COMMIT со своим сбросом WAL на диск, и на медленном хранилище
+ * пропускную способность ограничивает именно латентность коммита. Здесь переводы копятся в очереди
+ * и один поток выполняет их группами: группа закрывается через app.transfer.group-commit.window
+ * после прихода первого перевода или при наборе max-size. Переводы, пришедшие во время коммита группы,
+ * образуют следующую группу, поэтому под нагрузкой группы растут сами.
+ *
+ * Группа - одна транзакция:
+ * 1. Все счета группы блокируются одним SELECT ... FOR UPDATE в порядке возрастания ID.
+ * 2. Переводы проверяются в порядке поступления по балансам с учетом предыдущих переводов группы;
+ *    отклоненный перевод (нехватка средств, валюта, счет не найден) в БД не пишется.
+ * 3. Проводка каждого перевода вставляется под своим SAVEPOINT: ошибка вставки (например, повтор
+ *    externalId из параллельного запроса) откатывает только этот перевод, а не всю группу.
+ * 4. Изменения балансов применяются одним batch UPDATE, события Outbox - одним batch INSERT.
+ * Вызывающий поток получает ответ только после COMMIT группы.
+ *
+ * Перевод, который не попал в группу за ack-timeout, снимается с очереди: writer пропускает его,
+ * а клиент получает BulkheadRejectedException (503, перевод не выполнялся). Если группа с переводом
+ * уже пишется, исход неизвестен - GroupCommitTimeoutException (503, повтор с тем же externalId безопасен).
+ *
+ * С включенным app.bulkhead одновременно ждут коммита не больше app.bulkhead.max-limit вызывающих,
+ * поэтому группа ограничена этим числом: иначе она никогда не наберет max-size и каждый раз ждала бы все окно.
+ *
+ * Striped счета выполняются через PessimisticTransferService в потоке вызывающего.
+ */
+@Service
+@ConditionalOnProperty(name = "app.transfer.mode", havingValue = "GROUP_COMMIT")
+@Slf4j
+public class GroupCommitTransferService {
+
+    private final LedgerJdbcRepository ledgerJdbcRepository;
+    private final OutboxWriterService outboxWriter;
+    private final IdempotencyService idempotencyService;
+    private final PessimisticTransferService pessimisticTransferService;
+    private final TransferMetrics transferMetrics;
+    private final TransactionTemplate transactionTemplate;
+
+    private final long windowNanos;
+    private final int maxGroupSize;
+    private final long ackTimeoutMs;
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final DistributionSummary groupSize;
+    private final Timer queueWait;
+    private final Counter itemRollbacks;
+
+    /**
+     * Перевод в очереди и его результат (завершается после коммита группы).
+     * claimed забирает либо writer (перевод пишется), либо вызывающий по таймауту (перевод снят).
+     */
+    private record Pending(
+            TransferDTO.PerformRequest request,
+            long enqueuedNanos,
+            CompletableFuture<TransferDTO.Response> result,
+            AtomicBoolean claimed
+    ) {
+        boolean claim() {
+            return !result.isDone() && claimed.compareAndSet(false, true);
+        }
+    }
+
+    public GroupCommitTransferService(LedgerJdbcRepository ledgerJdbcRepository,
+                                      OutboxWriterService outboxWriter,
+                                      IdempotencyService idempotencyService,
+                                      PessimisticTransferService pessimisticTransferService,
+                                      TransferMetrics transferMetrics,
+                                      PlatformTransactionManager transactionManager,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${app.transfer.group-commit.window:2ms}") Duration window,
+                                      @Value("${app.transfer.group-commit.max-size:100}") int maxGroupSize,
+                                      @Value("${app.transfer.group-commit.ack-timeout:5000}") long ackTimeoutMs,
+                                      @Value("${app.bulkhead.enabled:false}") boolean bulkheadEnabled,
+                                      @Value("${app.bulkhead.max-limit:10}") int bulkheadMaxLimit) {
+        this.ledgerJdbcRepository = ledgerJdbcRepository;
+        this.outboxWriter = outboxWriter;
+        this.idempotencyService = idempotencyService;
+        this.pessimisticTransferService = pessimisticTransferService;
+        this.transferMetrics = transferMetrics;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.windowNanos = window.toNanos();
+        this.maxGroupSize = Math.max(1, bulkheadEnabled ? Math.min(maxGroupSize, bulkheadMaxLimit) : maxGroupSize);
+        this.ackTimeoutMs = ackTimeoutMs;
+        this.writer = new Thread(this::run, "transfer-group-commit");
+
+        this.groupSize = DistributionSummary.builder("transfer.group.size")
+                .description("Number of transfers committed in one database transaction")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.queueWait = Timer.builder("transfer.group.wait")
+                .description("Time a transfer waits in the queue before its group starts")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.itemRollbacks = Counter.builder("transfer.group.item.rollbacks")
+                .description("Transfers rolled back to their savepoint without aborting the group")
+                .register(meterRegistry);
+        Gauge.builder("transfer.group.pending", queue, BlockingQueue::size)
+                .description("Transfers waiting for the group commit writer")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        writer.start();
+        log.info("Group commit started: window={}us, maxSize={}", TimeUnit.NANOSECONDS.toMicros(windowNanos), maxGroupSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        writer.interrupt();
+    }
+
+    /**
+     * Ставит перевод в очередь и ждет коммита его группы.
+     * Идемпотентность до постановки в очередь проверяет TransferService; повтор внутри группы
+     * или из параллельного запроса отсекает уникальный индекс external_id (DataIntegrityViolationException).
+     */
+    public TransferDTO.Response performTransfer(TransferDTO.PerformRequest request) {
+        if (request.fromAccountId().equals(request.toAccountId())) {
+            throw new IllegalArgumentException("Self-transfer is not allowed");
+        }
+        Pending pending = new Pending(request, System.nanoTime(), new CompletableFuture<>(), new AtomicBoolean());
+        queue.add(pending);
+        try {
+            return await(pending);
+        } catch (StripedAccountException e) {
+            return pessimisticTransferService.performTransfer(request);
+        }
+    }
+
+    private void run() {
+        List<Pending> group = new ArrayList<>(maxGroupSize);
+        while (running) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                collect(group, first.enqueuedNanos() + windowNanos);
+                // Переводы, снятые вызывающими по таймауту, не пишутся
+                group.removeIf(pending -> !pending.claim());
+                if (!group.isEmpty()) {
+                    write(group);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                group.clear();
+            }
+        }
+        Pending rest;
+        while ((rest = queue.poll()) != null) {
+            rest.result().completeExceptionally(new IllegalStateException("Group commit is stopped"));
+        }
+    }
+
+    /**
+     * Добирает группу до max-size, пока не истекло окно. Если первый перевод ждал коммита предыдущей
+     * группы дольше окна, группа уходит сразу с тем, что уже есть в очереди.
+     */
+    private void collect(List<Pending> group, long deadline) throws InterruptedException {
+        while (group.size() < maxGroupSize) {
+            queue.drainTo(group, maxGroupSize - group.size());
+            long remaining = deadline - System.nanoTime();
+            if (group.size() >= maxGroupSize || remaining <= 0) {
+                return;
+            }
+            Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            group.add(next);
+        }
+    }
+
+    private void write(List<Pending> group) {
+        long startedAt = System.nanoTime();
+        group.forEach(pending -> queueWait.record(startedAt - pending.enqueuedNanos(), TimeUnit.NANOSECONDS));
+
+        TransferDTO.Response[] responses = new TransferDTO.Response[group.size()];
+        RuntimeException[] failures = new RuntimeException[group.size()];
+        BigDecimal[] total = {BigDecimal.ZERO};
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                transferMetrics.recordCommit(TransferMetrics.Operation.TRANSFER);
+                Set<Long> accountIds = new TreeSet<>();
+                group.forEach(pending -> {
+                    accountIds.add(pending.request().fromAccountId());
+                    accountIds.add(pending.request().toAccountId());
+                });
+                Map<Long, LedgerJdbcRepository.AccountBalance> accounts = ledgerJdbcRepository.lockAccountBalances(accountIds);
+                Map<Long, BigDecimal> balances = new HashMap<>();
+                accounts.values().forEach(account -> balances.put(account.id(), account.balance()));
+
+                Map<Long, BigDecimal> deltas = new TreeMap<>();
+                List<OutboxEvent> events = new ArrayList<>(group.size());
+                for (int i = 0; i < group.size(); i++) {
+                    TransferDTO.PerformRequest request = group.get(i).request();
+                    try {
+                        validate(request, accounts, balances);
+                        Transaction transaction = toTransaction(request, accounts.get(request.fromAccountId()).currency());
+                        ledgerJdbcRepository.executeInSavepoint(() ->
+                                ledgerJdbcRepository.insertTransactions(List.of(transaction)));
+
+                        balances.merge(request.fromAccountId(), request.amount().negate(), BigDecimal::add);
+                        balances.merge(request.toAccountId(), request.amount(), BigDecimal::add);
+                        deltas.merge(request.fromAccountId(), request.amount().negate(), BigDecimal::add);
+                        deltas.merge(request.toAccountId(), request.amount(), BigDecimal::add);
+                        events.add(toOutboxEvent(transaction));
+                        responses[i] = TransferService.mapToResponse(transaction);
+                        total[0] = total[0].add(request.amount());
+                    } catch (DataAccessException e) {
+                        itemRollbacks.increment();
+                        log.warn("Group item rolled back to savepoint: externalId={}, reason={}",
+                                request.externalId(), e.getMessage());
+                        failures[i] = e;
+                    } catch (IllegalArgumentException | StripedAccountException e) {
+                        failures[i] = e;
+                    }
+                }
+
+                ledgerJdbcRepository.applyBalanceDeltas(deltas);
+                outboxWriter.saveEvents(events);
+            });
+        } catch (RuntimeException e) {
+            log.error("Group commit failed: size={}", group.size(), e);
+            var failure = new IllegalStateException("Group commit failed", e);
+            for (int i = 0; i < group.size(); i++) {
+                group.get(i).result().completeExceptionally(
+                        failures[i] instanceof IllegalArgumentException rejected ? rejected : failure);
+            }
+            return;
+        }
+
+        groupSize.record(group.size());
+        transferMetrics.recordAmount(total[0]);
+        for (int i = 0; i < group.size(); i++) {
+            if (responses[i] != null) {
+                idempotencyService.record(responses[i]);
+                group.get(i).result().complete(responses[i]);
+            } else {
+                group.get(i).result().completeExceptionally(failures[i]);
+            }
+        }
+        log.debug("Group committed: size={}", group.size());
+    }
+
+    /**
+     * Проверки одиночного перевода по балансам с учетом предыдущих переводов группы.
+     * Отсутствующий счет сообщается в порядке блокировок, как в пессимистичном пути.
+     */
+    private void validate(TransferDTO.PerformRequest request,
+                          Map<Long, LedgerJdbcRepository.AccountBalance> accounts,
+                          Map<Long, BigDecimal> balances) {
+        Long firstId = Math.min(request.fromAccountId(), request.toAccountId());
+        Long secondId = Math.max(request.fromAccountId(), request.toAccountId());
+        for (Long accountId : List.of(firstId, secondId)) {
+            LedgerJdbcRepository.AccountBalance account = accounts.get(accountId);
+            if (account == null) {
+                throw new IllegalArgumentException("Account not found: " + accountId);
+            }
+            if (account.balanceSlots() > 0) {
+                throw new StripedAccountException();
+            }
+        }
+        String senderCurrency = accounts.get(request.fromAccountId()).currency();
+        String receiverCurrency = accounts.get(request.toAccountId()).currency();
+        if (!senderCurrency.equals(receiverCurrency)) {
+            log.error("Currency mismatch: sender={}, receiver={}", senderCurrency, receiverCurrency);
+            throw new IllegalArgumentException("Cross-currency transfers are not supported");
+        }
+        BigDecimal balance = balances.get(request.fromAccountId());
+        if (balance.compareTo(request.amount()) < 0) {
+            log.warn("Insufficient funds: accountId={}, balance={}, required={}",
+                    request.fromAccountId(), balance, request.amount());
+            throw new IllegalArgumentException("Insufficient funds");
+        }
+    }
+
+    private static Transaction toTransaction(TransferDTO.PerformRequest request, String currency) {
+        return Transaction.builder()
+                .id(UUID.randomUUID())
+                .externalId(request.externalId())
+                .sender(Account.builder().id(request.fromAccountId()).build())
+                .receiver(Account.builder().id(request.toAccountId()).build())
+                .amount(request.amount())
+                .currency(currency)
+                .timestamp(LocalDateTime.now())
+                .status(TransactionStatus.SUCCESS)
+                .build();
+    }
+
+    private OutboxEvent toOutboxEvent(Transaction transaction) {
+        var event = new TransferCompletedEvent(
+                transaction.getId(),
+                transaction.getSender().getId(),
+                transaction.getReceiver().getId(),
+                transaction.getAmount(),
+                transaction.getCurrency()
+        );
+        return outboxWriter.toOutboxEvent(transaction.getId().toString(), "TRANSFER_COMPLETED", event);
+    }
+
+    private TransferDTO.Response await(Pending pending) {
+        try {
+            return pending.result().get(ackTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for group commit", e);
+        } catch (TimeoutException e) {
+            if (pending.claimed().compareAndSet(false, true)) {
+                pending.result().cancel(false);
+                throw new BulkheadRejectedException("Group commit did not start the transfer in time");
+            }
+            throw new GroupCommitTimeoutException("Group commit did not acknowledge the transfer in time", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : new IllegalStateException(e.getCause());
+        }
+    }
+}
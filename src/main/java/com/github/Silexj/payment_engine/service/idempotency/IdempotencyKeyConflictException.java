@@ -0,0 +1,14 @@
+package com.github.Silexj.payment_engine.service.idempotency;
+
+import java.util.UUID;
+
+/**
+ * externalId уже использован для перевода с другими счетами или суммой.
+ * Отдается клиенту как 409: повтор с тем же ключом вернул бы чужой результат.
+ */
+public class IdempotencyKeyConflictException extends RuntimeException {
+
+    public IdempotencyKeyConflictException(UUID externalId) {
+        super("Transfer " + externalId + " was already submitted with different parameters");
+    }
+}
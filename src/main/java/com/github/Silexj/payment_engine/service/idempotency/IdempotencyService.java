@@ -0,0 +1,228 @@
+package com.github.Silexj.payment_engine.service.idempotency;
+
+import com.github.Silexj.payment_engine.config.datasource.ReadConsistency;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.model.TransactionStatus;
+import com.github.Silexj.payment_engine.repository.LedgerJdbcRepository;
+import com.github.Silexj.payment_engine.repository.TransactionRepository;
+import com.github.Silexj.payment_engine.service.TransferService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Быстрая проверка идемпотентности перед SELECT по transactions.external_id.
+ *
+ * 1. Кэш последних ответов (ограничен по размеру и времени жизни) - повтор запроса клиентом
+ *    обслуживается без обращения к БД.
+ * 2. Bloom фильтр всех известных externalId - если фильтр говорит "нет", такого ключа точно нет,
+ *    и SELECT пропускается (обычный случай: новый перевод).
+ * 3. Иначе - обычный поиск в БД (ответ фильтра "возможно" оказывается ложным с вероятностью false-positive-rate).
+ *
+ * Фильтр наполняется из idx_transactions_external_id при старте и пополняется после коммита каждой проводки.
+ * Проводки, вставленные другими узлами после старта, этот узел не видит: такой повтор отсекает
+ * уникальный индекс external_id, и вызывающий код возвращает существующую проводку через findCommitted.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    private final TransactionRepository transactionRepository;
+    private final LedgerJdbcRepository ledgerJdbcRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final Cache<UUID, TransferDTO.Response> recentResponses;
+    private final UuidBloomFilter bloomFilter;
+    private volatile boolean bloomReady;
+
+    private final Counter cacheHits;
+    private final Counter databaseHits;
+    private final Counter bloomMisses;
+    private final Counter falsePositives;
+    private final Counter uncheckedMisses;
+
+    public IdempotencyService(TransactionRepository transactionRepository,
+                              LedgerJdbcRepository ledgerJdbcRepository,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.idempotency.cache.max-size:100000}") long cacheMaxSize,
+                              @Value("${app.idempotency.cache.ttl:10m}") Duration cacheTtl,
+                              @Value("${app.idempotency.bloom.expected-insertions:10000000}") long expectedInsertions,
+                              @Value("${app.idempotency.bloom.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.transactionRepository = transactionRepository;
+        this.ledgerJdbcRepository = ledgerJdbcRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+
+        this.recentResponses = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtl)
+                .build();
+        this.bloomFilter = new UuidBloomFilter(expectedInsertions, falsePositiveRate);
+
+        this.cacheHits = lookupCounter(meterRegistry, "cache_hit");
+        this.databaseHits = lookupCounter(meterRegistry, "db_hit");
+        this.bloomMisses = lookupCounter(meterRegistry, "bloom_miss");
+        this.falsePositives = lookupCounter(meterRegistry, "false_positive");
+        this.uncheckedMisses = lookupCounter(meterRegistry, "db_miss");
+
+        Gauge.builder("idempotency.cache.size", recentResponses, Cache::estimatedSize)
+                .description("Responses held in the idempotency cache")
+                .register(meterRegistry);
+        Gauge.builder("idempotency.bloom.insertions", bloomFilter, UuidBloomFilter::insertions)
+                .description("External IDs added to the idempotency Bloom filter")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Наполняет Bloom фильтр всеми externalId из БД (index-only scan по idx_transactions_external_id).
+     * Пока фильтр не наполнен, все проверки идут в БД.
+     * Читает только primary: ключ, которого еще нет на реплике, фильтр считал бы новым.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildBloomFilter() {
+        AtomicLong loaded = new AtomicLong();
+        ReadConsistency.onPrimary(() -> readOnlyTransaction.execute(status -> {
+            ledgerJdbcRepository.forEachTransactionExternalId(externalId -> {
+                bloomFilter.put(externalId);
+                loaded.incrementAndGet();
+            });
+            return null;
+        }));
+        bloomReady = true;
+        log.info("Idempotency Bloom filter built: keys={}, bits={}", loaded.get(), bloomFilter.bitCount());
+    }
+
+    /**
+     * Возвращает ответ по уже выполненному переводу с этим externalId, если он есть.
+     */
+    public Optional<TransferDTO.Response> findExisting(UUID externalId) {
+        TransferDTO.Response cached = recentResponses.getIfPresent(externalId);
+        if (cached != null) {
+            cacheHits.increment();
+            return Optional.of(cached);
+        }
+        if (bloomReady && !bloomFilter.mightContain(externalId)) {
+            bloomMisses.increment();
+            return Optional.empty();
+        }
+
+        Optional<TransferDTO.Response> existing = findCommitted(externalId);
+        if (existing.isPresent()) {
+            databaseHits.increment();
+        } else {
+            (bloomReady ? falsePositives : uncheckedMisses).increment();
+        }
+        return existing;
+    }
+
+    /**
+     * Пакетный вариант findExisting: в БД уходит один запрос только по ключам, которые фильтр не отсек.
+     */
+    public Map<UUID, TransferDTO.Response> findExistingAll(Collection<UUID> externalIds) {
+        Map<UUID, TransferDTO.Response> existing = new HashMap<>();
+        List<UUID> unresolved = new ArrayList<>();
+        for (UUID externalId : externalIds) {
+            TransferDTO.Response cached = recentResponses.getIfPresent(externalId);
+            if (cached != null) {
+                cacheHits.increment();
+                existing.put(externalId, cached);
+            } else if (bloomReady && !bloomFilter.mightContain(externalId)) {
+                bloomMisses.increment();
+            } else {
+                unresolved.add(externalId);
+            }
+        }
+        if (unresolved.isEmpty()) {
+            return existing;
+        }
+
+        transactionRepository.findAllByExternalIdIn(unresolved).forEach(tx -> {
+            TransferDTO.Response response = TransferService.mapToResponse(tx);
+            recentResponses.put(tx.getExternalId(), response);
+            existing.put(tx.getExternalId(), response);
+            databaseHits.increment();
+        });
+        long missed = unresolved.stream().filter(id -> !existing.containsKey(id)).count();
+        (bloomReady ? falsePositives : uncheckedMisses).increment(missed);
+        return existing;
+    }
+
+    /**
+     * Поиск в БД в обход фильтра. Нужен после конфликта уникального индекса external_id,
+     * когда ключ вставил параллельный запрос или другой узел. Читает с primary: реплика
+     * может еще не видеть проводку, из-за которой случился конфликт.
+     */
+    public Optional<TransferDTO.Response> findCommitted(UUID externalId) {
+        Optional<TransferDTO.Response> existing = ReadConsistency.onPrimary(() -> transactionRepository.findByExternalId(externalId))
+                .map(TransferService::mapToResponse);
+        existing.ifPresent(response -> remember(externalId, response));
+        return existing;
+    }
+
+    /**
+     * Пакетный вариант findCommitted: один запрос к primary по всем ключам пакета.
+     */
+    public Map<UUID, TransferDTO.Response> findCommittedAll(Collection<UUID> externalIds) {
+        Map<UUID, TransferDTO.Response> existing = new HashMap<>();
+        ReadConsistency.onPrimary(() -> transactionRepository.findAllByExternalIdIn(externalIds)).forEach(tx -> {
+            TransferDTO.Response response = TransferService.mapToResponse(tx);
+            remember(tx.getExternalId(), response);
+            existing.put(tx.getExternalId(), response);
+        });
+        return existing;
+    }
+
+    /**
+     * Запоминает выполненный перевод. Внутри транзакции - только после ее коммита,
+     * чтобы откаченная проводка не отвечала на повторы.
+     */
+    public void record(TransferDTO.Response response) {
+        if (response.status() != TransactionStatus.SUCCESS || response.transactionId() == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remember(response.externalId(), response);
+                }
+            });
+        } else {
+            remember(response.externalId(), response);
+        }
+    }
+
+    private void remember(UUID externalId, TransferDTO.Response response) {
+        bloomFilter.put(externalId);
+        recentResponses.put(externalId, response);
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("idempotency.lookups")
+                .description("Idempotency key lookups by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.Silexj.payment_engine.service.idempotency;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Потокобезопасный Bloom фильтр для UUID.
+ * Ответ "нет" точный, ответ "возможно" требует проверки в БД.
+ *
+ * Биты хранятся в AtomicLongArray и выставляются через CAS, поэтому put и mightContain
+ * можно вызывать из любых потоков без блокировок. k позиций считаются двойным хэшированием
+ * (h1 + i * h2) от перемешанных половин UUID.
+ */
+class UuidBloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashFunctions;
+    private final LongAdder insertions = new LongAdder();
+
+    UuidBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter parameters: expectedInsertions="
+                    + expectedInsertions + ", falsePositiveRate=" + falsePositiveRate);
+        }
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (optimalBits + 63) / 64);
+
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * 64;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    void put(UUID value) {
+        long h1 = mix(value.getMostSignificantBits());
+        long h2 = mix(value.getLeastSignificantBits()) | 1;
+        for (int i = 0; i < hashFunctions; i++) {
+            setBit(Math.floorMod(h1 + i * h2, bitCount));
+        }
+        insertions.increment();
+    }
+
+    boolean mightContain(UUID value) {
+        long h1 = mix(value.getMostSignificantBits());
+        long h2 = mix(value.getLeastSignificantBits()) | 1;
+        for (int i = 0; i < hashFunctions; i++) {
+            long index = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long insertions() {
+        return insertions.sum();
+    }
+
+    long bitCount() {
+        return bitCount;
+    }
+
+    private void setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(word, current, current | mask));
+    }
+
+    /**
+     * Финализатор MurmurHash3 (fmix64): равномерно распределяет и неслучайные UUID.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
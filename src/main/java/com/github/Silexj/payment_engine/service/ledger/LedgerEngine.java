@@ -0,0 +1,435 @@
+package com.github.Silexj.payment_engine.service.ledger;
+
+import com.github.Silexj.payment_engine.config.datasource.ReadConsistency;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.dto.event.BalanceDepositedEvent;
+import com.github.Silexj.payment_engine.dto.event.TransferCompletedEvent;
+import com.github.Silexj.payment_engine.model.Account;
+import com.github.Silexj.payment_engine.model.OutboxEvent;
+import com.github.Silexj.payment_engine.model.Transaction;
+import com.github.Silexj.payment_engine.model.TransactionStatus;
+import com.github.Silexj.payment_engine.repository.LedgerJdbcRepository;
+import com.github.Silexj.payment_engine.service.OutboxWriterService;
+import com.github.Silexj.payment_engine.service.TransferService;
+import com.github.Silexj.payment_engine.service.idempotency.IdempotencyService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory движок переводов (app.transfer.mode=LEDGER).
+ *
+ * Счета разбиты на партиции по хэшу ID, каждой партицией владеет ровно один поток:
+ * балансы партиции читаются и меняются только им, поэтому блокировки БД и синхронизация не нужны.
+ * Перевод = списание в потоке партиции отправителя, затем зачисление в потоке партиции получателя,
+ * затем запись в журнал (LedgerJournal). Вызывающий получает ответ только после коммита группы журнала.
+ *
+ * Состояние восстанавливается из таблицы accounts при старте; счета, созданные позже, подгружаются лениво.
+ * Запись, отклоненная журналом по отдельности (например, повтор external_id), откатывает свои delta в памяти.
+ * Если упала запись всей группы, потоки партиций останавливаются, состояние в памяти сбрасывается
+ * и журнал переходит в новую эпоху: операции, начатые до сброса, отклоняются, а счета перечитываются из БД.
+ * Striped счета в этом режиме не поддерживаются.
+ */
+@Service
+@ConditionalOnProperty(name = "app.transfer.mode", havingValue = "LEDGER")
+@Slf4j
+public class LedgerEngine {
+
+    private final LedgerJdbcRepository ledgerJdbcRepository;
+    private final IdempotencyService idempotencyService;
+    private final OutboxWriterService outboxWriter;
+    private final TransactionTemplate readOnlyTransaction;
+    private final LedgerJournal journal;
+    private final long ackTimeoutMs;
+
+    private final ExecutorService[] partitions;
+    private final List<Map<Long, LedgerAccount>> books;
+    private final Map<Long, String> currencies = new ConcurrentHashMap<>();
+    private final Map<UUID, CompletableFuture<TransferDTO.Response>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter transferAmountCounter;
+    private final Counter rejectedEntries;
+
+    /**
+     * Баланс счета в памяти. Изменяется только потоком партиции-владельца.
+     */
+    private static final class LedgerAccount {
+        private BigDecimal balance;
+
+        private LedgerAccount(BigDecimal balance) {
+            this.balance = balance;
+        }
+    }
+
+    public LedgerEngine(LedgerJdbcRepository ledgerJdbcRepository,
+                        IdempotencyService idempotencyService,
+                        OutboxWriterService outboxWriter,
+                        PlatformTransactionManager transactionManager,
+                        MeterRegistry meterRegistry,
+                        @Value("${app.ledger.partitions:8}") int partitionCount,
+                        @Value("${app.ledger.journal-batch-size:1000}") int journalBatchSize,
+                        @Value("${app.ledger.ack-timeout:5000}") long ackTimeoutMs) {
+        this.ledgerJdbcRepository = ledgerJdbcRepository;
+        this.idempotencyService = idempotencyService;
+        this.outboxWriter = outboxWriter;
+        this.ackTimeoutMs = ackTimeoutMs;
+
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+
+        this.partitions = new ExecutorService[partitionCount];
+        this.books = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            String threadName = "ledger-partition-" + i;
+            partitions[i] = Executors.newSingleThreadExecutor(r -> new Thread(r, threadName));
+            books.add(new HashMap<>());
+        }
+
+        DistributionSummary batchSize = DistributionSummary.builder("ledger.journal.batch.size")
+                .description("Number of entries committed per journal group")
+                .register(meterRegistry);
+        this.journal = new LedgerJournal(ledgerJdbcRepository, new TransactionTemplate(transactionManager),
+                journalBatchSize, batchSize::record, this::revert, this::resetBooks);
+
+        Gauge.builder("ledger.journal.pending", journal, LedgerJournal::pending)
+                .description("Entries waiting for the journal writer")
+                .register(meterRegistry);
+        this.transferAmountCounter = Counter.builder("transfer.amount.total")
+                .description("Total amount of money transferred")
+                .register(meterRegistry);
+        this.rejectedEntries = Counter.builder("ledger.journal.entry.rejected")
+                .description("Journal entries rejected individually without failing their group")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Запускает журнал и восстанавливает балансы из таблицы accounts.
+     * Счет, уже подгруженный лениво (и, возможно, измененный), не перезаписывается.
+     * Читает только primary: баланс с отстающей реплики стал бы в памяти источником правды.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        journal.start();
+
+        AtomicLong loaded = new AtomicLong();
+        ReadConsistency.onPrimary(() -> readOnlyTransaction.execute(status -> {
+            ledgerJdbcRepository.forEachAccountBalance(snapshot -> {
+                currencies.putIfAbsent(snapshot.id(), snapshot.currency());
+                if (snapshot.balanceSlots() == 0) {
+                    int partition = partitionIndex(snapshot.id());
+                    partitions[partition].execute(() ->
+                            books.get(partition).putIfAbsent(snapshot.id(), new LedgerAccount(snapshot.balance())));
+                    loaded.incrementAndGet();
+                }
+            });
+            return null;
+        }));
+        log.info("Ledger engine started: partitions={}, accounts={}", partitions.length, loaded.get());
+    }
+
+    @PreDestroy
+    public void stop() {
+        journal.stop();
+        for (ExecutorService partition : partitions) {
+            partition.shutdown();
+        }
+    }
+
+    /**
+     * Тот же контракт, что и TransferService.performTransfer: идемпотентность по externalId,
+     * IllegalArgumentException для бизнес-ошибок. Возвращает управление после коммита журнала.
+     */
+    public TransferDTO.Response performTransfer(TransferDTO.PerformRequest request) {
+        return await(submitTransfer(request));
+    }
+
+    /**
+     * Асинхронный вариант performTransfer (используется пакетными переводами).
+     */
+    public CompletableFuture<TransferDTO.Response> submitTransfer(TransferDTO.PerformRequest request) {
+        CompletableFuture<TransferDTO.Response> promise = new CompletableFuture<>();
+        CompletableFuture<TransferDTO.Response> existing = inFlight.putIfAbsent(request.externalId(), promise);
+        if (existing != null) {
+            log.warn("Duplicate request detected while in flight: externalId={}", request.externalId());
+            return existing;
+        }
+        promise.whenComplete((response, error) -> inFlight.remove(request.externalId(), promise));
+
+        try {
+            var existingTx = idempotencyService.findExisting(request.externalId());
+            if (existingTx.isPresent()) {
+                log.warn("Duplicate request detected. Returning existing transaction: {}", existingTx.get().transactionId());
+                promise.complete(existingTx.get());
+                return promise;
+            }
+
+            if (request.fromAccountId().equals(request.toAccountId())) {
+                throw new IllegalArgumentException("Self-transfer is not allowed");
+            }
+
+            String currency = currencyOf(request.fromAccountId());
+            String receiverCurrency = currencyOf(request.toAccountId());
+            if (!currency.equals(receiverCurrency)) {
+                log.error("Currency mismatch: sender={}, receiver={}", currency, receiverCurrency);
+                throw new IllegalArgumentException("Cross-currency transfers are not supported");
+            }
+
+            execute(request, currency).whenComplete((response, error) -> {
+                if (error != null) {
+                    promise.completeExceptionally(unwrap(error));
+                } else {
+                    // До снятия записи из inFlight: повтор не должен проскочить мимо обеих проверок
+                    idempotencyService.record(response);
+                    promise.complete(response);
+                }
+            });
+        } catch (RuntimeException e) {
+            promise.completeExceptionally(e);
+        }
+        return promise;
+    }
+
+    /**
+     * Зачисление средств (top-up) через движок, чтобы баланс в памяти не расходился с БД.
+     * Возвращает новый баланс после коммита журнала.
+     */
+    public BigDecimal deposit(Long accountId, BigDecimal amount) {
+        String currency = currencyOf(accountId);
+        int partition = partitionIndex(accountId);
+        long epoch = journal.epoch();
+
+        CompletableFuture<BigDecimal> applied = CompletableFuture.supplyAsync(() -> {
+            checkEpoch(epoch);
+            LedgerAccount account = account(accountId);
+            account.balance = account.balance.add(amount);
+            return account.balance;
+        }, partitions[partition]);
+
+        Transaction transaction = Transaction.builder()
+                .id(UUID.randomUUID())
+                .externalId(UUID.randomUUID())
+                .receiver(Account.builder().id(accountId).build())
+                .amount(amount)
+                .currency(currency)
+                .timestamp(LocalDateTime.now())
+                .status(TransactionStatus.SUCCESS)
+                .build();
+        OutboxEvent event = outboxWriter.toOutboxEvent(accountId.toString(), "BALANCE_DEPOSITED",
+                new BalanceDepositedEvent(accountId, amount, currency, transaction.getId()));
+
+        return await(applied.thenCompose(balance ->
+                journal.append(epoch, transaction, event, Map.of(accountId, amount)).thenApply(ignored -> balance)));
+    }
+
+    private CompletableFuture<TransferDTO.Response> execute(TransferDTO.PerformRequest request, String currency) {
+        Long from = request.fromAccountId();
+        Long to = request.toAccountId();
+        BigDecimal amount = request.amount();
+        long epoch = journal.epoch();
+
+        Transaction transaction = Transaction.builder()
+                .id(UUID.randomUUID())
+                .externalId(request.externalId())
+                .sender(Account.builder().id(from).build())
+                .receiver(Account.builder().id(to).build())
+                .amount(amount)
+                .currency(currency)
+                .timestamp(LocalDateTime.now())
+                .status(TransactionStatus.SUCCESS)
+                .build();
+        OutboxEvent event = outboxWriter.toOutboxEvent(transaction.getId().toString(), "TRANSFER_COMPLETED",
+                new TransferCompletedEvent(transaction.getId(), from, to, amount, currency));
+
+        return CompletableFuture
+                .runAsync(() -> {
+                    checkEpoch(epoch);
+                    LedgerAccount sender = account(from);
+                    if (sender.balance.compareTo(amount) < 0) {
+                        log.warn("Insufficient funds: accountId={}, balance={}, required={}",
+                                from, sender.balance, amount);
+                        throw new IllegalArgumentException("Insufficient funds");
+                    }
+                    sender.balance = sender.balance.subtract(amount);
+                }, partitions[partitionIndex(from)])
+                .thenRunAsync(() -> {
+                    try {
+                        checkEpoch(epoch);
+                        LedgerAccount receiver = account(to);
+                        receiver.balance = receiver.balance.add(amount);
+                    } catch (RuntimeException e) {
+                        revert(epoch, Map.of(from, amount.negate()));
+                        throw e;
+                    }
+                }, partitions[partitionIndex(to)])
+                .thenCompose(ignored -> journal.append(epoch, transaction, event, Map.of(from, amount.negate(), to, amount)))
+                .thenApply(ignored -> {
+                    transferAmountCounter.increment(amount.doubleValue());
+                    log.info("Transfer completed successfully: txId={}", transaction.getId());
+                    return TransferService.mapToResponse(transaction);
+                });
+    }
+
+    /**
+     * Возвращает счет партиции, подгружая его из БД при первом обращении.
+     * Вызывается только из потока партиции-владельца.
+     */
+    private LedgerAccount account(Long accountId) {
+        Map<Long, LedgerAccount> book = books.get(partitionIndex(accountId));
+        LedgerAccount account = book.get(accountId);
+        if (account == null) {
+            var snapshot = ledgerJdbcRepository.findAccountBalance(accountId)
+                    .orElseThrow(() -> new IllegalArgumentException("Account not found: " + accountId));
+            if (snapshot.balanceSlots() > 0) {
+                throw new IllegalArgumentException("Striped accounts are not supported in LEDGER mode");
+            }
+            account = new LedgerAccount(snapshot.balance());
+            book.put(accountId, account);
+        }
+        return account;
+    }
+
+    /**
+     * Валюта счета неизменна, поэтому кэшируется в общей карте и читается из любого потока.
+     */
+    private String currencyOf(Long accountId) {
+        String currency = currencies.computeIfAbsent(accountId, id -> ledgerJdbcRepository.findAccountBalance(id)
+                .map(LedgerJdbcRepository.AccountBalance::currency)
+                .orElse(null));
+        if (currency == null) {
+            throw new IllegalArgumentException("Account not found: " + accountId);
+        }
+        return currency;
+    }
+
+    /**
+     * Операция, начатая в прошлой эпохе, не должна менять балансы, перечитанные после сброса.
+     * Вызывается в потоке партиции перед изменением баланса.
+     */
+    private void checkEpoch(long epoch) {
+        if (journal.epoch() != epoch) {
+            throw new IllegalStateException("Ledger state was reset after a journal failure, retry the operation");
+        }
+    }
+
+    /**
+     * Откатывает в памяти delta записи, отклоненной журналом. Если с тех пор состояние сбрасывалось,
+     * откатывать нечего: балансы уже перечитаны из БД, где этой записи нет.
+     */
+    private void revert(LedgerJournal.Entry entry) {
+        rejectedEntries.increment();
+        revert(entry.epoch(), entry.deltas());
+    }
+
+    private void revert(long epoch, Map<Long, BigDecimal> deltas) {
+        deltas.forEach((accountId, delta) -> {
+            int partition = partitionIndex(accountId);
+            partitions[partition].execute(() -> {
+                LedgerAccount account = books.get(partition).get(accountId);
+                if (journal.epoch() == epoch && account != null) {
+                    account.balance = account.balance.subtract(delta);
+                }
+            });
+        });
+    }
+
+    /**
+     * Сбрасывает балансы в памяти после сбоя группы журнала (вызывается потоком журнала).
+     * Все партиции останавливаются на барьере, чтобы ни одна операция не меняла балансы во время сброса;
+     * очистка и переход журнала в новую эпоху выполняются, пока они стоят.
+     * Следующее обращение к счету перечитает его из БД.
+     */
+    private void resetBooks() {
+        log.warn("Resetting in-memory ledger state after journal failure");
+        CountDownLatch parked = new CountDownLatch(partitions.length);
+        CountDownLatch resume = new CountDownLatch(1);
+        for (ExecutorService partition : partitions) {
+            partition.execute(() -> {
+                parked.countDown();
+                try {
+                    resume.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        try {
+            parked.await();
+            books.forEach(Map::clear);
+            journal.advanceEpoch();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // Приложение останавливается: балансы не трогаем, но записи, начатые до сбоя, журнал уже не примет
+            journal.advanceEpoch();
+        } finally {
+            resume.countDown();
+        }
+    }
+
+    private int partitionIndex(Long accountId) {
+        return Math.floorMod(Long.hashCode(accountId), partitions.length);
+    }
+
+    /**
+     * Срок ожидания подтверждения журнала, отсчитанный от текущего момента (System.nanoTime()).
+     * Пакетный перевод ждет все свои элементы до одного общего срока.
+     */
+    public long ackDeadline() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ackTimeoutMs);
+    }
+
+    /**
+     * Ждет результата submitTransfer не дольше deadline. Таймаут - LedgerTimeoutException (503, повтор безопасен),
+     * бизнес-ошибка перевода пробрасывается как есть.
+     */
+    public <T> T await(CompletableFuture<T> future, long deadline) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for ledger journal", e);
+        } catch (TimeoutException e) {
+            throw new LedgerTimeoutException("Ledger journal did not acknowledge the operation in time", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private <T> T await(CompletableFuture<T> future) {
+        return await(future, ackDeadline());
+    }
+
+    private RuntimeException unwrap(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof RuntimeException runtime
+                ? runtime
+                : new IllegalStateException(cause);
+    }
+}
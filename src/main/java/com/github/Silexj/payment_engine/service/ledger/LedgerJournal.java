@@ -0,0 +1,239 @@
+package com.github.Silexj.payment_engine.service.ledger;
+
+import com.github.Silexj.payment_engine.model.OutboxEvent;
+import com.github.Silexj.payment_engine.model.Transaction;
+import com.github.Silexj.payment_engine.repository.LedgerJdbcRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Журнал in-memory движка: один поток, который группирует записи (group commit)
+ * и пишет каждую группу одной транзакцией PostgreSQL:
+ * JDBC batch в transactions и outbox_events + batch UPDATE балансов по накопленным delta.
+ *
+ * Записи, пришедшие пока пишется текущая группа, образуют следующую группу,
+ * поэтому при росте нагрузки группы растут сами и число коммитов в секунду остается постоянным.
+ * Future записи завершается только после коммита ее группы.
+ *
+ * Проводки группы вставляются под SAVEPOINT. Если batch INSERT упал (например, повтор external_id
+ * с другого узла), проводки вставляются по одной, каждая под своим SAVEPOINT: отклоняется только
+ * запись с ошибкой, ее delta в памяти откатывает rejectionListener, остальная группа коммитится.
+ *
+ * Падение всей группы (ошибка UPDATE балансов, COMMIT, потеря соединения) вызывает failureListener,
+ * который сбрасывает состояние движка и переводит журнал в новую эпоху. Записи старой эпохи,
+ * оставшиеся в очереди или пришедшие позже, в БД не пишутся: их delta уже сброшены вместе с балансами.
+ */
+@Slf4j
+class LedgerJournal {
+
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final LedgerJdbcRepository ledgerJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxBatchSize;
+    private final IntConsumer batchSizeListener;
+    private final Consumer<Entry> rejectionListener;
+    private final Runnable failureListener;
+    private final Thread writer;
+
+    private volatile boolean running = true;
+    private volatile long epoch;
+
+    LedgerJournal(LedgerJdbcRepository ledgerJdbcRepository,
+                  TransactionTemplate transactionTemplate,
+                  int maxBatchSize,
+                  IntConsumer batchSizeListener,
+                  Consumer<Entry> rejectionListener,
+                  Runnable failureListener) {
+        this.ledgerJdbcRepository = ledgerJdbcRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.maxBatchSize = maxBatchSize;
+        this.batchSizeListener = batchSizeListener;
+        this.rejectionListener = rejectionListener;
+        this.failureListener = failureListener;
+        this.writer = new Thread(this::run, "ledger-journal");
+    }
+
+    /**
+     * Запись журнала: проводка, событие Outbox и изменения балансов, которые она вносит.
+     * epoch - эпоха журнала, в которой delta были применены к балансам в памяти.
+     */
+    record Entry(
+            long epoch,
+            Transaction transaction,
+            OutboxEvent event,
+            Map<Long, BigDecimal> deltas,
+            CompletableFuture<Void> durable
+    ) {}
+
+    void start() {
+        writer.start();
+    }
+
+    void stop() {
+        running = false;
+        writer.interrupt();
+    }
+
+    int pending() {
+        return queue.size();
+    }
+
+    long epoch() {
+        return epoch;
+    }
+
+    /**
+     * Начинает новую эпоху. Вызывается failureListener, пока потоки партиций остановлены.
+     */
+    void advanceEpoch() {
+        epoch++;
+    }
+
+    CompletableFuture<Void> append(long entryEpoch, Transaction transaction, OutboxEvent event, Map<Long, BigDecimal> deltas) {
+        var entry = new Entry(entryEpoch, transaction, event, deltas, new CompletableFuture<>());
+        if (entryEpoch != epoch) {
+            entry.durable().completeExceptionally(staleEntry());
+            return entry.durable();
+        }
+        queue.add(entry);
+        return entry.durable();
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        Entry rest;
+        while ((rest = queue.poll()) != null) {
+            rest.durable().completeExceptionally(new IllegalStateException("Ledger journal is stopped"));
+        }
+    }
+
+    private void write(List<Entry> batch) {
+        List<Entry> current = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            if (entry.epoch() == epoch) {
+                current.add(entry);
+            } else {
+                entry.durable().completeExceptionally(staleEntry());
+            }
+        }
+        if (current.isEmpty()) {
+            return;
+        }
+
+        RuntimeException[] rejections = new RuntimeException[current.size()];
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Arrays.fill(rejections, null);
+                insertTransactions(current, rejections);
+
+                List<OutboxEvent> events = new ArrayList<>(current.size());
+                Map<Long, BigDecimal> deltas = new TreeMap<>();
+                for (int i = 0; i < current.size(); i++) {
+                    Entry entry = current.get(i);
+                    if (rejections[i] != null) {
+                        continue;
+                    }
+                    if (entry.event() != null) {
+                        events.add(entry.event());
+                    }
+                    entry.deltas().forEach((accountId, delta) -> deltas.merge(accountId, delta, BigDecimal::add));
+                }
+                ledgerJdbcRepository.insertOutboxEvents(events);
+                ledgerJdbcRepository.applyBalanceDeltas(deltas);
+            });
+        } catch (Exception e) {
+            log.error("Ledger journal batch failed: size={}", current.size(), e);
+            var failure = new IllegalStateException("Ledger journal write failed", e);
+            current.forEach(entry -> entry.durable().completeExceptionally(failure));
+            failureListener.run();
+            discardStale();
+            return;
+        }
+
+        batchSizeListener.accept(current.size());
+        for (int i = 0; i < current.size(); i++) {
+            Entry entry = current.get(i);
+            if (rejections[i] == null) {
+                entry.durable().complete(null);
+            } else {
+                rejectionListener.accept(entry);
+                entry.durable().completeExceptionally(rejections[i]);
+            }
+        }
+    }
+
+    /**
+     * Вставляет проводки группы одним batch под SAVEPOINT; если batch упал - по одной,
+     * каждую под своим SAVEPOINT, и записывает ошибку отклоненной проводки в rejections.
+     */
+    private void insertTransactions(List<Entry> entries, RuntimeException[] rejections) {
+        try {
+            ledgerJdbcRepository.executeInSavepoint(() -> ledgerJdbcRepository.insertTransactions(
+                    entries.stream().map(Entry::transaction).toList()));
+            return;
+        } catch (DataAccessException e) {
+            log.warn("Ledger journal batch insert failed, isolating entries: size={}, reason={}",
+                    entries.size(), e.getMessage());
+        }
+
+        for (int i = 0; i < entries.size(); i++) {
+            Transaction transaction = entries.get(i).transaction();
+            try {
+                ledgerJdbcRepository.executeInSavepoint(() ->
+                        ledgerJdbcRepository.insertTransactions(List.of(transaction)));
+            } catch (DataAccessException e) {
+                log.warn("Ledger journal entry rejected: externalId={}, reason={}",
+                        transaction.getExternalId(), e.getMessage());
+                rejections[i] = e;
+            }
+        }
+    }
+
+    /**
+     * Отклоняет записи прошлой эпохи, накопившиеся в очереди, не дожидаясь следующей группы.
+     */
+    private void discardStale() {
+        long current = epoch;
+        queue.removeIf(entry -> {
+            if (entry.epoch() == current) {
+                return false;
+            }
+            entry.durable().completeExceptionally(staleEntry());
+            return true;
+        });
+    }
+
+    private static IllegalStateException staleEntry() {
+        return new IllegalStateException("Ledger state was reset after a journal failure, retry the operation");
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.Silexj.payment_engine.service.ledger;
+
+/**
+ * Журнал in-memory движка не подтвердил запись за app.ledger.ack-timeout.
+ * Отдается клиенту как 503: запись могла как пройти, так и нет, поэтому перевод повторяют
+ * с тем же externalId - повтор вернет уже проведенный перевод, а не выполнит его второй раз.
+ */
+public class LedgerTimeoutException extends RuntimeException {
+
+    public LedgerTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
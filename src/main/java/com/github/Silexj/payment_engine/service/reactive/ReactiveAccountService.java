@@ -0,0 +1,153 @@
+package com.github.Silexj.payment_engine.service.reactive;
+
+import com.github.Silexj.payment_engine.config.ReactiveDatabase;
+import com.github.Silexj.payment_engine.config.TransferMode;
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.dto.event.AccountCreatedEvent;
+import com.github.Silexj.payment_engine.dto.event.BalanceDepositedEvent;
+import com.github.Silexj.payment_engine.model.OutboxEvent;
+import com.github.Silexj.payment_engine.model.TransactionStatus;
+import com.github.Silexj.payment_engine.repository.ReactiveLedgerRepository;
+import com.github.Silexj.payment_engine.service.AccountNumberAllocator;
+import com.github.Silexj.payment_engine.service.AccountService;
+import com.github.Silexj.payment_engine.service.OutboxPublisher;
+import com.github.Silexj.payment_engine.service.OutboxWriterService;
+import com.github.Silexj.payment_engine.service.StripedAccountException;
+import com.github.Silexj.payment_engine.service.StripedBalanceService;
+import com.github.Silexj.payment_engine.service.cache.AccountCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Операции со счетами на R2DBC (профиль reactive): открытие, чтение и пополнение.
+ * Семантика и события Outbox совпадают с AccountService; striped счета и режим LEDGER
+ * обслуживает блокирующий AccountService на boundedElastic.
+ */
+@Service
+@Profile("reactive")
+@Slf4j
+public class ReactiveAccountService {
+
+    private final ReactiveLedgerRepository repository;
+    private final TransactionalOperator transactionalOperator;
+    private final AccountService accountService;
+    private final AccountNumberAllocator numberAllocator;
+    private final StripedBalanceService stripedBalanceService;
+    private final OutboxWriterService outboxWriter;
+    private final OutboxPublisher outboxPublisher;
+    private final AccountCache accountCache;
+    private final TransferMode transferMode;
+
+    public ReactiveAccountService(ReactiveLedgerRepository repository,
+                                  ReactiveDatabase database,
+                                  AccountService accountService,
+                                  AccountNumberAllocator numberAllocator,
+                                  StripedBalanceService stripedBalanceService,
+                                  OutboxWriterService outboxWriter,
+                                  OutboxPublisher outboxPublisher,
+                                  AccountCache accountCache,
+                                  @Value("${app.transfer.mode:PESSIMISTIC}") TransferMode transferMode) {
+        this.repository = repository;
+        this.transactionalOperator = database.getTransactionalOperator();
+        this.accountService = accountService;
+        this.numberAllocator = numberAllocator;
+        this.stripedBalanceService = stripedBalanceService;
+        this.outboxWriter = outboxWriter;
+        this.outboxPublisher = outboxPublisher;
+        this.accountCache = accountCache;
+        this.transferMode = transferMode;
+    }
+
+    /**
+     * Открывает счет. Номер выдает AccountNumberAllocator (изредка ходит в БД за новым блоком,
+     * поэтому вызывается на boundedElastic).
+     */
+    public Mono<AccountDto.Response> createAccount(AccountDto.CreateRequest request) {
+        return Mono.fromCallable(numberAllocator::allocate)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(number -> {
+                    LocalDateTime createdAt = LocalDateTime.now();
+                    return repository.insertAccount(number, request.currency(), createdAt)
+                            .flatMap(id -> {
+                                OutboxEvent event = outboxWriter.toOutboxEvent(id.toString(), "ACCOUNT_CREATED",
+                                        new AccountCreatedEvent(id, number, request.currency(), createdAt));
+                                event.setFastPath(outboxPublisher.isEnabled());
+                                return repository.insertOutboxEvent(event)
+                                        .thenReturn(new Committed(
+                                                new AccountDto.Response(id, number, BigDecimal.ZERO, request.currency()),
+                                                event));
+                            })
+                            .as(transactionalOperator::transactional);
+                })
+                .map(committed -> {
+                    outboxPublisher.publishCommitted(List.of(committed.event()));
+                    log.info("Account created: id={}, number={}", committed.account().id(), committed.account().number());
+                    return committed.account();
+                });
+    }
+
+    /**
+     * Счет из AccountCache, при промахе - из БД через R2DBC (в кэш не кладется: загрузку
+     * с гарантией сброса после коммита обеспечивает только блокирующий AccountCache.get).
+     */
+    public Mono<AccountDto.Response> getAccount(Long id) {
+        return Mono.justOrEmpty(accountCache.getIfPresent(id))
+                .switchIfEmpty(Mono.defer(() -> repository.findAccount(id)))
+                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("Account not found")));
+    }
+
+    /**
+     * Пополнение под блокировкой FOR UPDATE: баланс, запись о депозите и событие BALANCE_DEPOSITED.
+     */
+    public Mono<AccountDto.Response> topUpBalance(AccountDto.TopUpRequest request) {
+        if (transferMode == TransferMode.LEDGER || stripedBalanceService.isStriped(request.accountId())) {
+            return blocking(request);
+        }
+
+        return repository.lockAccounts(List.of(request.accountId()))
+                .next()
+                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("Account not found")))
+                .flatMap(account -> {
+                    if (account.balanceSlots() > 0) {
+                        return Mono.<Committed>error(new StripedAccountException());
+                    }
+                    TransferDTO.Response deposit = new TransferDTO.Response(UUID.randomUUID(), UUID.randomUUID(),
+                            null, account.id(), request.amount(), account.currency(),
+                            TransactionStatus.SUCCESS, LocalDateTime.now(), null);
+                    OutboxEvent event = outboxWriter.toOutboxEvent(String.valueOf(account.id()), "BALANCE_DEPOSITED",
+                            new BalanceDepositedEvent(account.id(), request.amount(), account.currency(), UUID.randomUUID()));
+                    event.setFastPath(outboxPublisher.isEnabled());
+                    return repository.applyBalanceDelta(account.id(), request.amount())
+                            .then(repository.insertTransaction(deposit))
+                            .then(repository.insertOutboxEvent(event))
+                            .then(repository.findAccount(account.id()))
+                            .map(updated -> new Committed(updated, event));
+                })
+                .as(transactionalOperator::transactional)
+                .map(committed -> {
+                    accountCache.invalidateAfterCommit(List.of(request.accountId()));
+                    outboxPublisher.publishCommitted(List.of(committed.event()));
+                    log.info("Balance topped up successfully: accountId={}", request.accountId());
+                    return committed.account();
+                })
+                .onErrorResume(StripedAccountException.class, e -> blocking(request));
+    }
+
+    private record Committed(AccountDto.Response account, OutboxEvent event) {}
+
+    private Mono<AccountDto.Response> blocking(AccountDto.TopUpRequest request) {
+        return Mono.fromCallable(() -> accountService.topUpBalance(request))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
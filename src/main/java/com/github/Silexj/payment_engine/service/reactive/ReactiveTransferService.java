@@ -0,0 +1,175 @@
+package com.github.Silexj.payment_engine.service.reactive;
+
+import com.github.Silexj.payment_engine.config.ReactiveDatabase;
+import com.github.Silexj.payment_engine.config.TransferMode;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.dto.event.TransferCompletedEvent;
+import com.github.Silexj.payment_engine.model.OutboxEvent;
+import com.github.Silexj.payment_engine.model.TransactionStatus;
+import com.github.Silexj.payment_engine.repository.ReactiveLedgerRepository;
+import com.github.Silexj.payment_engine.service.OutboxPublisher;
+import com.github.Silexj.payment_engine.service.OutboxWriterService;
+import com.github.Silexj.payment_engine.service.StripedAccountException;
+import com.github.Silexj.payment_engine.service.StripedBalanceService;
+import com.github.Silexj.payment_engine.service.TransferMetrics;
+import com.github.Silexj.payment_engine.service.TransferService;
+import com.github.Silexj.payment_engine.service.cache.AccountCache;
+import com.github.Silexj.payment_engine.service.idempotency.IdempotencyService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Неблокирующий перевод на R2DBC (профиль reactive) для шлюза партнеров с большим числом медленных клиентов.
+ *
+ * Семантика совпадает с PessimisticTransferService: счета блокируются FOR UPDATE в порядке возрастания ID,
+ * проводка и событие TRANSFER_COMPLETED пишутся в той же транзакции, повтор externalId возвращает
+ * существующую проводку (в т.ч. после конфликта уникального индекса), тексты ошибок те же.
+ *
+ * Переводы со striped счетами и режим LEDGER выполняются блокирующим TransferService
+ * на boundedElastic: слоты и in-memory балансы есть только в JPA пути.
+ */
+@Service
+@Profile("reactive")
+@Slf4j
+public class ReactiveTransferService {
+
+    private final ReactiveLedgerRepository repository;
+    private final TransactionalOperator transactionalOperator;
+    private final TransferService transferService;
+    private final StripedBalanceService stripedBalanceService;
+    private final IdempotencyService idempotencyService;
+    private final OutboxWriterService outboxWriter;
+    private final OutboxPublisher outboxPublisher;
+    private final AccountCache accountCache;
+    private final TransferMetrics transferMetrics;
+    private final TransferMode transferMode;
+
+    public ReactiveTransferService(ReactiveLedgerRepository repository,
+                                   ReactiveDatabase database,
+                                   TransferService transferService,
+                                   StripedBalanceService stripedBalanceService,
+                                   IdempotencyService idempotencyService,
+                                   OutboxWriterService outboxWriter,
+                                   OutboxPublisher outboxPublisher,
+                                   AccountCache accountCache,
+                                   TransferMetrics transferMetrics,
+                                   @Value("${app.transfer.mode:PESSIMISTIC}") TransferMode transferMode) {
+        this.repository = repository;
+        this.transactionalOperator = database.getTransactionalOperator();
+        this.transferService = transferService;
+        this.stripedBalanceService = stripedBalanceService;
+        this.idempotencyService = idempotencyService;
+        this.outboxWriter = outboxWriter;
+        this.outboxPublisher = outboxPublisher;
+        this.accountCache = accountCache;
+        this.transferMetrics = transferMetrics;
+        this.transferMode = transferMode;
+    }
+
+    public Mono<TransferDTO.Response> performTransfer(TransferDTO.PerformRequest request) {
+        if (request.fromAccountId().equals(request.toAccountId())) {
+            return Mono.error(new IllegalArgumentException("Self-transfer is not allowed"));
+        }
+        if (transferMode == TransferMode.LEDGER
+                || stripedBalanceService.isStriped(request.fromAccountId())
+                || stripedBalanceService.isStriped(request.toAccountId())) {
+            return blocking(request);
+        }
+
+        return repository.findByExternalId(request.externalId())
+                .doOnNext(existing -> log.warn("Duplicate request detected. Returning existing transaction: {}",
+                        existing.transactionId()))
+                .switchIfEmpty(Mono.defer(() -> transfer(request)))
+                .onErrorResume(StripedAccountException.class, e -> blocking(request))
+                .onErrorResume(DataIntegrityViolationException.class, e -> repository.findByExternalId(request.externalId())
+                        .doOnNext(existing -> log.warn("Concurrent duplicate request detected: externalId={}",
+                                request.externalId()))
+                        .switchIfEmpty(Mono.error(e)));
+    }
+
+    private Mono<TransferDTO.Response> transfer(TransferDTO.PerformRequest request) {
+        UUID transactionId = UUID.randomUUID();
+        LocalDateTime timestamp = LocalDateTime.now();
+
+        return repository.lockAccounts(List.of(request.fromAccountId(), request.toAccountId()))
+                .collectList()
+                .flatMap(locked -> {
+                    // Отсутствующий счет сообщается в порядке блокировок, как в JPA пути
+                    find(locked, Math.min(request.fromAccountId(), request.toAccountId()));
+                    find(locked, Math.max(request.fromAccountId(), request.toAccountId()));
+                    ReactiveLedgerRepository.LockedAccount sender = find(locked, request.fromAccountId());
+                    ReactiveLedgerRepository.LockedAccount receiver = find(locked, request.toAccountId());
+                    validate(sender, receiver, request);
+
+                    TransferDTO.Response response = new TransferDTO.Response(transactionId, request.externalId(),
+                            sender.id(), receiver.id(), request.amount(), sender.currency(),
+                            TransactionStatus.SUCCESS, timestamp, null);
+                    OutboxEvent event = outboxWriter.toOutboxEvent(transactionId.toString(), "TRANSFER_COMPLETED",
+                            new TransferCompletedEvent(transactionId, sender.id(), receiver.id(),
+                                    request.amount(), sender.currency()));
+                    event.setFastPath(outboxPublisher.isEnabled());
+
+                    // Порядок UPDATE тот же, что и у блокировок: по возрастанию ID
+                    return (sender.id() < receiver.id()
+                            ? repository.applyBalanceDelta(sender.id(), request.amount().negate())
+                                    .then(repository.applyBalanceDelta(receiver.id(), request.amount()))
+                            : repository.applyBalanceDelta(receiver.id(), request.amount())
+                                    .then(repository.applyBalanceDelta(sender.id(), request.amount().negate())))
+                            .then(repository.insertTransaction(response))
+                            .then(repository.insertOutboxEvent(event))
+                            .thenReturn(new Committed(response, event));
+                })
+                .as(transactionalOperator::transactional)
+                .map(committed -> afterCommit(request, committed));
+    }
+
+    private record Committed(TransferDTO.Response response, OutboxEvent event) {}
+
+    private TransferDTO.Response afterCommit(TransferDTO.PerformRequest request, Committed committed) {
+        idempotencyService.record(committed.response());
+        accountCache.invalidateAfterCommit(List.of(request.fromAccountId(), request.toAccountId()));
+        outboxPublisher.publishCommitted(List.of(committed.event()));
+        transferMetrics.recordAmount(request.amount());
+        log.info("Transfer completed successfully: txId={}", committed.response().transactionId());
+        return committed.response();
+    }
+
+    private static ReactiveLedgerRepository.LockedAccount find(List<ReactiveLedgerRepository.LockedAccount> locked, Long id) {
+        return locked.stream()
+                .filter(account -> account.id() == id)
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Account not found: " + id));
+    }
+
+    private static void validate(ReactiveLedgerRepository.LockedAccount sender,
+                                 ReactiveLedgerRepository.LockedAccount receiver,
+                                 TransferDTO.PerformRequest request) {
+        if (sender.balanceSlots() > 0 || receiver.balanceSlots() > 0) {
+            throw new StripedAccountException();
+        }
+        if (!sender.currency().equals(receiver.currency())) {
+            log.error("Currency mismatch: sender={}, receiver={}", sender.currency(), receiver.currency());
+            throw new IllegalArgumentException("Cross-currency transfers are not supported");
+        }
+        if (sender.balance().compareTo(request.amount()) < 0) {
+            log.warn("Insufficient funds: accountId={}, balance={}, required={}",
+                    sender.id(), sender.balance(), request.amount());
+            throw new IllegalArgumentException("Insufficient funds");
+        }
+    }
+
+    private Mono<TransferDTO.Response> blocking(TransferDTO.PerformRequest request) {
+        return Mono.fromCallable(() -> transferService.performTransfer(request))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
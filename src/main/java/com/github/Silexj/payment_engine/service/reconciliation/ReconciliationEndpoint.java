@@ -0,0 +1,53 @@
+package com.github.Silexj.payment_engine.service.reconciliation;
+
+import com.github.Silexj.payment_engine.repository.ReconciliationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * /actuator/reconciliation: GET - последний запуск и его расхождения, POST - запуск сверки вне расписания.
+ */
+@Component
+@Endpoint(id = "reconciliation")
+@RequiredArgsConstructor
+@Slf4j
+public class ReconciliationEndpoint {
+
+    private static final int MAX_DISCREPANCIES = 100;
+
+    private final ReconciliationEngine reconciliationEngine;
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("runningOnThisNode", reconciliationEngine.isRunning());
+        reconciliationEngine.findLatestRun().ifPresent(run -> {
+            status.put("run", run);
+            status.put("discrepancies", reconciliationEngine.findDiscrepancies(run.id(), MAX_DISCREPANCIES));
+        });
+        status.putIfAbsent("discrepancies", List.<ReconciliationRepository.Discrepancy>of());
+        return status;
+    }
+
+    @WriteOperation
+    public Map<String, Object> trigger() {
+        boolean accepted = !reconciliationEngine.isRunning();
+        if (accepted) {
+            CompletableFuture.runAsync(reconciliationEngine::run)
+                    .exceptionally(e -> {
+                        log.error("Reconciliation run failed, it will resume from the last checkpoint", e);
+                        return null;
+                    });
+        }
+        return Map.of("accepted", accepted);
+    }
+}
@@ -0,0 +1,265 @@
+package com.github.Silexj.payment_engine.service.reconciliation;
+
+import com.github.Silexj.payment_engine.repository.ReconciliationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Сверка балансов: для каждого счета accounts.balance (+ слоты) должен совпадать
+ * с суммой успешных зачислений минус сумма успешных списаний в transactions.
+ *
+ * Пространство ID [1, max(id)] делится на диапазоны по range-size. Диапазоны обрабатываются
+ * параллельно в пуле из parallelism потоков; каждый диапазон читается серверным курсором
+ * в своей readOnly REPEATABLE READ транзакции (при включенных репликах - с реплики).
+ * Пул фиксированный, а не ForkJoinPool: поток все время ждет JDBC, и число потоков - это число
+ * одновременных запросов сверки к БД, которое пул не должен увеличивать компенсирующими потоками.
+ *
+ * Готовый диапазон фиксируется в reconciliation_checkpoints вместе с расхождениями, поэтому прерванный
+ * запуск (рестарт, ошибка) продолжается с необработанных диапазонов. Запуск принадлежит одному узлу;
+ * другой узел перехватывает его, если heartbeat старше lease-timeout.
+ *
+ * Перед каждым диапазоном проверяется нагрузка на БД: пока активных запросов больше max-active-backends,
+ * сверка ждет и продлевает heartbeat, чтобы долгая пауза не отдала запуск другому узлу.
+ * Если запуск все же перехвачен, узел прекращает сверку.
+ */
+@Service
+@Slf4j
+public class ReconciliationEngine {
+
+    private final ReconciliationRepository repository;
+    private final TransactionTemplate writeTransaction;
+    private final TransactionTemplate snapshotTransaction;
+    private final ExecutorService pool;
+
+    private final int rangeSize;
+    private final int maxActiveBackends;
+    private final long throttlePauseMs;
+    private final Duration leaseTimeout;
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName();
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicInteger discrepancies = new AtomicInteger();
+    private final AtomicInteger rangesTotal = new AtomicInteger();
+    private final AtomicInteger rangesDone = new AtomicInteger();
+
+    private final Counter accountsChecked;
+    private final Counter throttled;
+    private final Timer runDuration;
+
+    public ReconciliationEngine(ReconciliationRepository repository,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.reconciliation.parallelism:4}") int parallelism,
+                                @Value("${app.reconciliation.range-size:10000}") int rangeSize,
+                                @Value("${app.reconciliation.max-active-backends:20}") int maxActiveBackends,
+                                @Value("${app.reconciliation.throttle-pause:1000}") long throttlePauseMs,
+                                @Value("${app.reconciliation.lease-timeout:5m}") Duration leaseTimeout) {
+        this.repository = repository;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setReadOnly(true);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        AtomicInteger threads = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(parallelism,
+                r -> new Thread(r, "reconciliation-" + threads.incrementAndGet()));
+        this.rangeSize = rangeSize;
+        this.maxActiveBackends = maxActiveBackends;
+        this.throttlePauseMs = throttlePauseMs;
+        this.leaseTimeout = leaseTimeout;
+
+        Gauge.builder("reconciliation.discrepancies", discrepancies, AtomicInteger::get)
+                .description("Accounts whose balance does not match the journal in the current or last run")
+                .register(meterRegistry);
+        Gauge.builder("reconciliation.progress", this, engine -> engine.rangesTotal.get() == 0
+                        ? 1.0 : (double) engine.rangesDone.get() / engine.rangesTotal.get())
+                .description("Share of account ranges reconciled in the current run")
+                .register(meterRegistry);
+        this.accountsChecked = Counter.builder("reconciliation.accounts.checked")
+                .description("Accounts compared against the journal")
+                .register(meterRegistry);
+        this.throttled = Counter.builder("reconciliation.throttled")
+                .description("Pauses taken because the database was busy")
+                .register(meterRegistry);
+        this.runDuration = Timer.builder("reconciliation.run.duration")
+                .description("Time to reconcile all account ranges of a run on this node")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        pool.shutdownNow();
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Выполняет (или продолжает) запуск сверки. Возвращает итог запуска;
+     * пусто - если сверка уже идет на этом или другом узле.
+     */
+    public Optional<ReconciliationRepository.Run> run() {
+        if (!running.compareAndSet(false, true)) {
+            return Optional.empty();
+        }
+        try {
+            ReconciliationRepository.Run run = acquireRun();
+            if (run == null) {
+                log.info("Reconciliation is already running on another node");
+                return Optional.empty();
+            }
+
+            Set<Long> completed = repository.findCompletedRanges(run.id());
+            discrepancies.set(run.discrepancies());
+            rangesTotal.set(run.rangesTotal());
+            rangesDone.set(completed.size());
+            log.info("Reconciliation started: runId={}, ranges={}, alreadyDone={}", run.id(), run.rangesTotal(), completed.size());
+
+            runDuration.record(() -> reconcileRanges(run, completed));
+
+            Integer completedRun = writeTransaction.execute(status -> repository.completeRun(run.id(), owner, leaseTimeout));
+            if (completedRun == null || completedRun == 0) {
+                throw new IllegalStateException("Reconciliation run " + run.id() + " lost its lease before completion");
+            }
+            ReconciliationRepository.Run finished = repository.findLatestRun().orElseThrow();
+            discrepancies.set(finished.discrepancies());
+            log.info("Reconciliation completed: runId={}, accounts={}, discrepancies={}",
+                    finished.id(), finished.accountsChecked(), finished.discrepancies());
+            return Optional.of(finished);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Продолжает свой или просроченный запуск либо создает новый.
+     * Уникальный индекс по RUNNING не дает двум узлам создать запуск одновременно.
+     */
+    private ReconciliationRepository.Run acquireRun() {
+        try {
+            return writeTransaction.execute(status -> {
+                Optional<ReconciliationRepository.Run> current = repository.lockRunningRun();
+                if (current.isPresent()) {
+                    ReconciliationRepository.Run run = current.get();
+                    boolean expired = run.heartbeatAt().isBefore(OffsetDateTime.now().minus(leaseTimeout));
+                    if (!owner.equals(run.owner()) && !expired) {
+                        return null;
+                    }
+                    repository.takeOverRun(run.id(), owner);
+                    return run;
+                }
+                long maxAccountId = repository.findMaxAccountId();
+                int ranges = (int) ((maxAccountId + rangeSize - 1) / rangeSize);
+                repository.createRun(owner, rangeSize, maxAccountId, ranges);
+                return repository.findLatestRun().orElseThrow();
+            });
+        } catch (DataIntegrityViolationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Ставит все необработанные диапазоны в пул и ждет их. Первая ошибка отменяет остальные диапазоны.
+     */
+    private void reconcileRanges(ReconciliationRepository.Run run, Set<Long> completed) {
+        List<Future<?>> ranges = new ArrayList<>(run.rangesTotal());
+        for (int i = 0; i < run.rangesTotal(); i++) {
+            int index = i;
+            ranges.add(pool.submit(() -> reconcileRange(run, completed, index)));
+        }
+        try {
+            for (Future<?> range : ranges) {
+                range.get();
+            }
+        } catch (InterruptedException e) {
+            ranges.forEach(range -> range.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reconciliation interrupted", e);
+        } catch (ExecutionException e) {
+            ranges.forEach(range -> range.cancel(true));
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void reconcileRange(ReconciliationRepository.Run run, Set<Long> completed, int index) {
+        long rangeStart = (long) index * run.rangeSize() + 1;
+        long rangeEnd = Math.min(rangeStart + run.rangeSize() - 1, run.maxAccountId());
+        if (completed.contains(rangeStart)) {
+            return;
+        }
+        awaitCapacity(run);
+
+        List<ReconciliationRepository.Discrepancy> found = new ArrayList<>();
+        int[] checked = {0};
+        snapshotTransaction.executeWithoutResult(status -> repository.streamRangeBalances(rangeStart, rangeEnd,
+                (accountId, balance, expected) -> {
+                    checked[0]++;
+                    if (balance.compareTo(expected) != 0) {
+                        found.add(new ReconciliationRepository.Discrepancy(accountId, balance, expected));
+                    }
+                }));
+        writeTransaction.executeWithoutResult(status ->
+                repository.saveRange(run.id(), rangeStart, rangeEnd, checked[0], found));
+
+        accountsChecked.increment(checked[0]);
+        discrepancies.addAndGet(found.size());
+        rangesDone.incrementAndGet();
+        found.forEach(d -> log.error("Balance discrepancy: runId={}, accountId={}, balance={}, expected={}",
+                run.id(), d.accountId(), d.balance(), d.expectedBalance()));
+    }
+
+    private void awaitCapacity(ReconciliationRepository.Run run) {
+        while (true) {
+            // Нагрузку меряем на primary: read-only транзакция ушла бы на реплику и считала бы ее backends
+            Integer active = writeTransaction.execute(status -> repository.countActiveBackends());
+            if (active == null || active <= maxActiveBackends) {
+                return;
+            }
+            throttled.increment();
+            Integer renewed = writeTransaction.execute(status -> repository.renewHeartbeat(run.id(), owner));
+            if (renewed == null || renewed == 0) {
+                throw new IllegalStateException("Reconciliation run " + run.id() + " was taken over by another node");
+            }
+            log.debug("Database is busy (active={}), pausing reconciliation for {} ms", active, throttlePauseMs);
+            try {
+                TimeUnit.MILLISECONDS.sleep(throttlePauseMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Reconciliation interrupted", e);
+            }
+        }
+    }
+
+    public Optional<ReconciliationRepository.Run> findLatestRun() {
+        return repository.findLatestRun();
+    }
+
+    public List<ReconciliationRepository.Discrepancy> findDiscrepancies(long runId, int limit) {
+        return repository.findDiscrepancies(runId, limit);
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.Silexj.payment_engine.service.serialization;
+
+import com.github.Silexj.payment_engine.config.TransferMode;
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.service.StripedBalanceService;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ставит методы с @SerializedByAccount в очередь счета (AccountSerializer).
+ * Выполняется раньше DbBulkheadAspect и @Transactional: ожидающий своей очереди запрос
+ * не держит ни место в bulkhead, ни соединение.
+ *
+ * Не сериализуются:
+ * - striped счета - их слоты баланса рассчитаны на параллельные зачисления;
+ * - режимы LEDGER и GROUP_COMMIT - там операции по счетам и так выполняет один поток движка,
+ *   а очередь в памяти только не дала бы переводам одного счета попасть в одну группу.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "app.account-serialization.enabled", havingValue = "true")
+public class AccountSerializationAspect {
+
+    private static final ThreadLocal<Boolean> SERIALIZED = new ThreadLocal<>();
+
+    private final AccountSerializer serializer;
+    private final StripedBalanceService stripedBalanceService;
+    private final boolean active;
+
+    public AccountSerializationAspect(AccountSerializer serializer,
+                                      StripedBalanceService stripedBalanceService,
+                                      @Value("${app.transfer.mode:PESSIMISTIC}") TransferMode transferMode) {
+        this.serializer = serializer;
+        this.stripedBalanceService = stripedBalanceService;
+        this.active = transferMode != TransferMode.LEDGER && transferMode != TransferMode.GROUP_COMMIT;
+    }
+
+    @Around("@annotation(com.github.Silexj.payment_engine.service.serialization.SerializedByAccount)")
+    public Object serialize(ProceedingJoinPoint joinPoint) throws Throwable {
+        // Вложенный вызов выполняется под полосами внешнего: новые полосы вне порядка могли бы дать взаимную блокировку
+        if (!active || SERIALIZED.get() != null) {
+            return joinPoint.proceed();
+        }
+
+        List<Long> accountIds = accountIds(joinPoint.getArgs()).stream()
+                .filter(id -> id != null && !stripedBalanceService.isStriped(id))
+                .toList();
+        if (accountIds.isEmpty()) {
+            return joinPoint.proceed();
+        }
+
+        int[] acquired = serializer.acquire(accountIds);
+        SERIALIZED.set(Boolean.TRUE);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            SERIALIZED.remove();
+            serializer.release(acquired);
+        }
+    }
+
+    private static List<Long> accountIds(Object[] args) {
+        for (Object arg : args) {
+            switch (arg) {
+                case TransferDTO.PerformRequest request -> {
+                    return Arrays.asList(request.fromAccountId(), request.toAccountId());
+                }
+                case AccountDto.TopUpRequest request -> {
+                    return Collections.singletonList(request.accountId());
+                }
+                case null, default -> {
+                }
+            }
+        }
+        return List.of();
+    }
+}
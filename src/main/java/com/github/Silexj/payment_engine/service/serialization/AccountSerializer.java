@@ -0,0 +1,140 @@
+package com.github.Silexj.payment_engine.service.serialization;
+
+import com.github.Silexj.payment_engine.service.bulkhead.BulkheadRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Очереди операций по счетам внутри узла.
+ *
+ * Без них все запросы к горячему счету берут соединение из Hikari и ждут блокировку строки
+ * (findByIdWithLock, до 3 с) - пул заканчивается и для переводов по другим счетам.
+ * Здесь такие запросы ждут на справедливой блокировке полосы (stripe) счета, не занимая ни соединения,
+ * ни места в DbBulkhead, и до БД доходят только те, кто может сразу выполниться.
+ *
+ * Счет попадает в полосу по младшим битам id (число полос stripes округляется до степени двойки). Перевод берет полосы обоих счетов
+ * по возрастанию номера полосы, поэтому встречные переводы не блокируют друг друга навсегда.
+ * Очередь полосы ограничена max-queue, ожидание - max-wait; отказ отдается как 503 (BulkheadRejectedException).
+ *
+ * Это только сглаживание внутри одного узла: корректность по-прежнему обеспечивают блокировки строк в БД.
+ */
+@Component
+@ConditionalOnProperty(name = "app.account-serialization.enabled", havingValue = "true")
+public class AccountSerializer {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+
+    private final Timer waitTime;
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedTimeout;
+
+    public AccountSerializer(MeterRegistry meterRegistry,
+                             @Value("${app.account-serialization.stripes:4096}") int stripeCount,
+                             @Value("${app.account-serialization.max-queue:100}") int maxQueue,
+                             @Value("${app.account-serialization.max-wait:3s}") Duration maxWait) {
+        // Округление вверх до степени двойки
+        int size = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            // Справедливая блокировка: запросы к счету выполняются в порядке прихода
+            stripes[i] = new ReentrantLock(true);
+        }
+        this.mask = size - 1;
+        this.maxQueue = maxQueue;
+        this.maxWaitNanos = maxWait.toNanos();
+
+        this.waitTime = Timer.builder("account.serialization.wait")
+                .description("Time requests waited in the per-account queue before touching the database")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.rejectedQueueFull = rejectedCounter(meterRegistry, "queue_full");
+        this.rejectedTimeout = rejectedCounter(meterRegistry, "timeout");
+        Gauge.builder("account.serialization.queued", this, AccountSerializer::getQueued)
+                .description("Requests waiting in per-account queues")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Занимает полосы счетов (по возрастанию номера) и возвращает их номера для release.
+     */
+    public int[] acquire(Collection<Long> accountIds) {
+        int[] acquired = accountIds.stream()
+                .mapToInt(this::stripeOf)
+                .distinct()
+                .sorted()
+                .toArray();
+
+        long started = System.nanoTime();
+        long deadline = started + maxWaitNanos;
+        int locked = 0;
+        try {
+            for (int stripe : acquired) {
+                ReentrantLock lock = stripes[stripe];
+                if (!lock.isHeldByCurrentThread() && lock.getQueueLength() >= maxQueue) {
+                    rejectedQueueFull.increment();
+                    throw new BulkheadRejectedException("Account queue is full");
+                }
+                if (!lock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    rejectedTimeout.increment();
+                    throw new BulkheadRejectedException("Timed out waiting for account queue");
+                }
+                locked++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            release(acquired, locked);
+            throw new BulkheadRejectedException("Interrupted while waiting for account queue");
+        } catch (RuntimeException e) {
+            release(acquired, locked);
+            throw e;
+        }
+        waitTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return acquired;
+    }
+
+    public void release(int[] acquired) {
+        release(acquired, acquired.length);
+    }
+
+    private void release(int[] acquired, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            stripes[acquired[i]].unlock();
+        }
+    }
+
+    /**
+     * Оценка числа ожидающих во всех очередях (ReentrantLock.getQueueLength).
+     */
+    public int getQueued() {
+        int queued = 0;
+        for (ReentrantLock stripe : stripes) {
+            queued += stripe.getQueueLength();
+        }
+        return queued;
+    }
+
+    private int stripeOf(Long accountId) {
+        // Последовательные id попадают в разные полосы
+        return Long.hashCode(accountId) & mask;
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("account.serialization.rejected")
+                .description("Requests shed by the per-account queue")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.Silexj.payment_engine.service.serialization;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Операции метода над одним счетом выполняются по очереди в памяти узла, до DbBulkhead и открытия транзакции.
+ * Счета берутся из аргумента запроса (TransferDTO.PerformRequest, AccountDto.TopUpRequest), см. AccountSerializationAspect.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SerializedByAccount {
+}
@@ -0,0 +1,4 @@
+-- fast_path = TRUE: событие зарегистрировано в OutboxPublisher и уйдет в Kafka сразу после коммита,
+-- поэтому поллер ждет его только после grace-period. События, записанные мимо OutboxPublisher
+-- (SQL вставки CONDITIONAL_UPDATE, журнал LEDGER), поллер забирает без задержки.
+ALTER TABLE outbox_events ADD COLUMN fast_path BOOLEAN NOT NULL DEFAULT FALSE;
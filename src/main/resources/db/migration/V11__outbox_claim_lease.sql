@@ -0,0 +1,4 @@
+-- Аренда события поллером: строка забирается короткой транзакцией (locked_until = now + lease),
+-- отправляется в Kafka вне транзакции и помечается второй транзакцией.
+-- Если узел упал между ними, событие снова станет доступно после истечения аренды.
+ALTER TABLE outbox_events ADD COLUMN locked_until TIMESTAMP WITH TIME ZONE;
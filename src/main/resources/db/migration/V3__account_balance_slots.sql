@@ -0,0 +1,8 @@
+ALTER TABLE accounts ADD COLUMN balance_slots INT NOT NULL DEFAULT 0;
+
+CREATE TABLE account_balance_slots (
+    account_id BIGINT NOT NULL REFERENCES accounts(id),
+    slot INT NOT NULL,
+    balance DECIMAL(19, 2) NOT NULL DEFAULT 0.00 CHECK (balance >= 0),
+    PRIMARY KEY (account_id, slot)
+);
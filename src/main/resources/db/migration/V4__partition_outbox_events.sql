@@ -0,0 +1,45 @@
+-- outbox_events становится таблицей с дневными партициями по created_at (UTC):
+-- обработанные партиции удаляются целиком (DROP TABLE вместо DELETE + VACUUM),
+-- а поллер сканирует только частичный индекс по PENDING событиям.
+
+ALTER TABLE outbox_events RENAME TO outbox_events_legacy;
+ALTER TABLE outbox_events_legacy RENAME CONSTRAINT outbox_events_pkey TO outbox_events_legacy_pkey;
+DROP INDEX idx_outbox_status_created;
+
+CREATE TABLE outbox_events (
+    id UUID NOT NULL,
+    aggregate_type VARCHAR(255) NOT NULL,
+    aggregate_id VARCHAR(255) NOT NULL,
+    type VARCHAR(255) NOT NULL,
+    payload JSONB NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    processed_at TIMESTAMP WITH TIME ZONE,
+    status VARCHAR(50) NOT NULL DEFAULT 'PENDING',
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- Строки вне созданных партиций (старые данные, сбой создания партиций) попадают сюда
+CREATE TABLE outbox_events_default PARTITION OF outbox_events DEFAULT;
+
+CREATE INDEX idx_outbox_pending_created ON outbox_events (created_at) WHERE status = 'PENDING';
+
+DO $$
+DECLARE
+    partition_day DATE;
+BEGIN
+    FOR i IN 0..3 LOOP
+        partition_day := (NOW() AT TIME ZONE 'UTC')::DATE + i;
+        EXECUTE format(
+            'CREATE TABLE outbox_events_%s PARTITION OF outbox_events FOR VALUES FROM (%L) TO (%L)',
+            to_char(partition_day, 'YYYYMMDD'),
+            partition_day::TIMESTAMP AT TIME ZONE 'UTC',
+            (partition_day + 1)::TIMESTAMP AT TIME ZONE 'UTC'
+        );
+    END LOOP;
+END $$;
+
+INSERT INTO outbox_events (id, aggregate_type, aggregate_id, type, payload, created_at, processed_at, status)
+SELECT id, aggregate_type, aggregate_id, type, payload, COALESCE(created_at, NOW()), processed_at, status
+FROM outbox_events_legacy;
+
+DROP TABLE outbox_events_legacy;
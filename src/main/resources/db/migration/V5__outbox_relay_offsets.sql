@@ -0,0 +1,6 @@
+-- Последний LSN, подтвержденный WAL relay (после отправки всех событий транзакции в Kafka)
+CREATE TABLE outbox_relay_offsets (
+    slot_name VARCHAR(63) PRIMARY KEY,
+    confirmed_lsn PG_LSN NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
@@ -0,0 +1,7 @@
+-- ID счетов выделяются пулами по 50 (Hibernate pooled-lo): вставки счетов можно группировать в JDBC batch.
+-- Прямые вставки через DEFAULT nextval() остаются корректными: pooled-lo берет значение как начало пула.
+ALTER SEQUENCE accounts_id_seq INCREMENT BY 50;
+
+-- Номера счетов выдаются блоками по 1000: nextval() резервирует блок [value, value + 1000) за узлом,
+-- поэтому уникальность номера не нужно проверять отдельным запросом на каждую строку.
+CREATE SEQUENCE account_number_seq START WITH 1000 INCREMENT BY 1000;
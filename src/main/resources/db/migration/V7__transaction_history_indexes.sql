@@ -0,0 +1,21 @@
+-- История операций счета: keyset пагинация по (timestamp, id) отдельно по стороне отправителя и получателя.
+-- INCLUDE покрывает колонки выписки и сверки, поэтому они читаются index-only scan без обращения к heap
+-- (при актуальной visibility map). error_message в INCLUDE не входит: текст заполнен только у FAILED
+-- проводок и раздувал бы оба индекса, а страница истории дочитывает его из heap не больше чем для limit строк.
+-- Одноколоночные индексы становятся префиксами новых и удаляются.
+--
+-- CONCURRENTLY не блокирует запись в transactions на время построения индекса и не выполняется в транзакции:
+-- миграция идет вне транзакции (V7__transaction_history_indexes.sql.conf). Если построение прервалось,
+-- невалидный индекс удаляется перед повтором.
+DROP INDEX CONCURRENTLY IF EXISTS idx_transactions_sender_history;
+CREATE INDEX CONCURRENTLY idx_transactions_sender_history
+    ON transactions (sender_account_id, timestamp DESC, id DESC)
+    INCLUDE (receiver_account_id, external_id, amount, currency, status);
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_transactions_receiver_history;
+CREATE INDEX CONCURRENTLY idx_transactions_receiver_history
+    ON transactions (receiver_account_id, timestamp DESC, id DESC)
+    INCLUDE (sender_account_id, external_id, amount, currency, status);
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_transactions_sender;
+DROP INDEX CONCURRENTLY IF EXISTS idx_transactions_receiver;
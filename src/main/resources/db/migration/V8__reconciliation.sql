@@ -0,0 +1,38 @@
+-- Сверка балансов: accounts.balance (+ слоты) = сумма зачислений - сумма списаний в transactions.
+-- Пространство ID счетов делится на диапазоны по range_size; готовый диапазон фиксируется в checkpoints,
+-- поэтому прерванный запуск продолжается с того места, где остановился.
+CREATE TABLE reconciliation_runs (
+    id BIGSERIAL PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,
+    owner VARCHAR(100) NOT NULL,
+    range_size INT NOT NULL,
+    max_account_id BIGINT NOT NULL,
+    ranges_total INT NOT NULL,
+    accounts_checked BIGINT NOT NULL DEFAULT 0,
+    discrepancies INT NOT NULL DEFAULT 0,
+    started_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    heartbeat_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    finished_at TIMESTAMP WITH TIME ZONE
+);
+
+-- Одновременно выполняется не больше одного запуска
+CREATE UNIQUE INDEX idx_reconciliation_runs_running ON reconciliation_runs (status) WHERE status = 'RUNNING';
+
+CREATE TABLE reconciliation_checkpoints (
+    run_id BIGINT NOT NULL REFERENCES reconciliation_runs(id) ON DELETE CASCADE,
+    range_start BIGINT NOT NULL,
+    range_end BIGINT NOT NULL,
+    accounts_checked INT NOT NULL,
+    discrepancies INT NOT NULL,
+    processed_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (run_id, range_start)
+);
+
+CREATE TABLE reconciliation_discrepancies (
+    run_id BIGINT NOT NULL REFERENCES reconciliation_runs(id) ON DELETE CASCADE,
+    account_id BIGINT NOT NULL,
+    balance DECIMAL(19, 2) NOT NULL,
+    expected_balance DECIMAL(19, 2) NOT NULL,
+    detected_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (run_id, account_id)
+);
@@ -0,0 +1,18 @@
+-- Переводы, принятые через POST /api/v1/transfers/async. Строка фиксирует прием запроса до его выполнения:
+-- воркеры выполняют перевод из очереди в памяти, а PENDING строки после сбоя или падения узла подбирает поллер.
+CREATE TABLE transfer_requests (
+    external_id UUID PRIMARY KEY,
+    from_account_id BIGINT NOT NULL,
+    to_account_id BIGINT NOT NULL,
+    amount DECIMAL(19, 2) NOT NULL CHECK (amount > 0),
+    status VARCHAR(20) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    transaction_id UUID,
+    error_message VARCHAR(255),
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
+
+-- Поллер читает только незавершенные запросы: размер индекса равен backlog, а не всей истории
+CREATE INDEX idx_transfer_requests_unfinished ON transfer_requests (updated_at)
+    WHERE status IN ('PENDING', 'PROCESSING');
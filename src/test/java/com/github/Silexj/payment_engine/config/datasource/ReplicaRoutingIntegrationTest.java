@@ -0,0 +1,146 @@
+package com.github.Silexj.payment_engine.config.datasource;
+
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.OutboxEventRepository;
+import com.github.Silexj.payment_engine.service.AccountService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.images.builder.Transferable;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+public class ReplicaRoutingIntegrationTest {
+
+    static Network network = Network.newNetwork();
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest")
+            .withNetwork(network)
+            .withNetworkAliases("primary")
+            .withCopyToContainer(Transferable.of(
+                    "#!/bin/sh\necho 'host replication all all trust' >> \"$PGDATA/pg_hba.conf\"\n", 0755),
+                    "/docker-entrypoint-initdb.d/allow-replication.sh");
+
+    @Container
+    static GenericContainer<?> replica = new GenericContainer<>("postgres:latest")
+            .withNetwork(network)
+            .dependsOn(postgres)
+            .withExposedPorts(5432)
+            .withCreateContainerCmdModifier(cmd -> cmd.withUser("postgres").withEntrypoint("sh", "-c",
+                    "pg_basebackup -h primary -U test -D /tmp/replica -R -X stream"
+                            + " && chmod 0700 /tmp/replica && exec postgres -D /tmp/replica"))
+            .waitingFor(Wait.forLogMessage(".*ready to accept read-only connections.*", 1)
+                    .withStartupTimeout(Duration.ofMinutes(2)));
+
+    @DynamicPropertySource
+    static void replicaProperties(DynamicPropertyRegistry registry) {
+        registry.add("app.datasource.replicas.enabled", () -> "true");
+        registry.add("app.datasource.replicas.urls",
+                () -> "jdbc:postgresql://" + replica.getHost() + ":" + replica.getMappedPort(5432) + "/test");
+        // Проверка отставания запускается из тестов вручную
+        registry.add("app.datasource.replicas.lag-check-interval", () -> "3600000");
+    }
+
+    @Autowired
+    private ReplicaLagMonitor lagMonitor;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void cleanUp() {
+        ReadConsistency.clear();
+        outboxRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should route read-only transactions to a caught-up replica and writes to the primary")
+    void shouldRouteReadsToReplica() throws InterruptedException {
+        Long accountId = accountService.createAccount(new AccountDto.CreateRequest("RUB")).id();
+        awaitReplicaCatchUp();
+
+        assertTrue(readOnly("SELECT pg_is_in_recovery()", Boolean.class), "Read should go to the replica");
+        assertEquals(1, readOnly("SELECT count(*) FROM accounts WHERE id = " + accountId, Integer.class));
+        assertFalse(readWrite("SELECT pg_is_in_recovery()"), "Read-write transaction should go to the primary");
+    }
+
+    @Test
+    @DisplayName("Should read from the primary when the replica has not replayed the caller's LSN")
+    void shouldFallBackToPrimaryForFreshWrites() throws InterruptedException {
+        awaitReplicaCatchUp();
+
+        ReadConsistency.requireLsn(Long.MAX_VALUE);
+        assertFalse(readOnly("SELECT pg_is_in_recovery()", Boolean.class));
+
+        ReadConsistency.clear();
+        assertFalse(ReadConsistency.onPrimary(() -> readOnly("SELECT pg_is_in_recovery()", Boolean.class)));
+    }
+
+    @Test
+    @DisplayName("Should expose separate pool metrics for primary and replica")
+    void shouldExposePoolMetricsPerRoute() throws InterruptedException {
+        awaitReplicaCatchUp();
+        readOnly("SELECT 1", Integer.class);
+
+        assertNotNull(meterRegistry.find("hikaricp.connections").tag("pool", "primary").gauge());
+        assertNotNull(meterRegistry.find("hikaricp.connections").tag("pool", "replica-1").gauge());
+        assertNotNull(meterRegistry.find("datasource.replica.lag.bytes").tag("replica", "replica-1").gauge());
+    }
+
+    private void awaitReplicaCatchUp() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (System.currentTimeMillis() < deadline) {
+            lagMonitor.refresh();
+            if (lagMonitor.pickReplica(lagMonitor.currentPrimaryLsn()).isPresent()) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        fail("Replica did not catch up");
+    }
+
+    private <T> T readOnly(String sql, Class<T> type) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template.execute(status -> jdbcTemplate.queryForObject(sql, type));
+    }
+
+    private boolean readWrite(String sql) {
+        return Boolean.TRUE.equals(new TransactionTemplate(transactionManager)
+                .execute(status -> jdbcTemplate.queryForObject(sql, Boolean.class)));
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.Silexj.payment_engine.config.shedding;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.OutboxEventRepository;
+import com.github.Silexj.payment_engine.repository.TransactionRepository;
+import com.github.Silexj.payment_engine.service.AccountService;
+import com.github.Silexj.payment_engine.service.TransferService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = {
+        "app.load-shedding.enabled=true",
+        "app.load-shedding.min-limit=1",
+        "app.load-shedding.max-limit=4",
+        "app.load-shedding.initial-limit=4",
+        "app.load-shedding.latency-slo=1ns",
+        "app.load-shedding.min-samples=1",
+        // Лимит пересчитывается только явным вызовом updateLimit из теста
+        "app.load-shedding.update-interval=1h",
+        "app.load-shedding.retry-after=2s"
+})
+@AutoConfigureMockMvc
+@Testcontainers
+@ActiveProfiles("test")
+public class AdaptiveLoadShedderIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+
+    @Autowired
+    private AdaptiveLoadShedder shedder;
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void cleanUp() {
+        outboxRepository.deleteAll();
+        transactionRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should shed transfers with 429 before top-ups and answer 503 when the whole limit is taken")
+    void shouldShedByPriority() throws Exception {
+        Long accountId = accountService.createAccount(new AccountDto.CreateRequest("RUB")).id();
+        Long receiverId = accountService.createAccount(new AccountDto.CreateRequest("RUB")).id();
+        var transfer = new TransferDTO.PerformRequest(UUID.randomUUID(), accountId, receiverId, BigDecimal.ONE);
+        var topUp = new AccountDto.TopUpRequest(accountId, BigDecimal.TEN);
+
+        // Лимит 4: NORMAL допускается до 3 одновременных, HIGH - до 4
+        for (int i = 0; i < 3; i++) {
+            shedder.acquire(RequestPriority.HIGH);
+        }
+        try {
+            mockMvc.perform(post("/api/v1/transfers")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(transfer)))
+                    .andExpect(status().isTooManyRequests())
+                    .andExpect(header().string("Retry-After", "2"));
+
+            mockMvc.perform(post("/api/v1/accounts/" + accountId + "/top-up")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(topUp)))
+                    .andExpect(status().isOk());
+
+            shedder.acquire(RequestPriority.HIGH);
+            mockMvc.perform(post("/api/v1/accounts/" + accountId + "/top-up")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(topUp)))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "2"));
+            shedder.release();
+        } finally {
+            for (int i = 0; i < 3; i++) {
+                shedder.release();
+            }
+        }
+
+        assertEquals(0, shedder.getInFlight(), "Admitted requests must release their slot");
+        assertEquals(1.0, meterRegistry.get("load.shedding.rejected")
+                .tag("priority", "normal").tag("status", "429").counter().count());
+        assertEquals(1.0, meterRegistry.get("load.shedding.rejected")
+                .tag("priority", "high").tag("status", "503").counter().count());
+        assertTrue(transactionRepository.findByExternalId(transfer.externalId()).isEmpty());
+    }
+
+    @Test
+    @DirtiesContext
+    @DisplayName("Should lower the limit when transfer latency exceeds the SLO")
+    void shouldLowerLimitAboveSlo() {
+        Long senderId = accountService.createAccount(new AccountDto.CreateRequest("RUB")).id();
+        Long receiverId = accountService.createAccount(new AccountDto.CreateRequest("RUB")).id();
+        accountService.topUpBalance(new AccountDto.TopUpRequest(senderId, BigDecimal.TEN));
+        transferService.performTransfer(new TransferDTO.PerformRequest(UUID.randomUUID(), senderId, receiverId, BigDecimal.ONE));
+
+        shedder.updateLimit();
+
+        assertEquals(2, shedder.getLimit(), "Limit should drop by the maximum factor (SLO is 1ns)");
+        assertEquals(2.0, meterRegistry.get("load.shedding.limit").gauge().value());
+    }
+}
@@ -2,7 +2,11 @@ package com.github.Silexj.payment_engine.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.service.AccountProvisioningService;
 import com.github.Silexj.payment_engine.service.AccountService;
+import com.github.Silexj.payment_engine.service.StatementService;
+import com.github.Silexj.payment_engine.service.TransactionService;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,10 +17,19 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultMatcher;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(AccountController.class)
@@ -28,6 +41,15 @@ public class AccountControllerTest {
     @MockitoBean
     private AccountService accountService;
 
+    @MockitoBean
+    private AccountProvisioningService provisioningService;
+
+    @MockitoBean
+    private TransactionService transactionService;
+
+    @MockitoBean
+    private StatementService statementService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -58,4 +80,97 @@ public class AccountControllerTest {
 
     }
 
+    @Test
+    void shouldReturn200_WhenEnablingStriping() throws Exception {
+        var request = new AccountDto.StripingRequest(8);
+        var response = new AccountDto.Response(1L, "123", new BigDecimal("100.00"), "RUB");
+
+        Mockito.when(accountService.enableStriping(1L, 8)).thenReturn(response);
+
+        mockMvc.perform(post("/api/v1/accounts/1/striping")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(100.00));
+    }
+
+    @Test
+    void shouldReturn400_WhenSlotCountIsTooSmall() throws Exception {
+        var request = new AccountDto.StripingRequest(1);
+
+        mockMvc.perform(post("/api/v1/accounts/1/striping")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.title").value("Validation Error"));
+    }
+
+    @Test
+    void shouldReturn201_WhenCreatingAccountsInBulk() throws Exception {
+        var request = new AccountDto.BulkCreateRequest(List.of(
+                new AccountDto.CreateRequest("RUB"), new AccountDto.CreateRequest("USD")));
+        var response = new AccountDto.BulkCreateResponse(2, List.of(
+                new AccountDto.Response(1L, "123", BigDecimal.ZERO, "RUB"),
+                new AccountDto.Response(2L, "124", BigDecimal.ZERO, "USD")));
+
+        Mockito.when(provisioningService.createAccounts(any())).thenReturn(response);
+
+        mockMvc.perform(post("/api/v1/accounts/bulk")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.accounts[1].currency").value("USD"));
+    }
+
+    @Test
+    void shouldReturn400_WhenBulkRequestIsEmpty() throws Exception {
+        var request = new AccountDto.BulkCreateRequest(List.of());
+
+        mockMvc.perform(post("/api/v1/accounts/bulk")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.title").value("Validation Error"));
+    }
+
+    @Test
+    void shouldReturn200_WhenListingTransactions() throws Exception {
+        var page = new TransferDTO.HistoryPage(List.of(), "next");
+
+        Mockito.when(transactionService.getHistory(1L, "abc", 20)).thenReturn(page);
+
+        mockMvc.perform(get("/api/v1/accounts/1/transactions")
+                    .param("cursor", "abc")
+                    .param("limit", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    @Test
+    void shouldStreamStatement() throws Exception {
+        Mockito.when(statementService.export(eq(1L), eq(LocalDate.of(2026, 1, 1)), eq(LocalDate.of(2026, 1, 31)),
+                        eq(StatementService.Format.CSV)))
+                .thenReturn(out -> out.write("timestamp\n".getBytes(StandardCharsets.UTF_8)));
+
+        var result = mockMvc.perform(get("/api/v1/accounts/1/statement")
+                    .param("from", "2026-01-01")
+                    .param("to", "2026-01-31"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"statement-1-2026-01-01-2026-01-31.csv\""))
+                .andExpect(content().string("timestamp\n"));
+    }
+
+    @Test
+    void shouldReturn400_WhenStatementFormatIsUnsupported() throws Exception {
+        mockMvc.perform(get("/api/v1/accounts/1/statement")
+                    .param("from", "2026-01-01")
+                    .param("to", "2026-01-31")
+                    .param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
 }
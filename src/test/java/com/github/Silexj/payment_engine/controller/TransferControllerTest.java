@@ -3,7 +3,11 @@ package com.github.Silexj.payment_engine.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.Silexj.payment_engine.dto.TransferDTO;
 import com.github.Silexj.payment_engine.model.TransactionStatus;
+import com.github.Silexj.payment_engine.model.TransferRequestStatus;
+import com.github.Silexj.payment_engine.service.BatchTransferService;
 import com.github.Silexj.payment_engine.service.TransferService;
+import com.github.Silexj.payment_engine.service.async.AsyncTransferService;
+import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -15,11 +19,13 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -35,6 +41,12 @@ public class TransferControllerTest {
     @MockitoBean
     private TransferService transferService;
 
+    @MockitoBean
+    private BatchTransferService batchTransferService;
+
+    @MockitoBean
+    private AsyncTransferService asyncTransferService;
+
     @Test
     @DisplayName("Should return 200 OK when transfer request is valid")
     void shouldPerformTransferSuccessfully() throws Exception {
@@ -95,4 +107,88 @@ public class TransferControllerTest {
                 .andExpect(status().isBadRequest()) // 400
                 .andExpect(jsonPath("$.detail").value("Insufficient funds")); // Сообщение ошибки
     }
+
+    @Test
+    @DisplayName("Should return per-item results for batch transfer")
+    void shouldPerformBatchTransfer() throws Exception {
+        UUID externalId = UUID.randomUUID();
+        TransferDTO.BatchRequest request = new TransferDTO.BatchRequest(List.of(
+                new TransferDTO.PerformRequest(externalId, 1L, 2L, new BigDecimal("100.00"))
+        ));
+
+        TransferDTO.Response item = new TransferDTO.Response(
+                UUID.randomUUID(), externalId, 1L, 2L, new BigDecimal("100.00"),
+                "RUB", TransactionStatus.SUCCESS, LocalDateTime.now(), null
+        );
+        Mockito.when(batchTransferService.performBatch(any())).thenReturn(new TransferDTO.BatchResponse(
+                1, 1, 0, 0, List.of(new TransferDTO.BatchItemResult(externalId, false, item))
+        ));
+
+        mockMvc.perform(post("/api/v1/transfers/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.succeeded").value(1))
+                .andExpect(jsonPath("$.results[0].result.status").value("SUCCESS"));
+    }
+
+    @Test
+    @DisplayName("Should return 400 Bad Request when batch item is invalid")
+    void shouldFailBatchValidation() throws Exception {
+        TransferDTO.BatchRequest request = new TransferDTO.BatchRequest(List.of(
+                new TransferDTO.PerformRequest(UUID.randomUUID(), 1L, 2L, new BigDecimal("-1.00"))
+        ));
+
+        mockMvc.perform(post("/api/v1/transfers/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.title").value("Validation Error"));
+
+        verifyNoInteractions(batchTransferService);
+    }
+
+    @Test
+    @DisplayName("Should return 202 Accepted with status location for async transfer")
+    void shouldAcceptAsyncTransfer() throws Exception {
+        UUID externalId = UUID.randomUUID();
+        TransferDTO.PerformRequest request = new TransferDTO.PerformRequest(
+                externalId, 1L, 2L, new BigDecimal("100.00")
+        );
+        Mockito.when(asyncTransferService.submit(any())).thenReturn(new TransferDTO.AsyncStatus(
+                externalId, TransferRequestStatus.PENDING, null, null, LocalDateTime.now()
+        ));
+
+        mockMvc.perform(post("/api/v1/transfers/async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/v1/transfers/" + externalId))
+                .andExpect(jsonPath("$.status").value("PENDING"));
+        verifyNoInteractions(transferService);
+    }
+
+    @Test
+    @DisplayName("Should return transfer status and 404 for unknown externalId")
+    void shouldReturnAsyncStatus() throws Exception {
+        UUID externalId = UUID.randomUUID();
+        UUID unknownId = UUID.randomUUID();
+        TransferDTO.Response result = new TransferDTO.Response(
+                UUID.randomUUID(), externalId, 1L, 2L, new BigDecimal("100.00"),
+                "RUB", TransactionStatus.SUCCESS, LocalDateTime.now(), null
+        );
+        Mockito.when(asyncTransferService.getStatus(externalId)).thenReturn(new TransferDTO.AsyncStatus(
+                externalId, TransferRequestStatus.SUCCESS, result, null, LocalDateTime.now()
+        ));
+        Mockito.when(asyncTransferService.getStatus(unknownId))
+                .thenThrow(new EntityNotFoundException("Transfer not found: " + unknownId));
+
+        mockMvc.perform(get("/api/v1/transfers/" + externalId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("SUCCESS"))
+                .andExpect(jsonPath("$.result.transactionId").value(result.transactionId().toString()));
+
+        mockMvc.perform(get("/api/v1/transfers/" + unknownId))
+                .andExpect(status().isNotFound());
+    }
 }
@@ -0,0 +1,143 @@
+package com.github.Silexj.payment_engine.scheduler;
+
+import com.github.Silexj.payment_engine.repository.OutboxEventRepository;
+import com.github.Silexj.payment_engine.repository.OutboxPartitionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "app.outbox.retention.lock-timeout=100ms",
+        "app.outbox.retention.lock-attempts=2"
+})
+@Testcontainers
+@ActiveProfiles("test")
+public class OutboxRetentionJobIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+
+    @Autowired
+    private OutboxRetentionJob retentionJob;
+    @Autowired
+    private OutboxPartitionRepository partitionRepository;
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        outboxRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should pre-create daily partitions ahead of time")
+    void shouldPrecreatePartitions() {
+        retentionJob.maintainPartitions();
+
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        List<LocalDate> partitions = partitionRepository.findDailyPartitions();
+        assertTrue(partitions.contains(today));
+        assertTrue(partitions.contains(today.plusDays(3)));
+    }
+
+    @Test
+    @DisplayName("Should drop expired processed partitions and keep ones with pending events")
+    void shouldDropExpiredPartitions() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        LocalDate processedDay = today.minusDays(10);
+        LocalDate pendingDay = today.minusDays(9);
+        partitionRepository.createDailyPartition(processedDay);
+        partitionRepository.createDailyPartition(pendingDay);
+        insertEvent(processedDay.atTime(12, 0).atOffset(ZoneOffset.UTC), "PROCESSED");
+        insertEvent(pendingDay.atTime(12, 0).atOffset(ZoneOffset.UTC), "PENDING");
+
+        retentionJob.maintainPartitions();
+
+        List<LocalDate> partitions = partitionRepository.findDailyPartitions();
+        assertFalse(partitions.contains(processedDay), "Processed partition should be dropped");
+        assertTrue(partitions.contains(pendingDay), "Partition with pending events should be kept");
+        assertEquals(1, outboxRepository.count());
+    }
+
+    @Test
+    @DisplayName("Should keep a partition while its lock is held and drop it on the next run")
+    void shouldKeepLockedPartition() throws Exception {
+        LocalDate day = LocalDate.now(ZoneOffset.UTC).minusDays(11);
+        partitionRepository.createDailyPartition(day);
+
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        // Долгий читатель партиции: DETACH не должен вставать за ним в очередь дольше lock-timeout
+        Future<?> reader = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("LOCK TABLE outbox_events_" + day.format(DateTimeFormatter.BASIC_ISO_DATE)
+                    + " IN ACCESS SHARE MODE");
+            locked.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        try {
+            assertTrue(locked.await(10, TimeUnit.SECONDS));
+            retentionJob.maintainPartitions();
+            assertTrue(partitionRepository.findDailyPartitions().contains(day), "Locked partition should be kept");
+        } finally {
+            release.countDown();
+            reader.get(10, TimeUnit.SECONDS);
+            executor.shutdown();
+        }
+
+        retentionJob.maintainPartitions();
+        assertFalse(partitionRepository.findDailyPartitions().contains(day), "Partition should be dropped once unlocked");
+    }
+
+    @Test
+    @DisplayName("Should delete expired processed rows from the default partition")
+    void shouldPruneDefaultPartition() {
+        OffsetDateTime expired = OffsetDateTime.now(ZoneOffset.UTC).minusDays(30);
+        insertEvent(expired, "PROCESSED");
+        insertEvent(expired, "PENDING");
+
+        retentionJob.maintainPartitions();
+
+        Integer remaining = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox_events_default", Integer.class);
+        assertEquals(1, remaining);
+    }
+
+    private void insertEvent(OffsetDateTime createdAt, String status) {
+        jdbcTemplate.update("""
+                INSERT INTO outbox_events (id, aggregate_type, aggregate_id, type, payload, created_at, status)
+                VALUES (?, 'PAYMENT_ENGINE', '1', 'TEST', '{}'::jsonb, ?, ?)
+                """, UUID.randomUUID(), createdAt, status);
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.Silexj.payment_engine.scheduler;
+
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.model.OutboxEvent;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.OutboxEventRepository;
+import com.github.Silexj.payment_engine.repository.OutboxRelayOffsetRepository;
+import com.github.Silexj.payment_engine.service.AccountService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.kafka.KafkaContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "app.outbox.relay=LOGICAL_REPLICATION")
+@Testcontainers
+@ActiveProfiles("test")
+public class WalOutboxRelayIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest")
+            .withCommand("postgres", "-c", "wal_level=logical");
+
+    @Container
+    @ServiceConnection
+    static KafkaContainer kafka = new KafkaContainer(DockerImageName.parse("apache/kafka-native:latest"));
+
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+    @Autowired
+    private OutboxRelayOffsetRepository offsetRepository;
+
+    @AfterEach
+    void cleanUp() {
+        outboxRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should publish committed outbox inserts from the replication slot and store the confirmed LSN")
+    void shouldRelayEventsFromWal() throws InterruptedException {
+        AccountDto.Response account = accountService.createAccount(new AccountDto.CreateRequest("RUB"));
+
+        OutboxEvent event = awaitProcessed(account.id().toString());
+
+        assertEquals("ACCOUNT_CREATED", event.getType());
+        assertNotNull(event.getProcessedAt());
+        assertTrue(offsetRepository.findConfirmedLsn("outbox_relay").isPresent(), "Confirmed LSN should be stored");
+    }
+
+    private OutboxEvent awaitProcessed(String aggregateId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (System.currentTimeMillis() < deadline) {
+            Optional<OutboxEvent> processed = outboxRepository.findAll().stream()
+                    .filter(e -> aggregateId.equals(e.getAggregateId()))
+                    .filter(e -> "PROCESSED".equals(e.getStatus()))
+                    .findFirst();
+            if (processed.isPresent()) {
+                return processed.get();
+            }
+            TimeUnit.MILLISECONDS.sleep(200);
+        }
+        return fail("Event was not relayed in time");
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.Silexj.payment_engine.service;
+
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.model.OutboxEvent;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.OutboxEventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+public class AccountProvisioningServiceIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+
+    @Autowired
+    private AccountProvisioningService provisioningService;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+
+    @AfterEach
+    void cleanUp() {
+        outboxRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should create all accounts with unique numbers and one ACCOUNT_CREATED event each")
+    void shouldCreateAccountsInBulk() {
+        var response = provisioningService.createAccounts(bulkRequest(1500, "RUB"));
+
+        assertEquals(1500, response.created());
+        assertEquals(1500, accountRepository.count());
+
+        Set<String> numbers = new HashSet<>();
+        response.accounts().forEach(account -> {
+            assertEquals(20, account.number().length(), "Account number length should be 20");
+            numbers.add(account.number());
+        });
+        assertEquals(1500, numbers.size(), "Account numbers should be unique");
+
+        List<OutboxEvent> events = outboxRepository.findAll();
+        assertEquals(1500, events.size());
+        assertTrue(events.stream().allMatch(event -> "ACCOUNT_CREATED".equals(event.getType())));
+    }
+
+    @Test
+    @DisplayName("Bulk and single creation should not collide on IDs or numbers")
+    void shouldInterleaveWithSingleCreation() throws InterruptedException {
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(threads * 2);
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> {
+                try {
+                    provisioningService.createAccounts(bulkRequest(200, "USD"));
+                } catch (Throwable e) {
+                    errors.add(e);
+                } finally {
+                    latch.countDown();
+                }
+            });
+            executor.submit(() -> {
+                try {
+                    for (int j = 0; j < 20; j++) {
+                        accountService.createAccount(new AccountDto.CreateRequest("USD"));
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(60, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertTrue(errors.isEmpty(), () -> "Unexpected errors: " + errors);
+        assertEquals(threads * 220L, accountRepository.count());
+    }
+
+    private AccountDto.BulkCreateRequest bulkRequest(int count, String currency) {
+        return new AccountDto.BulkCreateRequest(IntStream.range(0, count)
+                .mapToObj(i -> new AccountDto.CreateRequest(currency))
+                .toList());
+    }
+}
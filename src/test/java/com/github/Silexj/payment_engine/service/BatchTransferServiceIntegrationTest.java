@@ -0,0 +1,178 @@
+package com.github.Silexj.payment_engine.service;
+
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.model.Account;
+import com.github.Silexj.payment_engine.model.Transaction;
+import com.github.Silexj.payment_engine.model.TransactionStatus;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.LedgerJdbcRepository;
+import com.github.Silexj.payment_engine.repository.OutboxEventRepository;
+import com.github.Silexj.payment_engine.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+public class BatchTransferServiceIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+
+    @Autowired
+    private BatchTransferService batchTransferService;
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+    @Autowired
+    private LedgerJdbcRepository ledgerJdbcRepository;
+
+    @AfterEach
+    void cleanUp() {
+        outboxRepository.deleteAll();
+        transactionRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Success: Should apply all legs of the batch and write transactions and events")
+    void shouldPerformBatch() {
+        Long payer = createAccount("RUB", "1000.00");
+        Long employee1 = createAccount("RUB", "0.00");
+        Long employee2 = createAccount("RUB", "0.00");
+
+        TransferDTO.BatchResponse response = batchTransferService.performBatch(new TransferDTO.BatchRequest(List.of(
+                new TransferDTO.PerformRequest(UUID.randomUUID(), payer, employee1, new BigDecimal("300.00")),
+                new TransferDTO.PerformRequest(UUID.randomUUID(), payer, employee2, new BigDecimal("200.00"))
+        )));
+
+        assertEquals(2, response.succeeded());
+        assertEquals(0, response.failed());
+
+        assertBalance(payer, "500.00");
+        assertBalance(employee1, "300.00");
+        assertBalance(employee2, "200.00");
+
+        assertEquals(3, transactionRepository.count(), "Should be 3 transactions (1 Deposit + 2 Transfers)");
+        assertEquals(2, outboxRepository.findAll().stream()
+                .filter(e -> "TRANSFER_COMPLETED".equals(e.getType()))
+                .count());
+    }
+
+    @Test
+    @DisplayName("Partial: Should reject only the item that overdraws the sender")
+    void shouldRejectItemWithInsufficientFunds() {
+        Long payer = createAccount("RUB", "100.00");
+        Long receiver = createAccount("RUB", "0.00");
+
+        TransferDTO.BatchResponse response = batchTransferService.performBatch(new TransferDTO.BatchRequest(List.of(
+                new TransferDTO.PerformRequest(UUID.randomUUID(), payer, receiver, new BigDecimal("80.00")),
+                new TransferDTO.PerformRequest(UUID.randomUUID(), payer, receiver, new BigDecimal("50.00"))
+        )));
+
+        assertEquals(1, response.succeeded());
+        assertEquals(1, response.failed());
+        assertEquals(TransactionStatus.FAILED, response.results().get(1).result().status());
+        assertEquals("Insufficient funds", response.results().get(1).result().errorMessage());
+
+        assertBalance(payer, "20.00");
+        assertBalance(receiver, "80.00");
+    }
+
+    @Test
+    @DisplayName("Idempotency: Should replay transfers already performed by externalId")
+    void shouldReplayExistingTransfers() {
+        Long sender = createAccount("USD", "1000.00");
+        Long receiver = createAccount("USD", "0.00");
+        UUID externalId = UUID.randomUUID();
+
+        TransferDTO.Response single = transferService.performTransfer(
+                new TransferDTO.PerformRequest(externalId, sender, receiver, new BigDecimal("100.00")));
+
+        TransferDTO.BatchResponse response = batchTransferService.performBatch(new TransferDTO.BatchRequest(List.of(
+                new TransferDTO.PerformRequest(externalId, sender, receiver, new BigDecimal("100.00"))
+        )));
+
+        assertEquals(1, response.replayed());
+        assertTrue(response.results().get(0).replayed());
+        assertEquals(single.transactionId(), response.results().get(0).result().transactionId());
+
+        assertBalance(sender, "900.00");
+        assertBalance(receiver, "100.00");
+    }
+
+    @Test
+    @DisplayName("Idempotency: Item committed by another node should be replayed without failing the batch")
+    void shouldReplayItemCommittedElsewhere() {
+        Long sender = createAccount("RUB", "100.00");
+        Long receiver = createAccount("RUB", "0.00");
+
+        // Проводка "другого узла": мимо кэша и Bloom фильтра этого узла
+        Transaction foreign = Transaction.builder()
+                .id(UUID.randomUUID())
+                .externalId(UUID.randomUUID())
+                .sender(Account.builder().id(sender).build())
+                .receiver(Account.builder().id(receiver).build())
+                .amount(new BigDecimal("30.00"))
+                .currency("RUB")
+                .timestamp(LocalDateTime.now())
+                .status(TransactionStatus.SUCCESS)
+                .build();
+        ledgerJdbcRepository.insertTransactions(List.of(foreign));
+
+        TransferDTO.BatchResponse response = batchTransferService.performBatch(new TransferDTO.BatchRequest(List.of(
+                new TransferDTO.PerformRequest(foreign.getExternalId(), sender, receiver, new BigDecimal("30.00")),
+                new TransferDTO.PerformRequest(UUID.randomUUID(), sender, receiver, new BigDecimal("100.00"))
+        )));
+
+        assertEquals(1, response.replayed());
+        assertEquals(1, response.succeeded());
+        assertEquals(foreign.getId(), response.results().get(0).result().transactionId());
+        assertTrue(response.results().get(0).replayed());
+
+        // Чужая проводка балансы не меняла: в пакете применен только второй перевод
+        assertBalance(sender, "0.00");
+        assertBalance(receiver, "100.00");
+    }
+
+    private Long createAccount(String currency, String initialBalance) {
+        var response = accountService.createAccount(new AccountDto.CreateRequest(currency));
+
+        BigDecimal balance = new BigDecimal(initialBalance);
+        if (balance.compareTo(BigDecimal.ZERO) > 0) {
+            accountService.topUpBalance(new AccountDto.TopUpRequest(response.id(), balance));
+        }
+
+        return response.id();
+    }
+
+    private void assertBalance(Long accountId, String expectedBalance) {
+        Account account = accountRepository.findById(accountId).orElseThrow();
+        assertTrue(new BigDecimal(expectedBalance).compareTo(account.getBalance()) == 0,
+                "Balance mismatch. Expected: " + expectedBalance + ", Actual: " + account.getBalance());
+    }
+}
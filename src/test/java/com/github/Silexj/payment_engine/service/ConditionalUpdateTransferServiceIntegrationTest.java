@@ -0,0 +1,207 @@
+package com.github.Silexj.payment_engine.service;
+
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.model.Account;
+import com.github.Silexj.payment_engine.model.OutboxEvent;
+import com.github.Silexj.payment_engine.repository.AccountBalanceSlotRepository;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.OutboxEventRepository;
+import com.github.Silexj.payment_engine.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "app.transfer.mode=CONDITIONAL_UPDATE")
+@Testcontainers
+@ActiveProfiles("test")
+public class ConditionalUpdateTransferServiceIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+    @Autowired
+    private StripedBalanceService stripedBalanceService;
+    @Autowired
+    private AccountBalanceSlotRepository slotRepository;
+
+    @AfterEach
+    void cleanUp() {
+        outboxRepository.deleteAll();
+        slotRepository.deleteAll();
+        transactionRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Success: Should transfer money, write transaction and outbox event in one statement")
+    void shouldTransferMoneySuccessfully() {
+        Long senderId = createAccount("RUB", "1000.00");
+        Long receiverId = createAccount("RUB", "0.00");
+
+        TransferDTO.Response response = transferService.performTransfer(new TransferDTO.PerformRequest(
+                UUID.randomUUID(), senderId, receiverId, new BigDecimal("500.00")
+        ));
+
+        assertEquals("SUCCESS", response.status().name());
+        assertEquals("RUB", response.currency());
+
+        assertBalance(senderId, "500.00");
+        assertBalance(receiverId, "500.00");
+
+        assertTrue(transactionRepository.findById(response.transactionId()).isPresent());
+
+        OutboxEvent event = outboxRepository.findAll().stream()
+                .filter(e -> "TRANSFER_COMPLETED".equals(e.getType()))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(response.transactionId().toString(), event.getAggregateId());
+        assertTrue(event.getPayload().contains("RUB"), "Payload should contain sender currency");
+    }
+
+    @Test
+    @DisplayName("Fail: Should detect insufficient funds from affected rows")
+    void shouldFailIfInsufficientFunds() {
+        Long senderId = createAccount("RUB", "10.00");
+        Long receiverId = createAccount("RUB", "0.00");
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                transferService.performTransfer(new TransferDTO.PerformRequest(
+                        UUID.randomUUID(), senderId, receiverId, new BigDecimal("100.00")
+                ))
+        );
+        assertEquals("Insufficient funds", ex.getMessage());
+
+        assertBalance(senderId, "10.00");
+        assertBalance(receiverId, "0.00");
+        assertEquals(1, transactionRepository.count(), "Transaction count should not change");
+    }
+
+    @Test
+    @DisplayName("Fail: Should detect currency mismatch from affected rows")
+    void shouldFailOnCurrencyMismatch() {
+        Long senderId = createAccount("RUB", "100.00");
+        Long receiverId = createAccount("USD", "0.00");
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                transferService.performTransfer(new TransferDTO.PerformRequest(
+                        UUID.randomUUID(), senderId, receiverId, BigDecimal.TEN
+                ))
+        );
+        assertEquals("Cross-currency transfers are not supported", ex.getMessage());
+        assertBalance(senderId, "100.00");
+    }
+
+    @Test
+    @DisplayName("Striping: Stale striping flag should not debit the base balance of a striped account")
+    void shouldFallBackToSlotsWhenStripingFlagIsStale() {
+        Long senderId = createAccount("RUB", "100.00");
+        Long receiverId = createAccount("RUB", "0.00");
+        accountService.enableStriping(senderId, 4);
+        // Узел не знает, что счет стал striped (striping включили на другом узле)
+        stripedBalanceService.markStriped(senderId, false);
+
+        transferService.performTransfer(new TransferDTO.PerformRequest(
+                UUID.randomUUID(), senderId, receiverId, new BigDecimal("30.00")));
+
+        assertTrue(stripedBalanceService.isStriped(senderId), "Flag should be refreshed from the database");
+        Account sender = accountRepository.findById(senderId).orElseThrow();
+        assertEquals(0, new BigDecimal("70.00").compareTo(stripedBalanceService.availableBalance(sender)));
+        assertBalance(receiverId, "30.00");
+    }
+
+    @Test
+    @DisplayName("Idempotency: Should not deduct money twice for same externalId")
+    void shouldBeIdempotent() {
+        Long senderId = createAccount("USD", "1000.00");
+        Long receiverId = createAccount("USD", "0.00");
+        TransferDTO.PerformRequest request = new TransferDTO.PerformRequest(
+                UUID.randomUUID(), senderId, receiverId, new BigDecimal("100.00")
+        );
+
+        TransferDTO.Response response1 = transferService.performTransfer(request);
+        TransferDTO.Response response2 = transferService.performTransfer(request);
+
+        assertEquals(response1.transactionId(), response2.transactionId());
+        assertBalance(senderId, "900.00");
+        assertBalance(receiverId, "100.00");
+    }
+
+    @Test
+    @DisplayName("Concurrency: Cross-wise transfers should finish without Deadlock")
+    void shouldExecuteConcurrentTransfersWithoutDeadlock() throws InterruptedException {
+        Long account1 = createAccount("EUR", "1000.00");
+        Long account2 = createAccount("EUR", "1000.00");
+
+        int iterations = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch latch = new CountDownLatch(iterations * 2);
+
+        for (int i = 0; i < iterations; i++) {
+            executor.submit(() -> transferQuietly(account1, account2, latch));
+            executor.submit(() -> transferQuietly(account2, account1, latch));
+        }
+
+        assertTrue(latch.await(30, TimeUnit.SECONDS), "Deadlock detected, Threads didn't finish");
+        executor.shutdown();
+
+        assertBalance(account1, "1000.00");
+        assertBalance(account2, "1000.00");
+    }
+
+    private void transferQuietly(Long from, Long to, CountDownLatch latch) {
+        try {
+            transferService.performTransfer(new TransferDTO.PerformRequest(
+                    UUID.randomUUID(), from, to, new BigDecimal("10.00")
+            ));
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            latch.countDown();
+        }
+    }
+
+    private Long createAccount(String currency, String initialBalance) {
+        var response = accountService.createAccount(new AccountDto.CreateRequest(currency));
+
+        BigDecimal balance = new BigDecimal(initialBalance);
+        if (balance.compareTo(BigDecimal.ZERO) > 0) {
+            accountService.topUpBalance(new AccountDto.TopUpRequest(response.id(), balance));
+        }
+
+        return response.id();
+    }
+
+    private void assertBalance(Long accountId, String expectedBalance) {
+        Account account = accountRepository.findById(accountId).orElseThrow();
+        assertTrue(new BigDecimal(expectedBalance).compareTo(account.getBalance()) == 0,
+                "Balance mismatch. Expected: " + expectedBalance + ", Actual: " + account.getBalance());
+    }
+}
@@ -0,0 +1,179 @@
+package com.github.Silexj.payment_engine.service;
+
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.model.Account;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.OutboxEventRepository;
+import com.github.Silexj.payment_engine.repository.TransactionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "app.transfer.mode=OPTIMISTIC",
+        "app.transfer.optimistic.conflict-threshold=3"
+})
+@Testcontainers
+@ActiveProfiles("test")
+public class OptimisticTransferServiceIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountConflictTracker conflictTracker;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void cleanUp() {
+        outboxRepository.deleteAll();
+        transactionRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Success: Should transfer money without row locks and bump account versions")
+    void shouldTransferMoneySuccessfully() {
+        Long senderId = createAccount("RUB", "1000.00");
+        Long receiverId = createAccount("RUB", "0.00");
+        Long senderVersion = accountRepository.findById(senderId).orElseThrow().getVersion();
+
+        TransferDTO.Response response = transferService.performTransfer(new TransferDTO.PerformRequest(
+                UUID.randomUUID(), senderId, receiverId, new BigDecimal("400.00")
+        ));
+
+        assertEquals("SUCCESS", response.status().name());
+        assertBalance(senderId, "600.00");
+        assertBalance(receiverId, "400.00");
+        assertEquals(senderVersion + 1, accountRepository.findById(senderId).orElseThrow().getVersion());
+        assertTrue(outboxRepository.findAll().stream()
+                .anyMatch(e -> "TRANSFER_COMPLETED".equals(e.getType())
+                        && response.transactionId().toString().equals(e.getAggregateId())));
+    }
+
+    @Test
+    @DisplayName("Failure: Should reject insufficient funds without touching balances")
+    void shouldFailIfInsufficientFunds() {
+        Long senderId = createAccount("RUB", "100.00");
+        Long receiverId = createAccount("RUB", "0.00");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () ->
+                transferService.performTransfer(new TransferDTO.PerformRequest(
+                        UUID.randomUUID(), senderId, receiverId, new BigDecimal("100.01"))));
+
+        assertEquals("Insufficient funds", e.getMessage());
+        assertBalance(senderId, "100.00");
+        assertBalance(receiverId, "0.00");
+    }
+
+    @Test
+    @DisplayName("Concurrency: Conflicting transfers into one account should all complete and conserve money")
+    void shouldRetryConflictingTransfers() throws InterruptedException {
+        Long receiverId = createAccount("RUB", "0.00");
+        List<Long> senders = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            senders.add(createAccount("RUB", "100.00"));
+        }
+
+        int perSender = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(senders.size());
+        CountDownLatch latch = new CountDownLatch(senders.size() * perSender);
+        AtomicInteger failures = new AtomicInteger();
+        for (Long senderId : senders) {
+            executor.submit(() -> {
+                for (int i = 0; i < perSender; i++) {
+                    try {
+                        transferService.performTransfer(new TransferDTO.PerformRequest(
+                                UUID.randomUUID(), senderId, receiverId, new BigDecimal("1.00")));
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                        e.printStackTrace();
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+
+        assertTrue(latch.await(60, TimeUnit.SECONDS), "Transfers didn't finish");
+        executor.shutdown();
+
+        assertEquals(0, failures.get(), "Conflicts must be retried or executed with row locks, not surfaced");
+        assertBalance(receiverId, String.valueOf(senders.size() * perSender));
+        for (Long senderId : senders) {
+            assertBalance(senderId, "90.00");
+        }
+    }
+
+    @Test
+    @DisplayName("Adaptive: Account with frequent conflicts should be served by the pessimistic path")
+    void shouldSwitchHotAccountToPessimisticLocks() {
+        Long senderId = createAccount("RUB", "100.00");
+        Long receiverId = createAccount("RUB", "0.00");
+        double fallbacksBefore = meterRegistry.counter("transfer.optimistic.fallbacks", "reason", "hot_account").count();
+
+        assertFalse(conflictTracker.isPessimistic(senderId, receiverId));
+        conflictTracker.recordConflict(List.of(receiverId));
+        conflictTracker.recordConflict(List.of(receiverId));
+        assertTrue(conflictTracker.recordConflict(List.of(receiverId)), "Third conflict should reach the threshold");
+        assertTrue(conflictTracker.isPessimistic(senderId, receiverId));
+
+        TransferDTO.Response response = transferService.performTransfer(new TransferDTO.PerformRequest(
+                UUID.randomUUID(), senderId, receiverId, new BigDecimal("25.00")));
+
+        assertEquals("SUCCESS", response.status().name());
+        assertBalance(receiverId, "25.00");
+        assertEquals(fallbacksBefore + 1,
+                meterRegistry.counter("transfer.optimistic.fallbacks", "reason", "hot_account").count());
+    }
+
+    private Long createAccount(String currency, String initialBalance) {
+        var response = accountService.createAccount(new AccountDto.CreateRequest(currency));
+
+        BigDecimal balance = new BigDecimal(initialBalance);
+        if (balance.compareTo(BigDecimal.ZERO) > 0) {
+            accountService.topUpBalance(new AccountDto.TopUpRequest(response.id(), balance));
+        }
+
+        return response.id();
+    }
+
+    private void assertBalance(Long accountId, String expectedBalance) {
+        Account account = accountRepository.findById(accountId).orElseThrow();
+        assertTrue(new BigDecimal(expectedBalance).compareTo(account.getBalance()) == 0,
+                "Balance mismatch. Expected: " + expectedBalance + ", Actual: " + account.getBalance());
+    }
+}
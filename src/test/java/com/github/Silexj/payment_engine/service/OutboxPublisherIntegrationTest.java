@@ -0,0 +1,169 @@
+package com.github.Silexj.payment_engine.service;
+
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.model.OutboxEvent;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.LedgerJdbcRepository;
+import com.github.Silexj.payment_engine.repository.OutboxEventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.kafka.KafkaContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Поллер в профиле test фактически выключен (outbox-interval огромный),
+ * поэтому PROCESSED статус может выставить только fast path.
+ */
+@SpringBootTest(properties = "app.outbox.fast-path.enabled=true")
+@Testcontainers
+@ActiveProfiles("test")
+public class OutboxPublisherIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+
+    @Container
+    @ServiceConnection
+    static KafkaContainer kafka = new KafkaContainer(DockerImageName.parse("apache/kafka-native:latest"));
+
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+    @Autowired
+    private OutboxWriterService outboxWriter;
+    @Autowired
+    private OutboxPublisher outboxPublisher;
+    @Autowired
+    private LedgerJdbcRepository ledgerJdbcRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        outboxRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should publish event right after commit without waiting for the poller")
+    void shouldPublishAfterCommit() throws InterruptedException {
+        AccountDto.Response account = accountService.createAccount(new AccountDto.CreateRequest("EUR"));
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        Optional<OutboxEvent> processed = Optional.empty();
+        while (processed.isEmpty() && System.currentTimeMillis() < deadline) {
+            processed = outboxRepository.findAll().stream()
+                    .filter(e -> account.id().toString().equals(e.getAggregateId()))
+                    .filter(e -> "PROCESSED".equals(e.getStatus()))
+                    .findFirst();
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+
+        assertTrue(processed.isPresent(), "Event should be marked PROCESSED by the fast path");
+        assertNotNull(processed.get().getProcessedAt());
+        assertTrue(processed.get().isFastPath());
+    }
+
+    @Test
+    @DisplayName("Poller should wait out the grace period only for events registered on the fast path")
+    void shouldApplyGracePeriodToFastPathEventsOnly() {
+        OutboxEvent direct = outboxWriter.toOutboxEvent("direct", "TEST_EVENT", Map.of());
+        OutboxEvent fastPath = outboxWriter.toOutboxEvent("fast-path", "TEST_EVENT", Map.of());
+        fastPath.setFastPath(true);
+        ledgerJdbcRepository.insertOutboxEvents(List.of(direct, fastPath));
+
+        assertEquals(List.of(direct.getId()), claim(LocalDateTime.now()));
+    }
+
+    @Test
+    @DisplayName("Claimed events should stay hidden from other pollers until the lease expires or is released")
+    void shouldHideClaimedEventsUntilLeaseEnds() {
+        OutboxEvent event = outboxWriter.toOutboxEvent("leased", "TEST_EVENT", Map.of());
+        ledgerJdbcRepository.insertOutboxEvents(List.of(event));
+        LocalDateTime now = LocalDateTime.now();
+
+        assertEquals(List.of(event.getId()), claim(now));
+        assertTrue(claim(now).isEmpty(), "Leased event must not be claimed twice");
+        assertEquals(List.of(event.getId()), claim(now.plusSeconds(31)), "Expired lease must be claimable");
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                outboxRepository.releaseClaims(List.of(event.getId())));
+        assertEquals(List.of(event.getId()), claim(now));
+    }
+
+    @Test
+    @DisplayName("Should leave later events of an aggregate to the poller after its fast path send failed")
+    void shouldKeepAggregateOffFastPathUntilDrained() throws InterruptedException {
+        String aggregateId = "failed-" + UUID.randomUUID();
+        // Больше max.request.size producer (1 MB): отправка падает сразу
+        OutboxEvent tooLarge = outboxWriter.toOutboxEvent(aggregateId, "TEST_EVENT", Map.of("data", "x".repeat(2_000_000)));
+        OutboxEvent next = outboxWriter.toOutboxEvent(aggregateId, "TEST_EVENT", Map.of());
+        OutboxEvent other = outboxWriter.toOutboxEvent("other-" + UUID.randomUUID(), "TEST_EVENT", Map.of());
+        List<OutboxEvent> events = List.of(tooLarge, next, other);
+        events.forEach(event -> event.setFastPath(true));
+        ledgerJdbcRepository.insertOutboxEvents(events);
+
+        outboxPublisher.publishCommitted(events);
+
+        // other отправляется тем же потоком после next
+        assertTrue(awaitProcessed(other.getId()), "Other aggregates should stay on the fast path");
+        assertEquals("PENDING", outboxRepository.findById(tooLarge.getId()).orElseThrow().getStatus());
+        assertEquals("PENDING", outboxRepository.findById(next.getId()).orElseThrow().getStatus(),
+                "Event must not overtake the failed event of its aggregate");
+
+        // Поллер разобрал события агрегата - агрегат возвращается на fast path
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                outboxRepository.markProcessed(List.of(tooLarge.getId(), next.getId()), LocalDateTime.now()));
+        outboxPublisher.releaseDrainedAggregates();
+        OutboxEvent afterDrain = outboxWriter.toOutboxEvent(aggregateId, "TEST_EVENT", Map.of());
+        afterDrain.setFastPath(true);
+        ledgerJdbcRepository.insertOutboxEvents(List.of(afterDrain));
+        outboxPublisher.publishCommitted(List.of(afterDrain));
+
+        assertTrue(awaitProcessed(afterDrain.getId()), "Drained aggregate should return to the fast path");
+    }
+
+    private boolean awaitProcessed(UUID eventId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (System.currentTimeMillis() < deadline) {
+            if ("PROCESSED".equals(outboxRepository.findById(eventId).orElseThrow().getStatus())) {
+                return true;
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        return false;
+    }
+
+    /**
+     * Аренда на 30 секунд от now, grace-period fast path - 5 секунд.
+     */
+    private List<UUID> claim(LocalDateTime now) {
+        return new TransactionTemplate(transactionManager).execute(status ->
+                outboxRepository.claimBatch(10, now.minusSeconds(5), now, now.plusSeconds(30)).stream()
+                        .map(OutboxEvent::getId)
+                        .toList());
+    }
+}
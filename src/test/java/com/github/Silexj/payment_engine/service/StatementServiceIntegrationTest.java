@@ -0,0 +1,133 @@
+package com.github.Silexj.payment_engine.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.OutboxEventRepository;
+import com.github.Silexj.payment_engine.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+public class StatementServiceIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+
+    @Autowired
+    private StatementService statementService;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @AfterEach
+    void cleanUp() {
+        outboxRepository.deleteAll();
+        transactionRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should stream CSV statement with running balance")
+    void shouldExportCsvWithRunningBalance() throws IOException {
+        Long merchant = createAccount("RUB", "100.00");
+        Long customer = createAccount("RUB", "50.00");
+        transfer(merchant, customer, "30.00");
+        transfer(customer, merchant, "5.00");
+
+        List<String> lines = export(merchant, StatementService.Format.CSV).lines().toList();
+
+        assertEquals(4, lines.size(), "Header + deposit + two transfers");
+        assertTrue(lines.get(0).startsWith("timestamp,"));
+        assertTrue(lines.get(1).endsWith(",CREDIT,,100.00,RUB,SUCCESS,100.00"));
+        assertTrue(lines.get(2).endsWith(",DEBIT," + customer + ",-30.00,RUB,SUCCESS,70.00"));
+        assertTrue(lines.get(3).endsWith(",CREDIT," + customer + ",5.00,RUB,SUCCESS,75.00"));
+    }
+
+    @Test
+    @DisplayName("Should start from the balance before the period in NDJSON")
+    void shouldExportNdjsonFromOpeningBalance() throws IOException {
+        Long merchant = createAccount("USD", "40.00");
+        Long customer = createAccount("USD", "0.00");
+        transfer(merchant, customer, "15.00");
+
+        // Период целиком в будущем: строк нет, но и ошибки нет
+        String empty = export(merchant, LocalDate.now().plusDays(1), LocalDate.now().plusDays(2), StatementService.Format.NDJSON);
+        assertTrue(empty.isEmpty());
+
+        List<String> lines = export(merchant, StatementService.Format.NDJSON).lines().toList();
+        assertEquals(2, lines.size());
+        JsonNode last = objectMapper.readTree(lines.get(1));
+        assertEquals("DEBIT", last.get("direction").asText());
+        assertEquals(0, new BigDecimal("25.00").compareTo(last.get("balance").decimalValue()));
+    }
+
+    @Test
+    @DisplayName("Should reject inverted period and unknown account before streaming")
+    void shouldValidateRequest() {
+        Long merchant = createAccount("EUR", "0.00");
+
+        assertThrows(IllegalArgumentException.class, () -> statementService.export(
+                merchant, LocalDate.now(), LocalDate.now().minusDays(1), StatementService.Format.CSV));
+        assertThrows(IllegalArgumentException.class, () -> statementService.export(
+                Long.MAX_VALUE, LocalDate.now(), LocalDate.now(), StatementService.Format.CSV));
+        assertThrows(IllegalArgumentException.class, () -> StatementService.Format.parse("xml"));
+    }
+
+    private String export(Long accountId, StatementService.Format format) throws IOException {
+        return export(accountId, LocalDate.now().minusDays(1), LocalDate.now().plusDays(1), format);
+    }
+
+    private String export(Long accountId, LocalDate from, LocalDate to, StatementService.Format format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        statementService.export(accountId, from, to, format).writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private void transfer(Long from, Long to, String amount) {
+        transferService.performTransfer(new TransferDTO.PerformRequest(UUID.randomUUID(), from, to, new BigDecimal(amount)));
+    }
+
+    private Long createAccount(String currency, String initialBalance) {
+        var response = accountService.createAccount(new AccountDto.CreateRequest(currency));
+
+        BigDecimal balance = new BigDecimal(initialBalance);
+        if (balance.compareTo(BigDecimal.ZERO) > 0) {
+            accountService.topUpBalance(new AccountDto.TopUpRequest(response.id(), balance));
+        }
+
+        return response.id();
+    }
+}
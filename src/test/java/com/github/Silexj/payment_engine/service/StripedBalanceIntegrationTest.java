@@ -0,0 +1,148 @@
+package com.github.Silexj.payment_engine.service;
+
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.repository.AccountBalanceSlotRepository;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+public class StripedBalanceIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private AccountBalanceSlotRepository slotRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @AfterEach
+    void cleanUp() {
+        slotRepository.deleteAll();
+        transactionRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should move balance into slots on promotion and sum slots on read")
+    void shouldEnableStriping() {
+        Long merchant = createAccount("RUB", "300.00");
+
+        AccountDto.Response response = accountService.enableStriping(merchant, 4);
+
+        assertEquals(4, slotRepository.count());
+        assertEquals(0, new BigDecimal("300.00").compareTo(response.balance()));
+        assertEquals(0, new BigDecimal("300.00").compareTo(accountService.getAccount(merchant).balance()));
+    }
+
+    @Test
+    @DisplayName("Concurrency: Parallel credits to a striped account should all be applied")
+    void shouldAcceptConcurrentCredits() throws InterruptedException {
+        Long merchant = createAccount("RUB", "0.00");
+        accountService.enableStriping(merchant, 8);
+
+        int payers = 16;
+        Long[] payerIds = new Long[payers];
+        for (int i = 0; i < payers; i++) {
+            payerIds[i] = createAccount("RUB", "100.00");
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch latch = new CountDownLatch(payers);
+        for (Long payer : payerIds) {
+            executor.submit(() -> {
+                try {
+                    transferService.performTransfer(new TransferDTO.PerformRequest(
+                            UUID.randomUUID(), payer, merchant, new BigDecimal("10.00")
+                    ));
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(0, new BigDecimal("160.00").compareTo(accountService.getAccount(merchant).balance()));
+    }
+
+    @Test
+    @DisplayName("Should borrow across slots on debit and reject overdraft")
+    void shouldDebitAcrossSlots() {
+        Long merchant = createAccount("USD", "0.00");
+        Long payer = createAccount("USD", "100.00");
+        Long supplier = createAccount("USD", "0.00");
+        accountService.enableStriping(merchant, 4);
+
+        for (int i = 0; i < 10; i++) {
+            transferService.performTransfer(new TransferDTO.PerformRequest(
+                    UUID.randomUUID(), payer, merchant, new BigDecimal("10.00")));
+        }
+
+        transferService.performTransfer(new TransferDTO.PerformRequest(
+                UUID.randomUUID(), merchant, supplier, new BigDecimal("95.00")));
+
+        assertEquals(0, new BigDecimal("5.00").compareTo(accountService.getAccount(merchant).balance()));
+        assertEquals(0, new BigDecimal("95.00").compareTo(accountService.getAccount(supplier).balance()));
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                transferService.performTransfer(new TransferDTO.PerformRequest(
+                        UUID.randomUUID(), merchant, supplier, new BigDecimal("6.00"))));
+        assertEquals("Insufficient funds", ex.getMessage());
+    }
+
+    @Test
+    @DisplayName("Should fold slots back into the account balance on demotion")
+    void shouldDisableStriping() {
+        Long merchant = createAccount("EUR", "50.00");
+        accountService.enableStriping(merchant, 4);
+        accountService.topUpBalance(new AccountDto.TopUpRequest(merchant, new BigDecimal("25.00")));
+
+        AccountDto.Response response = accountService.disableStriping(merchant);
+
+        assertEquals(0, slotRepository.count());
+        assertEquals(0, new BigDecimal("75.00").compareTo(response.balance()));
+        assertEquals(0, new BigDecimal("75.00").compareTo(accountRepository.findById(merchant).orElseThrow().getBalance()));
+    }
+
+    private Long createAccount(String currency, String initialBalance) {
+        var response = accountService.createAccount(new AccountDto.CreateRequest(currency));
+
+        BigDecimal balance = new BigDecimal(initialBalance);
+        if (balance.compareTo(BigDecimal.ZERO) > 0) {
+            accountService.topUpBalance(new AccountDto.TopUpRequest(response.id(), balance));
+        }
+
+        return response.id();
+    }
+}
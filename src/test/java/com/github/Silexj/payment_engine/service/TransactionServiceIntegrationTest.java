@@ -1,7 +1,9 @@
 package com.github.Silexj.payment_engine.service;
 
+import com.github.Silexj.payment_engine.dto.TransferDTO;
 import com.github.Silexj.payment_engine.model.Account;
 import com.github.Silexj.payment_engine.model.Transaction;
+import com.github.Silexj.payment_engine.model.TransactionStatus;
 import com.github.Silexj.payment_engine.repository.AccountRepository;
 import com.github.Silexj.payment_engine.repository.TransactionRepository;
 import org.junit.jupiter.api.AfterEach;
@@ -18,7 +20,13 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -90,4 +98,70 @@ class TransactionServiceIntegrationTest {
 
         assertEquals(0, transactionRepository.count(), "Transaction should not be saved");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should page through account history newest first without gaps or duplicates")
+    void shouldPageThroughHistory() {
+        Account account = saveAccount("11111111111111111111");
+        Account counterparty = saveAccount("22222222222222222222");
+
+        // Пары строк с одинаковым timestamp проверяют порядок по id на границе страниц
+        LocalDateTime base = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            boolean outgoing = i % 2 == 0;
+            transactions.add(Transaction.builder()
+                    .id(UUID.randomUUID())
+                    .externalId(UUID.randomUUID())
+                    .sender(outgoing ? account : counterparty)
+                    .receiver(outgoing ? counterparty : account)
+                    .amount(BigDecimal.ONE)
+                    .currency("RUB")
+                    .timestamp(base.minusSeconds(i / 2))
+                    .status(TransactionStatus.SUCCESS)
+                    .build());
+        }
+        transactionRepository.saveAll(transactions);
+
+        List<TransferDTO.Response> collected = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            TransferDTO.HistoryPage page = transactionService.getHistory(account.getId(), cursor, 10);
+            collected.addAll(page.transactions());
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(25, collected.size());
+        Set<UUID> ids = new HashSet<>();
+        collected.forEach(tx -> ids.add(tx.transactionId()));
+        assertEquals(25, ids.size(), "Pages should not overlap");
+        for (int i = 1; i < collected.size(); i++) {
+            assertFalse(collected.get(i).timestamp().isAfter(collected.get(i - 1).timestamp()), "History should be newest first");
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject malformed cursor and unknown account")
+    void shouldValidateHistoryRequest() {
+        Account account = saveAccount("33333333333333333333");
+
+        IllegalArgumentException badCursor = assertThrows(IllegalArgumentException.class,
+                () -> transactionService.getHistory(account.getId(), "not-a-cursor", 10));
+        assertEquals("Invalid cursor", badCursor.getMessage());
+
+        IllegalArgumentException unknown = assertThrows(IllegalArgumentException.class,
+                () -> transactionService.getHistory(Long.MAX_VALUE, null, 10));
+        assertEquals("Account not found", unknown.getMessage());
+    }
+
+    private Account saveAccount(String number) {
+        Account account = new Account();
+        account.setNumber(number);
+        account.setCurrency("RUB");
+        account.setBalance(BigDecimal.ZERO);
+        return accountRepository.save(account);
+    }
+}
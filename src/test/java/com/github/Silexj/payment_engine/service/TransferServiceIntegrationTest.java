@@ -6,6 +6,7 @@ import com.github.Silexj.payment_engine.model.Account;
 import com.github.Silexj.payment_engine.model.Transaction;
 import com.github.Silexj.payment_engine.repository.AccountRepository;
 import com.github.Silexj.payment_engine.repository.TransactionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -43,6 +44,8 @@ public class TransferServiceIntegrationTest {
     private AccountRepository accountRepository;
     @Autowired
     private TransactionRepository transactionRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     @AfterEach
     void cleanUp() {
@@ -170,6 +173,31 @@ public class TransferServiceIntegrationTest {
         assertEquals(2, transactionRepository.count(), "Should be 2 transactions (1 Deposit + 1 Transfer)");
     }
 
+    @Test
+    @DisplayName("Metrics: Should record every stage, lock waits by outcome and the commit")
+    void shouldRecordStageTimings() {
+        Long senderId = createAccount("RUB", "100.00");
+        Long receiverId = createAccount("RUB", "0.00");
+        long lockWaitsBefore = stageCount("transfer.lock.wait", "outcome", "acquired");
+        long commitsBefore = stageCount("transfer.stage", "stage", "commit");
+
+        transferService.performTransfer(new TransferDTO.PerformRequest(
+                UUID.randomUUID(), senderId, receiverId, new BigDecimal("10.00")));
+        assertThrows(IllegalArgumentException.class, () -> transferService.performTransfer(
+                new TransferDTO.PerformRequest(UUID.randomUUID(), senderId, 999_999_999L, new BigDecimal("10.00"))));
+
+        assertEquals(lockWaitsBefore + 3, stageCount("transfer.lock.wait", "outcome", "acquired"));
+        assertTrue(stageCount("transfer.lock.wait", "outcome", "not_found") >= 1);
+        assertEquals(commitsBefore + 1, stageCount("transfer.stage", "stage", "commit"));
+        for (String stage : new String[]{"idempotency_lookup", "validation", "balance_update", "journal_write", "outbox_write", "flush"}) {
+            assertTrue(stageCount("transfer.stage", "stage", stage) > 0, stage);
+        }
+    }
+
+    private long stageCount(String name, String tag, String value) {
+        return meterRegistry.get(name).tag("operation", "transfer").tag(tag, value).timer().count();
+    }
+
     private Long createAccount(String currency, String initialBalance) {
         var createReq = new AccountDto.CreateRequest(currency);
         var response = accountService.createAccount(createReq);
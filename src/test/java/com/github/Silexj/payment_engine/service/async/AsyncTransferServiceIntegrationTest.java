@@ -0,0 +1,180 @@
+package com.github.Silexj.payment_engine.service.async;
+
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.model.Account;
+import com.github.Silexj.payment_engine.model.TransferRequestStatus;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.OutboxEventRepository;
+import com.github.Silexj.payment_engine.repository.TransactionRepository;
+import com.github.Silexj.payment_engine.repository.TransferRequestRepository;
+import com.github.Silexj.payment_engine.service.AccountService;
+import com.github.Silexj.payment_engine.service.TransferService;
+import com.github.Silexj.payment_engine.service.idempotency.IdempotencyKeyConflictException;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+public class AsyncTransferServiceIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+
+    @Autowired
+    private AsyncTransferService asyncTransferService;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private TransferRequestRepository transferRequestRepository;
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+
+    @AfterEach
+    void cleanUp() {
+        transferRequestRepository.deleteAll();
+        outboxRepository.deleteAll();
+        transactionRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Success: Accepted transfer should be executed in the background")
+    void shouldExecuteAcceptedTransfer() throws InterruptedException {
+        Long senderId = createAccount("RUB", "100.00");
+        Long receiverId = createAccount("RUB", "0.00");
+        var request = new TransferDTO.PerformRequest(UUID.randomUUID(), senderId, receiverId, new BigDecimal("40.00"));
+
+        TransferDTO.AsyncStatus accepted = asyncTransferService.submit(request);
+        assertEquals(request.externalId(), accepted.externalId());
+        assertFalse(accepted.status().isFinal());
+
+        TransferDTO.AsyncStatus completed = awaitCompletion(request.externalId());
+        assertEquals(TransferRequestStatus.SUCCESS, completed.status());
+        assertNotNull(completed.result());
+        assertTrue(transactionRepository.findByExternalId(request.externalId()).isPresent());
+        assertBalance(senderId, "60.00");
+        assertBalance(receiverId, "40.00");
+    }
+
+    @Test
+    @DisplayName("Idempotency: Resubmitted transfer should return the original entry and debit once")
+    void shouldNotExecuteResubmittedTransferTwice() throws InterruptedException {
+        Long senderId = createAccount("RUB", "100.00");
+        Long receiverId = createAccount("RUB", "0.00");
+        var request = new TransferDTO.PerformRequest(UUID.randomUUID(), senderId, receiverId, new BigDecimal("40.00"));
+
+        asyncTransferService.submit(request);
+        TransferDTO.AsyncStatus first = awaitCompletion(request.externalId());
+        TransferDTO.AsyncStatus replay = asyncTransferService.submit(request);
+
+        assertEquals(TransferRequestStatus.SUCCESS, replay.status());
+        assertEquals(first.result().transactionId(), replay.result().transactionId());
+        assertEquals(1, transferRequestRepository.count());
+        assertBalance(senderId, "60.00");
+    }
+
+    @Test
+    @DisplayName("Idempotency: Reusing externalId with a different amount or account should be rejected")
+    void shouldRejectResubmissionWithDifferentPayload() throws InterruptedException {
+        Long senderId = createAccount("RUB", "100.00");
+        Long receiverId = createAccount("RUB", "0.00");
+        Long otherId = createAccount("RUB", "0.00");
+        var request = new TransferDTO.PerformRequest(UUID.randomUUID(), senderId, receiverId, new BigDecimal("40.00"));
+
+        asyncTransferService.submit(request);
+        awaitCompletion(request.externalId());
+
+        assertThrows(IdempotencyKeyConflictException.class, () -> asyncTransferService.submit(
+                new TransferDTO.PerformRequest(request.externalId(), senderId, receiverId, new BigDecimal("50.00"))));
+        assertThrows(IdempotencyKeyConflictException.class, () -> asyncTransferService.submit(
+                new TransferDTO.PerformRequest(request.externalId(), senderId, otherId, new BigDecimal("40.00"))));
+
+        // Ключ, занятый синхронным переводом, тоже сверяется
+        var synchronous = new TransferDTO.PerformRequest(UUID.randomUUID(), senderId, receiverId, new BigDecimal("10.00"));
+        transferService.performTransfer(synchronous);
+        assertThrows(IdempotencyKeyConflictException.class, () -> asyncTransferService.submit(
+                new TransferDTO.PerformRequest(synchronous.externalId(), senderId, otherId, new BigDecimal("10.00"))));
+
+        assertBalance(senderId, "50.00");
+        assertBalance(otherId, "0.00");
+    }
+
+    @Test
+    @DisplayName("Failure: Business rejection should end in FAILED without retries")
+    void shouldFailTransferWithInsufficientFunds() throws InterruptedException {
+        Long senderId = createAccount("RUB", "10.00");
+        Long receiverId = createAccount("RUB", "0.00");
+        var request = new TransferDTO.PerformRequest(UUID.randomUUID(), senderId, receiverId, new BigDecimal("50.00"));
+
+        asyncTransferService.submit(request);
+        TransferDTO.AsyncStatus completed = awaitCompletion(request.externalId());
+
+        assertEquals(TransferRequestStatus.FAILED, completed.status());
+        assertEquals("Insufficient funds", completed.errorMessage());
+        assertEquals(1, transferRequestRepository.findById(request.externalId()).orElseThrow().getAttempts());
+        assertBalance(senderId, "10.00");
+    }
+
+    @Test
+    @DisplayName("Failure: Self-transfer is rejected before acceptance, unknown transfer is not found")
+    void shouldRejectInvalidRequests() {
+        Long accountId = createAccount("RUB", "100.00");
+        var selfTransfer = new TransferDTO.PerformRequest(UUID.randomUUID(), accountId, accountId, BigDecimal.TEN);
+
+        assertThrows(IllegalArgumentException.class, () -> asyncTransferService.submit(selfTransfer));
+        assertEquals(0, transferRequestRepository.count());
+        assertThrows(EntityNotFoundException.class, () -> asyncTransferService.getStatus(UUID.randomUUID()));
+    }
+
+    private TransferDTO.AsyncStatus awaitCompletion(UUID externalId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            TransferDTO.AsyncStatus status = asyncTransferService.getStatus(externalId);
+            if (status.status().isFinal()) {
+                return status;
+            }
+            Thread.sleep(50);
+        }
+        return fail("Transfer did not complete: " + externalId);
+    }
+
+    private Long createAccount(String currency, String initialBalance) {
+        var response = accountService.createAccount(new AccountDto.CreateRequest(currency));
+
+        BigDecimal balance = new BigDecimal(initialBalance);
+        if (balance.compareTo(BigDecimal.ZERO) > 0) {
+            accountService.topUpBalance(new AccountDto.TopUpRequest(response.id(), balance));
+        }
+
+        return response.id();
+    }
+
+    private void assertBalance(Long accountId, String expectedBalance) {
+        Account account = accountRepository.findById(accountId).orElseThrow();
+        assertTrue(new BigDecimal(expectedBalance).compareTo(account.getBalance()) == 0,
+                "Balance mismatch. Expected: " + expectedBalance + ", Actual: " + account.getBalance());
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.Silexj.payment_engine.service.bulkhead;
+
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.TransactionRepository;
+import com.github.Silexj.payment_engine.service.AccountService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.threads.virtual.enabled=true",
+        "app.bulkhead.enabled=true",
+        "app.bulkhead.min-limit=1",
+        "app.bulkhead.max-limit=2",
+        "app.bulkhead.initial-limit=2",
+        "app.bulkhead.max-queue=1",
+        "app.bulkhead.max-wait=5s"
+})
+@Testcontainers
+@ActiveProfiles("test")
+public class AdaptiveConcurrencyLimiterIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter limiter;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void cleanUp() {
+        transactionRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should pass calls under the limit and release the permit")
+    void shouldAdmitUnderLimit() {
+        var account = accountService.createAccount(new AccountDto.CreateRequest("RUB"));
+        accountService.topUpBalance(new AccountDto.TopUpRequest(account.id(), BigDecimal.TEN));
+
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getQueued());
+        assertEquals(2, meterRegistry.get("db.bulkhead.limit").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Should queue a call when saturated, shed the next one and admit the queued call after release")
+    void shouldQueueAndShed() throws Exception {
+        long first = limiter.acquire();
+        long second = limiter.acquire();
+
+        CompletableFuture<AccountDto.Response> queued = CompletableFuture.supplyAsync(() ->
+                accountService.createAccount(new AccountDto.CreateRequest("RUB")));
+        waitUntil(() -> limiter.getQueued() == 1);
+
+        assertThrows(BulkheadRejectedException.class, () ->
+                accountService.createAccount(new AccountDto.CreateRequest("USD")));
+        assertEquals(1.0, meterRegistry.get("db.bulkhead.rejected").tag("reason", "queue_full").counter().count());
+        assertFalse(queued.isDone());
+
+        limiter.release(first, false);
+        assertNotNull(queued.get(5, TimeUnit.SECONDS).id());
+
+        limiter.release(second, false);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+}
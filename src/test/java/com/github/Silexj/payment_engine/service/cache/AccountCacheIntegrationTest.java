@@ -0,0 +1,149 @@
+package com.github.Silexj.payment_engine.service.cache;
+
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.OutboxEventRepository;
+import com.github.Silexj.payment_engine.repository.TransactionRepository;
+import com.github.Silexj.payment_engine.service.AccountService;
+import com.github.Silexj.payment_engine.service.TransferService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+public class AccountCacheIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private AccountCacheInvalidationListener invalidationListener;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void cleanUp() {
+        outboxRepository.deleteAll();
+        transactionRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should serve repeated reads from cache and reload after a local transfer")
+    void shouldInvalidateOnLocalCommit() {
+        Long senderId = createAccount("RUB", "100.00");
+        Long receiverId = createAccount("RUB", "0.00");
+        accountService.getAccount(senderId);
+
+        // Изменение в обход сервиса кэш не видит
+        jdbcTemplate.update("UPDATE accounts SET balance = 42 WHERE id = ?", senderId);
+        assertEquals(0, new BigDecimal("100.00").compareTo(accountService.getAccount(senderId).balance()));
+
+        transferService.performTransfer(new TransferDTO.PerformRequest(
+                UUID.randomUUID(), senderId, receiverId, new BigDecimal("2.00")));
+
+        assertEquals(0, new BigDecimal("40.00").compareTo(accountService.getAccount(senderId).balance()));
+    }
+
+    @Test
+    @DisplayName("Should invalidate entries on balance events from other nodes")
+    void shouldInvalidateOnRemoteEvent() {
+        Long accountId = createAccount("USD", "10.00");
+        accountService.getAccount(accountId);
+
+        jdbcTemplate.update("UPDATE accounts SET balance = 15 WHERE id = ?", accountId);
+        invalidationListener.handlePaymentEvent(
+                "{\"accountId\":" + accountId + ",\"amount\":5,\"currency\":\"USD\",\"transactionId\":\"" + UUID.randomUUID() + "\"}",
+                "BALANCE_DEPOSITED",
+                System.currentTimeMillis());
+
+        assertEquals(0, new BigDecimal("15.00").compareTo(accountService.getAccount(accountId).balance()));
+    }
+
+    @Test
+    @DisplayName("Concurrency: Parallel misses for one account should load it once")
+    void shouldCollapseConcurrentMisses() throws InterruptedException {
+        Long accountId = createAccount("EUR", "0.00");
+        double misses = cacheGets("miss");
+
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    accountService.getAccount(accountId);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(misses + 1, cacheGets("miss"));
+    }
+
+    @Test
+    @DisplayName("Should not cache unknown accounts")
+    void shouldRejectUnknownAccount() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> accountService.getAccount(Long.MAX_VALUE));
+        assertEquals("Account not found", ex.getMessage());
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "accounts").tag("result", result).functionCounter().count();
+    }
+
+    private Long createAccount(String currency, String initialBalance) {
+        var response = accountService.createAccount(new AccountDto.CreateRequest(currency));
+
+        BigDecimal balance = new BigDecimal(initialBalance);
+        if (balance.compareTo(BigDecimal.ZERO) > 0) {
+            accountService.topUpBalance(new AccountDto.TopUpRequest(response.id(), balance));
+        }
+
+        return response.id();
+    }
+}
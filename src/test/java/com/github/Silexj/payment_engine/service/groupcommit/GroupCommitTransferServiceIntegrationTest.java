@@ -0,0 +1,171 @@
+package com.github.Silexj.payment_engine.service.groupcommit;
+
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.model.Account;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.OutboxEventRepository;
+import com.github.Silexj.payment_engine.repository.TransactionRepository;
+import com.github.Silexj.payment_engine.service.AccountService;
+import com.github.Silexj.payment_engine.service.TransferService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "app.transfer.mode=GROUP_COMMIT",
+        // Широкое окно, чтобы параллельные переводы теста гарантированно попали в одну группу
+        "app.transfer.group-commit.window=200ms"
+})
+@Testcontainers
+@ActiveProfiles("test")
+public class GroupCommitTransferServiceIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void cleanUp() {
+        outboxRepository.deleteAll();
+        transactionRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Success: Concurrent transfers should be committed together and conserve money")
+    void shouldCommitConcurrentTransfersInOneGroup() throws Exception {
+        Long hubId = createAccount("RUB", "0.00");
+        List<Long> senders = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            senders.add(createAccount("RUB", "100.00"));
+        }
+        double groupsBefore = meterRegistry.summary("transfer.group.size").count();
+
+        List<TransferDTO.Response> responses = runConcurrently(senders.stream()
+                .map(senderId -> new TransferDTO.PerformRequest(UUID.randomUUID(), senderId, hubId, new BigDecimal("30.00")))
+                .toList());
+
+        responses.forEach(response -> assertEquals("SUCCESS", response.status().name()));
+        assertBalance(hubId, "300.00");
+        senders.forEach(senderId -> assertBalance(senderId, "70.00"));
+        assertTrue(meterRegistry.summary("transfer.group.size").count() - groupsBefore < senders.size(),
+                "Transfers should share commits");
+        assertEquals(senders.size(), outboxRepository.findAll().stream()
+                .filter(e -> "TRANSFER_COMPLETED".equals(e.getType()))
+                .count());
+    }
+
+    @Test
+    @DisplayName("Isolation: Rejected and duplicate items should not abort the rest of the group")
+    void shouldIsolateFailingItems() throws Exception {
+        Long senderId = createAccount("RUB", "100.00");
+        Long receiverId = createAccount("RUB", "0.00");
+        Long poorId = createAccount("RUB", "5.00");
+        UUID duplicateKey = UUID.randomUUID();
+
+        var valid = new TransferDTO.PerformRequest(duplicateKey, senderId, receiverId, new BigDecimal("40.00"));
+        var duplicate = new TransferDTO.PerformRequest(duplicateKey, senderId, receiverId, new BigDecimal("40.00"));
+        var insufficient = new TransferDTO.PerformRequest(UUID.randomUUID(), poorId, receiverId, new BigDecimal("50.00"));
+        var missing = new TransferDTO.PerformRequest(UUID.randomUUID(), senderId, Long.MAX_VALUE, new BigDecimal("1.00"));
+
+        List<CompletableFuture<Object>> results = submitConcurrently(List.of(valid, duplicate, insufficient, missing));
+
+        TransferDTO.Response first = (TransferDTO.Response) results.get(0).get();
+        TransferDTO.Response replay = (TransferDTO.Response) results.get(1).get();
+        assertEquals(first.transactionId(), replay.transactionId(), "Duplicate in the same group must replay the first");
+        assertEquals("Insufficient funds", ((Exception) results.get(2).get()).getMessage());
+        assertEquals("Account not found: " + Long.MAX_VALUE, ((Exception) results.get(3).get()).getMessage());
+
+        assertBalance(senderId, "60.00");
+        assertBalance(receiverId, "40.00");
+        assertBalance(poorId, "5.00");
+        assertEquals(4, transactionRepository.count(), "3 deposits + 1 transfer");
+    }
+
+    private List<TransferDTO.Response> runConcurrently(List<TransferDTO.PerformRequest> requests) throws Exception {
+        List<TransferDTO.Response> responses = new ArrayList<>();
+        for (CompletableFuture<Object> result : submitConcurrently(requests)) {
+            Object value = result.get();
+            if (value instanceof Exception e) {
+                throw e;
+            }
+            responses.add((TransferDTO.Response) value);
+        }
+        return responses;
+    }
+
+    /**
+     * Запускает переводы одновременно; результат - ответ или исключение перевода.
+     */
+    private List<CompletableFuture<Object>> submitConcurrently(List<TransferDTO.PerformRequest> requests)
+            throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(requests.size());
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Object>> results = new ArrayList<>();
+        for (TransferDTO.PerformRequest request : requests) {
+            results.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    start.await();
+                    return transferService.performTransfer(request);
+                } catch (Exception e) {
+                    return e;
+                }
+            }, executor));
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS), "Transfers didn't finish");
+        return results;
+    }
+
+    private Long createAccount(String currency, String initialBalance) {
+        var response = accountService.createAccount(new AccountDto.CreateRequest(currency));
+
+        BigDecimal balance = new BigDecimal(initialBalance);
+        if (balance.compareTo(BigDecimal.ZERO) > 0) {
+            accountService.topUpBalance(new AccountDto.TopUpRequest(response.id(), balance));
+        }
+
+        return response.id();
+    }
+
+    private void assertBalance(Long accountId, String expectedBalance) {
+        Account account = accountRepository.findById(accountId).orElseThrow();
+        assertTrue(new BigDecimal(expectedBalance).compareTo(account.getBalance()) == 0,
+                "Balance mismatch. Expected: " + expectedBalance + ", Actual: " + account.getBalance());
+    }
+}
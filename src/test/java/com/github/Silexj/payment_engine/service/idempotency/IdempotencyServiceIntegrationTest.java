@@ -0,0 +1,105 @@
+package com.github.Silexj.payment_engine.service.idempotency;
+
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.TransactionRepository;
+import com.github.Silexj.payment_engine.service.AccountService;
+import com.github.Silexj.payment_engine.service.TransferService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Testcontainers
+@ActiveProfiles("test")
+public class IdempotencyServiceIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void cleanUp() {
+        transactionRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should skip the database for unknown keys and serve replays from cache")
+    void shouldServeReplaysFromCache() {
+        Long senderId = createAccount("RUB", "100.00");
+        Long receiverId = createAccount("RUB", "0.00");
+        TransferDTO.PerformRequest request = new TransferDTO.PerformRequest(
+                UUID.randomUUID(), senderId, receiverId, BigDecimal.TEN
+        );
+
+        double bloomMisses = lookups("bloom_miss");
+        assertTrue(idempotencyService.findExisting(UUID.randomUUID()).isEmpty());
+        assertEquals(bloomMisses + 1, lookups("bloom_miss"));
+
+        TransferDTO.Response first = transferService.performTransfer(request);
+
+        double cacheHits = lookups("cache_hit");
+        TransferDTO.Response replay = transferService.performTransfer(request);
+        assertEquals(first.transactionId(), replay.transactionId());
+        assertEquals(cacheHits + 1, lookups("cache_hit"));
+        assertEquals(2, transactionRepository.count(), "Replay should not create a transaction");
+    }
+
+    @Test
+    @DisplayName("Should resolve keys committed outside this node through the database")
+    void shouldFindCommittedTransactions() {
+        Long senderId = createAccount("USD", "100.00");
+        Long receiverId = createAccount("USD", "0.00");
+        TransferDTO.Response response = transferService.performTransfer(new TransferDTO.PerformRequest(
+                UUID.randomUUID(), senderId, receiverId, BigDecimal.ONE
+        ));
+
+        var found = idempotencyService.findCommitted(response.externalId());
+
+        assertTrue(found.isPresent());
+        assertEquals(response.transactionId(), found.get().transactionId());
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.counter("idempotency.lookups", "result", result).count();
+    }
+
+    private Long createAccount(String currency, String initialBalance) {
+        var response = accountService.createAccount(new AccountDto.CreateRequest(currency));
+
+        BigDecimal balance = new BigDecimal(initialBalance);
+        if (balance.compareTo(BigDecimal.ZERO) > 0) {
+            accountService.topUpBalance(new AccountDto.TopUpRequest(response.id(), balance));
+        }
+
+        return response.id();
+    }
+}
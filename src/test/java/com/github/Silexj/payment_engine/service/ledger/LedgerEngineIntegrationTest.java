@@ -0,0 +1,230 @@
+package com.github.Silexj.payment_engine.service.ledger;
+
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.model.Account;
+import com.github.Silexj.payment_engine.model.Transaction;
+import com.github.Silexj.payment_engine.model.TransactionStatus;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.LedgerJdbcRepository;
+import com.github.Silexj.payment_engine.repository.OutboxEventRepository;
+import com.github.Silexj.payment_engine.repository.TransactionRepository;
+import com.github.Silexj.payment_engine.service.AccountService;
+import com.github.Silexj.payment_engine.service.BatchTransferService;
+import com.github.Silexj.payment_engine.service.TransferService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "app.transfer.mode=LEDGER")
+@Testcontainers
+@ActiveProfiles("test")
+public class LedgerEngineIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private BatchTransferService batchTransferService;
+    @Autowired
+    private LedgerJdbcRepository ledgerJdbcRepository;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+
+    @AfterEach
+    void cleanUp() {
+        outboxRepository.deleteAll();
+        transactionRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Success: Should apply transfer in memory and persist it before acknowledging")
+    void shouldTransferMoneySuccessfully() {
+        Long senderId = createAccount("RUB", "1000.00");
+        Long receiverId = createAccount("RUB", "0.00");
+
+        TransferDTO.Response response = transferService.performTransfer(new TransferDTO.PerformRequest(
+                UUID.randomUUID(), senderId, receiverId, new BigDecimal("500.00")
+        ));
+
+        assertEquals("SUCCESS", response.status().name());
+        assertEquals("RUB", response.currency());
+        assertBalance(senderId, "500.00");
+        assertBalance(receiverId, "500.00");
+        assertTrue(transactionRepository.findById(response.transactionId()).isPresent());
+        assertTrue(outboxRepository.findAll().stream().anyMatch(e -> "TRANSFER_COMPLETED".equals(e.getType())));
+    }
+
+    @Test
+    @DisplayName("Fail: Should reject insufficient funds and currency mismatch")
+    void shouldRejectInvalidTransfers() {
+        Long senderId = createAccount("RUB", "10.00");
+        Long receiverId = createAccount("RUB", "0.00");
+        Long usdId = createAccount("USD", "0.00");
+
+        IllegalArgumentException funds = assertThrows(IllegalArgumentException.class, () ->
+                transferService.performTransfer(new TransferDTO.PerformRequest(
+                        UUID.randomUUID(), senderId, receiverId, new BigDecimal("100.00"))));
+        assertEquals("Insufficient funds", funds.getMessage());
+
+        IllegalArgumentException currency = assertThrows(IllegalArgumentException.class, () ->
+                transferService.performTransfer(new TransferDTO.PerformRequest(
+                        UUID.randomUUID(), senderId, usdId, BigDecimal.ONE)));
+        assertEquals("Cross-currency transfers are not supported", currency.getMessage());
+
+        assertBalance(senderId, "10.00");
+    }
+
+    @Test
+    @DisplayName("Idempotency: Should not deduct money twice for same externalId")
+    void shouldBeIdempotent() {
+        Long senderId = createAccount("USD", "1000.00");
+        Long receiverId = createAccount("USD", "0.00");
+        TransferDTO.PerformRequest request = new TransferDTO.PerformRequest(
+                UUID.randomUUID(), senderId, receiverId, new BigDecimal("100.00")
+        );
+
+        TransferDTO.Response response1 = transferService.performTransfer(request);
+        TransferDTO.Response response2 = transferService.performTransfer(request);
+
+        assertEquals(response1.transactionId(), response2.transactionId());
+        assertBalance(senderId, "900.00");
+        assertBalance(receiverId, "100.00");
+    }
+
+    @Test
+    @DisplayName("Isolation: Duplicate externalId committed elsewhere should be replayed and its deltas reverted in memory")
+    void shouldIsolateDuplicateJournalEntry() {
+        Long senderId = createAccount("RUB", "100.00");
+        Long receiverId = createAccount("RUB", "0.00");
+
+        // Проводка "другого узла": мимо кэша и Bloom фильтра этого узла
+        Transaction foreign = Transaction.builder()
+                .id(UUID.randomUUID())
+                .externalId(UUID.randomUUID())
+                .sender(Account.builder().id(senderId).build())
+                .receiver(Account.builder().id(receiverId).build())
+                .amount(new BigDecimal("30.00"))
+                .currency("RUB")
+                .timestamp(LocalDateTime.now())
+                .status(TransactionStatus.SUCCESS)
+                .build();
+        ledgerJdbcRepository.insertTransactions(List.of(foreign));
+
+        TransferDTO.Response replay = transferService.performTransfer(new TransferDTO.PerformRequest(
+                foreign.getExternalId(), senderId, receiverId, new BigDecimal("30.00")));
+        assertEquals(foreign.getId(), replay.transactionId());
+
+        // Баланс в памяти откатился: отправителю доступна вся сумма
+        transferService.performTransfer(new TransferDTO.PerformRequest(
+                UUID.randomUUID(), senderId, receiverId, new BigDecimal("100.00")));
+        assertBalance(senderId, "0.00");
+        assertBalance(receiverId, "100.00");
+    }
+
+    @Test
+    @DisplayName("Batch: Repeated externalId inside a batch should be counted as replayed")
+    void shouldReplayDuplicateInsideBatch() {
+        Long senderId = createAccount("RUB", "100.00");
+        Long receiverId = createAccount("RUB", "0.00");
+        var item = new TransferDTO.PerformRequest(UUID.randomUUID(), senderId, receiverId, new BigDecimal("10.00"));
+
+        TransferDTO.BatchResponse response = batchTransferService.performBatch(new TransferDTO.BatchRequest(List.of(item, item)));
+
+        assertEquals(1, response.succeeded());
+        assertEquals(1, response.replayed());
+        assertFalse(response.results().get(0).replayed());
+        assertTrue(response.results().get(1).replayed());
+        assertBalance(senderId, "90.00");
+    }
+
+    @Test
+    @DisplayName("Fail: Striping should be rejected in LEDGER mode")
+    void shouldRejectStriping() {
+        Long accountId = createAccount("RUB", "100.00");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () ->
+                accountService.enableStriping(accountId, 4));
+        assertEquals("Striping is not supported in LEDGER mode", e.getMessage());
+    }
+
+    @Test
+    @DisplayName("Concurrency: Cross-wise transfers across partitions should keep totals consistent")
+    void shouldExecuteConcurrentTransfers() throws InterruptedException {
+        Long account1 = createAccount("EUR", "1000.00");
+        Long account2 = createAccount("EUR", "1000.00");
+
+        int iterations = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch latch = new CountDownLatch(iterations * 2);
+
+        for (int i = 0; i < iterations; i++) {
+            executor.submit(() -> transferQuietly(account1, account2, latch));
+            executor.submit(() -> transferQuietly(account2, account1, latch));
+        }
+
+        assertTrue(latch.await(30, TimeUnit.SECONDS), "Threads didn't finish");
+        executor.shutdown();
+
+        assertBalance(account1, "1000.00");
+        assertBalance(account2, "1000.00");
+        assertEquals(iterations * 2 + 2, transactionRepository.count());
+    }
+
+    private void transferQuietly(Long from, Long to, CountDownLatch latch) {
+        try {
+            transferService.performTransfer(new TransferDTO.PerformRequest(
+                    UUID.randomUUID(), from, to, new BigDecimal("10.00")
+            ));
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            latch.countDown();
+        }
+    }
+
+    private Long createAccount(String currency, String initialBalance) {
+        var response = accountService.createAccount(new AccountDto.CreateRequest(currency));
+
+        BigDecimal balance = new BigDecimal(initialBalance);
+        if (balance.compareTo(BigDecimal.ZERO) > 0) {
+            accountService.topUpBalance(new AccountDto.TopUpRequest(response.id(), balance));
+        }
+
+        return response.id();
+    }
+
+    private void assertBalance(Long accountId, String expectedBalance) {
+        Account account = accountRepository.findById(accountId).orElseThrow();
+        assertTrue(new BigDecimal(expectedBalance).compareTo(account.getBalance()) == 0,
+                "Balance mismatch. Expected: " + expectedBalance + ", Actual: " + account.getBalance());
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.Silexj.payment_engine.service.reactive;
+
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.model.TransactionStatus;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.OutboxEventRepository;
+import com.github.Silexj.payment_engine.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Testcontainers
+@ActiveProfiles({"test", "reactive"})
+public class ReactiveTransferServiceIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+
+    @Autowired
+    private WebTestClient webTestClient;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @AfterEach
+    void cleanUp() {
+        transactionRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Account: Should create, top up and read an account over R2DBC")
+    void shouldCreateTopUpAndReadAccount() {
+        long outboxBefore = outboxEventRepository.count();
+
+        AccountDto.Response created = createAccount("RUB");
+        assertNotNull(created.id());
+        assertNotNull(created.number());
+        assertEquals(0, BigDecimal.ZERO.compareTo(created.balance()));
+
+        topUp(created.id(), "150.00");
+
+        AccountDto.Response account = getAccount(created.id());
+        assertEquals(0, new BigDecimal("150.00").compareTo(account.balance()));
+        assertEquals("RUB", account.currency());
+
+        assertEquals(1, transactionRepository.count(), "Top-up must be journaled as a deposit");
+        assertEquals(outboxBefore + 2, outboxEventRepository.count(), "ACCOUNT_CREATED + BALANCE_DEPOSITED");
+    }
+
+    @Test
+    @DisplayName("Transfer: Should move money and return the same transaction for a repeated externalId")
+    void shouldTransferIdempotently() {
+        Long senderId = createAccount("RUB").id();
+        Long receiverId = createAccount("RUB").id();
+        topUp(senderId, "1000.00");
+
+        TransferDTO.PerformRequest request = new TransferDTO.PerformRequest(
+                UUID.randomUUID(), senderId, receiverId, new BigDecimal("300.00"));
+
+        TransferDTO.Response first = transfer(request);
+        TransferDTO.Response replay = transfer(request);
+
+        assertEquals(TransactionStatus.SUCCESS, first.status());
+        assertEquals(first.transactionId(), replay.transactionId());
+        assertEquals(senderId, first.senderId());
+        assertEquals(receiverId, first.receiverId());
+
+        assertEquals(0, new BigDecimal("700.00").compareTo(getAccount(senderId).balance()));
+        assertEquals(0, new BigDecimal("300.00").compareTo(getAccount(receiverId).balance()));
+        assertEquals(2, transactionRepository.count(), "1 deposit + 1 transfer, the replay must not be journaled");
+    }
+
+    @Test
+    @DisplayName("Transfer: Should reject insufficient funds with 400 and leave balances intact")
+    void shouldRejectInsufficientFunds() {
+        Long senderId = createAccount("RUB").id();
+        Long receiverId = createAccount("RUB").id();
+        topUp(senderId, "100.00");
+
+        webTestClient.post().uri("/api/v1/transfers")
+                .bodyValue(new TransferDTO.PerformRequest(UUID.randomUUID(), senderId, receiverId, new BigDecimal("100.01")))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.detail").isEqualTo("Insufficient funds");
+
+        assertEquals(0, new BigDecimal("100.00").compareTo(getAccount(senderId).balance()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(getAccount(receiverId).balance()));
+    }
+
+    @Test
+    @DisplayName("Validation: Should reject an invalid request body with 400")
+    void shouldRejectInvalidRequest() {
+        webTestClient.post().uri("/api/v1/transfers")
+                .bodyValue(new TransferDTO.PerformRequest(null, 1L, 2L, new BigDecimal("-5")))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.title").isEqualTo("Validation Error");
+    }
+
+    private AccountDto.Response createAccount(String currency) {
+        return webTestClient.post().uri("/api/v1/accounts")
+                .bodyValue(new AccountDto.CreateRequest(currency))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(AccountDto.Response.class)
+                .returnResult().getResponseBody();
+    }
+
+    private void topUp(Long accountId, String amount) {
+        webTestClient.post().uri("/api/v1/accounts/{id}/top-up", accountId)
+                .bodyValue(new AccountDto.TopUpRequest(accountId, new BigDecimal(amount)))
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    private AccountDto.Response getAccount(Long accountId) {
+        return webTestClient.get().uri("/api/v1/accounts/{id}", accountId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(AccountDto.Response.class)
+                .returnResult().getResponseBody();
+    }
+
+    private TransferDTO.Response transfer(TransferDTO.PerformRequest request) {
+        return webTestClient.post().uri("/api/v1/transfers")
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(TransferDTO.Response.class)
+                .returnResult().getResponseBody();
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.Silexj.payment_engine.service.reconciliation;
+
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.ReconciliationRepository;
+import com.github.Silexj.payment_engine.repository.TransactionRepository;
+import com.github.Silexj.payment_engine.service.AccountService;
+import com.github.Silexj.payment_engine.service.TransferService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "app.reconciliation.range-size=2")
+@Testcontainers
+@ActiveProfiles("test")
+public class ReconciliationEngineIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+
+    @Autowired
+    private ReconciliationEngine reconciliationEngine;
+    @Autowired
+    private ReconciliationRepository reconciliationRepository;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM reconciliation_runs");
+        transactionRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should checkpoint every range and report only the corrupted account")
+    void shouldFindDiscrepancy() {
+        Long alice = createAccount("100.00");
+        Long bob = createAccount("50.00");
+        Long carol = createAccount("0.00");
+        transferService.performTransfer(new TransferDTO.PerformRequest(UUID.randomUUID(), alice, bob, new BigDecimal("30.00")));
+        transferService.performTransfer(new TransferDTO.PerformRequest(UUID.randomUUID(), bob, carol, new BigDecimal("10.00")));
+
+        jdbcTemplate.update("UPDATE accounts SET balance = balance + 1 WHERE id = ?", bob);
+
+        ReconciliationRepository.Run run = reconciliationEngine.run().orElseThrow();
+
+        assertEquals("COMPLETED", run.status());
+        assertEquals(3, run.accountsChecked());
+        assertEquals(1, run.discrepancies());
+        assertEquals(run.rangesTotal(), reconciliationRepository.findCompletedRanges(run.id()).size());
+
+        List<ReconciliationRepository.Discrepancy> discrepancies = reconciliationEngine.findDiscrepancies(run.id(), 10);
+        assertEquals(1, discrepancies.size());
+        assertEquals(bob, discrepancies.get(0).accountId());
+        assertEquals(0, new BigDecimal("71.00").compareTo(discrepancies.get(0).balance()));
+        assertEquals(0, new BigDecimal("70.00").compareTo(discrepancies.get(0).expectedBalance()));
+    }
+
+    @Test
+    @DisplayName("Should resume an interrupted run from its checkpoints")
+    void shouldResumeRun() {
+        Long first = createAccount("10.00");
+        createAccount("20.00");
+        createAccount("30.00");
+        // Счет первого диапазона испорчен, но диапазон уже отмечен как проверенный - повторно он не читается
+        jdbcTemplate.update("UPDATE accounts SET balance = 0 WHERE id = ?", first);
+
+        long maxAccountId = reconciliationRepository.findMaxAccountId();
+        int rangesTotal = (int) ((maxAccountId + 1) / 2);
+        String owner = ManagementFactory.getRuntimeMXBean().getName();
+        long runId = reconciliationRepository.createRun(owner, 2, maxAccountId, rangesTotal);
+        long firstRangeStart = (first - 1) / 2 * 2 + 1;
+        reconciliationRepository.saveRange(runId, firstRangeStart, firstRangeStart + 1, 1, List.of());
+
+        ReconciliationRepository.Run run = reconciliationEngine.run().orElseThrow();
+
+        assertEquals(runId, run.id());
+        assertEquals("COMPLETED", run.status());
+        assertEquals(0, run.discrepancies());
+        assertEquals(rangesTotal, reconciliationRepository.findCompletedRanges(runId).size());
+    }
+
+    @Test
+    @DisplayName("Should not take over a live run owned by another node")
+    void shouldSkipForeignRun() {
+        createAccount("10.00");
+        long runId = reconciliationRepository.createRun("other-node", 2, reconciliationRepository.findMaxAccountId(), 1);
+
+        assertTrue(reconciliationEngine.run().isEmpty());
+        assertEquals("RUNNING", reconciliationRepository.findLatestRun().orElseThrow().status());
+        assertEquals(runId, reconciliationRepository.findLatestRun().orElseThrow().id());
+    }
+
+    private Long createAccount(String initialBalance) {
+        var response = accountService.createAccount(new AccountDto.CreateRequest("RUB"));
+
+        BigDecimal balance = new BigDecimal(initialBalance);
+        if (balance.compareTo(BigDecimal.ZERO) > 0) {
+            accountService.topUpBalance(new AccountDto.TopUpRequest(response.id(), balance));
+        }
+
+        return response.id();
+    }
+}
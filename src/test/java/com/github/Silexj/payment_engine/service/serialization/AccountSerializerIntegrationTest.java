@@ -0,0 +1,141 @@
+package com.github.Silexj.payment_engine.service.serialization;
+
+import com.github.Silexj.payment_engine.dto.AccountDto;
+import com.github.Silexj.payment_engine.dto.TransferDTO;
+import com.github.Silexj.payment_engine.model.Account;
+import com.github.Silexj.payment_engine.repository.AccountRepository;
+import com.github.Silexj.payment_engine.repository.OutboxEventRepository;
+import com.github.Silexj.payment_engine.repository.TransactionRepository;
+import com.github.Silexj.payment_engine.service.AccountService;
+import com.github.Silexj.payment_engine.service.TransferService;
+import com.github.Silexj.payment_engine.service.bulkhead.BulkheadRejectedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "app.account-serialization.enabled=true",
+        "app.account-serialization.max-queue=1",
+        "app.account-serialization.max-wait=5s"
+})
+@Testcontainers
+@ActiveProfiles("test")
+public class AccountSerializerIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+
+    @Autowired
+    private AccountSerializer serializer;
+    @Autowired
+    private TransferService transferService;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private OutboxEventRepository outboxRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void cleanUp() {
+        outboxRepository.deleteAll();
+        transactionRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should queue transfers of a busy account in memory without blocking other accounts")
+    void shouldQueueBusyAccountOnly() throws Exception {
+        Long hotId = createAccount("RUB", "100.00");
+        Long receiverId = createAccount("RUB", "0.00");
+        Long otherSenderId = createAccount("RUB", "100.00");
+        Long otherReceiverId = createAccount("RUB", "0.00");
+
+        // Очередь горячего счета занята, как будто его перевод уже выполняется
+        int[] held = serializer.acquire(List.of(hotId));
+        CompletableFuture<TransferDTO.Response> queued = CompletableFuture.supplyAsync(() ->
+                transferService.performTransfer(transfer(hotId, receiverId, "30.00")));
+        waitUntil(() -> serializer.getQueued() == 1);
+
+        TransferDTO.Response unrelated = transferService.performTransfer(transfer(otherSenderId, otherReceiverId, "10.00"));
+        assertEquals("SUCCESS", unrelated.status().name());
+        assertFalse(queued.isDone());
+        assertBalance(hotId, "100.00");
+
+        serializer.release(held);
+        assertEquals("SUCCESS", queued.get(5, TimeUnit.SECONDS).status().name());
+        assertBalance(hotId, "70.00");
+        assertEquals(0, serializer.getQueued());
+    }
+
+    @Test
+    @DisplayName("Should shed requests when the account queue is full")
+    void shouldShedWhenQueueIsFull() throws Exception {
+        Long hotId = createAccount("RUB", "100.00");
+        Long receiverId = createAccount("RUB", "0.00");
+
+        int[] held = serializer.acquire(List.of(receiverId));
+        CompletableFuture<TransferDTO.Response> queued = CompletableFuture.supplyAsync(() ->
+                transferService.performTransfer(transfer(hotId, receiverId, "30.00")));
+        waitUntil(() -> serializer.getQueued() == 1);
+
+        assertThrows(BulkheadRejectedException.class, () ->
+                accountService.topUpBalance(new AccountDto.TopUpRequest(receiverId, BigDecimal.TEN)));
+        assertEquals(1.0, meterRegistry.get("account.serialization.rejected").tag("reason", "queue_full").counter().count());
+
+        serializer.release(held);
+        assertEquals("SUCCESS", queued.get(5, TimeUnit.SECONDS).status().name());
+        assertBalance(receiverId, "30.00");
+    }
+
+    private TransferDTO.PerformRequest transfer(Long fromId, Long toId, String amount) {
+        return new TransferDTO.PerformRequest(UUID.randomUUID(), fromId, toId, new BigDecimal(amount));
+    }
+
+    private Long createAccount(String currency, String initialBalance) {
+        var response = accountService.createAccount(new AccountDto.CreateRequest(currency));
+
+        BigDecimal balance = new BigDecimal(initialBalance);
+        if (balance.compareTo(BigDecimal.ZERO) > 0) {
+            accountService.topUpBalance(new AccountDto.TopUpRequest(response.id(), balance));
+        }
+
+        return response.id();
+    }
+
+    private void assertBalance(Long accountId, String expectedBalance) {
+        Account account = accountRepository.findById(accountId).orElseThrow();
+        assertTrue(new BigDecimal(expectedBalance).compareTo(account.getBalance()) == 0,
+                "Balance mismatch. Expected: " + expectedBalance + ", Actual: " + account.getBalance());
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+}